@@ -0,0 +1,49 @@
+package org.morris.unofficial.events;
+
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import org.morris.unofficial.utils.FileUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+
+/**
+ * Loads the fixtures in src/test/resources for the benchmarks. Fixtures are read fully in a benchmark's setup, so
+ * each measured invocation works from memory and only the code under test is timed.
+ */
+final class BenchmarkFixtures {
+    final static String LATEST_CRAWL_METRO_DOCUMENT_PATH_1 = "/s3-event-crawl-metro-latest-1.txt";
+    final static String RECENT_CRAWL_METRO_DOCUMENT_PATH_1 = "/s3-event-crawl-metro-recent-1.txt";
+    final static String SCHEDULE_DOCUMENT_DUMP_PATH_190 = "/schedule-document-dumps/schedule-document-190.txt";
+    final static String SCHEDULE_PDF_TEXT_DUMP_PATH_190 = "/schedule-pdf-text-dump/schedule-pdf-text-190.txt";
+
+    // handlers log errors only, a benchmark has nowhere to send them
+    final static LambdaLogger NO_OP_LOGGER = new LambdaLogger() {
+        @Override
+        public void log(String message) {
+        }
+
+        @Override
+        public void log(byte[] message) {
+        }
+    };
+
+    private BenchmarkFixtures() {
+    }
+
+    static byte[] read(String file) {
+        try (InputStream inputStream = Objects.requireNonNull(FileUtils.getResourceAsStream(file), file)) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = inputStream.read(buffer)) != -1) {
+                content.write(buffer, 0, length);
+            }
+            return content.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
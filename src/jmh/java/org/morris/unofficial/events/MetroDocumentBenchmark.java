@@ -0,0 +1,81 @@
+package org.morris.unofficial.events;
+
+import org.morris.unofficial.models.MetroLine;
+import org.morris.unofficial.utils.ProcessEventUtils;
+import org.morris.unofficial.utils.RoutesDigest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the work done on a crawled metro page: {@link CrawlMetroEvent} comparing the latest crawl with the
+ * recent one by their {@link RoutesDigest}, writing the page to /tmp, and {@link ProcessCrawledMetroDataEvent}
+ * parsing its route list.
+ * <p></p>
+ * {@code mvn -B -Pjmh test-compile exec:exec -Djmh.includes=MetroDocumentBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetroDocumentBenchmark {
+    private byte[] latestDocument;
+    private byte[] recentDocument;
+    private Path routesDocFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        latestDocument = BenchmarkFixtures.read(BenchmarkFixtures.LATEST_CRAWL_METRO_DOCUMENT_PATH_1);
+        recentDocument = BenchmarkFixtures.read(BenchmarkFixtures.RECENT_CRAWL_METRO_DOCUMENT_PATH_1);
+        routesDocFile = Files.createTempFile("routes_doc", ".txt");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(routesDocFile);
+    }
+
+    @Benchmark
+    public Collection<MetroLine> collectMetroLines() throws IOException {
+        InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(latestDocument),
+                StandardCharsets.UTF_8);
+        return ProcessCrawledMetroDataEvent.collectMetroLines(reader, ProcessEventUtils.METRO_TOP_LEVEL_URL);
+    }
+
+    /**
+     * The comparison made when neither document carries a digest in its metadata, both are streamed.
+     */
+    @Benchmark
+    public boolean compareDocuments() throws IOException {
+        String latestDigest = RoutesDigest.digest(new ByteArrayInputStream(latestDocument),
+                CrawlMetroEvent.END_ROUTES_MARKER);
+        String recentDigest = RoutesDigest.digest(new ByteArrayInputStream(recentDocument),
+                CrawlMetroEvent.END_ROUTES_MARKER);
+        return latestDigest.equals(recentDigest);
+    }
+
+    @Benchmark
+    public long printToFile() throws IOException {
+        return ProcessEventUtils.printToFile(new ByteArrayInputStream(latestDocument), routesDocFile.toString(),
+                BenchmarkFixtures.NO_OP_LOGGER);
+    }
+}
@@ -0,0 +1,77 @@
+package org.morris.unofficial.events;
+
+import org.morris.unofficial.utils.MarkerScanner.ScanResult;
+import org.morris.unofficial.utils.ProcessEventUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.services.comprehend.model.KeyPhrase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the per line work of {@link ProcessCrawledMetroScheduleDataEvent}: scanning a line's schedule page
+ * for its pdf url, and formatting the key phrases detected in the text of its schedule pdf.
+ * <p></p>
+ * {@code mvn -B -Pjmh test-compile exec:exec -Djmh.includes=ScheduleDocumentBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScheduleDocumentBenchmark {
+    final static private String LINE = "190";
+
+    private byte[] scheduleDocument;
+    private List<KeyPhrase> keyPhrases;
+
+    @Setup
+    public void setUp() {
+        scheduleDocument = BenchmarkFixtures.read(BenchmarkFixtures.SCHEDULE_DOCUMENT_DUMP_PATH_190);
+        keyPhrases = getKeyPhrases(new String(BenchmarkFixtures.read(BenchmarkFixtures.SCHEDULE_PDF_TEXT_DUMP_PATH_190),
+                StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public String scanScheduleDocument() throws IOException {
+        ScanResult scanResult = ProcessCrawledMetroScheduleDataEvent.scanScheduleDocument(
+                new ByteArrayInputStream(scheduleDocument));
+        return ProcessCrawledMetroScheduleDataEvent.getPdfUrlFromPdfTimetableLink(scanResult.get("pdf-timetable-link"),
+                LINE, ProcessEventUtils.METRO_TOP_LEVEL_URL);
+    }
+
+    @Benchmark
+    public List<KeyPhrase> formatKeyPhraseList() {
+        return ProcessCrawledMetroScheduleDataEvent.formatKeyPhraseList(keyPhrases, BenchmarkFixtures.NO_OP_LOGGER);
+    }
+
+    /**
+     * Approximates the key phrases Comprehend detects in a schedule pdf's text: every stop number and time, with
+     * the word that follows it (ex: '#60747 Kent', '5:25 am').
+     */
+    private static List<KeyPhrase> getKeyPhrases(String schedulePdfText) {
+        String[] words = schedulePdfText.trim().split("\\s+");
+        List<KeyPhrase> keyPhrases = new ArrayList<>();
+        for (int i = 0; i < words.length; i++) {
+            if (words[i].matches("#\\d+") || words[i].matches("\\d{1,2}:\\d{2}.*")) {
+                String text = i + 1 < words.length ? words[i] + " " + words[i + 1] : words[i];
+                keyPhrases.add(KeyPhrase.builder().text(text).build());
+            }
+        }
+        return keyPhrases;
+    }
+}
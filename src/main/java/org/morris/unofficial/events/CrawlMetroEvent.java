@@ -3,156 +3,240 @@ package org.morris.unofficial.events;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.LambdaLogger;
 import com.amazonaws.services.lambda.runtime.events.ScheduledEvent;
-import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.model.GetObjectRequest;
-import com.amazonaws.services.s3.model.S3Object;
-import com.amazonaws.services.s3.model.Bucket;
-import com.amazonaws.services.s3.model.AmazonS3Exception;
-import com.amazonaws.services.s3.model.ObjectListing;
+import org.morris.unofficial.models.HttpValidators;
+import org.morris.unofficial.utils.AwsClientRegistry;
+import org.morris.unofficial.utils.BlobStore;
+import org.morris.unofficial.utils.BlobStore.BlobMetadata;
+import org.morris.unofficial.utils.HttpFetcher.FetchResult;
+import org.morris.unofficial.utils.LatestDocumentIndex;
+import org.morris.unofficial.utils.LatestDocumentIndex.LatestDocument;
 import org.morris.unofficial.utils.ProcessEventUtils;
+import org.morris.unofficial.utils.RoutesDigest;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
 public class CrawlMetroEvent {
     final static private String BUCKET = System.getenv("UNPROCESSED_BUCKET_NAME");
-    final static private String METRO_SCHEDULE_URL = "https://kingcounty.gov/depts/transportation/metro/schedules-maps.aspx";
-    final static private String GET_REQUEST = "GET";
+    final static private String METRO_SCHEDULE_PATH = "/depts/transportation/metro/schedules-maps.aspx";
     final static private String ROUTES_DOC_FILE = "routes_doc.txt";
     final static private String TMP_ROUTES_DOC_FILE = "/tmp/routes_doc.txt";
-    final static private String TMP_RECENT_ROUTES_DOC_FILE = "/tmp/recent_routes_doc.txt";
+    final static private String TEXT_CONTENT_TYPE = "text/plain";
     final static public String END_ROUTES_MARKER = "<!-- end #routes -->";
+    final static public String ROUTES_DIGEST_METADATA = "routes-digest";
 
-    public String handleRequest(ScheduledEvent event, Context context) {
+    // validators of the crawled page, sent back on the next crawl so an unchanged page costs a 304
+    final static public String SOURCE_ETAG_METADATA = "source-etag";
+    final static public String SOURCE_LAST_MODIFIED_METADATA = "source-last-modified";
+
+    // pointer to the most recent dump, kept outside of docs/ so it is never mistaken for a dump
+    final static public String LATEST_ROUTES_DOC_INDEX = "index/latest_routes_doc";
+    final static private String DOCS_PREFIX = "docs/";
+
+    private final BlobStore blobStore;
+    private final String siteUrl;
+
+    public CrawlMetroEvent() {
+        this(ProcessEventUtils.getBlobStore(), ProcessEventUtils.getMetroSiteUrl());
+    }
+
+    /**
+     * @param blobStore {@link BlobStore} holding the unprocessed bucket
+     * @param siteUrl {@link String} metro site url the schedules and maps page is crawled from
+     */
+    public CrawlMetroEvent(BlobStore blobStore, String siteUrl) {
+        this.blobStore = blobStore;
+        this.siteUrl = siteUrl;
+    }
+
+    public String handleRequest(ScheduledEvent event, Context context) throws IOException {
         LambdaLogger logger = context.getLogger();
         logger.log(String.format("Seattle Metro crawl event triggered: %s", event.getId()));
 
-        printMetroDumpToTmp(logger);
-        if (!bucketContainsDocuments()) {
-            ProcessEventUtils.putS3File(TMP_ROUTES_DOC_FILE, BUCKET, ""); // contains no documents, crawl immediately
-        } else {
-            S3Object latestDocumentObject = getMostRecentDocumentObject(logger);
-            logger.log("latest document date: " + latestDocumentObject.getObjectMetadata().getLastModified());
+        LatestDocumentIndex latestDocumentIndex = new LatestDocumentIndex(blobStore, BUCKET, LATEST_ROUTES_DOC_INDEX);
+        boolean containsDocuments = latestDocumentIndex.containsDocuments(DOCS_PREFIX);
+        LatestDocument recentDocument = containsDocuments ? getMostRecentDocument(latestDocumentIndex, logger) : null;
 
-            boolean isScanMatch = scanLatestMetroDocumentAgainstRecentlyCrawledDocument(logger);
+        // the crawled page is digested as it is written to /tmp, so it is only read once
+        RoutesDigest routesDigest = new RoutesDigest(END_ROUTES_MARKER);
+        FetchResult fetchResult = printMetroDumpToTmp(recentDocument, routesDigest, logger);
+        if (fetchResult == null) {
+            return "failure";
+        }
+        if (fetchResult.isNotModified()) {
+            logger.log("metro page not modified since the recent document, nothing to upload");
+            logger.log("aws clients created: " + AwsClientRegistry.getCreatedClientCounts());
+            return "success";
+        }
+
+        Map<String, String> digestMetadata = new HashMap<>();
+        String latestDigest = routesDigest.toHex();
+        digestMetadata.put(ROUTES_DIGEST_METADATA, latestDigest);
+        HttpValidators validators = fetchResult.getValidators();
+        if (validators.getEtag() != null) {
+            digestMetadata.put(SOURCE_ETAG_METADATA, validators.getEtag());
+        }
+        if (validators.getLastModified() != null) {
+            digestMetadata.put(SOURCE_LAST_MODIFIED_METADATA, validators.getLastModified());
+        }
+
+        if (!containsDocuments) {
+            // contains no documents, crawl immediately
+            uploadLatestDocument(latestDocumentIndex, digestMetadata);
+        } else {
+            boolean isScanMatch = false;
+            if (recentDocument != null) {
+                logger.log("latest document date: " + recentDocument.getLastModified());
+                String recentDigest = getRecentDocumentDigest(recentDocument, logger);
+                isScanMatch = latestDigest.equals(recentDigest);
+            }
             logger.log("Scanned Match: " + isScanMatch);
 
             // unload changed dump to unprocessed store i.e. the dump currently in /tmp/routes_doc
             if (!isScanMatch) {
                 logger.log("not a current match - uploading new dump document");
-                ProcessEventUtils.putS3File(TMP_ROUTES_DOC_FILE, BUCKET, "");
+                uploadLatestDocument(latestDocumentIndex, digestMetadata);
+            } else {
+                updateRecentDocumentValidators(latestDocumentIndex, recentDocument, digestMetadata, logger);
             }
         }
+        logger.log("aws clients created: " + AwsClientRegistry.getCreatedClientCounts());
         return "success";
     }
 
     /**
-     * Scans the latest unprocessed crawled document and recently crawled document from the SEA metro
-     * site. Both documents should have already been written to both /tmp/recent_routes_doc.txt and
-     * /tmp/routes_doc.txt, respectively. The text in both instances are split after a string of
-     * unique characters, as we only want the document up until the end of the routes. Any data after
-     * this point may be dynamic and changed often.
+     * Gets the {@link RoutesDigest} of the recently crawled document. Documents uploaded with a digest carry it
+     * in their object metadata, which the latest document index copies, so the HEAD request that found the
+     * document is all that is needed. Documents uploaded before digests were recorded are streamed once through
+     * the digest instead; they are never written to /tmp or held in memory.
      *
+     * @param recentDocument {@link LatestDocument} the recently crawled document
      * @param logger {@link LambdaLogger}
      *
-     * @return boolean
+     * @return {@link String} hex digest, or null if the document could not be read
      */
-    private boolean scanLatestMetroDocumentAgainstRecentlyCrawledDocument(LambdaLogger logger) {
-        try {
-            String latestDocumentTxt = new String(Files.readAllBytes(Paths.get(TMP_RECENT_ROUTES_DOC_FILE)))
-                    .split(END_ROUTES_MARKER)[0];
-
-            String recentDocumentTxt = new String(Files.readAllBytes(Paths.get(TMP_ROUTES_DOC_FILE)))
-                    .split(END_ROUTES_MARKER)[0];
-            if (latestDocumentTxt.equals(recentDocumentTxt)) {
-                return true;
+    private String getRecentDocumentDigest(LatestDocument recentDocument, LambdaLogger logger) {
+        String recentDigest = recentDocument.getMetadata(ROUTES_DIGEST_METADATA);
+        if (recentDigest != null) {
+            return recentDigest;
+        }
+        logger.log("recent document has no digest metadata, streaming: " + recentDocument.getKey());
+        try (InputStream inputStream = blobStore.getContent(BUCKET, recentDocument.getKey())) {
+            if (inputStream == null) {
+                logger.log("recent document no longer exists: " + recentDocument.getKey());
+                return null;
             }
+            return RoutesDigest.digest(inputStream, END_ROUTES_MARKER);
         } catch (IOException e) {
-            logger.log(String.format("Error scanning latest documents from /tmp directory: %s", e.getMessage()));
-            return false;
+            logger.log(String.format("Error computing digest of recent document '%s': %s", recentDocument.getKey(),
+                    e.getMessage()));
+            return null;
         }
-        return false;
     }
 
     /**
-     * Returns the latest {@link S3Object} which is a dump of the unprocessed data from SEA metro site.
-     * The latest document will be an {@link S3Object} from 7 days prior to the current date. This is
-     * due to the {@link CrawlMetroEvent} being triggered every 7 days and uploading the crawled data
-     * to the unprocessed S3 Bucket. If no document dump was created on the prior 7 days, then 7 days
-     * prior to that date is checked. Hence, documents are retraced by 7 days based on the prefix in
-     * the respect S3 bucket until the last known document dump is found.
+     * Returns the latest dump of the unprocessed data from SEA metro site. The {@link LatestDocumentIndex} is
+     * rewritten on every upload, so the latest document is resolved with a single HEAD request regardless of
+     * the crawl cadence, missed crawls or manual re-crawls.
+     * <p></p>
+     * Buckets that predate the index are listed once under the docs prefix, the newest dump is taken, and the
+     * index is written so later crawls resolve it directly.
      *
      * <p></p>
      * <p>
      *     prefix example: bucketName/docs/2022/10/8 or bucketName/docs/2022/1/1
      * </p>
      *
+     * @param latestDocumentIndex {@link LatestDocumentIndex} of the unprocessed bucket
      * @param logger {@link LambdaLogger}
-     * @return {@link S3Object}
+     * @return {@link LatestDocument}, or null if the bucket holds no dumps
+     * @throws IOException if the index or the bucket can't be read
      */
-    private S3Object getMostRecentDocumentObject(LambdaLogger logger) {
-        AmazonS3 s3Client = ProcessEventUtils.getS3Client();
-        S3Object object = null;
-        int days = 7;
-
-        while (object == null) {
-            String documentFromXDaysAgoUri = ProcessEventUtils.getPrefix(days) + ROUTES_DOC_FILE;
-            GetObjectRequest getObjectRequest = new GetObjectRequest(BUCKET, documentFromXDaysAgoUri);
-            try {
-                object = s3Client.getObject(getObjectRequest);
-            } catch (AmazonS3Exception e) {
-                logger.log("key does not exist: " + documentFromXDaysAgoUri);
-            }
-            days = days + 7;
+    private LatestDocument getMostRecentDocument(LatestDocumentIndex latestDocumentIndex, LambdaLogger logger)
+            throws IOException {
+        LatestDocument latestDocument = latestDocumentIndex.getLatest();
+        if (latestDocument != null) {
+            return latestDocument;
+        }
+
+        logger.log("latest document index not found, listing: " + DOCS_PREFIX);
+        String latestKey = latestDocumentIndex.findLatestByListing(DOCS_PREFIX, ROUTES_DOC_FILE);
+        if (latestKey == null) {
+            return null;
+        }
+        BlobMetadata metadata = blobStore.getMetadata(BUCKET, latestKey);
+        if (metadata == null) {
+            return null;
         }
-        ProcessEventUtils.printToFile(object.getObjectContent(), TMP_RECENT_ROUTES_DOC_FILE, logger);
-        s3Client.shutdown();
-        return object;
+        latestDocumentIndex.update(latestKey, metadata.getUserMetadata());
+        return new LatestDocument(latestKey, metadata.getUserMetadata(), metadata.getLastModified());
     }
 
     /**
-     * Checks if the unprocessed documents {@link Bucket} exists. If so, checks that
-     * the bucket contains objects (documents from SEA metro dump).
+     * Uploads the crawled dump in /tmp/routes_doc.txt to the unprocessed bucket and points the latest document
+     * index at it.
      *
-     * @return boolean
+     * @param latestDocumentIndex {@link LatestDocumentIndex} of the unprocessed bucket
+     * @param digestMetadata {@link Map} of user metadata to upload with the dump
+     * @throws IOException if the dump or the index can't be written
      */
-    private boolean bucketContainsDocuments() {
-        AmazonS3 s3Client = ProcessEventUtils.getS3Client();
-        Bucket unprocessedBucket = null;
-        List<Bucket> buckets = s3Client.listBuckets();
-        for (Bucket bucket : buckets) {
-            if (bucket.getName().equals(BUCKET)) {
-                unprocessedBucket = bucket;
-            }
-        }
-        // see if bucket contains object(s) (document)
-        if (unprocessedBucket != null) {
-            ObjectListing objectListing = s3Client.listObjects(unprocessedBucket.getName());
-            return objectListing.getObjectSummaries().size() > 0;
+    private void uploadLatestDocument(LatestDocumentIndex latestDocumentIndex, Map<String, String> digestMetadata)
+            throws IOException {
+        String key = ProcessEventUtils.putFile(blobStore, TMP_ROUTES_DOC_FILE, BUCKET, "", TEXT_CONTENT_TYPE,
+                digestMetadata);
+        latestDocumentIndex.update(key, digestMetadata);
+    }
+
+    /**
+     * Records the validators of a page that changed outside of its routes in the latest document index. The recent
+     * document is kept, but the next crawl sends the new validators and gets a 304 instead of the whole page again.
+     *
+     * @param latestDocumentIndex {@link LatestDocumentIndex} of the unprocessed bucket
+     * @param recentDocument {@link LatestDocument} the recently crawled document
+     * @param digestMetadata {@link Map} of user metadata of the crawled page, holding its validators
+     * @param logger {@link LambdaLogger}
+     * @throws IOException if the index can't be written
+     */
+    private void updateRecentDocumentValidators(LatestDocumentIndex latestDocumentIndex,
+                                                LatestDocument recentDocument, Map<String, String> digestMetadata,
+                                                LambdaLogger logger) throws IOException {
+        Map<String, String> metadata = new HashMap<>(recentDocument.getMetadata());
+        metadata.remove(SOURCE_ETAG_METADATA);
+        metadata.remove(SOURCE_LAST_MODIFIED_METADATA);
+        metadata.putAll(digestMetadata);
+        if (!metadata.equals(recentDocument.getMetadata())) {
+            logger.log("routes unchanged, recording the page's new validators: " + recentDocument.getKey());
+            latestDocumentIndex.update(recentDocument.getKey(), metadata);
         }
-        s3Client.shutdown();
-        return false;
     }
 
     /**
      * Queries the Seattle Metro website, and reads the content from a {@link InputStreamReader},
-     * and writes the page dump content to /tmp file.
+     * and writes the page dump content to /tmp file. The page is fetched conditionally with the validators the
+     * recent document was uploaded with, and isn't written when it is unchanged. The page is fed to the given
+     * {@link RoutesDigest} as it is written.
+     *
+     * @param recentDocument {@link LatestDocument} the recently crawled document, or null
+     * @param routesDigest {@link RoutesDigest} of the page, complete once the page is written
+     * @param logger {@link LambdaLogger}
+     *
+     * @return {@link FetchResult}, or null if the page could not be fetched
      */
-    private void printMetroDumpToTmp(LambdaLogger logger) {
+    private FetchResult printMetroDumpToTmp(LatestDocument recentDocument, RoutesDigest routesDigest,
+                                            LambdaLogger logger) {
+        HttpValidators validators = recentDocument == null
+                ? null
+                : new HttpValidators(recentDocument.getMetadata(SOURCE_ETAG_METADATA),
+                recentDocument.getMetadata(SOURCE_LAST_MODIFIED_METADATA));
         try {
-            URL metroScheduleUrl = new URL(METRO_SCHEDULE_URL);
-            HttpURLConnection connection = (HttpURLConnection) metroScheduleUrl.openConnection();
-            connection.setRequestMethod(GET_REQUEST);
-
-            ProcessEventUtils.printToFile(connection.getInputStream(), TMP_ROUTES_DOC_FILE, logger);
-            connection.disconnect();
+            return ProcessEventUtils.getHttpFetcher().fetch(siteUrl + METRO_SCHEDULE_PATH, validators,
+                    body -> ProcessEventUtils.printToFile(routesDigest.digesting(body), TMP_ROUTES_DOC_FILE, logger));
         } catch (IOException e) {
             logger.log(String.format("Error writing route document dump to '%s': ", TMP_ROUTES_DOC_FILE + e.getMessage()));
+            return null;
         }
     }
 }
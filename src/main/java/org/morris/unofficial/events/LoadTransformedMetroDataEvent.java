@@ -3,14 +3,161 @@ package org.morris.unofficial.events;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.LambdaLogger;
 import com.amazonaws.services.lambda.runtime.events.S3Event;
+import com.amazonaws.services.lambda.runtime.events.models.s3.S3EventNotification.S3EventNotificationRecord;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.morris.unofficial.models.MetroLine;
+import org.morris.unofficial.models.Schedule;
+import org.morris.unofficial.utils.AwsClientRegistry;
+import org.morris.unofficial.utils.DynamoBatchLoader;
+import org.morris.unofficial.utils.MetroJson;
+import org.morris.unofficial.utils.MetroTableItems;
+import org.morris.unofficial.utils.ProcessEventUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 public class LoadTransformedMetroDataEvent {
+    final private static String METRO_TABLE = System.getenv("METRO_TABLE_NAME");
+    final private static String ROUTES_JSON_FILE = "routes_doc.json";
+    final private static String LINE_SCHEDULE_JSON_FILE = "line_schedule.json";
+    final private static String REMOVED_LINES_JSON_FILE = "removed_lines.json";
+    final private static ObjectMapper OBJECT_MAPPER = MetroJson.getObjectMapper();
+
+    // number of batches written at once
+    final private static String DYNAMODB_WRITE_CONCURRENCY = "DYNAMODB_WRITE_CONCURRENCY";
+    final private static int DEFAULT_DYNAMODB_WRITE_CONCURRENCY = 8;
 
-    public String handleRequest(S3Event event, Context context) {
+    public String handleRequest(S3Event event, Context context) throws IOException, InterruptedException {
         LambdaLogger logger = context.getLogger();
-        logger.log(event.toString());
         logger.log("inside: " + LoadTransformedMetroDataEvent.class);
+        AmazonS3 s3Client = ProcessEventUtils.getS3Client();
+
+        try (DynamoBatchLoader loader = new DynamoBatchLoader(ProcessEventUtils.getAmazonDynamoDBClient(), METRO_TABLE,
+                ProcessEventUtils.getEnvironmentInt(DYNAMODB_WRITE_CONCURRENCY, DEFAULT_DYNAMODB_WRITE_CONCURRENCY))) {
+            for (S3EventNotificationRecord record : event.getRecords()) {
+                String bucket = record.getS3().getBucket().getName();
+                String key = record.getS3().getObject().getUrlDecodedKey();
+                if (key.endsWith(ROUTES_JSON_FILE)) {
+                    loadRoutes(s3Client, bucket, key, loader);
+                } else if (key.endsWith(LINE_SCHEDULE_JSON_FILE)) {
+                    loadSchedules(s3Client, bucket, key, loader);
+                } else if (key.endsWith(REMOVED_LINES_JSON_FILE)) {
+                    deleteLines(s3Client, bucket, key, loader);
+                } else {
+                    logger.log("skipping non processed document upload: " + key);
+                    continue;
+                }
+                logger.log("loaded document: " + key);
+            }
+            loader.flush();
 
+            logger.log("dynamodb loader: " + loader);
+            if (loader.getFailed() > 0) {
+                throw new IOException(String.format("unable to load %d items into table: %s, last failure: %s",
+                        loader.getFailed(), METRO_TABLE, loader.getLastFailure()));
+            }
+        }
+        logger.log("aws clients created: " + AwsClientRegistry.getCreatedClientCounts());
         return "success";
     }
+
+    /**
+     * Streams the routes of a processed routes document into the metro table, one {@link MetroLine} at a time.
+     * The document's last modified time is the version of its items.
+     *
+     * @param s3Client {@link AmazonS3} client
+     * @param bucket {@link String} bucket of the routes document
+     * @param key {@link String} key of the routes document
+     * @param loader {@link DynamoBatchLoader}
+     *
+     * @throws IOException if the document can't be read
+     * @throws InterruptedException if interrupted while waiting on a batch
+     */
+    private void loadRoutes(AmazonS3 s3Client, String bucket, String key, DynamoBatchLoader loader)
+            throws IOException, InterruptedException {
+        try (S3Object routesObject = s3Client.getObject(new GetObjectRequest(bucket, key));
+             InputStream inputStream = routesObject.getObjectContent();
+             JsonParser parser = OBJECT_MAPPER.getFactory().createParser(inputStream)) {
+            long version = routesObject.getObjectMetadata().getLastModified().getTime();
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("routes document is not a json array: " + key);
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                MetroLine metroLine = parser.readValueAs(MetroLine.class);
+                if (metroLine.getLine() != null) {
+                    loader.put(MetroTableItems.getRouteItem(metroLine, version, key));
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the route and timetables of every line in a removed lines document from the metro table. Only items
+     * older than the document are deleted, so a line that is added back later keeps its new items.
+     *
+     * @param s3Client {@link AmazonS3} client
+     * @param bucket {@link String} bucket of the removed lines document
+     * @param key {@link String} key of the removed lines document
+     * @param loader {@link DynamoBatchLoader}
+     *
+     * @throws IOException if the document can't be read
+     */
+    private void deleteLines(AmazonS3 s3Client, String bucket, String key, DynamoBatchLoader loader)
+            throws IOException {
+        try (S3Object linesObject = s3Client.getObject(new GetObjectRequest(bucket, key));
+             InputStream inputStream = linesObject.getObjectContent()) {
+            long version = linesObject.getObjectMetadata().getLastModified().getTime();
+            List<String> lines = OBJECT_MAPPER.readValue(inputStream, new TypeReference<List<String>>() {});
+            for (String line : lines) {
+                loader.deleteOlderItems(MetroTableItems.LINE_KEY_PREFIX + line, "", Collections.emptySet(), version);
+            }
+        }
+    }
+
+    /**
+     * Streams the timetables of a line's processed schedule document into the metro table. The line is the
+     * directory of the document, ex: docs/2022/9/17/190/line_schedule.json. Timetables an older document of the
+     * line had beyond this document's last one are deleted.
+     *
+     * @param s3Client {@link AmazonS3} client
+     * @param bucket {@link String} bucket of the schedule document
+     * @param key {@link String} key of the schedule document
+     * @param loader {@link DynamoBatchLoader}
+     *
+     * @throws IOException if the document can't be read
+     * @throws InterruptedException if interrupted while waiting on a batch
+     */
+    private void loadSchedules(AmazonS3 s3Client, String bucket, String key, DynamoBatchLoader loader)
+            throws IOException, InterruptedException {
+        String lineDirectory = key.substring(0, key.length() - LINE_SCHEDULE_JSON_FILE.length() - 1);
+        String line = lineDirectory.substring(lineDirectory.lastIndexOf('/') + 1);
+
+        try (S3Object scheduleObject = s3Client.getObject(new GetObjectRequest(bucket, key));
+             InputStream inputStream = scheduleObject.getObjectContent();
+             JsonParser parser = OBJECT_MAPPER.getFactory().createParser(inputStream)) {
+            long version = scheduleObject.getObjectMetadata().getLastModified().getTime();
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("schedule document is not a json array: " + key);
+            }
+            Set<String> sortKeys = new HashSet<>();
+            int index = 0;
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                Schedule schedule = parser.readValueAs(Schedule.class);
+                sortKeys.add(MetroTableItems.SCHEDULE_SORT_KEY_PREFIX + index);
+                loader.put(MetroTableItems.getScheduleItem(line, schedule, index++, version, key));
+            }
+            loader.deleteOlderItems(MetroTableItems.LINE_KEY_PREFIX + line, MetroTableItems.SCHEDULE_SORT_KEY_PREFIX,
+                    sortKeys, version);
+        }
+    }
 }
@@ -3,186 +3,141 @@ package org.morris.unofficial.events;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.LambdaLogger;
 import com.amazonaws.services.lambda.runtime.events.S3Event;
-import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.model.GetObjectRequest;
-import com.amazonaws.services.s3.model.PutObjectRequest;
-import com.amazonaws.services.s3.model.S3Object;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.morris.unofficial.models.MetroLine;
+import org.morris.unofficial.utils.AwsClientRegistry;
+import org.morris.unofficial.utils.BlobStore;
+import org.morris.unofficial.utils.MetroJson;
 import org.morris.unofficial.utils.ProcessEventUtils;
+import org.morris.unofficial.utils.RouteListParser;
 
-import java.io.File;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.BufferedReader;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.FileWriter;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
-import java.util.HashMap;
-import java.util.Arrays;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 
 public class ProcessCrawledMetroDataEvent {
     final private static String UNPROCESSED_BUCKET = System.getenv("UNPROCESSED_BUCKET_NAME");
     final private static String PROCESSED_BUCKET = System.getenv("PROCESSED_BUCKET_NAME");
-    final private static String JSON_ROUTES_DOC_FILE = "/tmp/routes_doc.json";
-    final private static String METRO_PREFIX = "https://kingcounty.gov";
+    final private static String JSON_ROUTES_DOC_FILE = "routes_doc.json";
+    final private static String JSON_CONTENT_TYPE = "application/json";
+    final private static int ROUTES_DOCUMENT_INITIAL_SIZE = 64 * 1024;
+    final private static String ROUTES_DOC_FILE = "routes_doc.txt";
 
-    public String handleRequest(S3Event event, Context context) {
-        LambdaLogger logger = context.getLogger();
-        AmazonS3 s3Client = ProcessEventUtils.getS3Client();
-
-        InputStreamReader unprocessedDocumentInputStreamReader = getUnprocessedDocumentInputStreamReader(event, s3Client);
-        String content = collectInitialContent(unprocessedDocumentInputStreamReader, logger);
-
-        // remove the first index in split as it contains content before
-        // the first route details
-        String[] routesMarkupArray = crawlDocumentAndCreateRoutesArray(content);
-
-        // example route markup: "><strong>A Line</strong> - Tukwila International Boulevard Station, Federal Way Transit Center</a> <div class="route_more_button"> <div class="btn-group"> <button type="button" class="btn btn-default btn-sm dropdown-toggle" data-toggle="dropdown" aria-haspopup="true" aria-expanded="false" title="More options"><span class="visuallyhidden">More</span><span class="glyphicon glyphicon-option-horizontal pull-right"></span></button> <ul class="dropdown-menu dropdown-menu-right"> <li><a href="/depts/transportation/metro/schedules-maps/hastop/a-line.aspx">Online schedule</a></li> <li class="map"><a data-fancybox="" data-src="/~/media/depts/metro/maps/route/09172022/large/m671.jpg" href="javascript:;">Route map</a></li> <li class="pdf-timetable"><a href="/~/media/depts/metro/schedules/pdf/09172022/rt-a-line.pdf" target="_blank">PDF timetable</a></li> <li class="night-owl-route-info"><a href="/depts/transportation/metro/travel-options/bus/night-owl.aspx">About Night Owl service</a></li> <li role="separator" class="divider"></li> <li><a href="/depts/transportation/metro/alerts-updates/sign-up.aspx">Sign up for transit alerts</a></li> <li><a href="https://tripplanner.kingcounty.gov" target="_blank">Plan a trip</a></li> </ul> </div> </div> <div id="advisory-a-line" class="alert alert-warning" style="margin-top: 6px;"> <p class="small"><a href="/depts/transportation/metro/alerts-updates/service-advisories.aspx">See all service advisories</a></p> </div> </li> <li id="route672" class="route-item rapidride-route not-night-owl weekday saturday sunday not-suspended esn"> <div id="alert-b-line" class="alert-icon hidden-print"><a href="/depts/transportation/metro/alerts-updates/service-advisories.aspx?search=b-line">Advisory for the B Line</a></div> <a href="/depts/transportation/metro/schedules-maps/hastop/b-line.aspx" class="
-        // Create routes map containing line -> lines count, route name, url to route schedule, url to route pdf
-        Map<String, Map<String, String>> routeLines = createRoutesContent(routesMarkupArray);
-
-        Map<String, String> routes = routeLines.get("lines");
-        Map<String, String> routeUrls = routeLines.get("lineUrls");
-        List<JSONObject> lineObjects = collectLineJSONObjectsInList(routes, routeUrls);
+    private final BlobStore blobStore;
+    private final String siteUrl;
 
-        // feed into an array to prepare to input to file
-        JSONArray lineObjectsArray = collectLineJSONObjectsInArray(lineObjects);
-        printTransformedMetroDataToTmp(lineObjectsArray, logger);
-        putS3File(s3Client);
-
-        return "success";
+    public ProcessCrawledMetroDataEvent() {
+        this(ProcessEventUtils.getBlobStore(), ProcessEventUtils.getMetroSiteUrl());
     }
 
-    private String[] crawlDocumentAndCreateRoutesArray(String content) {
-        String[] routeListSplit = content.split("Route list");
-        String routeContent = routeListSplit[1];
-
-        String[] routeNameSplit = routeContent.split("route-name");
-
-        // remove the first index in split as it contains content before
-        // the first route details
-        return Arrays.copyOfRange(routeNameSplit, 1, routeNameSplit.length);
+    /**
+     * @param blobStore {@link BlobStore} holding the unprocessed and processed buckets
+     * @param siteUrl {@link String} metro site url the route list's relative links are resolved against
+     */
+    public ProcessCrawledMetroDataEvent(BlobStore blobStore, String siteUrl) {
+        this.blobStore = blobStore;
+        this.siteUrl = siteUrl;
     }
 
-    private Map<String, Map<String, String>> createRoutesContent(String[] routesMarkupArray) {
-        Map<String, Map<String, String>> routeLines = new HashMap<>();
-
-        // map of each line
-        Map<String, String> lines = new HashMap<>();
-        Map<String, String> lineUrls = new HashMap<>();
-        routeLines.put("lines", lines);
-        routeLines.put("lineUrls", lineUrls);
-
-        for (String routeMarkup : routesMarkupArray) {
-            String[] routeLineSplit = routeMarkup.split("</strong> -");
-            String routeLine = getRouteLine(routeLineSplit[0]);
-
-            String nextContent = routeLineSplit[1].trim();
-            String routeName = getRouteName(nextContent);
-            lines.put(routeLine, routeName);
-
-            nextContent = getNextContentAfterRoute(nextContent);
-            String routeScheduleUrl = getRouteScheduleUrl(nextContent);
+    public String handleRequest(S3Event event, Context context) {
+        LambdaLogger logger = context.getLogger();
 
-            // prefix the url with the metro site top level domain before routes schedules url
-            lineUrls.put(routeName, METRO_PREFIX + routeScheduleUrl);
+        // the unprocessed bucket also holds the latest document index, which is not a crawled document
+        String unprocessedDocumentKey = getUnprocessedDocumentKey(event);
+        if (!unprocessedDocumentKey.endsWith(ROUTES_DOC_FILE)) {
+            logger.log("skipping non route document upload: " + unprocessedDocumentKey);
+            return "skipped";
         }
-        return routeLines;
-    }
 
-    private String collectInitialContent(InputStreamReader inputStreamReader, LambdaLogger logger) {
-        String content = null;
+        // stream the route list straight from the unprocessed document, one route at a time
+        InputStream unprocessedDocument;
         try {
-            BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
-            StringBuilder stringBuilder = new StringBuilder();
-            String line;
-            String separator = System.getProperty("line.separator");
-            while ((line = bufferedReader.readLine()) != null) {
-                stringBuilder.append(line);
-                stringBuilder.append(separator);
-            }
-            stringBuilder.deleteCharAt(stringBuilder.length() - 1);
-            bufferedReader.close();
-            content = stringBuilder.toString();
+            unprocessedDocument = blobStore.getContent(UNPROCESSED_BUCKET, unprocessedDocumentKey);
         } catch (IOException e) {
-            logger.log(String.format("Error collecting initial content from document upload: %s", e.getMessage()));
+            logger.log(String.format("Unable to read unprocessed document '%s': %s", unprocessedDocumentKey,
+                    e.getMessage()));
+            return "failure";
+        }
+        if (unprocessedDocument == null) {
+            logger.log("unprocessed document no longer exists: " + unprocessedDocumentKey);
+            return "failure";
         }
-        return content;
-    }
-
-    private JSONArray collectLineJSONObjectsInArray(List<JSONObject> lineObjectsList) {
-        return new JSONArray(lineObjectsList);
-    }
 
-    private void printTransformedMetroDataToTmp(JSONArray lineObjectsArray, LambdaLogger logger) {
-        try(PrintWriter output = new PrintWriter(new FileWriter(JSON_ROUTES_DOC_FILE))) {
-            output.write(lineObjectsArray.toString());
+        // a document that can't be read to the end, or lists no routes, would replace the routes with a partial list
+        Collection<MetroLine> metroLines;
+        try {
+            metroLines = collectMetroLines(new InputStreamReader(unprocessedDocument, StandardCharsets.UTF_8), siteUrl);
         } catch (IOException e) {
-            logger.log(String.format("Unable to write transformed JSON data to file '%s': ", JSON_ROUTES_DOC_FILE) + e.getMessage());
+            logger.log(String.format("Error collecting routes from document '%s': %s", unprocessedDocumentKey,
+                    e.getMessage()));
+            return "failure";
         }
+        if (metroLines.isEmpty()) {
+            logger.log("no routes found in document: " + unprocessedDocumentKey);
+            return "failure";
+        }
+        logger.log(String.format("collected %d routes from document: %s", metroLines.size(), unprocessedDocumentKey));
+        try {
+            putRoutesDocument(metroLines);
+        } catch (IOException e) {
+            logger.log(String.format("Unable to write transformed JSON data '%s': ", JSON_ROUTES_DOC_FILE) + e.getMessage());
+            return "failure";
+        }
+
+        logger.log("aws clients created: " + AwsClientRegistry.getCreatedClientCounts());
+        return "success";
     }
 
     /**
-     * Load newly transformed JSON file in /tmp to processed s3 bucket.
+     * Parses the route list from the unprocessed document in a single streaming pass. Routes are keyed by their
+     * line, so a line that appears more than once in the route list keeps its last entry.
+     *
+     * @param inputStreamReader {@link InputStreamReader} of the unprocessed document
+     * @param siteUrl {@link String} metro site url the route list's relative links are resolved against
+     * @return {@link Collection} of {@link MetroLine} in route list order
+     * @throws IOException if the document can't be read or has no route list
+     *
+     * @see RouteListParser
      */
-    private void putS3File(AmazonS3 s3Client) {
-        String fileName = ProcessEventUtils.getPrefix() + new File(JSON_ROUTES_DOC_FILE).getName();
-        PutObjectRequest putObjectRequest = new PutObjectRequest(PROCESSED_BUCKET, fileName, new File(JSON_ROUTES_DOC_FILE));
-        s3Client.putObject(putObjectRequest);
-        s3Client.shutdown();
+    static Collection<MetroLine> collectMetroLines(InputStreamReader inputStreamReader, String siteUrl)
+            throws IOException {
+        Map<String, MetroLine> metroLines = new LinkedHashMap<>();
+        try (InputStreamReader reader = inputStreamReader) {
+            new RouteListParser(reader, siteUrl).parse(metroLine -> metroLines.put(metroLine.getLine(), metroLine));
+        }
+        return metroLines.values();
     }
 
-    private List<JSONObject> collectLineJSONObjectsInList(Map<String, String> routes, Map<String, String> routeUrls) {
+    /**
+     * Writes the routes document, each {@link MetroLine} as a json object of (line, line_name, line_schedule_url,
+     * pdf_timetable_url, route_map_url, route_attributes), and puts it to the processed bucket. The document is
+     * a few tens of KB and is generated in memory so its length is known up front.
+     *
+     * @param metroLines {@link Collection} of {@link MetroLine} in route list order
+     * @throws IOException if the document can't be written or stored
+     *
+     * @see MetroJson
+     */
+    private void putRoutesDocument(Collection<MetroLine> metroLines) throws IOException {
+        ByteArrayOutputStream routesDocument = new ByteArrayOutputStream(ROUTES_DOCUMENT_INITIAL_SIZE);
+        MetroJson.writeMetroLines(metroLines, routesDocument);
 
-        // Add (line, line_name, line_schedule_url) as properties to each json object
-        // we can get the line url by getting the url value from line name key in
-        // routeUrls map yo
-        List<JSONObject> lineObjects = new ArrayList<>();
-        routes.forEach((key, value) -> {
-            JSONObject obj = new JSONObject();
-            obj.put("line", key);
-            obj.put("line_name", value);
-            obj.put("line_schedule_url", routeUrls.get(value));
-            lineObjects.add(obj);
-        });
-        return lineObjects;
+        String key = ProcessEventUtils.getPrefix() + JSON_ROUTES_DOC_FILE;
+        blobStore.put(PROCESSED_BUCKET, key, routesDocument.toByteArray(), JSON_CONTENT_TYPE,
+                Collections.emptyMap());
     }
 
-    private InputStreamReader getUnprocessedDocumentInputStreamReader(S3Event event, AmazonS3 s3Client) {
+    private String getUnprocessedDocumentKey(S3Event event) {
         // Only one event will be processed from triggered reader
-        String unprocessedDocumentKey = event.getRecords()
+        return event.getRecords()
                 .get(0)
                 .getS3()
                 .getObject()
                 .getKey();
-
-        // get the object from the unprocessed document bucket
-        GetObjectRequest getObjectRequest = new GetObjectRequest(UNPROCESSED_BUCKET, unprocessedDocumentKey);
-        S3Object unprocessedDocument = s3Client.getObject(getObjectRequest);
-        return new InputStreamReader(unprocessedDocument.getObjectContent(),
-                StandardCharsets.UTF_8);
-    }
-
-    private String getRouteLine(String markup) {
-        return markup.split("><strong>")[1];
-    }
-
-    private String getRouteName(String markup) {
-        return markup.split("</a>")[0].trim()
-                .replace("P&amp;R", "")
-                .replace("<span class=\"sr-only\">also known as SVT</span>", "");
-    }
-
-    private String getRouteScheduleUrl(String markup) {
-        String split1 = markup.split("href=\"")[1];
-        return split1.split("\">")[0];
-    }
-
-    private String getNextContentAfterRoute(String markup) {
-        return markup.split("</a>")[1].trim();
     }
 }
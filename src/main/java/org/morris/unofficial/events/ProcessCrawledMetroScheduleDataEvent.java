@@ -1,290 +1,380 @@
 package org.morris.unofficial.events;
 
-import com.amazonaws.services.identitymanagement.AmazonIdentityManagement;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.LambdaLogger;
 import com.amazonaws.services.lambda.runtime.events.S3Event;
-import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.model.GetObjectRequest;
-import com.amazonaws.services.s3.model.S3Object;
-import com.amazonaws.services.sns.AmazonSNS;
-import com.amazonaws.services.sqs.AmazonSQS;
-import com.amazonaws.services.sqs.model.Message;
-import com.amazonaws.services.textract.AmazonTextract;
-import com.amazonaws.services.textract.model.Block;
-import com.amazonaws.services.textract.model.StartDocumentTextDetectionRequest;
-import com.amazonaws.services.textract.model.DocumentLocation;
-import com.amazonaws.services.textract.model.StartDocumentTextDetectionResult;
-import com.amazonaws.services.textract.model.GetDocumentTextDetectionRequest;
-import com.amazonaws.services.textract.model.GetDocumentTextDetectionResult;
-import com.amazonaws.services.textract.model.NotificationChannel;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.commons.io.FileUtils;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.morris.unofficial.models.HttpValidators;
 import org.morris.unofficial.models.KeyPhraseType;
+import org.morris.unofficial.models.LineFingerprint;
 import org.morris.unofficial.models.MetroLine;
+import org.morris.unofficial.models.PendingDetection;
+import org.morris.unofficial.models.Schedule;
+import org.morris.unofficial.utils.AwsClientRegistry;
+import org.morris.unofficial.utils.BlobStore;
+import org.morris.unofficial.utils.FallbackScheduleTextExtractor;
+import org.morris.unofficial.utils.HttpFetcher;
+import org.morris.unofficial.utils.HttpFetcher.FetchResult;
+import org.morris.unofficial.utils.KeyPhraseLanguageFilter;
+import org.morris.unofficial.utils.KeyPhraseService;
+import org.morris.unofficial.utils.LineFingerprintIndex;
+import org.morris.unofficial.utils.MarkerScanner;
+import org.morris.unofficial.utils.MarkerScanner.ScanResult;
+import org.morris.unofficial.utils.MessageQueue;
+import org.morris.unofficial.utils.MetroJson;
+import org.morris.unofficial.utils.MetroLineExecutor;
+import org.morris.unofficial.utils.MetroLineExecutor.MetroLineResult;
+import org.morris.unofficial.utils.PdfBoxScheduleTextExtractor;
 import org.morris.unofficial.utils.ProcessEventUtils;
-import software.amazon.awssdk.services.comprehend.ComprehendClient;
-import software.amazon.awssdk.services.comprehend.model.ComprehendException;
+import org.morris.unofficial.utils.SchedulePdfBuffer;
+import org.morris.unofficial.utils.ScheduleTextExtractor;
+import org.morris.unofficial.utils.ScheduleTextParser;
+import org.morris.unofficial.utils.TextDetectionService;
+import org.morris.unofficial.utils.TextractJobDispatcher;
+import org.morris.unofficial.utils.TextractResultCollector;
+import org.morris.unofficial.utils.TextractScheduleTextExtractor;
 import software.amazon.awssdk.services.comprehend.model.KeyPhrase;
-import software.amazon.awssdk.services.comprehend.model.DominantLanguage;
-import software.amazon.awssdk.services.comprehend.model.DetectDominantLanguageResponse;
-import software.amazon.awssdk.services.comprehend.model.DetectDominantLanguageRequest;
-import software.amazon.awssdk.services.comprehend.model.DetectKeyPhrasesRequest;
-import software.amazon.awssdk.services.comprehend.model.DetectKeyPhrasesResponse;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.HashMap;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class ProcessCrawledMetroScheduleDataEvent {
     final private static String PROCESSED_BUCKET = System.getenv("PROCESSED_BUCKET_NAME");
-    final private static String SCHEDULES_BUCKET = System.getenv("SCHEDULES_BUCKET_NAME");
-    final private static String ROUTES_JSON_FILE = "/tmp/routes_doc.json";
-    final private static String LINE_SCHEDULE_TXT_FILE = "/tmp/line_schedule_doc.txt";
-    final private static String LINE_SCHEDULE_PDF_FILE = "/tmp/line_schedule_doc.pdf";
-    final private static String LINE_SCHEDULE_PDF_CONTENT_TXT_FILE = "/tmp/line_schedule_pdf_content.txt";
-
-    final public static String SUCCEEDED = "SUCCEEDED";
-    final public static String JOB_ID = "JobId";
-    final public static String STATUS = "Status";
-    final public static String MESSAGE = "Message";
-    final public static String CLIENT_REQUEST_TOKEN = "MetroLineRequestToken";
+    final static String SCHEDULES_BUCKET = System.getenv("SCHEDULES_BUCKET_NAME");
+    final private static String TMP_DIRECTORY = "/tmp/";
+    final private static String LINE_SCHEDULE_PDF_FILE = "line_schedule_doc.pdf";
+    final private static String LINE_SCHEDULE_PDF_CONTENT_TXT_FILE = "line_schedule_pdf_content.txt";
+    final static String LINE_SCHEDULE_JSON_FILE = "line_schedule.json";
+    final static String REMOVED_LINES_JSON_FILE = "removed_lines.json";
+    final static String LINE_FINGERPRINTS_KEY = "index/line_fingerprints.json";
+    final static String JSON_CONTENT_TYPE = "application/json";
+
+    // a schedule page's pdf link is opened by script, or linked directly like the route list does
+    final private static String PDF_TIMETABLE_LINK = "pdf-timetable-link";
+    final private static int MAX_SCHEDULE_DOCUMENT_FRAGMENT_LENGTH = 4096;
+    final private static MarkerScanner SCHEDULE_DOCUMENT_SCANNER = new MarkerScanner(Arrays.asList(
+            new MarkerScanner.Marker(PDF_TIMETABLE_LINK, "id=\"pdf-timetable-link\">", "target=\"_blank\">PDF timetable"),
+            new MarkerScanner.Marker(PDF_TIMETABLE_LINK, "class=\"pdf-timetable\"><a href=\"", "\"")),
+            MAX_SCHEDULE_DOCUMENT_FRAGMENT_LENGTH);
+
+    // number of lines processed at once, and time held back from the lambda timeout to report results
+    final private static String SCHEDULE_CONCURRENCY = "SCHEDULE_CONCURRENCY";
+    final private static String SCHEDULE_TIME_RESERVE_MILLIS = "SCHEDULE_TIME_RESERVE_MILLIS";
+    final private static int DEFAULT_SCHEDULE_CONCURRENCY = 8;
+    final private static int DEFAULT_SCHEDULE_TIME_RESERVE_MILLIS = 30000;
+
+    // "event" leaves completed detections to TextractCompletionEvent, anything else waits on them here
+    final private static String TEXTRACT_COMPLETION_MODE = "TEXTRACT_COMPLETION_MODE";
+    final private static String TEXTRACT_JOB_TIMEOUT_MILLIS = "TEXTRACT_JOB_TIMEOUT_MILLIS";
+    final private static String EVENT_COMPLETION_MODE = "event";
+    final private static int DEFAULT_TEXTRACT_JOB_TIMEOUT_MILLIS = 600000;
+
+    // schedules are extracted in process with PDFBox, textract is only used when the text has too few times
+    final private static String SCHEDULE_PDF_PAGE_CONCURRENCY = "SCHEDULE_PDF_PAGE_CONCURRENCY";
+    final private static String SCHEDULE_TEXT_MINIMUM_TIMES = "SCHEDULE_TEXT_MINIMUM_TIMES";
+    final private static int DEFAULT_SCHEDULE_PDF_PAGE_CONCURRENCY = 2;
+    final private static int DEFAULT_SCHEDULE_TEXT_MINIMUM_TIMES = 10;
+
+    // largest schedule pdf held in memory between its download and upload, larger ones spill to /tmp
+    final private static String SCHEDULE_PDF_MEMORY_BYTES = "SCHEDULE_PDF_MEMORY_BYTES";
+    final private static int DEFAULT_SCHEDULE_PDF_MEMORY_BYTES = 32 * 1024 * 1024;
+
+    // largest share of the recorded lines one route list may remove, a larger drop is taken for a broken route list
+    final private static String MAX_REMOVED_LINES_PERCENT = "MAX_REMOVED_LINES_PERCENT";
+    final private static int DEFAULT_MAX_REMOVED_LINES_PERCENT = 10;
+
+    // batch language detection requests in flight at once per schedule
+    final private static String COMPREHEND_CONCURRENCY = "COMPREHEND_CONCURRENCY";
+    final private static int DEFAULT_COMPREHEND_CONCURRENCY = 4;
+
+    private final BlobStore blobStore;
+    private final MessageQueue messageQueue;
+    private final TextDetectionService textDetectionService;
+    private final KeyPhraseService keyPhraseService;
+    private final String siteUrl;
+
+    public ProcessCrawledMetroScheduleDataEvent() {
+        this(ProcessEventUtils.getBlobStore(), ProcessEventUtils.getMetroMessageQueue(),
+                ProcessEventUtils.getTextDetectionService(), ProcessEventUtils.getKeyPhraseService(),
+                ProcessEventUtils.getMetroSiteUrl());
+    }
+
+    /**
+     * @param blobStore {@link BlobStore} holding the processed and schedules buckets
+     * @param messageQueue {@link MessageQueue} text detection completion notifications are received from
+     * @param textDetectionService {@link TextDetectionService} of the schedules PDFBox can't read
+     * @param keyPhraseService {@link KeyPhraseService} of the schedules' key phrases
+     * @param siteUrl {@link String} metro site url the schedule pages' relative pdf links are resolved against
+     */
+    public ProcessCrawledMetroScheduleDataEvent(BlobStore blobStore, MessageQueue messageQueue,
+                                                TextDetectionService textDetectionService,
+                                                KeyPhraseService keyPhraseService, String siteUrl) {
+        this.blobStore = blobStore;
+        this.messageQueue = messageQueue;
+        this.textDetectionService = textDetectionService;
+        this.keyPhraseService = keyPhraseService;
+        this.siteUrl = siteUrl;
+    }
 
     public String handleRequest(S3Event event, Context context) throws InterruptedException, IOException {
         LambdaLogger logger = context.getLogger();
-        AmazonS3 s3Client = ProcessEventUtils.getS3Client();
-        AmazonTextract textractClient = ProcessEventUtils.getAmazonTextractClient(true);
-        AmazonSNS snsClient = ProcessEventUtils.getAmazonSNSClient();
-        AmazonSQS sqsClient = ProcessEventUtils.getAmazonSQSClient();
-        AmazonIdentityManagement identityManagementClient = ProcessEventUtils.getAmazonIdentityManagementClient();
+        boolean eventCompletion = EVENT_COMPLETION_MODE.equalsIgnoreCase(System.getenv(TEXTRACT_COMPLETION_MODE));
+
+        // one long poller waits on every line's detection, none in event mode where notifications trigger their own handler
+        TextractJobDispatcher textractJobDispatcher = eventCompletion
+                ? null
+                : new TextractJobDispatcher(messageQueue);
+
+        int concurrency = ProcessEventUtils.getEnvironmentInt(SCHEDULE_CONCURRENCY, DEFAULT_SCHEDULE_CONCURRENCY);
+        TextractResultCollector textractResultCollector = new TextractResultCollector(textDetectionService, concurrency,
+                ProcessEventUtils.getEnvironmentInt(TextractResultCollector.TEXTRACT_GET_REQUESTS_PER_SECOND,
+                        TextractResultCollector.DEFAULT_TEXTRACT_GET_REQUESTS_PER_SECOND));
+        PdfBoxScheduleTextExtractor pdfBoxExtractor = new PdfBoxScheduleTextExtractor(ProcessEventUtils.getEnvironmentInt(
+                SCHEDULE_PDF_PAGE_CONCURRENCY, DEFAULT_SCHEDULE_PDF_PAGE_CONCURRENCY));
+        TextractScheduleTextExtractor textractExtractor = new TextractScheduleTextExtractor(textDetectionService,
+                textractJobDispatcher, textractResultCollector, SCHEDULES_BUCKET, ProcessEventUtils.getEnvironmentInt(
+                TEXTRACT_JOB_TIMEOUT_MILLIS, DEFAULT_TEXTRACT_JOB_TIMEOUT_MILLIS));
+        FallbackScheduleTextExtractor scheduleTextExtractor = new FallbackScheduleTextExtractor(pdfBoxExtractor,
+                textractExtractor, FallbackScheduleTextExtractor.hasScheduleTimes(ProcessEventUtils.getEnvironmentInt(
+                SCHEDULE_TEXT_MINIMUM_TIMES, DEFAULT_SCHEDULE_TEXT_MINIMUM_TIMES)));
 
         // lets get the processed data in a file
-        List<MetroLine> metroLines = getMetroLineAsPojoFromJson(event, s3Client, logger);
+        List<MetroLine> metroLines = getMetroLineAsPojoFromJson(event, logger);
         if (metroLines != null) {
-            JSONArray metroLineJsonArray = parseMetroLinePojoListAsJsonArray(metroLines);
-
-            // iterate each MetroLine object in jsonArray - limited to 1 object currently for testing purposes
-            // otherwise requests will be too expensive
-            for (int i = 0; i < 1 /*metroLineJsonArray.length()*/; i++) {
-                JSONObject metroLineObject = metroLineJsonArray.getJSONObject(i);
-
-                // get the line schedule
-                String lineScheduleUrl = getLineScheduleUrl(metroLineObject);
-                String line = getLine(metroLineObject);
-                logger.log("line: " + line + "line url: " + lineScheduleUrl);
-
-                // query the scheduleUrl and obtain the pdf document with schedules
-                String lineSchedulePdfUrl = queryLineScheduleUrlForPdfScheduleUrl(lineScheduleUrl, line, logger);
-
-                // write pdf schedule to /tmp and put to s3 schedules bucket
-                ProcessEventUtils.printToPdfFile(LINE_SCHEDULE_PDF_FILE, lineSchedulePdfUrl, logger);
-                ProcessEventUtils.putS3File(LINE_SCHEDULE_PDF_FILE, SCHEDULES_BUCKET, line);
-                String pdfScheduleKey = ProcessEventUtils.getSchedulePdfKey(LINE_SCHEDULE_PDF_FILE, line);
-
-                // get schedule pdf textract blocks to begin pulling key phrases
-                List<Block> pdfScheduleTextBlocks = detectPdfTextBlocksWithTextract(textractClient, sqsClient, pdfScheduleKey, logger);
-                if (pdfScheduleTextBlocks != null) {
-                    for (Block block : pdfScheduleTextBlocks) {
-                        logger.log("block--------------------------------------------");
-                        logger.log(block.getText());
-                        logger.log("end----------------------------------------------");
-                    }
-                }
 
-//                String pdfScheduleContent = readPdfFileContent(logger);
-//
-//                // write schedule content to .txt file in /tmp
-//                if (pdfScheduleContent != null) {
-//                    InputStream pdfScheduleContentInputStream = new ByteArrayInputStream(pdfScheduleContent.getBytes());
-//                    ProcessEventUtils.printToFile(pdfScheduleContentInputStream, LINE_SCHEDULE_PDF_CONTENT_TXT_FILE, logger);
-//
-//                    List<KeyPhrase> scheduleKeyPhraseList = comprehendKeyPhraseList(pdfScheduleContent, logger);
-//                    if (scheduleKeyPhraseList != null) {
-//                        // clean key phrases of any extra characters orr improper format
-//                        List<KeyPhrase> formattedKeyPhraseList = formatKeyPhraseList(scheduleKeyPhraseList, logger);
-//                        if (formattedKeyPhraseList != null) {
-//                            // receive list of stops and stop-times to begin building a structure that holds each stop
-//                            // and its respective stop times
-//                            List<KeyPhrase> formattedStopKeyPhrases = getFormattedStopKeyPhrases(formattedKeyPhraseList, KeyPhraseType.STOPS);
-//                            List<KeyPhrase> formattedStopTimeKeyPhrases = getFormattedStopKeyPhrases(formattedKeyPhraseList, KeyPhraseType.STOP_TIMES);
-//                        }
-//                    }
-//                }
+            // only lines that were added or whose schedule changed since the last run are processed
+            LineFingerprintIndex fingerprintIndex = new LineFingerprintIndex(blobStore, SCHEDULES_BUCKET,
+                    LINE_FINGERPRINTS_KEY);
+            fingerprintIndex.load();
+            List<String> lines = new ArrayList<>();
+            for (MetroLine metroLine : metroLines) {
+                lines.add(metroLine.getLine());
             }
-        }
+            // the loader deletes a removed line's route and timetables from the metro table
+            List<String> missingLines = fingerprintIndex.getMissingLines(lines);
+            if (!missingLines.isEmpty()) {
+                int maxRemovedLinesPercent = ProcessEventUtils.getEnvironmentInt(MAX_REMOVED_LINES_PERCENT,
+                        DEFAULT_MAX_REMOVED_LINES_PERCENT);
+                if (isRemovalAllowed(missingLines.size(), fingerprintIndex.size(), lines.size(),
+                        maxRemovedLinesPercent)) {
+                    List<String> removedLines = fingerprintIndex.retainLines(lines);
+                    logger.log("lines removed since the last run: " + removedLines);
+                    blobStore.put(SCHEDULES_BUCKET, ProcessEventUtils.getPrefix() + REMOVED_LINES_JSON_FILE,
+                            MetroJson.getObjectMapper().writeValueAsBytes(removedLines), JSON_CONTENT_TYPE,
+                            Collections.emptyMap());
+                } else {
+                    logger.log(String.format("ERROR: refusing to remove %d of %d recorded lines, the route list has "
+                            + "%d lines and may be incomplete, nothing is deleted: %s", missingLines.size(),
+                            fingerprintIndex.size(), lines.size(), missingLines));
+                }
+            }
+
+            long budgetMillis = context.getRemainingTimeInMillis()
+                    - ProcessEventUtils.getEnvironmentInt(SCHEDULE_TIME_RESERVE_MILLIS, DEFAULT_SCHEDULE_TIME_RESERVE_MILLIS);
+            logger.log(String.format("processing %d metro lines, concurrency: %d, budget: %dms",
+                    metroLines.size(), concurrency, budgetMillis));
 
-        // shutdown all clients
-        ProcessEventUtils.shutdownClients(new ArrayList<>(Arrays.asList(s3Client, textractClient,
-                snsClient, sqsClient, identityManagementClient)));
+            // each line runs fetch -> download -> upload -> extraction on its own, so stages overlap across lines
+            List<MetroLineResult> results = new MetroLineExecutor(concurrency).processAll(metroLines,
+                    metroLine -> processMetroLine(metroLine, scheduleTextExtractor, fingerprintIndex, logger), budgetMillis);
 
+            int succeeded = 0;
+            for (MetroLineResult result : results) {
+                if (result.getStatus() == MetroLineResult.Status.SUCCEEDED) {
+                    succeeded++;
+                } else {
+                    logger.log(result.toString());
+                }
+            }
+            logger.log(String.format("processed %d of %d metro lines", succeeded, results.size()));
+            logger.log("line fingerprints: " + fingerprintIndex);
+            if (fingerprintIndex.save()) {
+                logger.log("saved line fingerprints: " + LINE_FINGERPRINTS_KEY);
+            }
+        }
+        if (textractJobDispatcher != null) {
+            logger.log("textract job dispatcher: " + textractJobDispatcher);
+        }
+        logger.log("http fetches: " + ProcessEventUtils.getHttpFetcher());
+        logger.log("schedule text extractions: " + scheduleTextExtractor);
+        logger.log("textract result collector: " + textractResultCollector);
+        textractResultCollector.close();
+        pdfBoxExtractor.close();
+
+        logger.log("aws clients created: " + AwsClientRegistry.getCreatedClientCounts());
+        logger.log("infrastructure cache: " + ProcessEventUtils.getInfrastructureCache());
         return "success";
     }
 
     /**
-     * Get List of {@link Block} from the MetroLine Schedule PDF file by utilizing {@link AmazonTextract}
-     * machine learning service to analyze the text with the given schedule pdf file. The schedule PDF file
-     * is written to /tmp directory and uploaded to S3 where Textract can analyze the text.
+     * Runs the full schedule pipeline for a single {@link MetroLine}: take the line's pdf schedule url from the
+     * route list, or query the line's schedule page for it when the route list had none, download the pdf into memory, upload it to the schedules bucket from there and extract its text
+     * to {@code /tmp/<line>/line_schedule_pdf_content.txt}. The text's timetables are parsed with
+     * {@link ScheduleTextParser} and uploaded next to the pdf as {@code line_schedule.json}. Each line works in its
+     * own /tmp directory so lines can be processed concurrently.
+     * <p></p>
+     * A line whose schedule points at the same pdf, with the same contents, as on the last run is done once the
+     * pdf is fetched. Its processed schedule is already uploaded and loaded. The pdf, and a scraped page, are
+     * fetched with the validators recorded last run, so an unchanged line usually costs a single 304 and no download.
+     * <p></p>
+     * When the text has to come from Textract in event mode, the line is done once its detection is started. A
+     * {@link PendingDetection} is stored under the detection's job tag, and {@link TextractCompletionEvent} parses
+     * and uploads the schedule and records the line's fingerprint once the completion notification arrives.
      *
+     * @param metroLine {@link MetroLine} to process
+     * @param scheduleTextExtractor {@link ScheduleTextExtractor} of the schedule pdf's text
+     * @param fingerprintIndex {@link LineFingerprintIndex} of the lines processed on the last run
      * @param logger {@link LambdaLogger}
-     * @return {@link Block}
      *
-     * @see MetroLine
-     * @see StartDocumentTextDetectionRequest
-     * @see GetDocumentTextDetectionRequest
-     * @see GetDocumentTextDetectionResult#getBlocks()
+     * @throws Exception if any stage fails, the failure is reported for this line only
      */
-    private List<Block> detectPdfTextBlocksWithTextract(AmazonTextract textractClient, AmazonSQS sqsClient, String objectKey,
-                                                        LambdaLogger logger) throws InterruptedException, IOException {
-
-        String textractTopicArn = ProcessEventUtils.getTextractTopicArn();
-        String txfftxyyftArn = ProcessEventUtils.getTXFFTXYYFTRole();
-
-        // send detection to SNS notification channel - topic arn and role arn is needed
-        NotificationChannel notificationChannel = new NotificationChannel()
-                .withSNSTopicArn(textractTopicArn)
-                .withRoleArn(txfftxyyftArn);
-
-        // create document location to feed to document text detection request
-        com.amazonaws.services.textract.model.S3Object textractObject = ProcessEventUtils.getTextractS3Object(objectKey, SCHEDULES_BUCKET);
-        DocumentLocation documentLocation = new DocumentLocation().withS3Object(textractObject);
-
-        StartDocumentTextDetectionRequest detectDocumentTextRequest = new StartDocumentTextDetectionRequest()
-                .withDocumentLocation(documentLocation)
-                .withNotificationChannel(notificationChannel)
-                .withClientRequestToken(CLIENT_REQUEST_TOKEN);
+    private void processMetroLine(MetroLine metroLine, ScheduleTextExtractor scheduleTextExtractor,
+                                  LineFingerprintIndex fingerprintIndex, LambdaLogger logger) throws Exception {
+
+        // get the line schedule
+        String lineScheduleUrl = metroLine.getLineScheduleUrl();
+        String line = metroLine.getLine();
+        logger.log("line: " + line + "line url: " + lineScheduleUrl);
+
+        String lineDirectory = getLineTmpDirectory(line);
+        Files.createDirectories(Paths.get(lineDirectory));
+        String lineSchedulePdfFile = lineDirectory + LINE_SCHEDULE_PDF_FILE;
+        LineFingerprint lineFingerprint;
+
+        // the route list links most lines' pdf timetable, only a line without one has its schedule page scraped
+        HttpFetcher httpFetcher = ProcessEventUtils.getHttpFetcher();
+        LineFingerprint lastFingerprint = fingerprintIndex.get(line);
+        String lineSchedulePdfUrl = metroLine.getPdfTimetableUrl();
+        HttpValidators pageValidators = null;
+        if (lineSchedulePdfUrl == null) {
+
+            // scan the scheduleUrl page for its pdf link as it arrives, the rest of the page is never downloaded
+            AtomicReference<ScanResult> scanResult = new AtomicReference<>();
+            FetchResult pageFetch = httpFetcher.fetchUntil(lineScheduleUrl,
+                    lastFingerprint == null || !lineScheduleUrl.equals(lastFingerprint.getLineScheduleUrl())
+                            ? null
+                            : lastFingerprint.getPageValidators(),
+                    body -> {
+                        scanResult.set(scanScheduleDocument(body));
+                        return scanResult.get().isComplete();
+                    });
+            pageValidators = pageFetch.getValidators();
+
+            // an unchanged page names the same pdf
+            if (pageFetch.isNotModified()) {
+                lineSchedulePdfUrl = lastFingerprint.getPdfScheduleUrl();
+            } else {
+                logger.log(String.format("line: %s scanned %d bytes of its schedule page", line,
+                        scanResult.get().getBytesScanned()));
+                lineSchedulePdfUrl = getPdfUrlFromPdfTimetableLink(scanResult.get().get(PDF_TIMETABLE_LINK), line,
+                        siteUrl);
+            }
+        }
+        if (lineSchedulePdfUrl == null) {
+            throw new IOException("unable to find pdf schedule url for line: " + line);
+        }
 
-        StartDocumentTextDetectionResult detectDocumentTextResult = textractClient.startDocumentTextDetection(detectDocumentTextRequest);
-        String jobId = detectDocumentTextResult.getJobId();
-        return processDocumentTextDetection(sqsClient, textractClient, jobId, logger);
-    }
+        // read the pdf schedule into memory, only a very large pdf spills to /tmp
+        HttpValidators pdfValidators = lastFingerprint == null || !lineSchedulePdfUrl.equals(lastFingerprint.getPdfScheduleUrl())
+                ? null
+                : lastFingerprint.getPdfValidators();
+        int pages;
+        try (SchedulePdfBuffer pdfBuffer = new SchedulePdfBuffer(ProcessEventUtils.getEnvironmentInt(
+                SCHEDULE_PDF_MEMORY_BYTES, DEFAULT_SCHEDULE_PDF_MEMORY_BYTES), Paths.get(lineSchedulePdfFile))) {
+            FetchResult pdfFetch = httpFetcher.fetch(lineSchedulePdfUrl, pdfValidators, pdfBuffer::read);
+
+            // an unchanged schedule has nothing left to do
+            LineFingerprint fingerprint = new LineFingerprint(lineScheduleUrl, lineSchedulePdfUrl, pdfFetch.isNotModified()
+                    ? lastFingerprint.getPdfSha256()
+                    : pdfBuffer.getSha256());
+            fingerprint.setPageValidators(pageValidators);
+            fingerprint.setPdfValidators(pdfFetch.getValidators());
+            if (fingerprintIndex.isUnchanged(line, fingerprint)) {
+
+                // the server may have sent fresh validators for the same schedule
+                fingerprintIndex.update(line, fingerprint);
+                logger.log(String.format("line: %s schedule is unchanged since the last run", line));
+                return;
+            }
 
-    /**
-     * Processes a {@link StartDocumentTextDetectionRequest} given the request's job id by polling the metro
-     * SQS Queue until a message is detected in the queue.
-     *
-     * @param sqsClient {@link AmazonSQS} client
-     * @param textractClient {@link AmazonTextract} client
-     * @param jobId the job id for the {@link StartDocumentTextDetectionRequest}
-     * @param logger {@link LambdaLogger}
-     *
-     * @return {@link List} of {@link Block} from the detection
-     * @throws InterruptedException
-     * @throws IOException
-     */
-    private List<Block> processDocumentTextDetection(AmazonSQS sqsClient, AmazonTextract textractClient, String jobId, LambdaLogger logger)
-            throws InterruptedException, IOException {
-
-        String metroSQSQueueUrl = ProcessEventUtils.getMetroSQSQueueUrl();
-        boolean jobFound = false;
-        List<Message> messages;
-
-        while (!jobFound) {
-            // poll sqs queue for messages
-            messages = sqsClient.receiveMessage(metroSQSQueueUrl).getMessages();
-
-            // loop through messages received
-            if ( !messages.isEmpty() ) {
-                for (Message message : messages) {
-                    String notification = message.getBody();
-                    Map<String, String> notificationProperties = getNotificationPropertiesMap(notification);
-
-                    // get the results of the found job
-                    if (notificationProperties.get(JOB_ID).equals(jobId)) {
-                        jobFound = true;
-                        if (notificationProperties.get(STATUS).equals(SUCCEEDED)) {
-                            return getBlocksFromDocumentDetectionPaginationResults(textractClient, jobId);
-                        }
-                        logger.log("Document Text Detection Failed.");
-                        sqsClient.deleteMessage(metroSQSQueueUrl, message.getReceiptHandle());
-                    } else {
-                        logger.log("Job received was not job: " +  jobId);
-                        //Delete unknown message. Consider moving message to dead letter queue
-                        sqsClient.deleteMessage(metroSQSQueueUrl, message.getReceiptHandle());
-                    }
-                }
-            } else {
-                // sleep in order to give time for document detection in sqs
-                logger.log("Polling Metro Schedule SQS Queue for messages...");
-                TimeUnit.SECONDS.sleep(10);
+            // a line whose schedule page moved can still name an unchanged pdf, which was not downloaded
+            if (pdfFetch.isNotModified()) {
+                pdfFetch = httpFetcher.fetch(lineSchedulePdfUrl, null, pdfBuffer::read);
+                fingerprint.setPdfSha256(pdfBuffer.getSha256());
+                fingerprint.setPdfValidators(pdfFetch.getValidators());
             }
+            lineFingerprint = fingerprint;
+
+            // put the changed pdf schedule to s3 schedules bucket straight from memory
+            String pdfScheduleKey = ProcessEventUtils.getSchedulePdfKey(LINE_SCHEDULE_PDF_FILE, line);
+            pdfBuffer.upload(blobStore, SCHEDULES_BUCKET, pdfScheduleKey);
+            logger.log(String.format("line: %s uploaded %d byte pdf%s", line, pdfBuffer.getLength(),
+                    pdfBuffer.isSpilled() ? " from /tmp" : ""));
+
+            // stream the schedule pdf's text to /tmp a page at a time to parse its timetables
+            try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(lineDirectory + LINE_SCHEDULE_PDF_CONTENT_TXT_FILE),
+                    StandardCharsets.UTF_8)) {
+                pages = scheduleTextExtractor.extract(pdfBuffer.toSchedulePdf(line, pdfScheduleKey),
+                        (page, text) -> writer.write(text));
+            }
+        }
+        if (pages == 0) {
+            PendingDetection pendingDetection = new PendingDetection(line,
+                    ProcessEventUtils.getSchedulePdfKey(LINE_SCHEDULE_JSON_FILE, line), lineFingerprint);
+            blobStore.put(SCHEDULES_BUCKET, PendingDetection.getKey(TextractScheduleTextExtractor.getJobTag(line)),
+                    MetroJson.getObjectMapper().writeValueAsBytes(pendingDetection), JSON_CONTENT_TYPE,
+                    Collections.emptyMap());
+            logger.log(String.format("line: %s started text detection, text is handled on completion", line));
+            return;
+        }
+        logger.log(String.format("line: %s extracted %d pages of text", line, pages));
+
+        // the timetables are parsed locally from the text, no key phrases are needed
+        List<Schedule> schedules = ScheduleTextParser.parse(Paths.get(lineDirectory + LINE_SCHEDULE_PDF_CONTENT_TXT_FILE));
+        if (schedules.isEmpty()) {
+            throw new IOException("no timetables found in the schedule text for line: " + line);
         }
-        return null;
+        String lineScheduleJsonFile = lineDirectory + LINE_SCHEDULE_JSON_FILE;
+        MetroJson.getObjectMapper().writeValue(new File(lineScheduleJsonFile), schedules);
+        ProcessEventUtils.putFile(blobStore, lineScheduleJsonFile, SCHEDULES_BUCKET, line, JSON_CONTENT_TYPE,
+                Collections.emptyMap());
+        fingerprintIndex.update(line, lineFingerprint);
+        logger.log(String.format("line: %s parsed %d timetables", line, schedules.size()));
     }
 
     /**
-     * Gets all blocks from paginated {@link StartDocumentTextDetectionResult} from results of multiple PDF pages
-     * being detected.
-     *
-     * @param textractClient {@link AmazonTextract} client
-     * @param jobId the job id for the {@link StartDocumentTextDetectionRequest}
-     *
-     * @return {@link List} of {@link Block}
+     * Decides whether the lines missing from a route list are removed. An empty route list, or one that drops more
+     * than the given share of the recorded lines, is far more likely a broken crawl than a network change, and
+     * removing its missing lines would delete them from the metro table. A single line can always be removed.
+     *
+     * @param missingLines number of recorded lines missing from the route list
+     * @param recordedLines number of lines recorded in the fingerprint index
+     * @param listedLines number of lines in the route list
+     * @param maxRemovedLinesPercent largest share of the recorded lines that may be removed at once
+     * @return true if the missing lines are removed
      */
-    private List<Block> getBlocksFromDocumentDetectionPaginationResults(AmazonTextract textractClient, String jobId) {
-        List<Block> blocks = new ArrayList<>();
-        String paginationToken = null;
-        boolean isProcessed = false;
-
-        // process until all page result blocks have been added
-        while (!isProcessed) {
-            GetDocumentTextDetectionRequest getDocumentTextDetectionRequest = new GetDocumentTextDetectionRequest()
-                    .withJobId(jobId)
-                    .withNextToken(paginationToken);
-
-            GetDocumentTextDetectionResult getDocumentTextDetectionResult = textractClient
-                    .getDocumentTextDetection(getDocumentTextDetectionRequest);
-
-            blocks.addAll(getDocumentTextDetectionResult.getBlocks());
-
-            // get the next page, if there is one
-            paginationToken = getDocumentTextDetectionResult.getNextToken();
-            if (paginationToken == null) {
-                isProcessed = true;
-            }
-        }
-        return blocks;
+    static boolean isRemovalAllowed(int missingLines, int recordedLines, int listedLines, int maxRemovedLinesPercent) {
+        return listedLines > 0 && missingLines <= Math.max(1, recordedLines * maxRemovedLinesPercent / 100);
     }
 
     /**
-     * Get {@link Map} that contains the properties from an SNS notification with content from a Textract detection.
+     * Gets the /tmp directory a line's schedule files are written to. Lines such as "A Line" or "DART  930"
+     * contain characters that do not belong in a path, so anything that isn't alphanumeric is replaced.
      *
-     * @param notification SNS notification from textract detection
-     * @return {@link Map}
-     *
-     * @throws IOException
+     * @param line {@link String} the line# name of the MetroLine (ex: 190)
+     * @return {@link String} path to the line's /tmp directory, ending in a separator
      */
-    private Map<String, String> getNotificationPropertiesMap(String notification) throws IOException {
-        Map<String, String> notificationProperties = new HashMap<>();
-        ObjectMapper objectMapper = new ObjectMapper();
-        JsonNode jsonMessageTree = objectMapper.readTree(notification);
-        JsonNode messageBodyText = jsonMessageTree.get(MESSAGE);
-        notificationProperties.put(MESSAGE, messageBodyText.asText());
-        ObjectMapper operationResultMapper = new ObjectMapper();
-        JsonNode jsonResultTree = operationResultMapper.readTree(messageBodyText.textValue());
-        JsonNode operationJobId = jsonResultTree.get(JOB_ID);
-        JsonNode operationStatus = jsonResultTree.get(STATUS);
-        notificationProperties.put(JOB_ID, operationJobId.asText());
-        notificationProperties.put(STATUS, operationStatus.asText());
-        return notificationProperties;
+    private String getLineTmpDirectory(String line) {
+        return TMP_DIRECTORY + line.replaceAll("[^A-Za-z0-9]+", "-") + "/";
     }
 
     /**
@@ -325,9 +415,9 @@ public class ProcessCrawledMetroScheduleDataEvent {
      *
      * @return {@link List} of formatted {@link KeyPhrase}
      * @see MetroLine
-     * @see ComprehendClient
+     * @see KeyPhraseService
      */
-    private List<KeyPhrase> formatKeyPhraseList(List<KeyPhrase> unformattedKeyPhraseList, LambdaLogger logger) {
+    static List<KeyPhrase> formatKeyPhraseList(List<KeyPhrase> unformattedKeyPhraseList, LambdaLogger logger) {
         List<KeyPhrase> formattedKeyPhraseList = new ArrayList<>();
         try {
             for (KeyPhrase keyPhrase : unformattedKeyPhraseList) {
@@ -386,62 +476,26 @@ public class ProcessCrawledMetroScheduleDataEvent {
      * @param logger {@link LambdaLogger}
      * @return {@link List} of KeyPhrases from the text
      *
-     * @see ProcessCrawledMetroScheduleDataEvent#readPdfFileContent(LambdaLogger)
+     * @see PdfBoxScheduleTextExtractor
      * @see MetroLine
      * @see KeyPhrase
-     * @see ComprehendClient
-     * @see DetectDominantLanguageRequest
+     * @see KeyPhraseService
+     * @see KeyPhraseLanguageFilter
      */
     private List<KeyPhrase> comprehendKeyPhraseList(String scheduleContent, LambdaLogger logger) {
         List<KeyPhrase> keyPhraseFilterList1;
-        ComprehendClient comprehendClient = null;
 
-        try {
-            comprehendClient = ComprehendClient.builder()
-                    .region(ProcessEventUtils.getRegionV2())
-                    .build();
-        } catch (ComprehendException e) {
-            logger.log("Error building comprehend client: " + e.getMessage());
-        }
-        if (comprehendClient != null) {
-
-            // build detect KeyPhrases request
-            DetectKeyPhrasesRequest detectKeyPhrasesRequest = DetectKeyPhrasesRequest.builder()
-                    .text(scheduleContent)
-                    .languageCode("en")
-                    .build();
-
-            // detect english key phrase in schedule content
-            DetectKeyPhrasesResponse detectKeyPhrasesResponse = comprehendClient.detectKeyPhrases(detectKeyPhrasesRequest);
-            List<KeyPhrase> keyPhraseList = detectKeyPhrasesResponse.keyPhrases();
-            keyPhraseFilterList1 = new ArrayList<>();
-
-            // analyze each KeyPhrase for dominant language
-            for (KeyPhrase keyPhrase : keyPhraseList) {
-                DetectDominantLanguageRequest detectDominantLanguageRequest = DetectDominantLanguageRequest.builder()
-                        .text(keyPhrase.text())
-                        .build();
-                DetectDominantLanguageResponse detectDominantLanguageResponse = comprehendClient.detectDominantLanguage(detectDominantLanguageRequest);
-                List<DominantLanguage> dominantLanguageList = detectDominantLanguageResponse.languages();
-
-                // remove key phrases with spanish text language code as dominant language
-                boolean containsSpanishLanguageCode = false;
-                for (DominantLanguage dominantLanguage : dominantLanguageList) {
-                    if (dominantLanguage.languageCode().equals("es")) {
-                        containsSpanishLanguageCode = true;
-                        break;
-                    }
-                }
-                // add english key phrases only to filter list 1
-                if (!containsSpanishLanguageCode) {
-                    keyPhraseFilterList1.add(keyPhrase);
-                }
-            }
-            comprehendClient.close();
-            // return key phrases with schedule stops and times
-            return comprehendKeyPhraseListWithStopsAndTimes(keyPhraseFilterList1, logger);
+        // detect english key phrase in schedule content
+        List<KeyPhrase> keyPhraseList = keyPhraseService.detectKeyPhrases(scheduleContent, "en");
+
+        // remove key phrases with spanish text language code as dominant language, in concurrent batches
+        try (KeyPhraseLanguageFilter keyPhraseLanguageFilter = new KeyPhraseLanguageFilter(keyPhraseService,
+                ProcessEventUtils.getEnvironmentInt(COMPREHEND_CONCURRENCY, DEFAULT_COMPREHEND_CONCURRENCY))) {
+            keyPhraseFilterList1 = keyPhraseLanguageFilter.removeSpanish(keyPhraseList);
+            logger.log("key phrase language filter: " + keyPhraseLanguageFilter);
         }
-        return null;
+        // return key phrases with schedule stops and times
+        return comprehendKeyPhraseListWithStopsAndTimes(keyPhraseFilterList1, logger);
     }
 
     /**
@@ -458,7 +512,7 @@ public class ProcessCrawledMetroScheduleDataEvent {
      * @return {@link List} of KeyPhrases
      *
      * @see KeyPhrase
-     * @see ComprehendClient
+     * @see KeyPhraseService
      */
     private List<KeyPhrase> comprehendKeyPhraseListWithStopsAndTimes(List<KeyPhrase> initialKeyPhraseList, LambdaLogger logger) {
         List<KeyPhrase> keyPhraseListWithStopsAndTimes = new ArrayList<>();
@@ -475,184 +529,75 @@ public class ProcessCrawledMetroScheduleDataEvent {
     }
 
     /**
-     * Reads the pdf content of a file located in {@code /tmp/line_schedule_doc.pdf} and returns the
-     * text representation of the contents in readable form.
+     * Scans a line's schedule markup document for its pdf timetable link. Scanning stops at the link, roughly half
+     * way through the page.
      *
-     * @param logger {@link LambdaLogger}
-     * @return {@link String} contents of pdf file in readable form
+     * @param scheduleDocument {@link InputStream} of the schedule markup document page
+     * @return {@link ScanResult} holding the pdf timetable link, complete if the link was found
+     * @throws IOException if reading the document fails
      */
-    private String readPdfFileContent(LambdaLogger logger) throws IOException {
-        String parsedText;
-        PDDocument doc = null;
-        try {
-            File pdfDump = new File(LINE_SCHEDULE_PDF_FILE);
-            PDFTextStripper pdfTextStripper = new PDFTextStripper();
-            doc = PDDocument.load(pdfDump);
-            parsedText = pdfTextStripper.getText(doc);
-        } catch (IOException e) {
-            logger.log(String.format("Error reading pdf file from '%s'" + e.getMessage(), LINE_SCHEDULE_PDF_FILE));
-            if (doc != null) {
-                doc.close();
-            }
-            return null;
-        }
-        doc.close();
-        return parsedText;
+    static ScanResult scanScheduleDocument(InputStream scheduleDocument) throws IOException {
+        return SCHEDULE_DOCUMENT_SCANNER.scan(scheduleDocument);
     }
 
     /**
-     * Queries the line schedule url to obtain the markup document and obtains the line's pdf schedule url.
+     * Extracts the url to a MetroLine's schedule pdf file from the pdf timetable link of the line's schedule markup
+     * page, either a script opening the pdf or the pdf's own path.
+     * <p></p>
+     * example link: {@code <a href="#" onclick="window.open('/~/media/.../rt-' + routeName + '.pdf');return false;" }
      *
-     * @param lineScheduleUrl {@link String} url to the line's schedule
+     * @param pdfTimetableLink {@link String} fragment of the pdf timetable link, or null if the page had none
      * @param line {@link String} the line# name of the MetroLine (ex: 190)
-     * @param logger {@link LambdaLogger}
+     * @param siteUrl {@link String} metro site url the link's path is resolved against
      *
-     * @return {@link String} the line's url to its schedule pdf file
+     * @return {@link String} url to the schedule's pdf document, or null if there is no link
      */
-    private String queryLineScheduleUrlForPdfScheduleUrl(String lineScheduleUrl, String line, LambdaLogger logger) {
-        // dump the schedule url document to /tmp for processing
-        try {
-            URL url = new URL(lineScheduleUrl);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod(ProcessEventUtils.GET_REQUEST);
-
-            ProcessEventUtils.printToFile(connection.getInputStream(), LINE_SCHEDULE_TXT_FILE, logger);
-            connection.disconnect();
-        } catch (IOException e) {
-            logger.log(String.format("Error writing route document dump to '%s': ", LINE_SCHEDULE_TXT_FILE + e.getMessage()));
-        }
-
-        // read the dump into a string to begin transforming to pull the schedule pdf url
-        String scheduleUrlDocumentDump = null;
-        try {
-            scheduleUrlDocumentDump = new String(Files.readAllBytes(Paths.get(LINE_SCHEDULE_TXT_FILE)));
-        } catch (IOException e) {
-            logger.log(String.format("Error reading schedule document dump from: %s: " + e.getMessage(), LINE_SCHEDULE_TXT_FILE));
+    static String getPdfUrlFromPdfTimetableLink(String pdfTimetableLink, String line, String siteUrl) {
+        if (pdfTimetableLink == null) {
+            return null;
         }
-        if (scheduleUrlDocumentDump != null) {
-            return extractPdfUrlFromScheduleDocumentDump(scheduleUrlDocumentDump, line);
+        String nextContent = pdfTimetableLink.trim();
+        if (nextContent.contains("(")) {
+            nextContent = nextContent
+                    .replace("'", "")
+                    .replace(" ", "")
+                    .split("\\(")[1]
+                    .split("\\)")[0];
         }
-        return null;
-    }
-
-    /**
-     * Extracts the url to a MetroLine's schedule pdf file from the document dump of the line's schedule markup page.
-     *
-     * @param scheduleDocumentDump {@link String} of the schedule markup document page
-     * @param line {@link String} the line# name of the MetroLine (ex: 190)
-     *
-     * @return {@link String} url to the schedule's pdf document
-     */
-    private String extractPdfUrlFromScheduleDocumentDump(String scheduleDocumentDump, String line) {
-        String nextContent = scheduleDocumentDump
-                .split("id=\"pdf-timetable-link\">")[1]
-                .trim()
-                .split("target=\"_blank\">PDF timetable")[0]
-                .trim()
-                .replace("'", "")
-                .replace(" ", "")
-                .split("\\(")[1]
-                .split("\\)")[0]
-                .replace("+routeName+", line);
-
-        return ProcessEventUtils.METRO_TOP_LEVEL_URL + nextContent;
-    }
-
-    /**
-     * Gets metro line url from MetroLine {@link JSONObject}
-     *
-     * @param metroLineObject {@link JSONObject} from MetroLine Properties
-     *
-     * @return {@link String} the Metro line's url
-     * @see MetroLine
-     */
-    private String getLineScheduleUrl(JSONObject metroLineObject) {
-        return metroLineObject.getString("line_schedule_url");
-    }
-
-    /**
-     * Gets metro line's line number from MetroLine {@link JSONObject}
-     *
-     * @param metroLineObject {@link JSONObject} from MetroLine Properties
-     *
-     * @return {@link String} the Metro line's line number
-     * @see MetroLine
-     */
-    private String getLine(JSONObject metroLineObject) {
-        return metroLineObject.getString("line");
-    }
-
-    /**
-     * Gets a JSONArray from a list of MetroLine POJOs.
-     *
-     * @param metroLinePojoList {@link List} of MetroLine POJOs
-     * @return {@link JSONArray}
-     *
-     * @see MetroLine
-     */
-    private JSONArray parseMetroLinePojoListAsJsonArray(List<MetroLine> metroLinePojoList) {
-        List<JSONObject> metroLineJsonObjects = new ArrayList<>();
-        for (MetroLine metroLine : metroLinePojoList) {
-
-            JSONObject metroLineJsonObject = new JSONObject();
-            metroLineJsonObject.put("line", metroLine.getLine());
-            metroLineJsonObject.put("line_name", metroLine.getLineName());
-            metroLineJsonObject.put("line_schedule_url", metroLine.getLineScheduleUrl());
-
-            metroLineJsonObjects.add(metroLineJsonObject);
-
-        }
-        return new JSONArray(metroLineJsonObjects);
+        return siteUrl + nextContent.replace("+routeName+", line);
     }
 
     /**
      * Reads in a Json file from a triggered S3Event that uploads the part 1 of processed data
-     * from the SEA metro site crawl. This Json content is then converted to a {@link List} of
-     * MetroLine POJOs.
+     * from the SEA metro site crawl. This Json content is streamed straight from the object into a {@link List}
+     * of MetroLine POJOs.
      *
      * @param event {@link S3Event}
-     * @param client {@link AmazonS3} client
      * @param logger {@link LambdaLogger} logger
      *
-     * @return {@link List} of MetroLine POJOs
+     * @return {@link List} of MetroLine POJOs, or null if the document can't be read
      *
      * @see MetroLine
-     * @see TypeReference
+     * @see MetroJson
      */
-    private List<MetroLine> getMetroLineAsPojoFromJson(S3Event event, AmazonS3 client, LambdaLogger logger) {
-        List<MetroLine> metroLines;
-        S3Object processedJsonObject;
-        ObjectMapper metroLineObjectMapper = new ObjectMapper();
-
-        try {
-            processedJsonObject = getTriggeredEventObject(event, client);
-            File routesJsonFile = new File(ROUTES_JSON_FILE);
-            FileUtils.copyInputStreamToFile(processedJsonObject.getObjectContent(), routesJsonFile);
-            metroLines = metroLineObjectMapper.readValue(routesJsonFile, new TypeReference<List<MetroLine>>(){});
-            processedJsonObject.close();
-        } catch (IOException e) {
-            logger.log(String.format("Error mapping processed metro data to pojo '%s'" + e.getMessage(), MetroLine.class));
-            return null;
-        }
-        return metroLines;
-    }
-
-    /**
-     * Gets the first and only {@link S3Object} from a S3Event.
-     *
-     * @param event triggered {@link S3Event}
-     * @param client {@link AmazonS3} client
-     *
-     * @return {@link S3Object}
-     */
-    private S3Object getTriggeredEventObject(S3Event event, AmazonS3 client) {
+    private List<MetroLine> getMetroLineAsPojoFromJson(S3Event event, LambdaLogger logger) {
         String eventKey = event.getRecords()
                 .get(0)
                 .getS3()
                 .getObject()
                 .getKey();
 
-        GetObjectRequest getObjectRequest = new GetObjectRequest(PROCESSED_BUCKET, eventKey);
-        return client.getObject(getObjectRequest);
+        List<MetroLine> metroLines;
+        try (InputStream inputStream = blobStore.getContent(PROCESSED_BUCKET, eventKey)) {
+            if (inputStream == null) {
+                logger.log("processed document no longer exists: " + eventKey);
+                return null;
+            }
+            metroLines = MetroJson.readMetroLines(inputStream);
+        } catch (IOException e) {
+            logger.log(String.format("Error mapping processed metro data to pojo '%s'" + e.getMessage(), MetroLine.class));
+            return null;
+        }
+        return metroLines;
     }
 }
@@ -0,0 +1,177 @@
+package org.morris.unofficial.events;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import org.morris.unofficial.models.PendingDetection;
+import org.morris.unofficial.models.Schedule;
+import org.morris.unofficial.utils.AwsClientRegistry;
+import org.morris.unofficial.utils.BlobStore;
+import org.morris.unofficial.utils.LineFingerprintIndex;
+import org.morris.unofficial.utils.MetroJson;
+import org.morris.unofficial.utils.ProcessEventUtils;
+import org.morris.unofficial.utils.ScheduleTextParser;
+import org.morris.unofficial.utils.TextDetectionService;
+import org.morris.unofficial.utils.TextractJobNotification;
+import org.morris.unofficial.utils.TextractResultCollector;
+import org.morris.unofficial.utils.TextractScheduleTextExtractor.PageBuffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Resumes a metro line's schedule processing once its Textract document text detection completes. The Textract
+ * completion notification is delivered to this handler from the metro SQS queue, so nothing waits, or is billed,
+ * while a detection runs, and any number of detections can be in flight at once. The line a detection belongs to
+ * is carried in the notification's job tag, which finds the {@link PendingDetection} stored when the detection
+ * was started.
+ * <p></p>
+ * The detected text is parsed with {@link ScheduleTextParser}, the line's {@code line_schedule.json} is uploaded
+ * and its fingerprint is recorded in the {@link LineFingerprintIndex}, as if the line had been extracted in
+ * process. Used when {@link ProcessCrawledMetroScheduleDataEvent} runs with TEXTRACT_COMPLETION_MODE=event. Records
+ * that fail are reported as batch item failures so only they are retried; a notification that arrives before its
+ * pending detection is stored is retried the same way.
+ */
+public class TextractCompletionEvent {
+    private final BlobStore blobStore;
+    private final TextDetectionService textDetectionService;
+
+    public TextractCompletionEvent() {
+        this(ProcessEventUtils.getBlobStore(), ProcessEventUtils.getTextDetectionService());
+    }
+
+    /**
+     * @param blobStore {@link BlobStore} holding the schedules bucket
+     * @param textDetectionService {@link TextDetectionService} the detections' results are paged from
+     */
+    public TextractCompletionEvent(BlobStore blobStore, TextDetectionService textDetectionService) {
+        this.blobStore = blobStore;
+        this.textDetectionService = textDetectionService;
+    }
+
+    public SQSBatchResponse handleRequest(SQSEvent event, Context context) throws IOException {
+        LambdaLogger logger = context.getLogger();
+        List<SQSBatchResponse.BatchItemFailure> failures = new ArrayList<>();
+
+        // every succeeded detection in the batch is paged at once, each into its own text
+        Map<String, CompletableFuture<Long>> collections = new LinkedHashMap<>();
+        Map<String, PendingDetection> pendingDetections = new HashMap<>();
+        Map<String, StringBuilder> texts = new HashMap<>();
+        try (TextractResultCollector textractResultCollector = new TextractResultCollector(
+                textDetectionService, event.getRecords().size(),
+                ProcessEventUtils.getEnvironmentInt(TextractResultCollector.TEXTRACT_GET_REQUESTS_PER_SECOND,
+                        TextractResultCollector.DEFAULT_TEXTRACT_GET_REQUESTS_PER_SECOND))) {
+
+            for (SQSEvent.SQSMessage message : event.getRecords()) {
+                TextractJobNotification notification;
+                try {
+                    notification = TextractJobNotification.parse(message.getBody());
+                } catch (IOException e) {
+                    // not a textract notification, retrying it will not help
+                    logger.log(String.format("Skipping message '%s': %s", message.getMessageId(), e.getMessage()));
+                    continue;
+                }
+                if (!notification.isSucceeded()) {
+                    logger.log("Document Text Detection Failed: " + notification);
+                    continue;
+                }
+                PendingDetection pendingDetection;
+                try {
+                    pendingDetection = readPendingDetection(notification.getJobTag());
+                } catch (IOException e) {
+                    logger.log(String.format("Error processing message '%s': %s", message.getMessageId(),
+                            e.getMessage()));
+                    failures.add(new SQSBatchResponse.BatchItemFailure(message.getMessageId()));
+                    continue;
+                }
+                StringBuilder text = new StringBuilder();
+                PageBuffer pageBuffer = new PageBuffer((page, pageText) -> text.append(pageText));
+                pendingDetections.put(message.getMessageId(), pendingDetection);
+                texts.put(message.getMessageId(), text);
+                collections.put(message.getMessageId(), textractResultCollector.collect(notification.getJobId(),
+                        pageBuffer::accept).thenApply(blocks -> {
+                            pageBuffer.finish();
+                            return blocks;
+                        }));
+            }
+
+            // the lines' schedules are parsed and uploaded as their text is complete, then recorded in one save
+            LineFingerprintIndex fingerprintIndex = new LineFingerprintIndex(blobStore,
+                    ProcessCrawledMetroScheduleDataEvent.SCHEDULES_BUCKET,
+                    ProcessCrawledMetroScheduleDataEvent.LINE_FINGERPRINTS_KEY);
+            collections.forEach((messageId, collection) -> {
+                PendingDetection pendingDetection = pendingDetections.get(messageId);
+                try {
+                    logger.log(String.format("line: %s detected %d text blocks", pendingDetection.getLine(),
+                            collection.join()));
+                    putSchedules(pendingDetection, texts.get(messageId).toString(), fingerprintIndex, logger);
+                } catch (CompletionException e) {
+                    logger.log(String.format("Error processing message '%s': %s", messageId, e.getCause().getMessage()));
+                    failures.add(new SQSBatchResponse.BatchItemFailure(messageId));
+                } catch (IOException e) {
+                    logger.log(String.format("Error processing message '%s': %s", messageId, e.getMessage()));
+                    failures.add(new SQSBatchResponse.BatchItemFailure(messageId));
+                }
+            });
+            if (fingerprintIndex.save()) {
+                logger.log("saved line fingerprints: " + ProcessCrawledMetroScheduleDataEvent.LINE_FINGERPRINTS_KEY);
+            }
+            logger.log("textract result collector: " + textractResultCollector);
+        }
+
+        logger.log("aws clients created: " + AwsClientRegistry.getCreatedClientCounts());
+        return new SQSBatchResponse(failures);
+    }
+
+    /**
+     * @param jobTag {@link String} job tag of a detection's completion notification
+     * @return {@link PendingDetection} stored when the detection was started
+     * @throws IOException if there is no pending detection for the job tag, or it can't be read
+     */
+    private PendingDetection readPendingDetection(String jobTag) throws IOException {
+        if (jobTag == null) {
+            throw new IOException("notification has no job tag");
+        }
+        try (InputStream content = blobStore.getContent(ProcessCrawledMetroScheduleDataEvent.SCHEDULES_BUCKET,
+                PendingDetection.getKey(jobTag))) {
+            if (content == null) {
+                throw new IOException("no pending detection for job tag: " + jobTag);
+            }
+            return MetroJson.getObjectMapper().readValue(content, PendingDetection.class);
+        }
+    }
+
+    /**
+     * Parses the timetables of a line's detected text and uploads them to the key its pending detection names. A
+     * text without timetables is only logged: retrying won't change it, and the line keeps its old fingerprint so
+     * it is processed again on the next run.
+     *
+     * @param pendingDetection {@link PendingDetection} of the line
+     * @param text {@link String} the line's detected schedule text
+     * @param fingerprintIndex {@link LineFingerprintIndex} the line's fingerprint is recorded in
+     * @param logger {@link LambdaLogger}
+     * @throws IOException if the schedules can't be written as json or stored
+     */
+    private void putSchedules(PendingDetection pendingDetection, String text, LineFingerprintIndex fingerprintIndex,
+                              LambdaLogger logger) throws IOException {
+        List<Schedule> schedules = ScheduleTextParser.parse(text);
+        if (schedules.isEmpty()) {
+            logger.log("no timetables found in the schedule text for line: " + pendingDetection.getLine());
+            return;
+        }
+        blobStore.put(ProcessCrawledMetroScheduleDataEvent.SCHEDULES_BUCKET, pendingDetection.getScheduleKey(),
+                MetroJson.getObjectMapper().writeValueAsBytes(schedules),
+                ProcessCrawledMetroScheduleDataEvent.JSON_CONTENT_TYPE, Collections.emptyMap());
+        fingerprintIndex.update(pendingDetection.getLine(), pendingDetection.getFingerprint());
+        logger.log(String.format("line: %s parsed %d timetables", pendingDetection.getLine(), schedules.size()));
+    }
+}
@@ -0,0 +1,75 @@
+package org.morris.unofficial.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+/**
+ * {@code org.morris.unofficial.models.HttpValidators} models the cache validators a server sent with a page or
+ * pdf: its {@code ETag} and {@code Last-Modified} headers. They are sent back on the next fetch of the same url as
+ * {@code If-None-Match} and {@code If-Modified-Since}, and an unchanged resource is answered with a 304 and no
+ * body.
+ */
+public class HttpValidators {
+
+    @JsonProperty("etag")
+    private String etag;
+
+    @JsonProperty("last_modified")
+    private String lastModified;
+
+    public HttpValidators() {
+    }
+
+    public HttpValidators(String etag, String lastModified) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * @return true if the server sent neither validator, and the resource can't be fetched conditionally
+     */
+    @JsonIgnore
+    public boolean isEmpty() {
+        return etag == null && lastModified == null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof HttpValidators)) {
+            return false;
+        }
+        HttpValidators that = (HttpValidators) o;
+        return Objects.equals(etag, that.etag) && Objects.equals(lastModified, that.lastModified);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(etag, lastModified);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("etag: %s, last modified: %s", etag, lastModified);
+    }
+}
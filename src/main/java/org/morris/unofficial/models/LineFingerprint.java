@@ -0,0 +1,112 @@
+package org.morris.unofficial.models;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+/**
+ * {@code org.morris.unofficial.models.LineFingerprint} models what a line's processed schedule was built from: the
+ * line's schedule page url, the url of the schedule pdf found on that page and a SHA-256 digest of the pdf. A line
+ * whose fingerprint matches the one recorded on the last run has an unchanged timetable.
+ * <p></p>
+ * The {@link HttpValidators} of the schedule page and pdf are recorded with it, so the next run fetches both
+ * conditionally and an unchanged line costs two 304s.
+ */
+public class LineFingerprint {
+
+    @JsonProperty("line_schedule_url")
+    private String lineScheduleUrl;
+
+    @JsonProperty("pdf_schedule_url")
+    private String pdfScheduleUrl;
+
+    @JsonProperty("pdf_sha256")
+    private String pdfSha256;
+
+    @JsonProperty("page_validators")
+    private HttpValidators pageValidators;
+
+    @JsonProperty("pdf_validators")
+    private HttpValidators pdfValidators;
+
+    public LineFingerprint() {
+    }
+
+    public LineFingerprint(String lineScheduleUrl, String pdfScheduleUrl, String pdfSha256) {
+        this.lineScheduleUrl = lineScheduleUrl;
+        this.pdfScheduleUrl = pdfScheduleUrl;
+        this.pdfSha256 = pdfSha256;
+    }
+
+    public String getLineScheduleUrl() {
+        return lineScheduleUrl;
+    }
+
+    public void setLineScheduleUrl(String lineScheduleUrl) {
+        this.lineScheduleUrl = lineScheduleUrl;
+    }
+
+    public String getPdfScheduleUrl() {
+        return pdfScheduleUrl;
+    }
+
+    public void setPdfScheduleUrl(String pdfScheduleUrl) {
+        this.pdfScheduleUrl = pdfScheduleUrl;
+    }
+
+    public String getPdfSha256() {
+        return pdfSha256;
+    }
+
+    public void setPdfSha256(String pdfSha256) {
+        this.pdfSha256 = pdfSha256;
+    }
+
+    public HttpValidators getPageValidators() {
+        return pageValidators;
+    }
+
+    public void setPageValidators(HttpValidators pageValidators) {
+        this.pageValidators = pageValidators;
+    }
+
+    public HttpValidators getPdfValidators() {
+        return pdfValidators;
+    }
+
+    public void setPdfValidators(HttpValidators pdfValidators) {
+        this.pdfValidators = pdfValidators;
+    }
+
+    /**
+     * Compares what the schedules were built from, the validators they were fetched with are left out.
+     *
+     * @param other {@link LineFingerprint} recorded on the last run, or null
+     * @return true if both fingerprints describe the same schedule pdf
+     */
+    public boolean isSameSchedule(LineFingerprint other) {
+        return other != null
+                && Objects.equals(lineScheduleUrl, other.lineScheduleUrl)
+                && Objects.equals(pdfScheduleUrl, other.pdfScheduleUrl)
+                && Objects.equals(pdfSha256, other.pdfSha256);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LineFingerprint)) {
+            return false;
+        }
+        LineFingerprint that = (LineFingerprint) o;
+        return isSameSchedule(that)
+                && Objects.equals(pageValidators, that.pageValidators)
+                && Objects.equals(pdfValidators, that.pdfValidators);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(lineScheduleUrl, pdfScheduleUrl, pdfSha256, pageValidators, pdfValidators);
+    }
+}
@@ -1,12 +1,20 @@
 package org.morris.unofficial.models;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.EnumSet;
+
 /**
  * MetroLine is a model used to model the line, lineName, and lineScheduleUrl of the initial processed data from
  * SEA Metro site crawl. This model will allow the {@link com.fasterxml.jackson.databind.ObjectMapper} to map the
  * json file pulled from the processed document bucket to a POJO.
+ * <p></p>
+ * The pdfTimetableUrl and routeMapUrl are read from the route's menu in the same route list, they are null for
+ * routes without a pdf timetable or map (ex: Streetcar, Water Taxi), and left out of the json. The routeAttributes are the
+ * {@link RouteAttribute}s marked on the route's item in the route list.
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class MetroLine {
     @JsonProperty("line")
     private String line;
@@ -17,6 +25,15 @@ public class MetroLine {
     @JsonProperty("line_schedule_url")
     private String lineScheduleUrl;
 
+    @JsonProperty("pdf_timetable_url")
+    private String pdfTimetableUrl;
+
+    @JsonProperty("route_map_url")
+    private String routeMapUrl;
+
+    @JsonProperty("route_attributes")
+    private EnumSet<RouteAttribute> routeAttributes = EnumSet.noneOf(RouteAttribute.class);
+
     public String getLine() {
         return line;
     }
@@ -40,4 +57,28 @@ public class MetroLine {
     public void setLineScheduleUrl(String lineScheduleUrl) {
         this.lineScheduleUrl = lineScheduleUrl;
     }
+
+    public String getPdfTimetableUrl() {
+        return pdfTimetableUrl;
+    }
+
+    public void setPdfTimetableUrl(String pdfTimetableUrl) {
+        this.pdfTimetableUrl = pdfTimetableUrl;
+    }
+
+    public String getRouteMapUrl() {
+        return routeMapUrl;
+    }
+
+    public void setRouteMapUrl(String routeMapUrl) {
+        this.routeMapUrl = routeMapUrl;
+    }
+
+    public EnumSet<RouteAttribute> getRouteAttributes() {
+        return routeAttributes;
+    }
+
+    public void setRouteAttributes(EnumSet<RouteAttribute> routeAttributes) {
+        this.routeAttributes = routeAttributes;
+    }
 }
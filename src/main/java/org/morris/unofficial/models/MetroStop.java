@@ -2,19 +2,22 @@ package org.morris.unofficial.models;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
-import java.util.List;
-
 /**
  * {@code org.morris.unofficial.models.MetroStop} models a Metro stop that contains a name for
- * its stop line and a list of stop times.
+ * its stop line, its stop number and its stop times.
+ *
+ * @see StopTimes
  */
 public class MetroStop {
 
     @JsonProperty("line_stop")
     private String lineStop;
 
+    @JsonProperty("stop_number")
+    private String stopNumber;
+
     @JsonProperty("stop_times")
-    private List<String> stopTimes;
+    private StopTimes stopTimes;
 
     public String getLineStop() {
         return lineStop;
@@ -24,11 +27,19 @@ public class MetroStop {
         this.lineStop = lineStop;
     }
 
-    public List<String> getStopTimes() {
+    public String getStopNumber() {
+        return stopNumber;
+    }
+
+    public void setStopNumber(String stopNumber) {
+        this.stopNumber = stopNumber;
+    }
+
+    public StopTimes getStopTimes() {
         return stopTimes;
     }
 
-    public void setStopTimes(List<String> stopTimes) {
+    public void setStopTimes(StopTimes stopTimes) {
         this.stopTimes = stopTimes;
     }
 }
@@ -0,0 +1,69 @@
+package org.morris.unofficial.models;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * {@code org.morris.unofficial.models.PendingDetection} models a line whose schedule text is being detected by
+ * Textract while no one waits on the detection: the line, the key its parsed schedule is uploaded to and the
+ * {@link LineFingerprint} of the pdf being detected. It is stored under the detection's job tag, the only part of
+ * the line the completion notification carries, so the handler of the notification can finish the line.
+ */
+public class PendingDetection {
+    final static private String PENDING_DETECTIONS_PREFIX = "index/pending_detections/";
+    final static private String JSON_SUFFIX = ".json";
+
+    @JsonProperty("line")
+    private String line;
+
+    @JsonProperty("schedule_key")
+    private String scheduleKey;
+
+    @JsonProperty("fingerprint")
+    private LineFingerprint fingerprint;
+
+    public PendingDetection() {
+    }
+
+    public PendingDetection(String line, String scheduleKey, LineFingerprint fingerprint) {
+        this.line = line;
+        this.scheduleKey = scheduleKey;
+        this.fingerprint = fingerprint;
+    }
+
+    public String getLine() {
+        return line;
+    }
+
+    public void setLine(String line) {
+        this.line = line;
+    }
+
+    public String getScheduleKey() {
+        return scheduleKey;
+    }
+
+    public void setScheduleKey(String scheduleKey) {
+        this.scheduleKey = scheduleKey;
+    }
+
+    public LineFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(LineFingerprint fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @param jobTag {@link String} job tag of the line's detection
+     * @return {@link String} key the line's pending detection is stored under in the schedules bucket
+     */
+    public static String getKey(String jobTag) {
+        return PENDING_DETECTIONS_PREFIX + jobTag + JSON_SUFFIX;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("line: %s, schedule: %s", line, scheduleKey);
+    }
+}
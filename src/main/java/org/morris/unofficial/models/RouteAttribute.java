@@ -0,0 +1,103 @@
+package org.morris.unofficial.models;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@code org.morris.unofficial.models.RouteAttribute} models the attributes of a route that the SEA metro site
+ * marks as CSS classes on the route's item in the route list: the kind of service, the days it runs, and whether
+ * it runs at night, is suspended or is on the emergency snow network. A line's attributes are held as an
+ * {@link EnumSet}, a single bit per attribute.
+ * <p></p>
+ * Example: {@code <li id="route671" class="route-item rapidride-route night-owl-route weekday saturday sunday
+ * not-suspended esn">} is the A Line, a RapidRide line running every day and through the night.
+ * <p></p>
+ * Attributes are written to json by their CSS class.
+ */
+public enum RouteAttribute {
+    RAPIDRIDE("rapidride-route"),
+    DART("dart-route"),
+    SCHOOL("school-route"),
+    COMMUNITY_SHUTTLE("community-shuttle"),
+    COMMUNITY_RIDE("community-ride"),
+    STREETCAR("streetcar-route"),
+    WATER_TAXI("water-taxi"),
+    SNOQUALMIE_VALLEY_TRANSPORTATION("svt"),
+    NIGHT_OWL("night-owl-route"),
+    NOT_NIGHT_OWL("not-night-owl"),
+    WEEKDAY("weekday"),
+    SATURDAY("saturday"),
+    SUNDAY("sunday"),
+    SUSPENDED("suspended"),
+    NOT_SUSPENDED("not-suspended"),
+    EMERGENCY_SNOW_NETWORK("esn");
+
+    final static private Map<String, RouteAttribute> CSS_CLASSES = new HashMap<>();
+
+    static {
+        for (RouteAttribute routeAttribute : values()) {
+            CSS_CLASSES.put(routeAttribute.cssClass, routeAttribute);
+        }
+    }
+
+    private final String cssClass;
+
+    RouteAttribute(String cssClass) {
+        this.cssClass = cssClass;
+    }
+
+    @JsonValue
+    public String getCssClass() {
+        return cssClass;
+    }
+
+    /**
+     * @param cssClass {@link String} CSS class of a route item (ex: rapidride-route)
+     * @return {@link RouteAttribute} of the class, or null for a class that isn't a route attribute
+     */
+    @JsonCreator
+    public static RouteAttribute fromCssClass(String cssClass) {
+        return CSS_CLASSES.get(cssClass);
+    }
+
+    /**
+     * Parses the class attribute of a route item. Classes that aren't route attributes, such as route-item itself,
+     * are ignored.
+     *
+     * @param cssClasses {@link String} space separated CSS classes
+     * @return {@link EnumSet} of the route's attributes
+     */
+    public static EnumSet<RouteAttribute> fromCssClasses(String cssClasses) {
+        EnumSet<RouteAttribute> routeAttributes = EnumSet.noneOf(RouteAttribute.class);
+        for (String cssClass : cssClasses.trim().split("\\s+")) {
+            RouteAttribute routeAttribute = CSS_CLASSES.get(cssClass);
+            if (routeAttribute != null) {
+                routeAttributes.add(routeAttribute);
+            }
+        }
+        return routeAttributes;
+    }
+
+    /**
+     * @param routeAttributes {@link Set} of route attributes
+     * @return {@link String} space separated CSS classes of the attributes, in declaration order
+     */
+    public static String toCssClasses(Set<RouteAttribute> routeAttributes) {
+        StringBuilder cssClasses = new StringBuilder();
+        for (RouteAttribute routeAttribute : values()) {
+            if (!routeAttributes.contains(routeAttribute)) {
+                continue;
+            }
+            if (cssClasses.length() > 0) {
+                cssClasses.append(' ');
+            }
+            cssClasses.append(routeAttribute.cssClass);
+        }
+        return cssClasses.toString();
+    }
+}
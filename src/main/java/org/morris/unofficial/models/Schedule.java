@@ -6,13 +6,46 @@ import java.util.List;
 
 /**
  * {@code org.morris.unofficial.models.Schedule} models a Metro schedule that contains a list of
- * {@link MetroStop}s.
+ * {@link MetroStop}s, for one route's trips toward a destination on the given service days.
  */
 public class Schedule {
 
+    @JsonProperty("route")
+    String route;
+
+    @JsonProperty("service_days")
+    String serviceDays;
+
+    @JsonProperty("destination")
+    String destination;
+
     @JsonProperty("schedule")
     List<MetroStop> schedule;
 
+    public String getRoute() {
+        return route;
+    }
+
+    public void setRoute(String route) {
+        this.route = route;
+    }
+
+    public String getServiceDays() {
+        return serviceDays;
+    }
+
+    public void setServiceDays(String serviceDays) {
+        this.serviceDays = serviceDays;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public void setDestination(String destination) {
+        this.destination = destination;
+    }
+
     public List<MetroStop> getSchedule() {
         return schedule;
     }
@@ -0,0 +1,220 @@
+package org.morris.unofficial.models;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * {@code org.morris.unofficial.models.StopTimes} models the departure times of a {@link MetroStop} as minutes since
+ * the start of the service day, held in a single {@code short[]} rather than a String per departure. Times are in
+ * the order they are printed down a timetable, which is ascending, so the next departure from a time is found with
+ * a binary search and without allocating.
+ * <p></p>
+ * A service day runs past midnight: a 12:10 AM departure after an 11:50 PM one is 1450 minutes, not 10. In json the
+ * times keep their printed form, ex: ["5:52 AM", "6:32 AM"], and 24 hour times such as "12:45" are read as well.
+ */
+@JsonSerialize(using = StopTimes.Serializer.class)
+@JsonDeserialize(using = StopTimes.Deserializer.class)
+public class StopTimes {
+    final static public int MINUTES_PER_DAY = 24 * 60;
+    final static private int MINUTES_PER_HALF_DAY = 12 * 60;
+
+    private final short[] minutes;
+
+    private StopTimes(short[] minutes) {
+        this.minutes = minutes;
+    }
+
+    /**
+     * @param minutes minutes since the start of the service day of each departure, in ascending order
+     * @return {@link StopTimes} holding a copy of the given minutes
+     */
+    public static StopTimes of(int... minutes) {
+        short[] packed = new short[minutes.length];
+        for (int index = 0; index < minutes.length; index++) {
+            if (minutes[index] < 0 || minutes[index] > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("stop time out of range: " + minutes[index]);
+            }
+            packed[index] = (short) minutes[index];
+        }
+        return new StopTimes(packed);
+    }
+
+    public int size() {
+        return minutes.length;
+    }
+
+    /**
+     * @param index index of the departure
+     * @return minutes since the start of the service day of the departure
+     */
+    public int getMinutes(int index) {
+        return minutes[index];
+    }
+
+    /**
+     * @param index index of the departure
+     * @return {@link String} the departure's printed time, ex: 5:52 AM
+     */
+    public String getTime(int index) {
+        return format(minutes[index]);
+    }
+
+    /**
+     * Finds the first departure at or after the given time.
+     *
+     * @param fromMinutes minutes since the start of the service day
+     * @return index of the first departure at or after the time, or {@link #size()} if there is none
+     */
+    public int nextDepartureIndex(int fromMinutes) {
+        int low = 0;
+        int high = minutes.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (minutes[middle] < fromMinutes) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param fromMinutes minutes since the start of the service day
+     * @return minutes since the start of the service day of the first departure at or after the time, or -1
+     */
+    public int nextDeparture(int fromMinutes) {
+        int index = nextDepartureIndex(fromMinutes);
+        return index < minutes.length ? minutes[index] : -1;
+    }
+
+    /**
+     * @param minutes minutes since the start of the service day
+     * @return {@link String} printed time, ex: 5:52 AM
+     */
+    public static String format(int minutes) {
+        int minuteOfDay = minutes % MINUTES_PER_DAY;
+        int hour = (minuteOfDay % MINUTES_PER_HALF_DAY) / 60;
+        return String.format("%d:%02d %s", hour == 0 ? 12 : hour, minuteOfDay % 60,
+                minuteOfDay < MINUTES_PER_HALF_DAY ? "AM" : "PM");
+    }
+
+    /**
+     * Parses a printed time, ex: 5:52 AM, 12:10 PM, or a 24 hour time, ex: 17:45.
+     *
+     * @param time {@link String} printed time
+     * @return minutes since midnight
+     */
+    public static int parse(String time) {
+        String trimmed = time.trim();
+        int colon = trimmed.indexOf(':');
+        if (colon < 1 || trimmed.length() < colon + 3) {
+            throw new IllegalArgumentException("invalid stop time: " + time);
+        }
+        int hour;
+        int minute;
+        try {
+            hour = Integer.parseInt(trimmed.substring(0, colon));
+            minute = Integer.parseInt(trimmed.substring(colon + 1, colon + 3));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid stop time: " + time);
+        }
+        String meridiem = trimmed.substring(colon + 3).trim();
+        if (meridiem.equalsIgnoreCase("AM")) {
+            hour = hour % 12;
+        } else if (meridiem.equalsIgnoreCase("PM")) {
+            hour = hour % 12 + 12;
+        } else if (!meridiem.isEmpty()) {
+            throw new IllegalArgumentException("invalid stop time: " + time);
+        }
+        if (hour > 23 || minute > 59) {
+            throw new IllegalArgumentException("invalid stop time: " + time);
+        }
+        return hour * 60 + minute;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof StopTimes && Arrays.equals(minutes, ((StopTimes) o).minutes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(minutes);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder times = new StringBuilder("[");
+        for (int index = 0; index < minutes.length; index++) {
+            times.append(index == 0 ? "" : ", ").append(format(minutes[index]));
+        }
+        return times.append("]").toString();
+    }
+
+    /**
+     * Writes the times as a json array of printed times.
+     */
+    public static class Serializer extends StdSerializer<StopTimes> {
+
+        public Serializer() {
+            super(StopTimes.class);
+        }
+
+        @Override
+        public void serialize(StopTimes stopTimes, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartArray();
+            for (short minutes : stopTimes.minutes) {
+                generator.writeString(format(minutes));
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Reads a json array of printed times. A time earlier than the one before it is past midnight.
+     */
+    public static class Deserializer extends StdDeserializer<StopTimes> {
+
+        public Deserializer() {
+            super(StopTimes.class);
+        }
+
+        @Override
+        public StopTimes deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+                throw context.mappingException(StopTimes.class);
+            }
+            short[] minutes = new short[16];
+            int size = 0;
+            int previous = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                int time;
+                try {
+                    time = parse(parser.getText());
+                } catch (IllegalArgumentException e) {
+                    throw context.mappingException(e.getMessage());
+                }
+                while (time < previous) {
+                    time += MINUTES_PER_DAY;
+                }
+                if (size == minutes.length) {
+                    minutes = Arrays.copyOf(minutes, size * 2);
+                }
+                minutes[size++] = (short) time;
+                previous = time;
+            }
+            return new StopTimes(Arrays.copyOf(minutes, size));
+        }
+    }
+}
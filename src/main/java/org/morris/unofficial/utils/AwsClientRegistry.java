@@ -0,0 +1,171 @@
+package org.morris.unofficial.utils;
+
+import com.amazonaws.client.builder.AwsClientBuilder.EndpointConfiguration;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.identitymanagement.AmazonIdentityManagement;
+import com.amazonaws.services.identitymanagement.AmazonIdentityManagementClient;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.sns.AmazonSNS;
+import com.amazonaws.services.sns.AmazonSNSClientBuilder;
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
+import com.amazonaws.services.textract.AmazonTextract;
+import com.amazonaws.services.textract.AmazonTextractClient;
+import software.amazon.awssdk.services.comprehend.ComprehendClient;
+import software.amazon.awssdk.services.textract.TextractClient;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * {@code org.morris.unofficial.utils.AwsClientRegistry} holds a single, lazily created instance of every AWS
+ * client the metro events use. Clients are built on first use and then live for the life of the process, so
+ * warm Lambda invocations reuse the same HTTP connection pools instead of rebuilding them and redoing the TLS
+ * handshake on every call. All AWS SDK clients are thread-safe and may be shared across threads.
+ * <p></p>
+ * Clients handed out by the registry are shared and must never be shut down by callers. The number of clients
+ * created per service is tracked to show that clients are reused across calls and invocations.
+ */
+public class AwsClientRegistry {
+    final static private ClientHolder<AmazonS3> S3 = new ClientHolder<>("s3", () -> AmazonS3ClientBuilder.standard()
+            .withRegion(ProcessEventUtils.getRegion())
+            .build());
+
+    final static private ClientHolder<AmazonSNS> SNS = new ClientHolder<>("sns", () -> AmazonSNSClientBuilder.standard()
+            .withRegion(ProcessEventUtils.getRegion())
+            .build());
+
+    final static private ClientHolder<AmazonSQS> SQS = new ClientHolder<>("sqs", () -> AmazonSQSClientBuilder.standard()
+            .withRegion(ProcessEventUtils.getRegion())
+            .build());
+
+    final static private ClientHolder<AmazonDynamoDB> DYNAMODB = new ClientHolder<>("dynamodb",
+            () -> AmazonDynamoDBClientBuilder.standard()
+                    .withRegion(ProcessEventUtils.getRegion())
+                    .build());
+
+    final static private ClientHolder<AmazonIdentityManagement> IAM = new ClientHolder<>("iam",
+            () -> AmazonIdentityManagementClient.builder()
+                    .withRegion(ProcessEventUtils.getRegion())
+                    .build());
+
+    final static private ClientHolder<AmazonTextract> TEXTRACT = new ClientHolder<>("textract",
+            () -> AmazonTextractClient.builder()
+                    .withRegion(ProcessEventUtils.getRegion())
+                    .build());
+
+    // only one of region or endpoint can be set on a client, so the endpoint configured client is held separately
+    final static private ClientHolder<AmazonTextract> TEXTRACT_WITH_ENDPOINT = new ClientHolder<>("textract-endpoint",
+            () -> AmazonTextractClient.builder()
+                    .withEndpointConfiguration(new EndpointConfiguration(
+                            "https://textract." + ProcessEventUtils.getRegion() + ".amazonaws.com",
+                            ProcessEventUtils.getRegion()))
+                    .build());
+
+    final static private ClientHolder<TextractClient> TEXTRACT_V2 = new ClientHolder<>("textract-v2",
+            () -> TextractClient.builder()
+                    .region(ProcessEventUtils.getRegionV2())
+                    .build());
+
+    final static private ClientHolder<ComprehendClient> COMPREHEND = new ClientHolder<>("comprehend",
+            () -> ComprehendClient.builder()
+                    .region(ProcessEventUtils.getRegionV2())
+                    .build());
+
+    final static private ClientHolder<?>[] HOLDERS = {S3, SNS, SQS, DYNAMODB, IAM, TEXTRACT,
+            TEXTRACT_WITH_ENDPOINT, TEXTRACT_V2, COMPREHEND};
+
+    public static AmazonS3 getS3Client() {
+        return S3.get();
+    }
+
+    public static AmazonSNS getSNSClient() {
+        return SNS.get();
+    }
+
+    public static AmazonSQS getSQSClient() {
+        return SQS.get();
+    }
+
+    public static AmazonDynamoDB getDynamoDBClient() {
+        return DYNAMODB.get();
+    }
+
+    public static AmazonIdentityManagement getIdentityManagementClient() {
+        return IAM.get();
+    }
+
+    public static AmazonTextract getTextractClient(boolean withEndpoint) {
+        return withEndpoint ? TEXTRACT_WITH_ENDPOINT.get() : TEXTRACT.get();
+    }
+
+    public static TextractClient getTextractV2Client() {
+        return TEXTRACT_V2.get();
+    }
+
+    public static ComprehendClient getComprehendClient() {
+        return COMPREHEND.get();
+    }
+
+    /**
+     * Get the number of clients created per service since the process started. A warm invocation that only
+     * reuses clients leaves these counts unchanged.
+     *
+     * @return {@link Map} of service name to the number of clients created
+     */
+    public static Map<String, Integer> getCreatedClientCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (ClientHolder<?> holder : HOLDERS) {
+            counts.put(holder.name, holder.created.get());
+        }
+        return counts;
+    }
+
+    /**
+     * Get the total number of clients created across all services since the process started.
+     *
+     * @return int total clients created
+     */
+    public static int getTotalCreatedClients() {
+        int total = 0;
+        for (ClientHolder<?> holder : HOLDERS) {
+            total += holder.created.get();
+        }
+        return total;
+    }
+
+    /**
+     * Lazily creates and holds a single client. The client is only built once, even when several threads ask
+     * for it at the same time.
+     */
+    private static class ClientHolder<T> {
+        private final String name;
+        private final Supplier<T> factory;
+        private final AtomicInteger created = new AtomicInteger();
+        private volatile T client;
+
+        ClientHolder(String name, Supplier<T> factory) {
+            this.name = name;
+            this.factory = factory;
+        }
+
+        T get() {
+            T result = client;
+            if (result == null) {
+                synchronized (this) {
+                    result = client;
+                    if (result == null) {
+                        result = factory.get();
+                        created.incrementAndGet();
+                        client = result;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.morris.unofficial.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code org.morris.unofficial.utils.BlobStore} is the object storage the handlers read crawled documents from, and
+ * write processed documents, schedules and indexes to. Objects are addressed by bucket and key and carry user
+ * metadata, the way S3 objects do.
+ *
+ * @see S3BlobStore
+ * @see InMemoryBlobStore
+ * @see LocalBlobStore
+ */
+public interface BlobStore {
+
+    /**
+     * @param bucket {@link String} bucket of the object
+     * @param key {@link String} key of the object
+     * @return {@link BlobMetadata} of the object, or null if there is no such object
+     * @throws IOException if the store can't be read
+     */
+    BlobMetadata getMetadata(String bucket, String key) throws IOException;
+
+    /**
+     * @param bucket {@link String} bucket of the object
+     * @param key {@link String} key of the object
+     * @return {@link InputStream} of the object's content, to be closed by the caller, or null if there is no
+     * such object
+     * @throws IOException if the store can't be read
+     */
+    InputStream getContent(String bucket, String key) throws IOException;
+
+    /**
+     * Writes an object held in memory, replacing any object with the same key.
+     *
+     * @param bucket {@link String} bucket of the object
+     * @param key {@link String} key of the object
+     * @param content the object's bytes
+     * @param contentType {@link String} content type of the object, or null
+     * @param userMetadata {@link Map} of user metadata stored with the object
+     * @throws IOException if the object can't be written
+     */
+    void put(String bucket, String key, byte[] content, String contentType, Map<String, String> userMetadata)
+            throws IOException;
+
+    /**
+     * Writes an object from a file, replacing any object with the same key.
+     *
+     * @param bucket {@link String} bucket of the object
+     * @param key {@link String} key of the object
+     * @param file {@link Path} of the object's content
+     * @param contentType {@link String} content type of the object, or null
+     * @param userMetadata {@link Map} of user metadata stored with the object
+     * @throws IOException if the file can't be read or the object can't be written
+     */
+    void put(String bucket, String key, Path file, String contentType, Map<String, String> userMetadata)
+            throws IOException;
+
+    /**
+     * Lists the objects under a prefix in key order.
+     *
+     * @param bucket {@link String} bucket to list
+     * @param prefix {@link String} key prefix (ex: docs/)
+     * @param maxKeys largest number of objects listed, or 0 to list every object
+     * @return {@link List} of {@link BlobMetadata}, empty if there are none or the bucket does not exist
+     * @throws IOException if the store can't be listed
+     */
+    List<BlobMetadata> list(String bucket, String prefix, int maxKeys) throws IOException;
+
+    /**
+     * The key, size, date and user metadata of a stored object.
+     */
+    class BlobMetadata {
+        private final String key;
+        private final long length;
+        private final Date lastModified;
+        private final String contentType;
+        private final Map<String, String> userMetadata;
+
+        /**
+         * @param key {@link String} key of the object
+         * @param length size of the object in bytes
+         * @param lastModified {@link Date} the object was written
+         * @param contentType {@link String} content type of the object, or null
+         * @param userMetadata {@link Map} of user metadata stored with the object, or null for none
+         */
+        public BlobMetadata(String key, long length, Date lastModified, String contentType,
+                            Map<String, String> userMetadata) {
+            this.key = key;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.userMetadata = userMetadata == null
+                    ? Collections.emptyMap()
+                    : Collections.unmodifiableMap(userMetadata);
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public Date getLastModified() {
+            return lastModified;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public Map<String, String> getUserMetadata() {
+            return userMetadata;
+        }
+
+        public String getUserMetadata(String name) {
+            return userMetadata.get(name);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.morris.unofficial.utils;
+
+import software.amazon.awssdk.services.comprehend.ComprehendClient;
+import software.amazon.awssdk.services.comprehend.model.BatchDetectDominantLanguageRequest;
+import software.amazon.awssdk.services.comprehend.model.BatchDetectDominantLanguageResponse;
+import software.amazon.awssdk.services.comprehend.model.DetectKeyPhrasesRequest;
+import software.amazon.awssdk.services.comprehend.model.KeyPhrase;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * {@code org.morris.unofficial.utils.ComprehendKeyPhraseService} is the {@link KeyPhraseService} of the deployed
+ * handlers. The client is resolved on first use, so a handler that never asks for key phrases never builds it.
+ */
+public class ComprehendKeyPhraseService implements KeyPhraseService {
+    private final Supplier<ComprehendClient> comprehendClient;
+
+    /**
+     * @param comprehendClient {@link Supplier} of the {@link ComprehendClient}, called on every request
+     */
+    public ComprehendKeyPhraseService(Supplier<ComprehendClient> comprehendClient) {
+        this.comprehendClient = comprehendClient;
+    }
+
+    public ComprehendKeyPhraseService(ComprehendClient comprehendClient) {
+        this(() -> comprehendClient);
+    }
+
+    @Override
+    public List<KeyPhrase> detectKeyPhrases(String text, String languageCode) {
+        DetectKeyPhrasesRequest detectKeyPhrasesRequest = DetectKeyPhrasesRequest.builder()
+                .text(text)
+                .languageCode(languageCode)
+                .build();
+        return comprehendClient.get().detectKeyPhrases(detectKeyPhrasesRequest).keyPhrases();
+    }
+
+    @Override
+    public BatchDetectDominantLanguageResponse batchDetectDominantLanguage(List<String> texts) {
+        BatchDetectDominantLanguageRequest request = BatchDetectDominantLanguageRequest.builder()
+                .textList(texts)
+                .build();
+        return comprehendClient.get().batchDetectDominantLanguage(request);
+    }
+}
@@ -0,0 +1,170 @@
+package org.morris.unofficial.utils;
+
+import org.morris.unofficial.models.MetroStop;
+import org.morris.unofficial.models.Schedule;
+import org.morris.unofficial.models.StopTimes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@code org.morris.unofficial.utils.DepartureQueryEngine} answers departure queries from processed
+ * {@link Schedule}s held in memory. Every stop's lines are indexed up front, sorted, with each line's departures
+ * at the stop merged into one ascending {@link StopTimes}. A query is a hash lookup of the stop, a binary search
+ * of its lines and a binary search of the line's departures, and allocates nothing: departures are written to an
+ * array the caller reuses and the lines of a stop are a prebuilt list.
+ * <p></p>
+ * The engine is immutable once built and safe to query from any number of threads. Times are minutes since the
+ * start of the service day, so an engine should be built from the schedules of one kind of service day, ex:
+ * the "Monday thru Friday" timetables.
+ *
+ * @see StopTimes
+ */
+public class DepartureQueryEngine {
+    final static public int NO_DEPARTURE = -1;
+
+    private final Map<String, StopIndex> stops;
+
+    private DepartureQueryEngine(Map<String, StopIndex> stops) {
+        this.stops = stops;
+    }
+
+    /**
+     * Indexes the departures of every stop of the given schedules by stop number and line.
+     *
+     * @param schedules {@link Collection} of {@link Schedule}s of one kind of service day
+     * @return {@link DepartureQueryEngine}
+     */
+    public static DepartureQueryEngine build(Collection<Schedule> schedules) {
+        Map<String, TreeMap<String, List<StopTimes>>> stopLines = new HashMap<>();
+        for (Schedule schedule : schedules) {
+            if (schedule.getRoute() == null || schedule.getSchedule() == null) {
+                continue;
+            }
+            for (MetroStop metroStop : schedule.getSchedule()) {
+                if (metroStop.getStopNumber() == null || metroStop.getStopTimes() == null) {
+                    continue;
+                }
+                stopLines.computeIfAbsent(metroStop.getStopNumber(), stop -> new TreeMap<>())
+                        .computeIfAbsent(schedule.getRoute(), line -> new ArrayList<>())
+                        .add(metroStop.getStopTimes());
+            }
+        }
+
+        Map<String, StopIndex> stops = new HashMap<>(stopLines.size() * 2);
+        stopLines.forEach((stop, lines) -> stops.put(stop, new StopIndex(lines)));
+        return new DepartureQueryEngine(stops);
+    }
+
+    /**
+     * Finds the next departures at a stop on a line, at or after the given time.
+     *
+     * @param stopNumber {@link String} stop number (ex: 60747)
+     * @param line {@link String} the line# name of the MetroLine (ex: 190)
+     * @param fromMinutes minutes since the start of the service day
+     * @param departures array the departures are written to, in minutes since the start of the service day. At
+     *                   most departures.length departures are found
+     * @return number of departures written, 0 if the stop isn't served by the line or it has no later departures
+     */
+    public int nextDepartures(String stopNumber, String line, int fromMinutes, int[] departures) {
+        StopTimes stopTimes = getStopTimes(stopNumber, line);
+        if (stopTimes == null) {
+            return 0;
+        }
+        int index = stopTimes.nextDepartureIndex(fromMinutes);
+        int count = Math.min(departures.length, stopTimes.size() - index);
+        for (int departure = 0; departure < count; departure++) {
+            departures[departure] = stopTimes.getMinutes(index + departure);
+        }
+        return count;
+    }
+
+    /**
+     * @param stopNumber {@link String} stop number (ex: 60747)
+     * @param line {@link String} the line# name of the MetroLine (ex: 190)
+     * @param fromMinutes minutes since the start of the service day
+     * @return minutes since the start of the service day of the next departure, or {@link #NO_DEPARTURE}
+     */
+    public int nextDeparture(String stopNumber, String line, int fromMinutes) {
+        StopTimes stopTimes = getStopTimes(stopNumber, line);
+        return stopTimes == null ? NO_DEPARTURE : stopTimes.nextDeparture(fromMinutes);
+    }
+
+    /**
+     * @param stopNumber {@link String} stop number (ex: 60747)
+     * @return {@link List} of the lines serving the stop, sorted, empty if the stop is unknown
+     */
+    public List<String> getLines(String stopNumber) {
+        StopIndex stopIndex = stops.get(stopNumber);
+        return stopIndex == null ? Collections.emptyList() : stopIndex.lineList;
+    }
+
+    public int getStopCount() {
+        return stops.size();
+    }
+
+    private StopTimes getStopTimes(String stopNumber, String line) {
+        StopIndex stopIndex = stops.get(stopNumber);
+        if (stopIndex == null) {
+            return null;
+        }
+        int index = Arrays.binarySearch(stopIndex.lines, line);
+        return index < 0 ? null : stopIndex.departures[index];
+    }
+
+    /**
+     * A stop's lines, sorted, and the departures of each line at the stop.
+     */
+    private static class StopIndex {
+        private final String[] lines;
+        private final StopTimes[] departures;
+        private final List<String> lineList;
+
+        StopIndex(TreeMap<String, List<StopTimes>> stopLines) {
+            this.lines = stopLines.keySet().toArray(new String[0]);
+            this.departures = new StopTimes[lines.length];
+            for (int index = 0; index < lines.length; index++) {
+                departures[index] = merge(stopLines.get(lines[index]));
+            }
+            this.lineList = Collections.unmodifiableList(Arrays.asList(lines));
+        }
+
+        /**
+         * A line can reach a stop in more than one timetable, ex: both directions at a terminus. The merged times
+         * are sorted, as a binary search needs them ascending.
+         */
+        private static StopTimes merge(List<StopTimes> stopTimesList) {
+            if (stopTimesList.size() == 1 && isAscending(stopTimesList.get(0))) {
+                return stopTimesList.get(0);
+            }
+            int size = 0;
+            for (StopTimes stopTimes : stopTimesList) {
+                size += stopTimes.size();
+            }
+            int[] minutes = new int[size];
+            int position = 0;
+            for (StopTimes stopTimes : stopTimesList) {
+                for (int index = 0; index < stopTimes.size(); index++) {
+                    minutes[position++] = stopTimes.getMinutes(index);
+                }
+            }
+            Arrays.sort(minutes);
+            return StopTimes.of(minutes);
+        }
+
+        private static boolean isAscending(StopTimes stopTimes) {
+            for (int index = 1; index < stopTimes.size(); index++) {
+                if (stopTimes.getMinutes(index) < stopTimes.getMinutes(index - 1)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
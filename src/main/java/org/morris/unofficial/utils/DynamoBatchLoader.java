@@ -0,0 +1,389 @@
+package org.morris.unofficial.utils;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code org.morris.unofficial.utils.DynamoBatchLoader} loads items into a DynamoDB table in batches of 25, with
+ * several batches in flight at once. Items are handed over one at a time as they are read and are only buffered
+ * until their batch is sent, and a caller handing over items faster than they can be written waits for a batch to
+ * finish.
+ * <p></p>
+ * Every item carries a numeric {@link #VERSION} and writes are idempotent by it: an item is only written when the
+ * table holds no item with its key or holds an older version. Each batch first reads the stored versions of its
+ * keys with one BatchGetItem and drops the items that are already loaded, then writes each remaining item with a
+ * PutItem conditioned on the stored version, so a newer item written between the read and the write is never
+ * overwritten. Loading the same document twice writes nothing the second time, and an older document never
+ * overwrites a newer one.
+ * <p></p>
+ * An item may also carry a {@link #FINGERPRINT} of its content. A newer version of an item whose fingerprint
+ * matches the stored one is skipped too, so a reloaded document only writes the items that actually changed and
+ * the per item writes stay few.
+ * <p></p>
+ * Unprocessed keys and throttled writes are retried with exponential backoff and full jitter. Items are handed
+ * over from a single thread, the batches are written from the loader's own threads.
+ */
+public class DynamoBatchLoader implements AutoCloseable {
+    final static public String PARTITION_KEY = "pk";
+    final static public String SORT_KEY = "sk";
+    final static public String VERSION = "version";
+    final static public String FINGERPRINT = "fingerprint";
+
+    // items whose stored versions are read with one BatchGetItem
+    final static public int MAX_BATCH_SIZE = 25;
+
+    final static private int MAX_ATTEMPTS = 8;
+    final static private long BASE_BACKOFF_MILLIS = 50;
+    final static private long MAX_BACKOFF_MILLIS = 5000;
+    final static private String KEY_SEPARATOR = "\u0000";
+    final static private String VERSION_NAME = "#" + VERSION;
+    final static private String VERSION_VALUE = ":" + VERSION;
+    final static private String NEWER_VERSION_CONDITION = "attribute_not_exists(" + VERSION_NAME + ") OR "
+            + VERSION_NAME + " < " + VERSION_VALUE;
+
+    private final AmazonDynamoDB dynamoDBClient;
+    private final String tableName;
+    private final ExecutorService executor;
+    private final Semaphore inFlightBatches;
+    private final int concurrency;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private volatile String lastFailure;
+
+    // items of the batch being filled, by key, so an item handed over twice is only written once
+    private Map<String, Map<String, AttributeValue>> batch = new LinkedHashMap<>();
+
+    /**
+     * @param dynamoDBClient {@link AmazonDynamoDB} client
+     * @param tableName {@link String} table with a string {@link #PARTITION_KEY} and {@link #SORT_KEY}
+     * @param concurrency number of batches written at the same time
+     */
+    public DynamoBatchLoader(AmazonDynamoDB dynamoDBClient, String tableName, int concurrency) {
+        this.dynamoDBClient = dynamoDBClient;
+        this.tableName = tableName;
+        this.concurrency = Math.max(1, concurrency);
+        this.inFlightBatches = new Semaphore(this.concurrency);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "dynamodb-loader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Adds an item to the current batch, sending the batch once it is full.
+     *
+     * @param item {@link Map} of the item's attributes, including its keys and {@link #VERSION}
+     * @throws InterruptedException if interrupted while waiting for a batch to finish
+     */
+    public void put(Map<String, AttributeValue> item) throws InterruptedException {
+        if (!item.containsKey(PARTITION_KEY) || !item.containsKey(SORT_KEY) || !item.containsKey(VERSION)) {
+            throw new IllegalArgumentException("item is missing its keys or version: " + item);
+        }
+        batch.put(getKey(item), item);
+        if (batch.size() == MAX_BATCH_SIZE) {
+            send();
+        }
+    }
+
+    /**
+     * Sends the current batch, even if it isn't full, and waits for every batch to finish.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void flush() throws InterruptedException {
+        if (!batch.isEmpty()) {
+            send();
+        }
+        inFlightBatches.acquire(concurrency);
+        inFlightBatches.release(concurrency);
+    }
+
+    /**
+     * Deletes the items of a partition whose sort key starts with the prefix and isn't kept, when they are older
+     * than the given version, such as the timetables a newer schedule document no longer has. Each delete is
+     * conditioned on the stored version, so an item a newer document wrote is never deleted by an older one. An
+     * item a newer document skipped for its matching {@link #FINGERPRINT} keeps its older version.
+     *
+     * @param partitionKey {@link String} partition of the items
+     * @param sortKeyPrefix {@link String} prefix of the sort keys of the items, empty for every item
+     * @param keptSortKeys {@link Set} of the sort keys that are not deleted
+     * @param version version of the document the kept items were loaded from
+     * @return number of items deleted
+     */
+    public long deleteOlderItems(String partitionKey, String sortKeyPrefix, Set<String> keptSortKeys, long version) {
+        Map<String, String> attributeNames = new HashMap<>();
+        attributeNames.put("#" + PARTITION_KEY, PARTITION_KEY);
+        attributeNames.put("#" + SORT_KEY, SORT_KEY);
+        attributeNames.put(VERSION_NAME, VERSION);
+        Map<String, AttributeValue> attributeValues = new HashMap<>();
+        attributeValues.put(":" + PARTITION_KEY, new AttributeValue(partitionKey));
+        String keyCondition = "#" + PARTITION_KEY + " = :" + PARTITION_KEY;
+
+        // begins_with can't take an empty prefix, every sort key starts with one anyway
+        if (!sortKeyPrefix.isEmpty()) {
+            attributeValues.put(":" + SORT_KEY, new AttributeValue(sortKeyPrefix));
+            keyCondition += " AND begins_with(#" + SORT_KEY + ", :" + SORT_KEY + ")";
+        }
+        QueryRequest queryRequest = new QueryRequest()
+                .withTableName(tableName)
+                .withKeyConditionExpression(keyCondition)
+                .withProjectionExpression("#" + PARTITION_KEY + ", #" + SORT_KEY + ", " + VERSION_NAME)
+                .withExpressionAttributeNames(attributeNames)
+                .withExpressionAttributeValues(attributeValues)
+                .withConsistentRead(true);
+
+        long deletedItems = 0;
+        do {
+            QueryResult result = dynamoDBClient.query(queryRequest);
+            for (Map<String, AttributeValue> storedItem : result.getItems()) {
+                if (keptSortKeys.contains(storedItem.get(SORT_KEY).getS())
+                        || (storedItem.containsKey(VERSION) && getVersion(storedItem) >= version)) {
+                    continue;
+                }
+                Map<String, AttributeValue> key = new HashMap<>();
+                key.put(PARTITION_KEY, storedItem.get(PARTITION_KEY));
+                key.put(SORT_KEY, storedItem.get(SORT_KEY));
+                try {
+                    dynamoDBClient.deleteItem(new DeleteItemRequest()
+                            .withTableName(tableName)
+                            .withKey(key)
+                            .withConditionExpression(NEWER_VERSION_CONDITION)
+                            .withExpressionAttributeNames(Collections.singletonMap(VERSION_NAME, VERSION))
+                            .withExpressionAttributeValues(Collections.singletonMap(VERSION_VALUE,
+                                    new AttributeValue().withN(Long.toString(version)))));
+                    deletedItems++;
+                } catch (ConditionalCheckFailedException e) {
+                    // a newer document wrote the item since it was read
+                }
+            }
+            queryRequest.setExclusiveStartKey(result.getLastEvaluatedKey());
+        } while (queryRequest.getExclusiveStartKey() != null && !queryRequest.getExclusiveStartKey().isEmpty());
+        deleted.addAndGet(deletedItems);
+        return deletedItems;
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    public long getDeleted() {
+        return deleted.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * @return {@link String} the last error a batch failed with, or null if none have
+     */
+    public String getLastFailure() {
+        return lastFailure;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("batches: %d, written: %d, skipped: %d, deleted: %d, failed: %d, retries: %d",
+                batches.get(), written.get(), skipped.get(), deleted.get(), failed.get(), retries.get());
+    }
+
+    /**
+     * Stops the loader's threads. Items not yet flushed are dropped.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void send() throws InterruptedException {
+        List<Map<String, AttributeValue>> items = new ArrayList<>(batch.values());
+        batch = new LinkedHashMap<>();
+        inFlightBatches.acquire();
+        try {
+            executor.execute(() -> {
+                try {
+                    write(items);
+                } catch (RuntimeException e) {
+                    failed.addAndGet(items.size());
+                    lastFailure = e.toString();
+                } finally {
+                    inFlightBatches.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlightBatches.release();
+            throw e;
+        }
+    }
+
+    private void write(List<Map<String, AttributeValue>> items) {
+        batches.incrementAndGet();
+        Map<String, Map<String, AttributeValue>> storedItems = getStoredItems(items);
+        for (Map<String, AttributeValue> item : items) {
+            if (isLoaded(item, storedItems.get(getKey(item)))) {
+                skipped.incrementAndGet();
+            } else {
+                putNewerItem(item);
+            }
+        }
+    }
+
+    /**
+     * Writes the item unless the table holds the same or a newer version of it by now.
+     */
+    private void putNewerItem(Map<String, AttributeValue> item) {
+        PutItemRequest putItemRequest = new PutItemRequest()
+                .withTableName(tableName)
+                .withItem(item)
+                .withConditionExpression(NEWER_VERSION_CONDITION)
+                .withExpressionAttributeNames(Collections.singletonMap(VERSION_NAME, VERSION))
+                .withExpressionAttributeValues(Collections.singletonMap(VERSION_VALUE, item.get(VERSION)));
+        for (int attempt = 1; ; attempt++) {
+            try {
+                dynamoDBClient.putItem(putItemRequest);
+                written.incrementAndGet();
+                return;
+            } catch (ConditionalCheckFailedException e) {
+                skipped.incrementAndGet();
+                return;
+            } catch (ProvisionedThroughputExceededException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    failed.incrementAndGet();
+                    lastFailure = String.format("item %s still throttled after %d attempts", getKey(item), attempt);
+                    return;
+                }
+                retries.incrementAndGet();
+                backoff(attempt);
+            } catch (AmazonClientException e) {
+                failed.incrementAndGet();
+                lastFailure = e.toString();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return true if the stored item is the same or a newer version of the item, or holds the same content
+     */
+    private static boolean isLoaded(Map<String, AttributeValue> item, Map<String, AttributeValue> storedItem) {
+        if (storedItem == null || !storedItem.containsKey(VERSION)) {
+            return false;
+        }
+        if (getVersion(storedItem) >= getVersion(item)) {
+            return true;
+        }
+        AttributeValue fingerprint = item.get(FINGERPRINT);
+        return fingerprint != null && fingerprint.equals(storedItem.get(FINGERPRINT));
+    }
+
+    /**
+     * Reads the stored version and fingerprint of every item in the batch that is already in the table.
+     */
+    private Map<String, Map<String, AttributeValue>> getStoredItems(List<Map<String, AttributeValue>> items) {
+        List<Map<String, AttributeValue>> keys = new ArrayList<>(items.size());
+        for (Map<String, AttributeValue> item : items) {
+            Map<String, AttributeValue> key = new HashMap<>();
+            key.put(PARTITION_KEY, item.get(PARTITION_KEY));
+            key.put(SORT_KEY, item.get(SORT_KEY));
+            keys.add(key);
+        }
+        Map<String, String> attributeNames = new HashMap<>();
+        attributeNames.put("#" + PARTITION_KEY, PARTITION_KEY);
+        attributeNames.put("#" + SORT_KEY, SORT_KEY);
+        attributeNames.put("#" + VERSION, VERSION);
+        attributeNames.put("#" + FINGERPRINT, FINGERPRINT);
+        KeysAndAttributes keysAndAttributes = new KeysAndAttributes()
+                .withKeys(keys)
+                .withProjectionExpression("#" + PARTITION_KEY + ", #" + SORT_KEY + ", #" + VERSION + ", #" + FINGERPRINT)
+                .withExpressionAttributeNames(attributeNames)
+                .withConsistentRead(true);
+
+        Map<String, Map<String, AttributeValue>> loadedItems = new HashMap<>();
+        Map<String, KeysAndAttributes> requestItems = Collections.singletonMap(tableName, keysAndAttributes);
+        for (int attempt = 1; ; attempt++) {
+            BatchGetItemResult result = dynamoDBClient.batchGetItem(new BatchGetItemRequest()
+                    .withRequestItems(requestItems));
+            List<Map<String, AttributeValue>> storedItems = result.getResponses() == null
+                    ? Collections.emptyList()
+                    : result.getResponses().getOrDefault(tableName, Collections.emptyList());
+            for (Map<String, AttributeValue> storedItem : storedItems) {
+                loadedItems.put(getKey(storedItem), storedItem);
+            }
+
+            KeysAndAttributes unprocessed = result.getUnprocessedKeys() == null
+                    ? null
+                    : result.getUnprocessedKeys().get(tableName);
+            if (unprocessed == null || unprocessed.getKeys() == null || unprocessed.getKeys().isEmpty()) {
+                return loadedItems;
+            }
+            if (attempt >= MAX_ATTEMPTS) {
+                throw new IllegalStateException("unable to read stored versions of " + unprocessed.getKeys().size()
+                        + " items from table: " + tableName);
+            }
+            retries.incrementAndGet();
+            backoff(attempt);
+            requestItems = Collections.singletonMap(tableName, unprocessed);
+        }
+    }
+
+    private static String getKey(Map<String, AttributeValue> item) {
+        return item.get(PARTITION_KEY).getS() + KEY_SEPARATOR + item.get(SORT_KEY).getS();
+    }
+
+    private static long getVersion(Map<String, AttributeValue> item) {
+        return Long.parseLong(item.get(VERSION).getN());
+    }
+
+    private void backoff(int attempt) {
+        long backoffMillis = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << (attempt - 1));
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(backoffMillis + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while retrying a batch", e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.morris.unofficial.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@code org.morris.unofficial.utils.FallbackScheduleTextExtractor} extracts a schedule with a fast primary
+ * extractor and only falls back to a slower one, such as Textract, when the primary fails or its text does not
+ * pass a quality check. A schedule pdf made of scanned images, for example, has little or no text for PDFBox to
+ * strip. The primary's pages are held until the check passes, which is small for a timetable, and the fallback's
+ * pages are streamed straight through.
+ *
+ * @see #hasScheduleTimes(int)
+ */
+public class FallbackScheduleTextExtractor implements ScheduleTextExtractor {
+    final static private Pattern SCHEDULE_TIME_PATTERN = Pattern.compile("\\b\\d{1,2}:\\d{2}\\b");
+
+    private final ScheduleTextExtractor primary;
+    private final ScheduleTextExtractor fallback;
+    private final Predicate<String> qualityCheck;
+    private final AtomicLong primaryExtractions = new AtomicLong();
+    private final AtomicLong fallbackExtractions = new AtomicLong();
+
+    /**
+     * @param primary {@link ScheduleTextExtractor} tried first
+     * @param fallback {@link ScheduleTextExtractor} used when the primary fails or its text is rejected
+     * @param qualityCheck {@link Predicate} accepting the primary's full text
+     */
+    public FallbackScheduleTextExtractor(ScheduleTextExtractor primary, ScheduleTextExtractor fallback,
+                                         Predicate<String> qualityCheck) {
+        this.primary = primary;
+        this.fallback = fallback;
+        this.qualityCheck = qualityCheck;
+    }
+
+    /**
+     * A quality check that accepts text containing at least the given number of schedule times (ex: 5:52).
+     *
+     * @param minimumTimes minimum number of times the text must contain
+     * @return {@link Predicate} quality check
+     */
+    public static Predicate<String> hasScheduleTimes(int minimumTimes) {
+        return text -> {
+            Matcher matcher = SCHEDULE_TIME_PATTERN.matcher(text);
+            int times = 0;
+            while (times < minimumTimes && matcher.find()) {
+                times++;
+            }
+            return times >= minimumTimes;
+        };
+    }
+
+    @Override
+    public int extract(SchedulePdf schedulePdf, PageConsumer consumer) throws IOException, InterruptedException {
+        List<String> pages = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        try {
+            primary.extract(schedulePdf, (page, pageText) -> {
+                pages.add(pageText);
+                text.append(pageText);
+            });
+        } catch (IOException e) {
+            pages.clear();
+        }
+
+        if (!pages.isEmpty() && qualityCheck.test(text.toString())) {
+            primaryExtractions.incrementAndGet();
+            for (int page = 1; page <= pages.size(); page++) {
+                consumer.accept(page, pages.get(page - 1));
+            }
+            return pages.size();
+        }
+
+        fallbackExtractions.incrementAndGet();
+        return fallback.extract(schedulePdf, consumer);
+    }
+
+    public long getPrimaryExtractions() {
+        return primaryExtractions.get();
+    }
+
+    public long getFallbackExtractions() {
+        return fallbackExtractions.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d, %s: %d", primary.getName(), primaryExtractions.get(), fallback.getName(),
+                fallbackExtractions.get());
+    }
+}
@@ -0,0 +1,247 @@
+package org.morris.unofficial.utils;
+
+import org.morris.unofficial.models.HttpValidators;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * {@code org.morris.unofficial.utils.HttpFetcher} is the one place the SEA metro site is fetched from: the
+ * schedules and maps page, each line's schedule page and each line's schedule pdf. Every request has connect
+ * and read timeouts, asks for a gzip encoded body, and is sent conditionally when the validators of the last
+ * fetch of the url are known. An unchanged resource costs a 304 and no body.
+ * <p></p>
+ * Bodies are read to the end and closed, so the JDK keeps the connection alive and the next request to the same
+ * host reuses it. Only a body abandoned part way by {@link #fetchUntil} disconnects, a connection is cheaper to
+ * open again than the rest of a large page is to download. A single fetcher is shared by every line and is safe
+ * to use from several threads.
+ *
+ * @see HttpValidators
+ */
+public class HttpFetcher {
+    final static public String ETAG = "ETag";
+    final static public String LAST_MODIFIED = "Last-Modified";
+    final static private String IF_NONE_MATCH = "If-None-Match";
+    final static private String IF_MODIFIED_SINCE = "If-Modified-Since";
+    final static private String ACCEPT_ENCODING = "Accept-Encoding";
+    final static private String CONTENT_ENCODING = "Content-Encoding";
+    final static private String USER_AGENT = "User-Agent";
+    final static private String GZIP = "gzip";
+    final static private String USER_AGENT_NAME = "unofficial-seattle-metro-api";
+    final static private int BUFFER_SIZE = 8192;
+
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong abandoned = new AtomicLong();
+
+    /**
+     * Consumes the body of a fetched resource. The stream is already decoded and is closed by the fetcher.
+     */
+    @FunctionalInterface
+    public interface BodyConsumer {
+        void accept(InputStream body) throws IOException;
+    }
+
+    /**
+     * Consumes the part of a fetched resource's body it needs. The stream is already decoded and is closed by the
+     * fetcher.
+     */
+    @FunctionalInterface
+    public interface PartialBodyConsumer {
+
+        /**
+         * @param body {@link InputStream} of the resource's body
+         * @return true if the consumer has all it needs and the rest of the body is abandoned, false to read it
+         * to the end and keep the connection
+         * @throws IOException if reading the body fails
+         */
+        boolean accept(InputStream body) throws IOException;
+    }
+
+    public HttpFetcher(int connectTimeoutMillis, int readTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * Fetches a url, sending the given validators so that an unchanged resource is answered with a 304. The body
+     * of a changed resource is handed to the consumer, the consumer isn't called for an unchanged one.
+     *
+     * @param url {@link String} url to fetch
+     * @param validators {@link HttpValidators} of the last fetch of the url, or null to fetch unconditionally
+     * @param bodyConsumer {@link BodyConsumer} of the resource's body
+     * @return {@link FetchResult} of the fetch
+     * @throws IOException if the request fails or the server answers with anything but a 2xx or 304
+     */
+    public FetchResult fetch(String url, HttpValidators validators, BodyConsumer bodyConsumer) throws IOException {
+        return fetchUntil(url, validators, body -> {
+            bodyConsumer.accept(body);
+            return false;
+        });
+    }
+
+    /**
+     * Fetches a url like {@link #fetch}, but the consumer may stop reading part way through the body. The rest
+     * of an abandoned body is never transferred, its connection is closed instead of being drained.
+     *
+     * @param url {@link String} url to fetch
+     * @param validators {@link HttpValidators} of the last fetch of the url, or null to fetch unconditionally
+     * @param bodyConsumer {@link PartialBodyConsumer} of the resource's body
+     * @return {@link FetchResult} of the fetch
+     * @throws IOException if the request fails or the server answers with anything but a 2xx or 304
+     *
+     * @see MarkerScanner
+     */
+    public FetchResult fetchUntil(String url, HttpValidators validators, PartialBodyConsumer bodyConsumer)
+            throws IOException {
+        requests.incrementAndGet();
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(ProcessEventUtils.GET_REQUEST);
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        connection.setRequestProperty(ACCEPT_ENCODING, GZIP);
+        connection.setRequestProperty(USER_AGENT, USER_AGENT_NAME);
+        if (validators != null) {
+            if (validators.getEtag() != null) {
+                connection.setRequestProperty(IF_NONE_MATCH, validators.getEtag());
+            }
+            if (validators.getLastModified() != null) {
+                connection.setRequestProperty(IF_MODIFIED_SINCE, validators.getLastModified());
+            }
+        }
+
+        int status = connection.getResponseCode();
+        if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            notModified.incrementAndGet();
+            drain(connection.getErrorStream());
+
+            // a 304 may carry fresh validators, the ones sent are still good otherwise
+            HttpValidators responseValidators = getValidators(connection);
+            return new FetchResult(status, responseValidators.isEmpty() ? validators : responseValidators);
+        }
+        if (status < HttpURLConnection.HTTP_OK || status >= HttpURLConnection.HTTP_MULT_CHOICE) {
+            drain(connection.getErrorStream());
+            throw new IOException(String.format("unexpected status %d fetching: %s", status, url));
+        }
+
+        HttpValidators responseValidators = getValidators(connection);
+        try (CountingInputStream countingStream = new CountingInputStream(connection.getInputStream());
+             InputStream body = GZIP.equalsIgnoreCase(connection.getHeaderField(CONTENT_ENCODING))
+                     ? new GZIPInputStream(countingStream, BUFFER_SIZE)
+                     : countingStream) {
+            if (bodyConsumer.accept(body)) {
+                abandoned.incrementAndGet();
+                connection.disconnect();
+            } else {
+
+                // whatever the consumer left unread is read so the connection can be reused
+                drain(body);
+            }
+            bytes.addAndGet(countingStream.count);
+        }
+        return new FetchResult(status, responseValidators);
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getAbandoned() {
+        return abandoned.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("requests: %d, not modified: %d, abandoned: %d, bytes transferred: %d", requests.get(),
+                notModified.get(), abandoned.get(), bytes.get());
+    }
+
+    private static HttpValidators getValidators(HttpURLConnection connection) {
+        return new HttpValidators(connection.getHeaderField(ETAG), connection.getHeaderField(LAST_MODIFIED));
+    }
+
+    private static void drain(InputStream inputStream) throws IOException {
+        if (inputStream == null) {
+            return;
+        }
+        try (InputStream in = inputStream) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (in.read(buffer) != -1) {
+                // discarded
+            }
+        }
+    }
+
+    /**
+     * The outcome of a fetch: its status and the validators to send with the next fetch of the url.
+     */
+    public static class FetchResult {
+        private final int status;
+        private final HttpValidators validators;
+
+        FetchResult(int status, HttpValidators validators) {
+            this.status = status;
+            this.validators = validators;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public HttpValidators getValidators() {
+            return validators;
+        }
+
+        /**
+         * @return true if the server answered with a 304, the resource is the one last fetched
+         */
+        public boolean isNotModified() {
+            return status == HttpURLConnection.HTTP_NOT_MODIFIED;
+        }
+    }
+
+    /**
+     * Counts the bytes read off the wire, before any gzip decoding.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int length = super.read(b, off, len);
+            if (length > 0) {
+                count += length;
+            }
+            return length;
+        }
+    }
+}
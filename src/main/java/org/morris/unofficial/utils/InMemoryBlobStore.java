@@ -0,0 +1,126 @@
+package org.morris.unofficial.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * {@code org.morris.unofficial.utils.InMemoryBlobStore} keeps every object on the heap, for running the handlers
+ * offline and for tests. Objects are sorted by bucket and key, so listing a prefix is a range of the map. Every
+ * request pauses for its {@link SimulatedLatency}, transfers for the bytes they move.
+ */
+public class InMemoryBlobStore implements BlobStore {
+    final static private char BUCKET_SEPARATOR = '/';
+
+    private final SimulatedLatency latency;
+    private final LongSupplier clock;
+    private final ConcurrentNavigableMap<String, StoredBlob> blobs = new ConcurrentSkipListMap<>();
+    private final AtomicLong gets = new AtomicLong();
+    private final AtomicLong puts = new AtomicLong();
+    private final AtomicLong lists = new AtomicLong();
+
+    /**
+     * @param latency {@link SimulatedLatency} of every request
+     * @param clock {@link LongSupplier} of the current time in epoch milliseconds, objects are last modified at
+     */
+    public InMemoryBlobStore(SimulatedLatency latency, LongSupplier clock) {
+        this.latency = latency;
+        this.clock = clock;
+    }
+
+    public InMemoryBlobStore(SimulatedLatency latency) {
+        this(latency, System::currentTimeMillis);
+    }
+
+    public InMemoryBlobStore() {
+        this(SimulatedLatency.none());
+    }
+
+    @Override
+    public BlobMetadata getMetadata(String bucket, String key) {
+        latency.pause();
+        StoredBlob blob = blobs.get(getPath(bucket, key));
+        return blob == null ? null : blob.metadata;
+    }
+
+    @Override
+    public InputStream getContent(String bucket, String key) {
+        gets.incrementAndGet();
+        StoredBlob blob = blobs.get(getPath(bucket, key));
+        latency.pause(blob == null ? 0 : blob.content.length);
+        return blob == null ? null : new ByteArrayInputStream(blob.content);
+    }
+
+    @Override
+    public void put(String bucket, String key, byte[] content, String contentType, Map<String, String> userMetadata) {
+        puts.incrementAndGet();
+        latency.pause(content.length);
+        BlobMetadata metadata = new BlobMetadata(key, content.length, new Date(clock.getAsLong()), contentType,
+                new HashMap<>(userMetadata));
+        blobs.put(getPath(bucket, key), new StoredBlob(content.clone(), metadata));
+    }
+
+    @Override
+    public void put(String bucket, String key, Path file, String contentType, Map<String, String> userMetadata)
+            throws IOException {
+        put(bucket, key, Files.readAllBytes(file), contentType, userMetadata);
+    }
+
+    @Override
+    public List<BlobMetadata> list(String bucket, String prefix, int maxKeys) {
+        lists.incrementAndGet();
+        latency.pause();
+        String from = getPath(bucket, prefix);
+        List<BlobMetadata> listed = new ArrayList<>();
+        for (Map.Entry<String, StoredBlob> entry : blobs.tailMap(from).entrySet()) {
+            if (!entry.getKey().startsWith(from) || (maxKeys > 0 && listed.size() >= maxKeys)) {
+                break;
+            }
+            listed.add(entry.getValue().metadata);
+        }
+        return listed;
+    }
+
+    public long getGets() {
+        return gets.get();
+    }
+
+    public long getPuts() {
+        return puts.get();
+    }
+
+    public long getLists() {
+        return lists.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("objects: %d, gets: %d, puts: %d, lists: %d, latency: %s", blobs.size(), gets.get(),
+                puts.get(), lists.get(), latency);
+    }
+
+    private String getPath(String bucket, String key) {
+        return bucket + BUCKET_SEPARATOR + key;
+    }
+
+    private static class StoredBlob {
+        private final byte[] content;
+        private final BlobMetadata metadata;
+
+        StoredBlob(byte[] content, BlobMetadata metadata) {
+            this.content = content;
+            this.metadata = metadata;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.morris.unofficial.utils;
+
+import software.amazon.awssdk.services.comprehend.model.BatchDetectDominantLanguageItemResult;
+import software.amazon.awssdk.services.comprehend.model.BatchDetectDominantLanguageResponse;
+import software.amazon.awssdk.services.comprehend.model.DominantLanguage;
+import software.amazon.awssdk.services.comprehend.model.KeyPhrase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@code org.morris.unofficial.utils.InMemoryKeyPhraseService} is a {@link KeyPhraseService} for running the
+ * handlers offline and for tests. It finds the only key phrases the schedule pipeline keeps, stop numbers and
+ * stop times (ex: #60747, 5:25, 12:06pm), and takes a phrase to be Spanish when it contains a common Spanish word
+ * of the metro schedules, English otherwise. Every request pauses for its {@link SimulatedLatency}, over the bytes
+ * of the text.
+ */
+public class InMemoryKeyPhraseService implements KeyPhraseService {
+    final static private String ENGLISH_LANGUAGE_CODE = "en";
+    final static private String SPANISH_LANGUAGE_CODE = "es";
+    final static private float SCORE = 1.0f;
+    final static private Pattern KEY_PHRASE_PATTERN = Pattern.compile("#\\d+|\\b\\d{1,2}:\\d{2}\\S*");
+    final static private Pattern SPANISH_WORD_PATTERN = Pattern.compile(
+            "\\b(de|del|la|las|los|el|y|servicio|lunes|martes|viernes|s\u00e1bado|domingo|parada|hacia|horario)\\b");
+
+    private final SimulatedLatency latency;
+    private final AtomicLong requests = new AtomicLong();
+
+    public InMemoryKeyPhraseService(SimulatedLatency latency) {
+        this.latency = latency;
+    }
+
+    @Override
+    public List<KeyPhrase> detectKeyPhrases(String text, String languageCode) {
+        requests.incrementAndGet();
+        latency.pause(text.length());
+        List<KeyPhrase> keyPhrases = new ArrayList<>();
+        Matcher matcher = KEY_PHRASE_PATTERN.matcher(text);
+        while (matcher.find()) {
+            keyPhrases.add(KeyPhrase.builder()
+                    .text(matcher.group())
+                    .score(SCORE)
+                    .beginOffset(matcher.start())
+                    .endOffset(matcher.end())
+                    .build());
+        }
+        return keyPhrases;
+    }
+
+    @Override
+    public BatchDetectDominantLanguageResponse batchDetectDominantLanguage(List<String> texts) {
+        requests.incrementAndGet();
+        long length = 0;
+        List<BatchDetectDominantLanguageItemResult> results = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            length += text.length();
+            String languageCode = SPANISH_WORD_PATTERN.matcher(text.toLowerCase(Locale.ROOT)).find()
+                    ? SPANISH_LANGUAGE_CODE
+                    : ENGLISH_LANGUAGE_CODE;
+            results.add(BatchDetectDominantLanguageItemResult.builder()
+                    .index(i)
+                    .languages(DominantLanguage.builder().languageCode(languageCode).score(SCORE).build())
+                    .build());
+        }
+        latency.pause(length);
+        return BatchDetectDominantLanguageResponse.builder()
+                .resultList(results)
+                .errorList(Collections.emptyList())
+                .build();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("requests: %d, latency: %s", requests.get(), latency);
+    }
+}
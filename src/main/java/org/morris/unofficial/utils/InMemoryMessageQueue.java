@@ -0,0 +1,161 @@
+package org.morris.unofficial.utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@code org.morris.unofficial.utils.InMemoryMessageQueue} is a {@link MessageQueue} on the heap, for running the
+ * handlers offline and for tests. It behaves like a standard SQS queue: a received message is hidden until its
+ * visibility timeout passes, is received again if it isn't deleted by then, and each receive hands out a new
+ * receipt handle so a stale receipt deletes nothing. Receivers long poll and are woken as soon as a message is
+ * sent. Every request pauses for its {@link SimulatedLatency}.
+ */
+public class InMemoryMessageQueue implements MessageQueue {
+    private final SimulatedLatency latency;
+    private final long visibilityTimeoutMillis;
+    private final LinkedList<QueuedMessage> messages = new LinkedList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition messagesVisible = lock.newCondition();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+
+    /**
+     * @param latency {@link SimulatedLatency} of every request
+     * @param visibilityTimeoutMillis time a received message is hidden from other receivers
+     */
+    public InMemoryMessageQueue(SimulatedLatency latency, long visibilityTimeoutMillis) {
+        this.latency = latency;
+        this.visibilityTimeoutMillis = visibilityTimeoutMillis;
+    }
+
+    @Override
+    public void send(String body) {
+        latency.pause(body.length());
+        lock.lock();
+        try {
+            messages.add(new QueuedMessage(UUID.randomUUID().toString(), body));
+            sent.incrementAndGet();
+            messagesVisible.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<QueueMessage> receive(int maxMessages, int waitTimeSeconds) throws InterruptedException {
+        latency.pause();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(waitTimeSeconds);
+        lock.lock();
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                List<QueueMessage> visible = new ArrayList<>();
+                long nextVisibleNanos = Long.MAX_VALUE;
+                for (QueuedMessage message : messages) {
+                    if (visible.size() >= maxMessages) {
+                        break;
+                    }
+                    if (message.invisibleUntilNanos - now <= 0) {
+                        message.receiptHandle = UUID.randomUUID().toString();
+                        message.invisibleUntilNanos = now + TimeUnit.MILLISECONDS.toNanos(visibilityTimeoutMillis);
+                        visible.add(new QueueMessage(message.messageId, message.receiptHandle, message.body));
+                    } else {
+                        nextVisibleNanos = Math.min(nextVisibleNanos, message.invisibleUntilNanos - now);
+                    }
+                }
+                long remainingNanos = deadline - now;
+                if (!visible.isEmpty() || remainingNanos <= 0) {
+                    received.addAndGet(visible.size());
+                    return visible;
+                }
+
+                // sleep until a message is sent, a hidden message becomes visible again, or the wait is over
+                messagesVisible.awaitNanos(Math.min(remainingNanos, nextVisibleNanos));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(List<QueueMessage> deletedMessages) {
+        latency.pause();
+        lock.lock();
+        try {
+            for (QueueMessage deletedMessage : deletedMessages) {
+                Iterator<QueuedMessage> iterator = messages.iterator();
+                while (iterator.hasNext()) {
+                    if (iterator.next().isReceipt(deletedMessage.getReceiptHandle())) {
+                        iterator.remove();
+                        deleted.incrementAndGet();
+                        break;
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void release(List<QueueMessage> releasedMessages) {
+        latency.pause();
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            for (QueueMessage releasedMessage : releasedMessages) {
+                for (QueuedMessage message : messages) {
+                    if (message.isReceipt(releasedMessage.getReceiptHandle())) {
+                        message.invisibleUntilNanos = now;
+                        break;
+                    }
+                }
+            }
+            messagesVisible.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of messages in the queue, received or not
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return messages.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("queued: %d, sent: %d, received: %d, deleted: %d, latency: %s", size(), sent.get(),
+                received.get(), deleted.get(), latency);
+    }
+
+    private static class QueuedMessage {
+        private final String messageId;
+        private final String body;
+        private String receiptHandle;
+        private long invisibleUntilNanos = System.nanoTime();
+
+        QueuedMessage(String messageId, String body) {
+            this.messageId = messageId;
+            this.body = body;
+        }
+
+        boolean isReceipt(String receipt) {
+            return receiptHandle != null && receiptHandle.equals(receipt);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package org.morris.unofficial.utils;
+
+import com.amazonaws.services.textract.model.Block;
+import com.amazonaws.services.textract.model.GetDocumentTextDetectionResult;
+import com.amazonaws.services.textract.model.InvalidJobIdException;
+import org.morris.unofficial.utils.ScheduleTextExtractor.SchedulePdf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code org.morris.unofficial.utils.InMemoryTextDetectionService} is a {@link TextDetectionService} for running the
+ * handlers offline and for tests. A detection reads the document from a {@link BlobStore} in the background,
+ * extracts its text with a local {@link ScheduleTextExtractor}, such as PDFBox, and keeps each line of text as a
+ * LINE block. Its {@link TextractJobNotification} is then sent to the completion {@link MessageQueue}, the way
+ * Textract's notification reaches the metro queue through SNS, so the rest of the pipeline runs unchanged.
+ * <p></p>
+ * A detection pauses for its {@link SimulatedLatency} over the document's bytes, and every request pauses for its
+ * round trip.
+ */
+public class InMemoryTextDetectionService implements TextDetectionService, AutoCloseable {
+    final static private String LINE_BLOCK_TYPE = "LINE";
+    final static private int BUFFER_SIZE = 8192;
+    final static private int BAD_REQUEST = 400;
+
+    private final BlobStore blobStore;
+    private final MessageQueue completionQueue;
+    private final ScheduleTextExtractor scheduleTextExtractor;
+    private final SimulatedLatency latency;
+    private final ExecutorService executor;
+    private final Map<String, String> jobIds = new ConcurrentHashMap<>();
+    private final Map<String, List<Block>> detectedBlocks = new ConcurrentHashMap<>();
+    private final AtomicLong detections = new AtomicLong();
+    private final AtomicLong failedDetections = new AtomicLong();
+    private final AtomicLong pages = new AtomicLong();
+
+    /**
+     * @param blobStore {@link BlobStore} the documents are read from
+     * @param completionQueue {@link MessageQueue} completion notifications are sent to
+     * @param scheduleTextExtractor {@link ScheduleTextExtractor} the text is detected with
+     * @param latency {@link SimulatedLatency} of every request and detection
+     */
+    public InMemoryTextDetectionService(BlobStore blobStore, MessageQueue completionQueue,
+                                        ScheduleTextExtractor scheduleTextExtractor, SimulatedLatency latency) {
+        this.blobStore = blobStore;
+        this.completionQueue = completionQueue;
+        this.scheduleTextExtractor = scheduleTextExtractor;
+        this.latency = latency;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "text-detection-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public String startDocumentTextDetection(String bucket, String key, String clientRequestToken, String jobTag) {
+        latency.pause();
+        if (clientRequestToken == null) {
+            return start(bucket, key, jobTag);
+        }
+        return jobIds.computeIfAbsent(clientRequestToken, token -> start(bucket, key, jobTag));
+    }
+
+    @Override
+    public GetDocumentTextDetectionResult getDocumentTextDetection(String jobId, int maxResults, String nextToken) {
+        latency.pause();
+        List<Block> blocks = detectedBlocks.get(jobId);
+        if (blocks == null) {
+            InvalidJobIdException e = new InvalidJobIdException("no completed detection for job: " + jobId);
+            e.setStatusCode(BAD_REQUEST);
+            throw e;
+        }
+        pages.incrementAndGet();
+        int from = nextToken == null ? 0 : Integer.parseInt(nextToken);
+        int to = Math.min(blocks.size(), from + maxResults);
+        return new GetDocumentTextDetectionResult()
+                .withJobStatus(TextractJobNotification.SUCCEEDED)
+                .withBlocks(new ArrayList<>(blocks.subList(from, to)))
+                .withNextToken(to < blocks.size() ? String.valueOf(to) : null);
+    }
+
+    public long getDetections() {
+        return detections.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("detections: %d, failed: %d, pages: %d, latency: %s", detections.get(),
+                failedDetections.get(), pages.get(), latency);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private String start(String bucket, String key, String jobTag) {
+        String jobId = UUID.randomUUID().toString();
+        detections.incrementAndGet();
+        executor.execute(() -> detect(jobId, bucket, key, jobTag));
+        return jobId;
+    }
+
+    private void detect(String jobId, String bucket, String key, String jobTag) {
+        String status = TextractJobNotification.SUCCEEDED;
+        try {
+            byte[] document = readDocument(bucket, key);
+            latency.pause(document.length);
+            List<Block> blocks = new ArrayList<>();
+            scheduleTextExtractor.extract(new SchedulePdf(jobTag, document, key), (page, text) -> {
+                for (String line : text.split("\\R")) {
+                    if (!line.trim().isEmpty()) {
+                        blocks.add(new Block().withBlockType(LINE_BLOCK_TYPE).withPage(page).withText(line.trim()));
+                    }
+                }
+            });
+            detectedBlocks.put(jobId, blocks);
+        } catch (IOException e) {
+            failedDetections.incrementAndGet();
+            status = TextractJobNotification.FAILED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        try {
+            completionQueue.send(new TextractJobNotification(jobId, status, jobTag).toJson());
+        } catch (IOException e) {
+            // a lost notification times out its waiting line, as it would against SQS
+            failedDetections.incrementAndGet();
+        }
+    }
+
+    private byte[] readDocument(String bucket, String key) throws IOException {
+        try (InputStream content = blobStore.getContent(bucket, key)) {
+            if (content == null) {
+                throw new IOException(String.format("no document '%s' in bucket '%s'", key, bucket));
+            }
+            ByteArrayOutputStream document = new ByteArrayOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                document.write(buffer, 0, read);
+            }
+            return document.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package org.morris.unofficial.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * {@code org.morris.unofficial.utils.InfrastructureCache} is a small TTL cache for infrastructure lookups that
+ * rarely change, such as the Textract SNS topic arn, the Textract role arn and the metro SQS queue url. A lookup
+ * is only sent to AWS when its key is missing or expired; every other call, including calls from later warm
+ * invocations, is served from memory. Concurrent callers of the same expired key share a single lookup, which runs
+ * outside of the map's locks so a slow lookup never holds up callers of other keys.
+ * <p></p>
+ * When a persist path is given, entries are also written to that file (ex: /tmp/infrastructure_cache.properties)
+ * and read back on first use, so a new process in the same execution environment starts with a warm cache.
+ * Lookups that return null are never cached.
+ */
+public class InfrastructureCache {
+    final static private String EXPIRES_SUFFIX = ".expires";
+
+    private final long ttlMillis;
+    private final Path persistPath;
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Entry>> lookups = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile boolean loaded;
+
+    /**
+     * @param ttlMillis time an entry stays valid in milliseconds
+     * @param persistPath {@link String} file to persist entries to, or null to keep entries in memory only
+     */
+    public InfrastructureCache(long ttlMillis, String persistPath) {
+        this(ttlMillis, persistPath, System::currentTimeMillis);
+    }
+
+    /**
+     * @param ttlMillis time an entry stays valid in milliseconds
+     * @param persistPath {@link String} file to persist entries to, or null to keep entries in memory only
+     * @param clock {@link LongSupplier} of the current time in epoch milliseconds
+     */
+    public InfrastructureCache(long ttlMillis, String persistPath, LongSupplier clock) {
+        this.ttlMillis = ttlMillis;
+        this.persistPath = persistPath == null || persistPath.isEmpty() ? null : Paths.get(persistPath);
+        this.clock = clock;
+    }
+
+    /**
+     * Get the cached value for the given key, calling the loader only if there is no valid entry.
+     *
+     * @param key cache key
+     * @param loader {@link Supplier} that performs the lookup
+     *
+     * @return {@link String} the cached or freshly loaded value, may be null if the lookup found nothing
+     */
+    public String get(String key, Supplier<String> loader) {
+        loadPersistedEntries();
+
+        Entry entry = entries.get(key);
+        if (entry != null && !entry.isExpired(clock.getAsLong())) {
+            hits.incrementAndGet();
+            return entry.value;
+        }
+
+        // the first caller of a missing key looks it up, concurrent callers of the key wait on its lookup
+        CompletableFuture<Entry> lookup = new CompletableFuture<>();
+        CompletableFuture<Entry> inFlight = lookups.putIfAbsent(key, lookup);
+        if (inFlight != null) {
+            hits.incrementAndGet();
+            return getValue(join(inFlight));
+        }
+        try {
+            entry = entries.get(key);
+            if (entry != null && !entry.isExpired(clock.getAsLong())) {
+                // loaded by a lookup that finished between the first check and this one
+                hits.incrementAndGet();
+                lookup.complete(entry);
+                return entry.value;
+            }
+
+            misses.incrementAndGet();
+            String value = loader.get();
+            entry = value == null ? null : new Entry(value, clock.getAsLong() + ttlMillis);
+            if (entry != null) {
+                entries.put(key, entry);
+                persistEntries();
+            }
+            lookup.complete(entry);
+            return getValue(entry);
+        } catch (RuntimeException | Error e) {
+            lookup.completeExceptionally(e);
+            throw e;
+        } finally {
+            lookups.remove(key, lookup);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("entries: %d, hits: %d, misses: %d", entries.size(), hits.get(), misses.get());
+    }
+
+    private static String getValue(Entry entry) {
+        return entry == null ? null : entry.value;
+    }
+
+    private static Entry join(CompletableFuture<Entry> lookup) {
+        try {
+            return lookup.join();
+        } catch (CompletionException e) {
+            // rethrow the failure of the shared lookup as the caller's own
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void loadPersistedEntries() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            if (persistPath != null && Files.exists(persistPath)) {
+                Properties properties = new Properties();
+                try (InputStream inputStream = Files.newInputStream(persistPath)) {
+                    properties.load(inputStream);
+                } catch (IOException e) {
+                    // a missing or corrupt cache file only means a cold cache
+                    properties.clear();
+                }
+                long now = clock.getAsLong();
+                for (String key : properties.stringPropertyNames()) {
+                    if (key.endsWith(EXPIRES_SUFFIX)) {
+                        continue;
+                    }
+                    try {
+                        Entry entry = new Entry(properties.getProperty(key),
+                                Long.parseLong(properties.getProperty(key + EXPIRES_SUFFIX, "0")));
+                        if (!entry.isExpired(now)) {
+                            entries.putIfAbsent(key, entry);
+                        }
+                    } catch (NumberFormatException ignored) {
+                        // skip entries without a readable expiry
+                    }
+                }
+            }
+            loaded = true;
+        }
+    }
+
+    private synchronized void persistEntries() {
+        if (persistPath == null) {
+            return;
+        }
+        Properties properties = new Properties();
+        entries.forEach((key, entry) -> {
+            properties.setProperty(key, entry.value);
+            properties.setProperty(key + EXPIRES_SUFFIX, String.valueOf(entry.expiresAt));
+        });
+
+        // write to a sibling file and move it into place so readers never see a partial file
+        Path tmpPath = persistPath.resolveSibling(persistPath.getFileName() + ".tmp");
+        try {
+            try (OutputStream outputStream = Files.newOutputStream(tmpPath)) {
+                properties.store(outputStream, null);
+            }
+            Files.move(tmpPath, persistPath, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // persistence is best effort, the in memory entries are still valid
+        }
+    }
+
+    private static class Entry {
+        private final String value;
+        private final long expiresAt;
+
+        Entry(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
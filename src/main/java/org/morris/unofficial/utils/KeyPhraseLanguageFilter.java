@@ -0,0 +1,145 @@
+package org.morris.unofficial.utils;
+
+import software.amazon.awssdk.services.comprehend.model.BatchDetectDominantLanguageItemResult;
+import software.amazon.awssdk.services.comprehend.model.BatchDetectDominantLanguageResponse;
+import software.amazon.awssdk.services.comprehend.model.DominantLanguage;
+import software.amazon.awssdk.services.comprehend.model.KeyPhrase;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * {@code org.morris.unofficial.utils.KeyPhraseLanguageFilter} removes the Spanish key phrases from a bilingual
+ * schedule's key phrases. Rather than one DetectDominantLanguage call per phrase, phrases are sent to Comprehend's
+ * BatchDetectDominantLanguage API 25 at a time, with the batches running concurrently, and a phrase that repeats
+ * across the schedule is only sent once.
+ * <p></p>
+ * Phrases with no words, such as times (5:25), stop numbers (#1234) and other numbers or punctuation, are
+ * language neutral and are kept without asking Comprehend. A phrase Comprehend could not classify is kept, as
+ * it was not shown to be Spanish.
+ *
+ * @see KeyPhraseService
+ */
+public class KeyPhraseLanguageFilter implements AutoCloseable {
+    final static public String SPANISH_LANGUAGE_CODE = "es";
+
+    // comprehend accepts at most 25 documents per batch request
+    final static public int MAX_BATCH_SIZE = 25;
+
+    // digits, punctuation and symbols only, ex: 5:25, 12:06, #1234, $2.75, (0-18)
+    final static private Pattern LANGUAGE_NEUTRAL_PATTERN = Pattern.compile("[\\p{N}\\p{P}\\p{S}\\s]*");
+
+    private final KeyPhraseService keyPhraseService;
+    private final ExecutorService executor;
+    private final AtomicLong roundTrips = new AtomicLong();
+    private final AtomicLong locallyClassified = new AtomicLong();
+
+    /**
+     * @param keyPhraseService {@link KeyPhraseService} the languages are detected with
+     * @param concurrency number of batch requests in flight at once
+     */
+    public KeyPhraseLanguageFilter(KeyPhraseService keyPhraseService, int concurrency) {
+        this.keyPhraseService = keyPhraseService;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, concurrency), runnable -> {
+            Thread thread = new Thread(runnable, "comprehend-language-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the key phrases whose dominant languages do not include Spanish, in their original order.
+     *
+     * @param keyPhrases {@link List} of {@link KeyPhrase}s detected in the schedule
+     * @return {@link List} of {@link KeyPhrase}s that are not Spanish
+     */
+    public List<KeyPhrase> removeSpanish(List<KeyPhrase> keyPhrases) {
+        Set<String> texts = new LinkedHashSet<>();
+        for (KeyPhrase keyPhrase : keyPhrases) {
+            if (isLanguageNeutral(keyPhrase.text())) {
+                locallyClassified.incrementAndGet();
+            } else {
+                texts.add(keyPhrase.text());
+            }
+        }
+        Set<String> spanishTexts = detectSpanish(new ArrayList<>(texts));
+
+        List<KeyPhrase> filtered = new ArrayList<>();
+        for (KeyPhrase keyPhrase : keyPhrases) {
+            if (!spanishTexts.contains(keyPhrase.text())) {
+                filtered.add(keyPhrase);
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * A phrase without any letters can't be in any one language.
+     *
+     * @param text {@link String} key phrase text
+     * @return true if the phrase is only digits, punctuation, symbols or whitespace
+     */
+    public static boolean isLanguageNeutral(String text) {
+        return text == null || LANGUAGE_NEUTRAL_PATTERN.matcher(text).matches();
+    }
+
+    public long getRoundTrips() {
+        return roundTrips.get();
+    }
+
+    public long getLocallyClassified() {
+        return locallyClassified.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("round trips: %d, locally classified: %d", roundTrips.get(), locallyClassified.get());
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private Set<String> detectSpanish(List<String> texts) {
+        List<CompletableFuture<List<String>>> batches = new ArrayList<>();
+        for (int start = 0; start < texts.size(); start += MAX_BATCH_SIZE) {
+            List<String> batch = texts.subList(start, Math.min(texts.size(), start + MAX_BATCH_SIZE));
+            batches.add(CompletableFuture.supplyAsync(() -> detectSpanishBatch(batch), executor));
+        }
+
+        Set<String> spanishTexts = new HashSet<>();
+        for (CompletableFuture<List<String>> batch : batches) {
+            spanishTexts.addAll(batch.join());
+        }
+        return spanishTexts;
+    }
+
+    private List<String> detectSpanishBatch(List<String> batch) {
+        roundTrips.incrementAndGet();
+        BatchDetectDominantLanguageResponse batchDetectDominantLanguageResponse = keyPhraseService
+                .batchDetectDominantLanguage(batch);
+
+        // items in the error list are left out of the result list and are kept
+        List<String> spanishTexts = new ArrayList<>();
+        for (BatchDetectDominantLanguageItemResult result : batchDetectDominantLanguageResponse.resultList()) {
+            for (DominantLanguage dominantLanguage : result.languages()) {
+                if (SPANISH_LANGUAGE_CODE.equals(dominantLanguage.languageCode())) {
+                    spanishTexts.add(batch.get(result.index()));
+                    break;
+                }
+            }
+        }
+        return spanishTexts;
+    }
+}
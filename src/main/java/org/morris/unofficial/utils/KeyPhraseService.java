@@ -0,0 +1,33 @@
+package org.morris.unofficial.utils;
+
+import software.amazon.awssdk.services.comprehend.model.BatchDetectDominantLanguageResponse;
+import software.amazon.awssdk.services.comprehend.model.KeyPhrase;
+
+import java.util.List;
+
+/**
+ * {@code org.morris.unofficial.utils.KeyPhraseService} detects the key phrases of a schedule's text and the
+ * dominant languages of phrases, the way Comprehend does.
+ *
+ * @see ComprehendKeyPhraseService
+ * @see InMemoryKeyPhraseService
+ * @see KeyPhraseLanguageFilter
+ */
+public interface KeyPhraseService {
+
+    /**
+     * @param text {@link String} text to detect key phrases in
+     * @param languageCode {@link String} language of the text (ex: en)
+     * @return {@link List} of the text's {@link KeyPhrase}s
+     */
+    List<KeyPhrase> detectKeyPhrases(String text, String languageCode);
+
+    /**
+     * Detects the dominant languages of a batch of texts. Texts that could not be classified are reported in the
+     * response's error list and are left out of its result list.
+     *
+     * @param texts {@link List} of at most {@link KeyPhraseLanguageFilter#MAX_BATCH_SIZE} texts
+     * @return {@link BatchDetectDominantLanguageResponse} with a result for each text, by its index in the batch
+     */
+    BatchDetectDominantLanguageResponse batchDetectDominantLanguage(List<String> texts);
+}
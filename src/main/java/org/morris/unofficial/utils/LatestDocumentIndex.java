@@ -0,0 +1,136 @@
+package org.morris.unofficial.utils;
+
+import org.morris.unofficial.utils.BlobStore.BlobMetadata;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@code org.morris.unofficial.utils.LatestDocumentIndex} maintains a small pointer object in a bucket that names
+ * the most recently uploaded crawl document. Every upload rewrites the pointer, so the latest document is found
+ * with a single HEAD request no matter how long ago it was crawled, whether crawls run weekly, are skipped, or
+ * are re-run by hand. The pointer carries the document's key, and any metadata uploaded with it (such as its
+ * routes digest), as user metadata; the pointer's body holds the key for readability.
+ * <p></p>
+ * Buckets written before the pointer existed are handled by {@link #findLatestByListing(String, String)}, which
+ * lists the document prefix once and picks the newest matching document.
+ */
+public class LatestDocumentIndex {
+    final static public String LATEST_KEY_METADATA = "latest-key";
+    final static private String TEXT_CONTENT_TYPE = "text/plain";
+    private final BlobStore blobStore;
+    private final String bucket;
+    private final String indexKey;
+    private final Map<String, Boolean> probedPrefixes = new ConcurrentHashMap<>();
+
+    public LatestDocumentIndex(BlobStore blobStore, String bucket, String indexKey) {
+        this.blobStore = blobStore;
+        this.bucket = bucket;
+        this.indexKey = indexKey;
+    }
+
+    /**
+     * Checks whether the bucket holds any object under the given prefix with a single listing request of at
+     * most one key. The cost does not grow with the number of buckets in the account or objects in the bucket.
+     * The answer is kept for the life of this index, which is a single invocation, so repeated checks are free.
+     *
+     * @param prefix key prefix the documents live under (ex: docs/)
+     *
+     * @return true if at least one object exists under the prefix, false if none do or the bucket does not exist
+     * @throws IOException if the bucket can't be listed
+     */
+    public boolean containsDocuments(String prefix) throws IOException {
+        Boolean containsDocuments = probedPrefixes.get(prefix);
+        if (containsDocuments == null) {
+            containsDocuments = !blobStore.list(bucket, prefix, 1).isEmpty();
+            probedPrefixes.put(prefix, containsDocuments);
+        }
+        return containsDocuments;
+    }
+
+    /**
+     * Reads the pointer with a single HEAD request.
+     *
+     * @return {@link LatestDocument}, or null if the pointer has not been written yet
+     * @throws IOException if the pointer can't be read
+     */
+    public LatestDocument getLatest() throws IOException {
+        BlobMetadata metadata = blobStore.getMetadata(bucket, indexKey);
+        if (metadata == null) {
+            return null;
+        }
+        String latestKey = metadata.getUserMetadata(LATEST_KEY_METADATA);
+        return latestKey == null ? null : new LatestDocument(latestKey, metadata.getUserMetadata(),
+                metadata.getLastModified());
+    }
+
+    /**
+     * Points the index at a newly uploaded document.
+     *
+     * @param documentKey key of the uploaded document
+     * @param documentMetadata {@link Map} of user metadata uploaded with the document
+     * @throws IOException if the pointer can't be written
+     */
+    public void update(String documentKey, Map<String, String> documentMetadata) throws IOException {
+        Map<String, String> metadata = new HashMap<>(documentMetadata);
+        metadata.put(LATEST_KEY_METADATA, documentKey);
+        blobStore.put(bucket, indexKey, documentKey.getBytes(StandardCharsets.UTF_8), TEXT_CONTENT_TYPE, metadata);
+    }
+
+    /**
+     * Lists every object under the given prefix and returns the newest one whose key ends with the given file
+     * name. Date prefixes such as docs/2022/10/8/ are not zero padded and don't sort by key, so the newest
+     * document is chosen by its last modified date. Only used when the pointer is missing.
+     *
+     * @param prefix key prefix the documents live under (ex: docs/)
+     * @param fileName file name the document keys end with (ex: routes_doc.txt)
+     *
+     * @return {@link String} key of the newest document, or null if there are none
+     * @throws IOException if the bucket can't be listed
+     */
+    public String findLatestByListing(String prefix, String fileName) throws IOException {
+        BlobMetadata latest = null;
+        for (BlobMetadata metadata : blobStore.list(bucket, prefix, 0)) {
+            if (metadata.getKey().endsWith(fileName)
+                    && (latest == null || metadata.getLastModified().after(latest.getLastModified()))) {
+                latest = metadata;
+            }
+        }
+        return latest == null ? null : latest.getKey();
+    }
+
+    /**
+     * The most recent document named by the pointer.
+     */
+    public static class LatestDocument {
+        private final String key;
+        private final Map<String, String> metadata;
+        private final Date lastModified;
+
+        public LatestDocument(String key, Map<String, String> metadata, Date lastModified) {
+            this.key = key;
+            this.metadata = metadata;
+            this.lastModified = lastModified;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getMetadata(String name) {
+            return metadata.get(name);
+        }
+
+        public Map<String, String> getMetadata() {
+            return metadata;
+        }
+
+        public Date getLastModified() {
+            return lastModified;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package org.morris.unofficial.utils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.morris.unofficial.models.LineFingerprint;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code org.morris.unofficial.utils.LineFingerprintIndex} keeps the {@link LineFingerprint} of every processed
+ * line in a single json object next to the processed schedules. The index is read once at the start of a run and
+ * written once at the end, so a run only re-extracts, re-uploads and re-loads the lines that were added or whose
+ * schedule changed, and its cost follows the week's churn rather than the size of the network.
+ * <p></p>
+ * A line's fingerprint is only recorded once its schedule has been fully processed. A line that fails or runs
+ * out of time keeps its old fingerprint and is processed again on the next run.
+ * <p></p>
+ * Saving merges this index's own updates and removals into the index as it is stored at that moment, so a line
+ * finished by {@link org.morris.unofficial.events.TextractCompletionEvent} while a run is in progress is not
+ * reverted by the run's save. Two saves that overlap can still lose one of their updates; that line is then
+ * processed again on the next run.
+ */
+public class LineFingerprintIndex {
+    final static private String JSON_CONTENT_TYPE = "application/json";
+    final static private ObjectMapper OBJECT_MAPPER = MetroJson.getObjectMapper();
+
+    private final BlobStore blobStore;
+    private final String bucket;
+    private final String indexKey;
+    private final Map<String, LineFingerprint> fingerprints = new ConcurrentHashMap<>();
+    private final Map<String, LineFingerprint> updatedLines = new ConcurrentHashMap<>();
+    private final Set<String> removedLines = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean modified = new AtomicBoolean();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong changed = new AtomicLong();
+
+    public LineFingerprintIndex(BlobStore blobStore, String bucket, String indexKey) {
+        this.blobStore = blobStore;
+        this.bucket = bucket;
+        this.indexKey = indexKey;
+    }
+
+    /**
+     * Reads the fingerprints recorded by the last run. Without an index every line is processed.
+     *
+     * @throws IOException if the index can't be read or parsed
+     */
+    public void load() throws IOException {
+        fingerprints.putAll(read());
+    }
+
+    /**
+     * Finds the lines that are no longer in the route list, without forgetting them.
+     *
+     * @param lines {@link Collection} of every line in the current route list
+     * @return {@link List} of the recorded lines missing from the route list
+     */
+    public List<String> getMissingLines(Collection<String> lines) {
+        Set<String> currentLines = new HashSet<>(lines);
+        List<String> missing = new ArrayList<>();
+        for (String line : fingerprints.keySet()) {
+            if (!currentLines.contains(line)) {
+                missing.add(line);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Forgets the lines that are no longer in the route list.
+     *
+     * @param lines {@link Collection} of every line in the current route list
+     * @return {@link List} of the lines removed since the last run
+     */
+    public List<String> retainLines(Collection<String> lines) {
+        List<String> removed = getMissingLines(lines);
+        for (String line : removed) {
+            fingerprints.remove(line);
+            updatedLines.remove(line);
+            removedLines.add(line);
+            modified.set(true);
+        }
+        return removed;
+    }
+
+    /**
+     * Compares a line's fingerprint to the one recorded on the last run.
+     *
+     * @param line {@link String} the line# name of the MetroLine (ex: 190)
+     * @param fingerprint {@link LineFingerprint} of the line's schedule on this run
+     * @return true if the line's schedule is the one already processed
+     */
+    public boolean isUnchanged(String line, LineFingerprint fingerprint) {
+        boolean isUnchanged = fingerprint.isSameSchedule(fingerprints.get(line));
+        (isUnchanged ? unchanged : changed).incrementAndGet();
+        return isUnchanged;
+    }
+
+    /**
+     * Records the fingerprint of a line whose schedule has been fully processed, or the fresh validators of an
+     * unchanged one.
+     *
+     * @param line {@link String} the line# name of the MetroLine (ex: 190)
+     * @param fingerprint {@link LineFingerprint} of the processed schedule
+     */
+    public void update(String line, LineFingerprint fingerprint) {
+        if (!fingerprint.equals(fingerprints.put(line, fingerprint))) {
+            updatedLines.put(line, fingerprint);
+            removedLines.remove(line);
+            modified.set(true);
+        }
+    }
+
+    public LineFingerprint get(String line) {
+        return fingerprints.get(line);
+    }
+
+    /**
+     * @return number of lines recorded
+     */
+    public int size() {
+        return fingerprints.size();
+    }
+
+    /**
+     * Writes the index back, only if a fingerprint was added, changed or removed. The stored index is read again
+     * and only this index's own changes are applied to it.
+     *
+     * @return true if the index was written
+     * @throws IOException if the index can't be read, written as json or stored
+     */
+    public boolean save() throws IOException {
+        if (!modified.getAndSet(false)) {
+            return false;
+        }
+        Map<String, LineFingerprint> stored = new TreeMap<>(read());
+        stored.keySet().removeAll(removedLines);
+        stored.putAll(updatedLines);
+        blobStore.put(bucket, indexKey, OBJECT_MAPPER.writeValueAsBytes(stored), JSON_CONTENT_TYPE,
+                Collections.emptyMap());
+        updatedLines.clear();
+        removedLines.clear();
+        fingerprints.putAll(stored);
+        return true;
+    }
+
+    public long getUnchanged() {
+        return unchanged.get();
+    }
+
+    public long getChanged() {
+        return changed.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("lines: %d, unchanged: %d, changed: %d", fingerprints.size(), unchanged.get(),
+                changed.get());
+    }
+
+    private Map<String, LineFingerprint> read() throws IOException {
+        try (InputStream index = blobStore.getContent(bucket, indexKey)) {
+            if (index == null) {
+                return Collections.emptyMap();
+            }
+            return OBJECT_MAPPER.readValue(index, new TypeReference<Map<String, LineFingerprint>>() {});
+        }
+    }
+}
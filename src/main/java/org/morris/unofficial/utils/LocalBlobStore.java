@@ -0,0 +1,171 @@
+package org.morris.unofficial.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@code org.morris.unofficial.utils.LocalBlobStore} keeps every object as a file under a root directory, at
+ * {@code <root>/<bucket>/<key>}, so a crawl run offline leaves its documents, schedules and indexes on disk to be
+ * looked at, and the next run picks them up like it would from S3. An object's content type and user metadata are
+ * kept next to it in {@code <root>/.metadata/<bucket>/<key>.json}.
+ * <p></p>
+ * Objects are written to a temporary file and moved into place, so a reader never sees half an object. Every
+ * request pauses for its {@link SimulatedLatency}, transfers for the bytes they move.
+ */
+public class LocalBlobStore implements BlobStore {
+    final static private String METADATA_DIRECTORY = ".metadata";
+    final static private String METADATA_SUFFIX = ".json";
+    final static private String TMP_SUFFIX = ".tmp";
+    final static private ObjectMapper OBJECT_MAPPER = MetroJson.getObjectMapper();
+
+    private final Path root;
+    private final SimulatedLatency latency;
+
+    public LocalBlobStore(Path root, SimulatedLatency latency) {
+        this.root = root.toAbsolutePath().normalize();
+        this.latency = latency;
+    }
+
+    public LocalBlobStore(Path root) {
+        this(root, SimulatedLatency.none());
+    }
+
+    @Override
+    public BlobMetadata getMetadata(String bucket, String key) throws IOException {
+        latency.pause();
+        Path file = getPath(bucket, key);
+        return Files.isRegularFile(file) ? readMetadata(bucket, key, file) : null;
+    }
+
+    @Override
+    public InputStream getContent(String bucket, String key) throws IOException {
+        Path file = getPath(bucket, key);
+        try {
+            InputStream content = Files.newInputStream(file);
+            latency.pause(Files.size(file));
+            return content;
+        } catch (NoSuchFileException e) {
+            latency.pause();
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String bucket, String key, byte[] content, String contentType, Map<String, String> userMetadata)
+            throws IOException {
+        latency.pause(content.length);
+        Path file = getPath(bucket, key);
+        Files.createDirectories(file.getParent());
+        Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), TMP_SUFFIX);
+        Files.write(tmp, content);
+        writeMetadata(bucket, key, contentType, userMetadata);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void put(String bucket, String key, Path file, String contentType, Map<String, String> userMetadata)
+            throws IOException {
+        latency.pause(Files.size(file));
+        Path target = getPath(bucket, key);
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), TMP_SUFFIX);
+        Files.copy(file, tmp, StandardCopyOption.REPLACE_EXISTING);
+        writeMetadata(bucket, key, contentType, userMetadata);
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public List<BlobMetadata> list(String bucket, String prefix, int maxKeys) throws IOException {
+        latency.pause();
+        Path bucketDirectory = getPath(bucket, "");
+        if (!Files.isDirectory(bucketDirectory)) {
+            return Collections.emptyList();
+        }
+
+        List<String> keys;
+        try (Stream<Path> files = Files.walk(bucketDirectory)) {
+            keys = files.filter(Files::isRegularFile)
+                    .map(file -> toKey(bucketDirectory.relativize(file)))
+                    .filter(key -> key.startsWith(prefix) && !key.endsWith(TMP_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        List<BlobMetadata> listed = new ArrayList<>();
+        for (String key : keys) {
+            if (maxKeys > 0 && listed.size() >= maxKeys) {
+                break;
+            }
+            listed.add(readMetadata(bucket, key, getPath(bucket, key)));
+        }
+        return listed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("root: %s, latency: %s", root, latency);
+    }
+
+    /**
+     * Resolves an object's file. A key may not climb out of its bucket's directory.
+     */
+    private Path getPath(String bucket, String key) throws IOException {
+        Path bucketDirectory = root.resolve(String.valueOf(bucket)).normalize();
+        Path file = bucketDirectory.resolve(key).normalize();
+        if (!bucketDirectory.startsWith(root) || !file.startsWith(bucketDirectory)
+                || bucketDirectory.startsWith(root.resolve(METADATA_DIRECTORY))) {
+            throw new IOException(String.format("key '%s' is outside of bucket '%s'", key, bucket));
+        }
+        return file;
+    }
+
+    private Path getMetadataPath(String bucket, String key) {
+        return root.resolve(METADATA_DIRECTORY).resolve(String.valueOf(bucket)).resolve(key + METADATA_SUFFIX);
+    }
+
+    private BlobMetadata readMetadata(String bucket, String key, Path file) throws IOException {
+        StoredMetadata storedMetadata = new StoredMetadata();
+        Path metadataFile = getMetadataPath(bucket, key);
+        if (Files.isRegularFile(metadataFile)) {
+            storedMetadata = OBJECT_MAPPER.readValue(metadataFile.toFile(), StoredMetadata.class);
+        }
+        return new BlobMetadata(key, Files.size(file), new Date(Files.getLastModifiedTime(file).toMillis()),
+                storedMetadata.contentType, storedMetadata.userMetadata);
+    }
+
+    private void writeMetadata(String bucket, String key, String contentType, Map<String, String> userMetadata)
+            throws IOException {
+        Path metadataFile = getMetadataPath(bucket, key);
+        Files.createDirectories(metadataFile.getParent());
+        StoredMetadata storedMetadata = new StoredMetadata();
+        storedMetadata.contentType = contentType;
+        storedMetadata.userMetadata = new TreeMap<>(userMetadata);
+        OBJECT_MAPPER.writeValue(metadataFile.toFile(), storedMetadata);
+    }
+
+    private String toKey(Path relativePath) {
+        return relativePath.toString().replace(FileSystems.getDefault().getSeparator(), "/");
+    }
+
+    /**
+     * The content type and user metadata kept next to an object.
+     */
+    private static class StoredMetadata {
+        public String contentType;
+        public Map<String, String> userMetadata;
+    }
+}
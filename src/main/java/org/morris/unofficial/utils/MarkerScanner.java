@@ -0,0 +1,270 @@
+package org.morris.unofficial.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * {@code org.morris.unofficial.utils.MarkerScanner} finds several markers in a stream at once and captures the
+ * fragment between each marker and its end marker. The start markers are compiled into a single Aho-Corasick
+ * automaton, so every byte is looked at once however many markers there are, and the scan stops reading as soon
+ * as every named fragment has been captured. The rest of the stream is left unread.
+ * <p></p>
+ * Markers that share a name are alternatives, the first one found in the stream fills the name.
+ * <p></p>
+ * example marker: {@code new Marker("pdf-timetable-link", "id=\"pdf-timetable-link\">", "PDF timetable</a>")}
+ * <p></p>
+ * A scanner is immutable and safe to share between threads, each scan keeps its own state.
+ *
+ * @see HttpFetcher#fetchUntil
+ */
+public class MarkerScanner {
+    final static private int ALPHABET_SIZE = 256;
+    final static private int BUFFER_SIZE = 8192;
+    final static private int NO_MATCH = -1;
+
+    private final List<Marker> markers;
+    private final Set<String> names = new HashSet<>();
+    private final int maxFragmentLength;
+
+    // the automaton: the next state for each state and byte, and the marker completed on reaching a state
+    private final int[][] transitions;
+    private final int[] matches;
+    private final byte[][] endMarkers;
+    private final int[][] endFailures;
+
+    /**
+     * @param markers {@link List} of {@link Marker} to find
+     * @param maxFragmentLength longest fragment, in bytes, captured after a marker; a longer one is malformed
+     *                          markup and is abandoned
+     */
+    public MarkerScanner(List<Marker> markers, int maxFragmentLength) {
+        this.markers = new ArrayList<>(markers);
+        this.maxFragmentLength = maxFragmentLength;
+        this.endMarkers = new byte[markers.size()][];
+        this.endFailures = new int[markers.size()][];
+
+        // a trie of the start markers, missing transitions are filled in below
+        List<int[]> trie = new ArrayList<>();
+        List<Integer> trieMatches = new ArrayList<>();
+        trie.add(newState());
+        trieMatches.add(NO_MATCH);
+        for (int i = 0; i < markers.size(); i++) {
+            Marker marker = markers.get(i);
+            names.add(marker.getName());
+            endMarkers[i] = marker.getEnd().getBytes(StandardCharsets.UTF_8);
+            endFailures[i] = failureTable(endMarkers[i]);
+
+            int state = 0;
+            for (byte b : marker.getStart().getBytes(StandardCharsets.UTF_8)) {
+                int c = b & 0xff;
+                if (trie.get(state)[c] == NO_MATCH) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(newState());
+                    trieMatches.add(NO_MATCH);
+                }
+                state = trie.get(state)[c];
+            }
+            if (trieMatches.get(state) == NO_MATCH) {
+                trieMatches.set(state, i);
+            }
+        }
+
+        transitions = trie.toArray(new int[0][]);
+        matches = new int[trieMatches.size()];
+        for (int i = 0; i < matches.length; i++) {
+            matches[i] = trieMatches.get(i);
+        }
+        buildFailureTransitions();
+    }
+
+    /**
+     * Scans the stream until every named fragment is captured or the stream ends. The stream is not closed.
+     *
+     * @param inputStream {@link InputStream} to scan
+     * @return {@link ScanResult} of the captured fragments
+     * @throws IOException if reading the stream fails
+     */
+    public ScanResult scan(InputStream inputStream) throws IOException {
+        Map<String, String> fragments = new HashMap<>();
+        ByteArrayOutputStream fragment = new ByteArrayOutputStream(256);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long scanned = 0;
+        int state = 0;
+        int capturing = NO_MATCH;
+        int matched = 0;
+
+        int length;
+        while (fragments.size() < names.size() && (length = inputStream.read(buffer)) != -1) {
+            int i = 0;
+            while (i < length && fragments.size() < names.size()) {
+                int c = buffer[i++] & 0xff;
+                if (capturing == NO_MATCH) {
+                    state = transitions[state][c];
+                    int marker = matches[state];
+                    if (marker != NO_MATCH && !fragments.containsKey(markers.get(marker).getName())) {
+                        capturing = marker;
+                        matched = 0;
+                        fragment.reset();
+                    }
+                    continue;
+                }
+
+                if (fragment.size() == maxFragmentLength) {
+                    capturing = NO_MATCH;
+                    state = 0;
+                    continue;
+                }
+                fragment.write(c);
+                byte[] end = endMarkers[capturing];
+                while (matched > 0 && (end[matched] & 0xff) != c) {
+                    matched = endFailures[capturing][matched - 1];
+                }
+                if ((end[matched] & 0xff) == c) {
+                    matched++;
+                }
+                if (matched == end.length) {
+                    fragments.put(markers.get(capturing).getName(), new String(fragment.toByteArray(), 0,
+                            fragment.size() - end.length, StandardCharsets.UTF_8));
+                    capturing = NO_MATCH;
+                    state = 0;
+                }
+            }
+            scanned += i;
+        }
+        return new ScanResult(fragments, fragments.size() == names.size(), scanned);
+    }
+
+    /**
+     * Turns the trie into the automaton: a missing transition follows the state's failure link, the longest
+     * proper suffix of the state that is also a prefix of some marker. Breadth first, so every failure link is
+     * complete before it is followed.
+     */
+    private void buildFailureTransitions() {
+        int[] failure = new int[transitions.length];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET_SIZE; c++) {
+            if (transitions[0][c] == NO_MATCH) {
+                transitions[0][c] = 0;
+            } else {
+                failure[transitions[0][c]] = 0;
+                queue.add(transitions[0][c]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            for (int c = 0; c < ALPHABET_SIZE; c++) {
+                int next = transitions[state][c];
+                if (next == NO_MATCH) {
+                    transitions[state][c] = transitions[failure[state]][c];
+                    continue;
+                }
+                failure[next] = transitions[failure[state]][c];
+
+                // a shorter marker may end inside a longer one, its match is reached through the failure link
+                if (matches[next] == NO_MATCH) {
+                    matches[next] = matches[failure[next]];
+                }
+                queue.add(next);
+            }
+        }
+    }
+
+    private static int[] newState() {
+        int[] state = new int[ALPHABET_SIZE];
+        Arrays.fill(state, NO_MATCH);
+        return state;
+    }
+
+    private static int[] failureTable(byte[] marker) {
+        int[] failure = new int[marker.length];
+        int k = 0;
+        for (int i = 1; i < marker.length; i++) {
+            while (k > 0 && marker[i] != marker[k]) {
+                k = failure[k - 1];
+            }
+            if (marker[i] == marker[k]) {
+                k++;
+            }
+            failure[i] = k;
+        }
+        return failure;
+    }
+
+    /**
+     * A marker to find, and the end marker of the fragment captured after it.
+     */
+    public static class Marker {
+        private final String name;
+        private final String start;
+        private final String end;
+
+        /**
+         * @param name {@link String} name of the fragment
+         * @param start {@link String} marker the fragment follows
+         * @param end {@link String} marker the fragment ends at, not part of the fragment
+         */
+        public Marker(String name, String start, String end) {
+            this.name = name;
+            this.start = start;
+            this.end = end;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getStart() {
+            return start;
+        }
+
+        public String getEnd() {
+            return end;
+        }
+    }
+
+    /**
+     * The fragments captured by a scan, and how much of the stream it took to find them.
+     */
+    public static class ScanResult {
+        private final Map<String, String> fragments;
+        private final boolean complete;
+        private final long bytesScanned;
+
+        ScanResult(Map<String, String> fragments, boolean complete, long bytesScanned) {
+            this.fragments = Collections.unmodifiableMap(fragments);
+            this.complete = complete;
+            this.bytesScanned = bytesScanned;
+        }
+
+        /**
+         * @param name {@link String} name of the fragment
+         * @return {@link String} fragment, or null if none of the name's markers were found
+         */
+        public String get(String name) {
+            return fragments.get(name);
+        }
+
+        /**
+         * @return true if every named fragment was captured, anything after the last one was left unread
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+
+        public long getBytesScanned() {
+            return bytesScanned;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.morris.unofficial.utils;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * {@code org.morris.unofficial.utils.MessageQueue} is the queue Textract completion notifications are delivered
+ * to. A received message is hidden from other receivers until its visibility timeout passes, and is only gone once
+ * it is deleted, the way an SQS message is.
+ *
+ * @see SqsMessageQueue
+ * @see InMemoryMessageQueue
+ * @see TextractJobDispatcher
+ */
+public interface MessageQueue {
+
+    /**
+     * @param body {@link String} body of the message
+     * @throws IOException if the message could not be sent
+     */
+    void send(String body) throws IOException;
+
+    /**
+     * Long polls the queue, returning as soon as any message is received or the wait time passes.
+     *
+     * @param maxMessages largest number of messages received
+     * @param waitTimeSeconds longest time to wait for a message
+     * @return {@link List} of {@link QueueMessage}s, empty if none arrived in time
+     * @throws IOException if the queue could not be polled
+     * @throws InterruptedException if interrupted while waiting
+     */
+    List<QueueMessage> receive(int maxMessages, int waitTimeSeconds) throws IOException, InterruptedException;
+
+    /**
+     * @param messages {@link List} of received {@link QueueMessage}s to delete
+     * @throws IOException if the messages could not be deleted
+     */
+    void delete(List<QueueMessage> messages) throws IOException;
+
+    /**
+     * Makes received messages visible to other receivers right away, as if their visibility timeout had passed.
+     *
+     * @param messages {@link List} of received {@link QueueMessage}s to release
+     * @throws IOException if the messages could not be released
+     */
+    void release(List<QueueMessage> messages) throws IOException;
+
+    /**
+     * A received message, deleted by its receipt handle.
+     */
+    class QueueMessage {
+        private final String messageId;
+        private final String receiptHandle;
+        private final String body;
+
+        public QueueMessage(String messageId, String receiptHandle, String body) {
+            this.messageId = messageId;
+            this.receiptHandle = receiptHandle;
+            this.body = body;
+        }
+
+        public String getMessageId() {
+            return messageId;
+        }
+
+        public String getReceiptHandle() {
+            return receiptHandle;
+        }
+
+        public String getBody() {
+            return body;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.morris.unofficial.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.morris.unofficial.models.MetroLine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * {@code org.morris.unofficial.utils.MetroJson} holds the one {@link ObjectMapper} every handler reads and writes
+ * json with. Building a mapper is expensive, and a configured mapper and the readers and writers made from it are
+ * safe to share between threads, so they are built once per container.
+ * <p></p>
+ * The processed routes document, routes_doc.json, is streamed: a json array of {@link MetroLine}s written and read
+ * one line at a time with a {@link JsonGenerator} and {@link JsonParser}, straight to and from S3 object streams.
+ * Properties the models don't know are ignored, so a document written by a newer crawl still reads.
+ */
+public class MetroJson {
+    final static private ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    final static private ObjectReader METRO_LINE_READER = OBJECT_MAPPER.readerFor(MetroLine.class);
+    final static private ObjectWriter METRO_LINE_WRITER = OBJECT_MAPPER.writerFor(MetroLine.class);
+
+    public static ObjectMapper getObjectMapper() {
+        return OBJECT_MAPPER;
+    }
+
+    /**
+     * Writes a routes document as a json array, one {@link MetroLine} at a time. The stream is not closed.
+     *
+     * @param metroLines {@link Collection} of {@link MetroLine}
+     * @param outputStream {@link OutputStream} to write the document to
+     * @throws IOException if writing fails
+     */
+    public static void writeMetroLines(Collection<MetroLine> metroLines, OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            for (MetroLine metroLine : metroLines) {
+                METRO_LINE_WRITER.writeValue(generator, metroLine);
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Reads a routes document, handing each {@link MetroLine} to the consumer as soon as it is parsed. The stream
+     * is not closed.
+     *
+     * @param inputStream {@link InputStream} of the document
+     * @param consumer {@link Consumer} of each {@link MetroLine}
+     * @throws IOException if the document can't be read or isn't a json array
+     */
+    public static void readMetroLines(InputStream inputStream, Consumer<MetroLine> consumer) throws IOException {
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(inputStream)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("routes document is not a json array");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                consumer.accept(METRO_LINE_READER.readValue(parser));
+            }
+        }
+    }
+
+    /**
+     * @param inputStream {@link InputStream} of a routes document
+     * @return {@link List} of the document's {@link MetroLine}s
+     * @throws IOException if the document can't be read or isn't a json array
+     * @see #readMetroLines(InputStream, Consumer)
+     */
+    public static List<MetroLine> readMetroLines(InputStream inputStream) throws IOException {
+        List<MetroLine> metroLines = new ArrayList<>();
+        readMetroLines(inputStream, metroLines::add);
+        return metroLines;
+    }
+}
@@ -0,0 +1,175 @@
+package org.morris.unofficial.utils;
+
+import org.morris.unofficial.models.MetroLine;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code org.morris.unofficial.utils.MetroLineExecutor} fans a {@link MetroLineTask} out over every
+ * {@link MetroLine} with a fixed concurrency cap. A line is only submitted once one of the concurrency permits
+ * is free, so the submitting thread is held back instead of queueing the whole network at once. All lines share
+ * a single time budget; lines still running when the budget runs out are cancelled and lines that never got a
+ * permit are skipped. Every line gets its own {@link MetroLineResult}, so one line failing never fails the run.
+ */
+public class MetroLineExecutor {
+    final static private String THREAD_NAME_PREFIX = "metro-line-";
+
+    private final int concurrency;
+
+    /**
+     * A unit of work run for a single {@link MetroLine}.
+     */
+    public interface MetroLineTask {
+        void process(MetroLine metroLine) throws Exception;
+    }
+
+    public MetroLineExecutor(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1: " + concurrency);
+        }
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Runs the given task for every {@link MetroLine}, with no more than {@code concurrency} lines in flight at
+     * once, and waits for them to finish within the given budget.
+     *
+     * @param metroLines {@link List} of {@link MetroLine} to process
+     * @param task {@link MetroLineTask} to run for each line
+     * @param budgetMillis time budget for the whole run in milliseconds
+     *
+     * @return {@link List} of {@link MetroLineResult} in the same order as the given lines
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public List<MetroLineResult> processAll(List<MetroLine> metroLines, MetroLineTask task, long budgetMillis)
+            throws InterruptedException {
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        Semaphore permits = new Semaphore(concurrency);
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, namedThreadFactory());
+        Map<MetroLine, Future<?>> futures = new LinkedHashMap<>();
+
+        try {
+            for (MetroLine metroLine : metroLines) {
+                // backpressure - wait for a free slot, but never past the deadline
+                if (!permits.tryAcquire(remainingNanos(deadline), TimeUnit.NANOSECONDS)) {
+                    break;
+                }
+                futures.put(metroLine, executor.submit(() -> {
+                    try {
+                        task.process(metroLine);
+                        return null;
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+
+            List<MetroLineResult> results = new ArrayList<>(metroLines.size());
+            for (MetroLine metroLine : metroLines) {
+                Future<?> future = futures.get(metroLine);
+                results.add(future == null
+                        ? MetroLineResult.skipped(metroLine)
+                        : awaitResult(metroLine, future, deadline));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private MetroLineResult awaitResult(MetroLine metroLine, Future<?> future, long deadline) throws InterruptedException {
+        try {
+            future.get(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+            return MetroLineResult.succeeded(metroLine);
+        } catch (TimeoutException | CancellationException e) {
+            future.cancel(true);
+            return MetroLineResult.timedOut(metroLine);
+        } catch (ExecutionException e) {
+            return MetroLineResult.failed(metroLine, e.getCause());
+        }
+    }
+
+    private long remainingNanos(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    private ThreadFactory namedThreadFactory() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * The outcome of processing a single {@link MetroLine}.
+     */
+    public static class MetroLineResult {
+        public enum Status {
+            SUCCEEDED,
+            FAILED,
+            TIMED_OUT,
+            SKIPPED
+        }
+
+        private final String line;
+        private final Status status;
+        private final String message;
+
+        private MetroLineResult(String line, Status status, String message) {
+            this.line = line;
+            this.status = status;
+            this.message = message;
+        }
+
+        static MetroLineResult succeeded(MetroLine metroLine) {
+            return new MetroLineResult(metroLine.getLine(), Status.SUCCEEDED, null);
+        }
+
+        static MetroLineResult failed(MetroLine metroLine, Throwable cause) {
+            return new MetroLineResult(metroLine.getLine(), Status.FAILED, String.valueOf(cause));
+        }
+
+        static MetroLineResult timedOut(MetroLine metroLine) {
+            return new MetroLineResult(metroLine.getLine(), Status.TIMED_OUT, "did not finish within the time budget");
+        }
+
+        static MetroLineResult skipped(MetroLine metroLine) {
+            return new MetroLineResult(metroLine.getLine(), Status.SKIPPED, "not started within the time budget");
+        }
+
+        public String getLine() {
+            return line;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return message == null
+                    ? String.format("line '%s': %s", line, status)
+                    : String.format("line '%s': %s - %s", line, status, message);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.morris.unofficial.utils;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.morris.unofficial.models.MetroLine;
+import org.morris.unofficial.models.RouteAttribute;
+import org.morris.unofficial.models.Schedule;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@code org.morris.unofficial.utils.MetroTableItems} maps the processed metro data to the items of the metro
+ * DynamoDB table. Every item of a line shares the line's partition key, so a line's route and all of its
+ * timetables are read back with a single query.
+ * <p></p>
+ * example items: {@code pk: LINE#190, sk: ROUTE} and {@code pk: LINE#190, sk: SCHEDULE#0}
+ * <p></p>
+ * Every item carries a SHA-256 {@link DynamoBatchLoader#FINGERPRINT} of its content attributes, so a weekly
+ * routes document only rewrites the routes that changed.
+ *
+ * @see DynamoBatchLoader
+ */
+public class MetroTableItems {
+    final static public String LINE_KEY_PREFIX = "LINE#";
+    final static public String ROUTE_SORT_KEY = "ROUTE";
+    final static public String SCHEDULE_SORT_KEY_PREFIX = "SCHEDULE#";
+    final static public String SOURCE_KEY = "source_key";
+    final static private ObjectMapper OBJECT_MAPPER = MetroJson.getObjectMapper();
+
+    /**
+     * @param metroLine {@link MetroLine} from the processed routes document
+     * @param version version of the routes document, ex: its last modified time
+     * @param sourceKey {@link String} key of the routes document
+     * @return {@link Map} route item of the line
+     */
+    public static Map<String, AttributeValue> getRouteItem(MetroLine metroLine, long version, String sourceKey) {
+        Map<String, AttributeValue> item = getItem(metroLine.getLine(), ROUTE_SORT_KEY, version, sourceKey);
+        item.put("line", new AttributeValue(metroLine.getLine()));
+        putIfPresent(item, "line_name", metroLine.getLineName());
+        putIfPresent(item, "line_schedule_url", metroLine.getLineScheduleUrl());
+        putIfPresent(item, "pdf_timetable_url", metroLine.getPdfTimetableUrl());
+        putIfPresent(item, "route_map_url", metroLine.getRouteMapUrl());
+        if (metroLine.getRouteAttributes() != null) {
+            putIfPresent(item, "route_attributes", RouteAttribute.toCssClasses(metroLine.getRouteAttributes()));
+        }
+        return putFingerprint(item);
+    }
+
+    /**
+     * @param line {@link String} the line# name of the MetroLine (ex: 190)
+     * @param schedule {@link Schedule} parsed from the line's schedule pdf
+     * @param index index of the timetable in the line's schedule document
+     * @param version version of the schedule document, ex: its last modified time
+     * @param sourceKey {@link String} key of the schedule document
+     * @return {@link Map} schedule item of the timetable, its stops held as json
+     * @throws JsonProcessingException if the timetable's stops can't be written as json
+     */
+    public static Map<String, AttributeValue> getScheduleItem(String line, Schedule schedule, int index, long version,
+                                                              String sourceKey) throws JsonProcessingException {
+        Map<String, AttributeValue> item = getItem(line, SCHEDULE_SORT_KEY_PREFIX + index, version, sourceKey);
+        putIfPresent(item, "route", schedule.getRoute());
+        putIfPresent(item, "service_days", schedule.getServiceDays());
+        putIfPresent(item, "destination", schedule.getDestination());
+        item.put("schedule", new AttributeValue(OBJECT_MAPPER.writeValueAsString(schedule.getSchedule())));
+        return putFingerprint(item);
+    }
+
+    private static Map<String, AttributeValue> getItem(String line, String sortKey, long version, String sourceKey) {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put(DynamoBatchLoader.PARTITION_KEY, new AttributeValue(LINE_KEY_PREFIX + line));
+        item.put(DynamoBatchLoader.SORT_KEY, new AttributeValue(sortKey));
+        item.put(DynamoBatchLoader.VERSION, new AttributeValue().withN(Long.toString(version)));
+        item.put(SOURCE_KEY, new AttributeValue(sourceKey));
+        return item;
+    }
+
+    /**
+     * Digests the item's string attributes in name order. The version and source key change with every document
+     * and are left out, so an item's fingerprint only changes when its content does.
+     */
+    private static Map<String, AttributeValue> putFingerprint(Map<String, AttributeValue> item) {
+        MessageDigest messageDigest = Sha256.newMessageDigest();
+        for (Map.Entry<String, AttributeValue> attribute : new TreeMap<>(item).entrySet()) {
+            String name = attribute.getKey();
+            if (name.equals(DynamoBatchLoader.VERSION) || name.equals(SOURCE_KEY) || attribute.getValue().getS() == null) {
+                continue;
+            }
+            messageDigest.update(name.getBytes(StandardCharsets.UTF_8));
+            messageDigest.update((byte) 0);
+            messageDigest.update(attribute.getValue().getS().getBytes(StandardCharsets.UTF_8));
+            messageDigest.update((byte) 0);
+        }
+        item.put(DynamoBatchLoader.FINGERPRINT, new AttributeValue(Sha256.toHex(messageDigest.digest())));
+        return item;
+    }
+
+    // attributes without a value are left off the item
+    private static void putIfPresent(Map<String, AttributeValue> item, String name, String value) {
+        if (value != null && !value.isEmpty()) {
+            item.put(name, new AttributeValue(value));
+        }
+    }
+}
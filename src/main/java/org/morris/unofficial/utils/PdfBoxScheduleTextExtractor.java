@@ -0,0 +1,109 @@
+package org.morris.unofficial.utils;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code org.morris.unofficial.utils.PdfBoxScheduleTextExtractor} extracts a schedule pdf's text in process with
+ * PDFBox's {@link PDFTextStripper}. A schedule extracts in milliseconds and costs nothing, unlike a Textract
+ * detection which costs a request per page and an asynchronous round trip.
+ * <p></p>
+ * A {@link PDDocument} may not be shared between threads, so for multi page schedules each worker loads its own
+ * copy of the document and strips a contiguous range of pages. Pages are still handed over in page order, each
+ * as soon as it and every page before it are done.
+ */
+public class PdfBoxScheduleTextExtractor implements ScheduleTextExtractor, AutoCloseable {
+    private final int pageConcurrency;
+    private final ExecutorService executor;
+
+    /**
+     * @param pageConcurrency number of workers extracting pages of the same pdf at once
+     */
+    public PdfBoxScheduleTextExtractor(int pageConcurrency) {
+        this.pageConcurrency = Math.max(1, pageConcurrency);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "pdfbox-page-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public int extract(SchedulePdf schedulePdf, PageConsumer consumer) throws IOException, InterruptedException {
+        int pageCount;
+        try (PDDocument document = load(schedulePdf)) {
+            pageCount = document.getNumberOfPages();
+            if (pageConcurrency == 1 || pageCount == 1) {
+                PDFTextStripper pdfTextStripper = new PDFTextStripper();
+                for (int page = 1; page <= pageCount; page++) {
+                    consumer.accept(page, getPageText(pdfTextStripper, document, page));
+                }
+                return pageCount;
+            }
+        }
+
+        // split the pages into contiguous ranges, one per worker
+        List<CompletableFuture<String>> pages = new ArrayList<>();
+        for (int page = 1; page <= pageCount; page++) {
+            pages.add(new CompletableFuture<>());
+        }
+        int workers = Math.min(pageConcurrency, pageCount);
+        int rangeSize = (pageCount + workers - 1) / workers;
+        for (int start = 1; start <= pageCount; start += rangeSize) {
+            int first = start;
+            int last = Math.min(pageCount, start + rangeSize - 1);
+            executor.execute(() -> extractRange(schedulePdf, first, last, pages));
+        }
+
+        try {
+            for (int page = 1; page <= pageCount; page++) {
+                consumer.accept(page, pages.get(page - 1).get());
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+        return pageCount;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void extractRange(SchedulePdf schedulePdf, int first, int last, List<CompletableFuture<String>> pages) {
+        try (PDDocument document = load(schedulePdf)) {
+            PDFTextStripper pdfTextStripper = new PDFTextStripper();
+            for (int page = first; page <= last; page++) {
+                pages.get(page - 1).complete(getPageText(pdfTextStripper, document, page));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (int page = first; page <= last; page++) {
+                pages.get(page - 1).completeExceptionally(e);
+            }
+        }
+    }
+
+    // a downloaded pdf is loaded from memory, each worker parses its own copy of the bytes
+    private static PDDocument load(SchedulePdf schedulePdf) throws IOException {
+        return schedulePdf.getContent() == null
+                ? PDDocument.load(new File(schedulePdf.getPath()))
+                : PDDocument.load(schedulePdf.getContent());
+    }
+
+    private String getPageText(PDFTextStripper pdfTextStripper, PDDocument document, int page) throws IOException {
+        pdfTextStripper.setStartPage(page);
+        pdfTextStripper.setEndPage(page);
+        return pdfTextStripper.getText(document);
+    }
+}
@@ -1,210 +1,278 @@
 package org.morris.unofficial.utils;
 
-import com.amazonaws.client.builder.AwsClientBuilder.EndpointConfiguration;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.identitymanagement.AmazonIdentityManagement;
-import com.amazonaws.services.identitymanagement.AmazonIdentityManagementClient;
 import com.amazonaws.services.identitymanagement.model.GetRoleRequest;
 import com.amazonaws.services.identitymanagement.model.GetRoleResult;
 import com.amazonaws.services.lambda.runtime.LambdaLogger;
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.AmazonS3ClientBuilder;
-import com.amazonaws.services.s3.model.GetObjectRequest;
-import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectInputStream;
 import com.amazonaws.services.sns.AmazonSNS;
-import com.amazonaws.services.sns.AmazonSNSClientBuilder;
 import com.amazonaws.services.sns.model.ListTopicsResult;
 import com.amazonaws.services.sns.model.Topic;
 import com.amazonaws.services.sqs.AmazonSQS;
-import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
 import com.amazonaws.services.sqs.model.GetQueueUrlRequest;
 import com.amazonaws.services.sqs.model.GetQueueUrlResult;
 import com.amazonaws.services.textract.AmazonTextract;
-import org.apache.commons.io.FileUtils;
 import org.joda.time.DateTime;
 import software.amazon.awssdk.regions.Region;
-import com.amazonaws.services.textract.AmazonTextractClient;
+import software.amazon.awssdk.services.comprehend.ComprehendClient;
 import software.amazon.awssdk.services.textract.TextractClient;
 
 import java.io.IOException;
 import java.io.File;
-import java.io.PrintWriter;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.InputStream;
 import java.io.FileNotFoundException;
 import java.io.FileInputStream;
-import java.io.OutputStream;
-import java.io.BufferedOutputStream;
-import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class ProcessEventUtils {
     final static public String REGION = System.getenv("REGION"); // region
     final static public String DEFAULT_REGION = "us-west-2";
     final static public String GET_REQUEST = "GET";
     final static public String METRO_TOP_LEVEL_URL = "https://kingcounty.gov";
+    final static private String METRO_SITE_URL = System.getenv("METRO_SITE_URL");
     final static private String TXFFTXYYGT = System.getenv("TXFFTXYYGT");
     final static private String METRO_SQS_QUEUE = System.getenv("METROSQS");
     final static private String FIFO = ".fifo";
 
+    // largest single transfer from a stream into a /tmp file, the channel copies through its own small buffer
+    final static private long TRANSFER_CHUNK_BYTES = 1024 * 1024;
+
+    // infrastructure lookups are cached across warm invocations, optionally persisted to /tmp
+    final static private String TEXTRACT_TOPIC_ARN_KEY = "textract.topic.arn";
+    final static private String TXFFTXYYFT_ROLE_ARN_KEY = "txfftxyyft.role.arn";
+    final static private String METRO_SQS_QUEUE_URL_KEY = "metro.sqs.queue.url";
+    final static private InfrastructureCache INFRASTRUCTURE_CACHE = new InfrastructureCache(
+            getEnvironmentInt("INFRASTRUCTURE_CACHE_TTL_SECONDS", 3600) * 1000L,
+            System.getenv("INFRASTRUCTURE_CACHE_FILE"));
+
+    // every fetch from the metro site shares one fetcher, so its connections are reused across lines
+    final static private HttpFetcher HTTP_FETCHER = new HttpFetcher(
+            getEnvironmentInt("HTTP_CONNECT_TIMEOUT_MILLIS", 10000),
+            getEnvironmentInt("HTTP_READ_TIMEOUT_MILLIS", 30000));
+
+    // the handlers' storage, messaging, text detection and key phrase ports, each resolving its client on first use
+    final static private BlobStore BLOB_STORE = new S3BlobStore(AwsClientRegistry::getS3Client);
+    final static private MessageQueue METRO_MESSAGE_QUEUE = new SqsMessageQueue(AwsClientRegistry::getSQSClient,
+            ProcessEventUtils::getMetroSQSQueueUrl);
+    final static private TextDetectionService TEXT_DETECTION_SERVICE = new TextractTextDetectionService(
+            () -> AwsClientRegistry.getTextractClient(true));
+    final static private KeyPhraseService KEY_PHRASE_SERVICE = new ComprehendKeyPhraseService(
+            AwsClientRegistry::getComprehendClient);
+
     /**
-     * Get {@link AmazonS3} client
+     * Get the shared {@link BlobStore} of the metro buckets.
      *
-     * @return {@link AmazonS3}
+     * @return {@link BlobStore} backed by S3
      */
-    public static AmazonS3 getS3Client() {
-        return AmazonS3ClientBuilder.standard()
-                .withRegion(getRegion())
-                .build();
+    public static BlobStore getBlobStore() {
+        return BLOB_STORE;
     }
 
     /**
-     * Get {@link AmazonTextract} client with optional endpoint configuration.
-     * {@code Please note: only one of region or endpoint can be set.}
+     * Get the shared {@link MessageQueue} of the metro SQS queue, which receives the Textract completion
+     * notifications.
      *
-     * @return {@link AmazonTextract}
+     * @return {@link MessageQueue} backed by SQS
+     * @see #getMetroSQSQueueUrl()
      */
-    public static AmazonTextract getAmazonTextractClient(boolean withEndpoint) {
-        if (withEndpoint) {
-            EndpointConfiguration endpoint = new EndpointConfiguration(
-                    "https://textract." + getRegion() + ".amazonaws.com", getRegion());
+    public static MessageQueue getMetroMessageQueue() {
+        return METRO_MESSAGE_QUEUE;
+    }
 
-            return AmazonTextractClient.builder()
-                    .withEndpointConfiguration(endpoint)
-                    .build();
-        }
-        return getAmazonTextractClient();
+    /**
+     * Get the shared {@link TextDetectionService}.
+     *
+     * @return {@link TextDetectionService} backed by Textract
+     */
+    public static TextDetectionService getTextDetectionService() {
+        return TEXT_DETECTION_SERVICE;
+    }
+
+    /**
+     * Get the shared {@link KeyPhraseService}.
+     *
+     * @return {@link KeyPhraseService} backed by Comprehend
+     */
+    public static KeyPhraseService getKeyPhraseService() {
+        return KEY_PHRASE_SERVICE;
+    }
+
+    /**
+     * Get the shared {@link HttpFetcher} of the SEA metro site.
+     *
+     * @return {@link HttpFetcher}
+     */
+    public static HttpFetcher getHttpFetcher() {
+        return HTTP_FETCHER;
     }
 
     /**
-     * Get {@link AmazonTextract} client.
+     * Get the shared {@link AmazonS3} client. The client is reused across calls and must not be shut down.
+     *
+     * @return {@link AmazonS3}
+     * @see AwsClientRegistry
+     */
+    public static AmazonS3 getS3Client() {
+        return AwsClientRegistry.getS3Client();
+    }
+
+    /**
+     * Get the shared {@link AmazonTextract} client with optional endpoint configuration.
+     * {@code Please note: only one of region or endpoint can be set.}
      *
      * @return {@link AmazonTextract}
+     * @see AwsClientRegistry
      */
-    private static AmazonTextract getAmazonTextractClient() {
-        return AmazonTextractClient.builder()
-                .withRegion(getRegion())
-                .build();
+    public static AmazonTextract getAmazonTextractClient(boolean withEndpoint) {
+        return AwsClientRegistry.getTextractClient(withEndpoint);
     }
 
     /**
-     * Get {@link TextractClient}
+     * Get the shared {@link TextractClient}
      *
      * @return {@link TextractClient}
+     * @see AwsClientRegistry
      */
     public static TextractClient getTextractClient() {
-        return TextractClient.builder()
-                .region(getRegionV2())
-                .build();
+        return AwsClientRegistry.getTextractV2Client();
     }
 
     /**
-     * Get {@link AmazonSNS} client.
+     * Get the shared {@link AmazonSNS} client.
      *
      * @return {@link AmazonSNS}
+     * @see AwsClientRegistry
      */
     public static AmazonSNS getAmazonSNSClient() {
-        return AmazonSNSClientBuilder.standard()
-                .withRegion(getRegion())
-                .build();
+        return AwsClientRegistry.getSNSClient();
     }
 
     /**
-     * Get {@link AmazonSQS} client.
+     * Get the shared {@link AmazonSQS} client.
      *
      * @return {@link AmazonSQS}
+     * @see AwsClientRegistry
      */
     public static AmazonSQS getAmazonSQSClient() {
-        return AmazonSQSClientBuilder.standard()
-                .withRegion(getRegion())
-                .build();
+        return AwsClientRegistry.getSQSClient();
     }
 
     /**
-     * Get {@link AmazonIdentityManagement} client.
+     * Get the shared {@link AmazonDynamoDB} client.
+     *
+     * @return {@link AmazonDynamoDB}
+     * @see AwsClientRegistry
+     */
+    public static AmazonDynamoDB getAmazonDynamoDBClient() {
+        return AwsClientRegistry.getDynamoDBClient();
+    }
+
+    /**
+     * Get the shared {@link AmazonIdentityManagement} client.
      *
      * @return {@link AmazonIdentityManagement}
+     * @see AwsClientRegistry
      */
     public static AmazonIdentityManagement getAmazonIdentityManagementClient() {
-        return AmazonIdentityManagementClient.builder()
-                .withRegion(getRegion())
-                .build();
+        return AwsClientRegistry.getIdentityManagementClient();
     }
 
     /**
-     * Shutdown all clients in given {@link List}
+     * Get the shared {@link ComprehendClient}.
      *
-     * @param clients {@link Object}
+     * @return {@link ComprehendClient}
+     * @see AwsClientRegistry
      */
-    public static void shutdownClients(List<Object> clients) {
-        for (Object client : clients) {
-            if (client instanceof AmazonS3) {
-                ((AmazonS3) client).shutdown();
-            } else if (client instanceof AmazonTextract) {
-                ((AmazonTextract) client).shutdown();
-            } else if (client instanceof TextractClient) {
-                ((TextractClient) client).close();
-            } else if (client instanceof AmazonIdentityManagement) {
-                ((AmazonIdentityManagement) client).shutdown();
-            } else {
-                if (client instanceof AmazonSQS) {
-                    ((AmazonSQS) client).shutdown();
-                }
-            }
-        }
+    public static ComprehendClient getComprehendClient() {
+        return AwsClientRegistry.getComprehendClient();
     }
 
     /**
-     * Get {@link AmazonTextract} service topic arn from SNS service.
+     * Get {@link AmazonTextract} service topic arn from SNS service. The arn is cached, so only the first call
+     * within the cache's ttl lists topics.
      *
      * @return {@link String}
+     * @see InfrastructureCache
      */
     public static String getTextractTopicArn() {
-        AmazonSNS snsClient = getAmazonSNSClient();
-        ListTopicsResult topicsResults = snsClient.listTopics();
-        String textractTopicArn = null;
-        List<Topic> topics = topicsResults.getTopics();
-        for (Topic topic : topics) {
-            String lowercaseTopic = topic.toString().toLowerCase();
-            if (lowercaseTopic.contains("textract") && lowercaseTopic.contains("detection")) {
-                textractTopicArn = topic.getTopicArn();
-            }
-        }
-        snsClient.shutdown();
-        return textractTopicArn;
+        return INFRASTRUCTURE_CACHE.get(TEXTRACT_TOPIC_ARN_KEY, ProcessEventUtils::findTextractTopicArn);
     }
 
     /**
-     * Get Seattle Metro Role with basic permissions.
+     * Get Seattle Metro Role with basic permissions. The role arn is cached, so only the first call within the
+     * cache's ttl calls IAM.
      *
      * @return {@link String}
+     * @see InfrastructureCache
      */
     public static String getTXFFTXYYFTRole() {
-        AmazonIdentityManagement identityManagementClient = getAmazonIdentityManagementClient();
-        GetRoleRequest getRoleRequest = new GetRoleRequest()
-                .withRoleName(TXFFTXYYGT);
-        GetRoleResult result = identityManagementClient.getRole(getRoleRequest);
-        String arn = result.getRole().getArn();
-        identityManagementClient.shutdown();
-        return arn;
+        return INFRASTRUCTURE_CACHE.get(TXFFTXYYFT_ROLE_ARN_KEY, () -> {
+            GetRoleRequest getRoleRequest = new GetRoleRequest()
+                    .withRoleName(TXFFTXYYGT);
+            GetRoleResult result = getAmazonIdentityManagementClient().getRole(getRoleRequest);
+            return result.getRole().getArn();
+        });
     }
 
     /**
-     * Get MetroLine SQS Queue URL for text detection messaging process.
+     * Get MetroLine SQS Queue URL for text detection messaging process. The queue url is cached, so only the
+     * first call within the cache's ttl calls SQS.
      *
      * @return {@link String} metro SQS Queue Url
+     * @see InfrastructureCache
      */
     public static String getMetroSQSQueueUrl() {
-        AmazonSQS sqsClient = getAmazonSQSClient();
-        GetQueueUrlRequest getQueueUrlRequest = new GetQueueUrlRequest().withQueueName(METRO_SQS_QUEUE + FIFO);
-        GetQueueUrlResult getQueueUrlResult = sqsClient.getQueueUrl(getQueueUrlRequest);
-        String metroSQSQueueUrl = getQueueUrlResult.getQueueUrl();
-        sqsClient.shutdown();
-        return metroSQSQueueUrl;
+        return INFRASTRUCTURE_CACHE.get(METRO_SQS_QUEUE_URL_KEY, () -> {
+            GetQueueUrlRequest getQueueUrlRequest = new GetQueueUrlRequest().withQueueName(METRO_SQS_QUEUE + FIFO);
+            GetQueueUrlResult getQueueUrlResult = getAmazonSQSClient().getQueueUrl(getQueueUrlRequest);
+            return getQueueUrlResult.getQueueUrl();
+        });
+    }
+
+    /**
+     * Get the {@link InfrastructureCache} holding infrastructure lookups, including its hit and miss counts.
+     *
+     * @return {@link InfrastructureCache}
+     */
+    public static InfrastructureCache getInfrastructureCache() {
+        return INFRASTRUCTURE_CACHE;
+    }
+
+    /**
+     * Lists every SNS topic, following pagination, and returns the arn of the Textract detection topic.
+     *
+     * @return {@link String} topic arn, or null if no textract detection topic exists
+     */
+    private static String findTextractTopicArn() {
+        AmazonSNS snsClient = getAmazonSNSClient();
+        String textractTopicArn = null;
+        String nextToken = null;
+        do {
+            ListTopicsResult topicsResults = snsClient.listTopics(nextToken);
+            List<Topic> topics = topicsResults.getTopics();
+            for (Topic topic : topics) {
+                String lowercaseTopic = topic.toString().toLowerCase();
+                if (lowercaseTopic.contains("textract") && lowercaseTopic.contains("detection")) {
+                    textractTopicArn = topic.getTopicArn();
+                }
+            }
+            nextToken = topicsResults.getNextToken();
+        } while (nextToken != null);
+        return textractTopicArn;
     }
 
     /**
@@ -220,6 +288,37 @@ public class ProcessEventUtils {
         return REGION == null ? Region.of(DEFAULT_REGION) : Region.of(REGION);
     }
 
+    /**
+     * Get the metro site the route list is crawled from and its relative links are resolved against. It is set
+     * with METRO_SITE_URL to crawl another copy of the site.
+     *
+     * @return {@link String} site url without a trailing slash, {@link #METRO_TOP_LEVEL_URL} when not set
+     */
+    public static String getMetroSiteUrl() {
+        return METRO_SITE_URL == null || METRO_SITE_URL.isEmpty() ? METRO_TOP_LEVEL_URL : METRO_SITE_URL;
+    }
+
+    /**
+     * Get an integer setting from the environment, falling back to the given default when the variable
+     * is not set or is not a number.
+     *
+     * @param name environment variable name
+     * @param defaultValue value used when the variable is missing or malformed
+     *
+     * @return int value
+     */
+    public static int getEnvironmentInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
     /**
      * Creates a prefix for the unprocessed documents in the unprocessed S3 bucket for
      * better query results and future data processing and recording insights.
@@ -265,60 +364,50 @@ public class ProcessEventUtils {
     }
 
     /**
-     * Prints the contents of a {@link InputStream} to a file path in /tmp directory.
+     * Prints the contents of a {@link InputStream} to a file path in /tmp directory. The bytes are copied exactly
+     * as read, through a {@link FileChannel} that pulls from the stream's channel, and any existing file is
+     * truncated. The file is closed once the copy is done, the stream is left to the caller, such as the
+     * {@link HttpFetcher} that drains and closes a fetched body.
      *
      * @param inputStream {@link InputStream} content
      * @param strPath {@link String} Path to save content as file
      * @param logger {@link LambdaLogger}
+     *
+     * @return number of bytes written
+     * @throws IOException if the stream can't be read or the file can't be written
      */
-    public static void printToFile(InputStream inputStream, String strPath, LambdaLogger logger) {
-        purgeTmpDirectoryFile(strPath, logger);
-        try {
-            BufferedReader in = new BufferedReader(new InputStreamReader(inputStream));
-            String line;
-            StringBuffer content = new StringBuffer();
-            while ((line = in.readLine()) != null) {
-                content.append(line);
-            }
-            in.close();
-
-            // write to file
-            PrintWriter printWriter = new PrintWriter(strPath);
-            printWriter.println(content);
-        } catch (IOException e) {
-            logger.log(String.format("Error writing route document dump to '%s': ", strPath + e.getMessage()));
-        }
+    public static long printToFile(InputStream inputStream, String strPath, LambdaLogger logger) throws IOException {
+        long startNanos = System.nanoTime();
+        long position = transferToFile(inputStream, Paths.get(strPath));
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        logger.log(String.format("wrote %d bytes to '%s' in %dms (%d KB/s)", position, strPath, elapsedMillis,
+                position * 1000 / 1024 / elapsedMillis));
+        return position;
     }
 
     /**
-     * Prints the contents of a pdf file, given the files url, to a PDF file in /tmp directory.
+     * Copies a {@link InputStream} to a file exactly as read, through a {@link FileChannel} that pulls from the
+     * stream's channel. Any existing file is truncated. The file is closed, the stream is left open for the caller,
+     * such as an http fetch that drains it for connection reuse.
      *
-     * @param pdfPath {@link String} path to save pdf file in /tmp
-     * @param pdfUrl {@link String} the url of the given pdf file
+     * @param inputStream {@link InputStream} content
+     * @param path {@link Path} of the file to write
      *
-     * @see URL
-     * @see InputStream#read(byte[])
-     * @see OutputStream#write(int)
+     * @return number of bytes written
+     * @throws IOException if the stream can't be read or the file can't be written
+     * @see #printToFile(InputStream, String, LambdaLogger)
      */
-    public static void printToPdfFile(String pdfPath, String pdfUrl, LambdaLogger logger) {
-        // delete file if it exists
-        purgeTmpDirectoryFile(pdfPath, logger);
-        try {
-            OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(Paths.get(pdfPath)));
-            URL metroScheduleUrl = new URL(pdfUrl);
-            InputStream in = metroScheduleUrl.openStream();
-
-            int length;
-            byte[] buffer = new byte[1024];
-            while ((length = in.read(buffer)) > -1) {
-                outputStream.write(buffer, 0, length);
+    public static long transferToFile(InputStream inputStream, Path path) throws IOException {
+        long position = 0;
+        ReadableByteChannel source = Channels.newChannel(inputStream);
+        try (FileChannel target = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long transferred;
+            while ((transferred = target.transferFrom(source, position, TRANSFER_CHUNK_BYTES)) > 0) {
+                position += transferred;
             }
-            outputStream.close();
-            in.close();
-            System.out.printf("File written to: %s%n", pdfPath);
-        } catch (IOException e) {
-            System.out.printf("Error writing route document dump to '%s': " + e.getMessage() + "%n", pdfPath);
         }
+        return position;
     }
 
     public static StringBuffer readFileAsStringBuffer(String filePath, LambdaLogger logger) throws IOException {
@@ -351,9 +440,7 @@ public class ProcessEventUtils {
      */
     public static void purgeTmpDirectoryFile(String path, LambdaLogger logger) {
         try {
-            if (FileUtils.toFile(new URL(path)).exists()) {
-                FileUtils.forceDelete(new File(path));
-            }
+            Files.deleteIfExists(Paths.get(path));
         } catch (IOException e) {
             logger.log("Error cleaning /tmp directory: " + e.getMessage());
         }
@@ -381,22 +468,6 @@ public class ProcessEventUtils {
         return null;
     }
 
-    /**
-     * Get {@link S3Object}
-     *
-     * @param key object's key - path is s3 bucket
-     * @param bucket object's bucket
-     *
-     * @return {@link S3Object}
-     */
-    public static S3Object getS3Object(String key, String bucket) {
-        GetObjectRequest getObjectRequest = new GetObjectRequest(bucket, key);
-        AmazonS3 s3Client = getS3Client();
-        S3Object object = s3Client.getObject(getObjectRequest);
-        s3Client.shutdown();
-        return object;
-    }
-
     /**
      * Get {@link com.amazonaws.services.textract.model.S3Object}.
      *
@@ -412,26 +483,30 @@ public class ProcessEventUtils {
     }
 
     /**
-     * Loads the SEA metro document dump to the given S3 Bucket.
+     * Loads the SEA metro document dump to the given bucket of a {@link BlobStore}, with the given user metadata.
      *
+     * @param blobStore {@link BlobStore} to upload the file to
      * @param filePath The /tmp path to the given file
      * @param bucketName bucket to upload file
      * @param extraPrefix string to add to bucket prefix
+     * @param contentType {@link String} content type of the file
+     * @param userMetadata {@link Map} of user metadata stored with the object
+     *
+     * @return {@link String} the uploaded object's key
+     * @throws IOException if the file can't be read or uploaded
      */
-    public static void putS3File(String filePath, String bucketName, String extraPrefix) {
+    public static String putFile(BlobStore blobStore, String filePath, String bucketName, String extraPrefix,
+                                 String contentType, Map<String, String> userMetadata) throws IOException {
         String fileName;
         if (extraPrefix.isEmpty()) {
             fileName = ProcessEventUtils.getPrefix() + new File(filePath).getName();
         } else {
             fileName = getSchedulePdfKey(filePath, extraPrefix);
         }
-        PutObjectRequest putObjectRequest = new PutObjectRequest(bucketName, fileName, new File(filePath));
-        AmazonS3 s3 = ProcessEventUtils.getS3Client();
-        s3.putObject(putObjectRequest);
-        s3.shutdown();
+        blobStore.put(bucketName, fileName, Paths.get(filePath), contentType, userMetadata);
+        return fileName;
     }
 
-
     /**
      * Get a pdf schedule's key given the filepath and prefix
      *
@@ -0,0 +1,64 @@
+package org.morris.unofficial.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * {@code org.morris.unofficial.utils.RateLimiter} hands out evenly spaced request slots, so requests from all
+ * threads never exceed the given rate. A rate of zero or less hands out every slot right away.
+ */
+public class RateLimiter {
+    private final long intervalNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicLong permits = new AtomicLong();
+    private long nextSlotNanos;
+
+    public RateLimiter(double requestsPerSecond) {
+        this(requestsPerSecond, System::nanoTime);
+    }
+
+    /**
+     * @param requestsPerSecond maximum requests per second across all threads
+     * @param nanoClock {@link LongSupplier} of the current time in nanoseconds, such as {@link System#nanoTime()}
+     */
+    public RateLimiter(double requestsPerSecond, LongSupplier nanoClock) {
+        this.intervalNanos = requestsPerSecond <= 0 ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+        this.nanoClock = nanoClock;
+        this.nextSlotNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Waits for the next request slot.
+     *
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Takes the next request slot without waiting for it.
+     *
+     * @return the time in nanoseconds until the slot starts, 0 if it has already started
+     */
+    public synchronized long reserve() {
+        permits.incrementAndGet();
+        long now = nanoClock.getAsLong();
+        long slot = Math.max(now, nextSlotNanos);
+        nextSlotNanos = slot + intervalNanos;
+        return slot - now;
+    }
+
+    public long getPermits() {
+        return permits.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("permits: %d", permits.get());
+    }
+}
@@ -0,0 +1,98 @@
+package org.morris.unofficial.utils;
+
+import org.morris.unofficial.models.MetroLine;
+import org.morris.unofficial.models.RouteAttribute;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@code org.morris.unofficial.utils.RouteAttributeIndex} answers which lines have a combination of
+ * {@link RouteAttribute}s. Every attribute is indexed up front as a {@link BitSet} with one bit per line, so a
+ * query is a handful of bitwise ands over a few words and no line's attributes are looked at.
+ * <p></p>
+ * Example: RapidRide lines running Sunday that aren't suspended, {@code getLines(EnumSet.of(RAPIDRIDE, SUNDAY,
+ * NOT_SUSPENDED), EnumSet.noneOf(RouteAttribute.class))}
+ * <p></p>
+ * The index is immutable once built and safe to query from any number of threads.
+ */
+public class RouteAttributeIndex {
+    private final List<String> lines;
+    private final BitSet allLines;
+    private final BitSet[] attributeLines;
+
+    private RouteAttributeIndex(List<String> lines, BitSet allLines, BitSet[] attributeLines) {
+        this.lines = lines;
+        this.allLines = allLines;
+        this.attributeLines = attributeLines;
+    }
+
+    /**
+     * Indexes the attributes of the given lines. Lines keep the order given.
+     *
+     * @param metroLines {@link Collection} of {@link MetroLine}s, ex: the routes of a processed routes document
+     * @return {@link RouteAttributeIndex}
+     */
+    public static RouteAttributeIndex build(Collection<MetroLine> metroLines) {
+        List<String> lines = new ArrayList<>(metroLines.size());
+        BitSet allLines = new BitSet(metroLines.size());
+        BitSet[] attributeLines = new BitSet[RouteAttribute.values().length];
+        for (int i = 0; i < attributeLines.length; i++) {
+            attributeLines[i] = new BitSet(metroLines.size());
+        }
+
+        for (MetroLine metroLine : metroLines) {
+            int bit = lines.size();
+            lines.add(metroLine.getLine());
+            allLines.set(bit);
+            if (metroLine.getRouteAttributes() != null) {
+                for (RouteAttribute routeAttribute : metroLine.getRouteAttributes()) {
+                    attributeLines[routeAttribute.ordinal()].set(bit);
+                }
+            }
+        }
+        return new RouteAttributeIndex(Collections.unmodifiableList(lines), allLines, attributeLines);
+    }
+
+    /**
+     * @param with {@link Set} of attributes every line must have
+     * @param without {@link Set} of attributes no line may have
+     * @return {@link List} of the matching lines, in index order
+     */
+    public List<String> getLines(Set<RouteAttribute> with, Set<RouteAttribute> without) {
+        BitSet matches = match(with, without);
+        List<String> matchingLines = new ArrayList<>(matches.cardinality());
+        for (int bit = matches.nextSetBit(0); bit >= 0; bit = matches.nextSetBit(bit + 1)) {
+            matchingLines.add(lines.get(bit));
+        }
+        return matchingLines;
+    }
+
+    /**
+     * @param with {@link Set} of attributes every line must have
+     * @param without {@link Set} of attributes no line may have
+     * @return number of matching lines
+     */
+    public int count(Set<RouteAttribute> with, Set<RouteAttribute> without) {
+        return match(with, without).cardinality();
+    }
+
+    public List<String> getLines() {
+        return lines;
+    }
+
+    private BitSet match(Set<RouteAttribute> with, Set<RouteAttribute> without) {
+        BitSet matches = (BitSet) allLines.clone();
+        for (RouteAttribute routeAttribute : with) {
+            matches.and(attributeLines[routeAttribute.ordinal()]);
+        }
+        for (RouteAttribute routeAttribute : without) {
+            matches.andNot(attributeLines[routeAttribute.ordinal()]);
+        }
+        return matches;
+    }
+}
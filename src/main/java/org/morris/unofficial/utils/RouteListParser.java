@@ -0,0 +1,356 @@
+package org.morris.unofficial.utils;
+
+import org.morris.unofficial.models.MetroLine;
+import org.morris.unofficial.models.RouteAttribute;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * {@code org.morris.unofficial.utils.RouteListParser} is a single pass, streaming tokenizer over the SEA metro
+ * schedules and maps page dump. The route list is read directly from the given {@link Reader}, and each route's
+ * line, line name and line schedule url is picked out as the markup is read. The full document is never held in
+ * memory, only the small fragments that make up a {@link MetroLine}.
+ * <p></p>
+ * example route markup: {@code <a href="/depts/.../hastop/a-line.aspx" class="route-name"><strong>A Line</strong> -
+ * Tukwila International Boulevard Station, Federal Way Transit Center</a> ... <li><a href="/depts/.../hastop/a-line.aspx">
+ * Online schedule</a></li>}
+ * <p></p>
+ * The route's attributes are read from the class attribute of its route item, which comes before its route name:
+ * {@code <li id="route671" class="route-item rapidride-route night-owl-route weekday saturday sunday not-suspended esn">}
+ * <p></p>
+ * The rest of the route's menu, up to its {@code </ul>}, is read as one fragment for the links to the route's map
+ * and pdf timetable: {@code <li class="map"><a data-fancybox="" data-src="/~/media/.../m671.jpg" href="javascript:;">
+ * Route map</a></li> <li class="pdf-timetable"><a href="/~/media/.../rt-a-line.pdf" target="_blank">PDF timetable</a></li>}
+ */
+public class RouteListParser {
+    final static public String ROUTE_LIST_MARKER = "Route list";
+    final static public String ROUTE_NAME_MARKER = "route-name";
+    final static private String ROUTE_ITEM_MARKER = "class=\"route-item";
+    final static private String CLASS_START_MARKER = "class=\"";
+    final static private String LINE_START_MARKER = "><strong>";
+    final static private String LINE_END_MARKER = "</strong> -";
+    final static private String ANCHOR_END_MARKER = "</a>";
+    final static private String HREF_START_MARKER = "href=\"";
+    final static private String HREF_END_MARKER = "\">";
+    final static private String ROUTE_MENU_END_MARKER = "</ul>";
+    final static private String PDF_TIMETABLE_MARKER = "class=\"pdf-timetable\"";
+    final static private String ROUTE_MAP_MARKER = "class=\"map\"";
+    final static private String DATA_SRC_START_MARKER = "data-src=\"";
+    final static private String LIST_ITEM_END_MARKER = "</li>";
+
+    // no single route fragment should come close to this, anything longer is malformed markup
+    final static private int MAX_FRAGMENT_LENGTH = 4096;
+    final static private int BUFFER_SIZE = 8192;
+    final static private Map<String, int[]> FAILURE_TABLES = new ConcurrentHashMap<>();
+
+    private final Reader reader;
+    private final String siteUrl;
+
+    // the markup before the next route's name, when reading a route's menu ran into it
+    private String nextRouteItem;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder fragment = new StringBuilder(256);
+    private int position = 0;
+    private int limit = 0;
+
+    public RouteListParser(Reader reader) {
+        this(reader, ProcessEventUtils.getMetroSiteUrl());
+    }
+
+    /**
+     * @param reader {@link Reader} of the schedules and maps page dump
+     * @param siteUrl {@link String} metro site url the route list's relative links are resolved against
+     */
+    public RouteListParser(Reader reader, String siteUrl) {
+        this.reader = reader;
+        this.siteUrl = siteUrl;
+    }
+
+    /**
+     * Parses every route in the route list and collects them in document order.
+     *
+     * @return {@link List} of {@link MetroLine}
+     * @throws IOException if the underlying {@link Reader} fails or the document has no route list
+     */
+    public List<MetroLine> parse() throws IOException {
+        List<MetroLine> metroLines = new ArrayList<>();
+        parse(metroLines::add);
+        return metroLines;
+    }
+
+    /**
+     * Parses every route in the route list, handing each {@link MetroLine} to the given consumer as soon as
+     * its schedule url has been read. Routes with malformed markup are skipped.
+     *
+     * @param consumer {@link Consumer} of each parsed {@link MetroLine}
+     * @throws IOException if the underlying {@link Reader} fails or the document has no route list
+     */
+    public void parse(Consumer<MetroLine> consumer) throws IOException {
+        if (!skipTo(ROUTE_LIST_MARKER)) {
+            throw new IOException("document has no route list");
+        }
+        String routeItem;
+        while ((routeItem = readRouteItem()) != null) {
+            EnumSet<RouteAttribute> routeAttributes = getRouteAttributes(routeItem);
+            if (!skipTo(LINE_START_MARKER)) {
+                return;
+            }
+            String line = readUntil(LINE_END_MARKER);
+            String lineName = readUntil(ANCHOR_END_MARKER);
+            if (line == null || lineName == null || !skipTo(HREF_START_MARKER)) {
+                continue;
+            }
+            String lineScheduleUrl = readUntil(HREF_END_MARKER);
+            if (lineScheduleUrl == null) {
+                continue;
+            }
+
+            MetroLine metroLine = new MetroLine();
+            metroLine.setLine(line);
+            metroLine.setLineName(formatLineName(lineName));
+            metroLine.setRouteAttributes(routeAttributes);
+
+            // prefix the url with the metro site top level domain before routes schedules url
+            metroLine.setLineScheduleUrl(siteUrl + lineScheduleUrl);
+
+            // the route's menu follows its schedule url, a route without a pdf timetable or map keeps them null
+            String routeMenu = readRouteMenu();
+            if (routeMenu != null) {
+                metroLine.setPdfTimetableUrl(getRouteMenuUrl(routeMenu, PDF_TIMETABLE_MARKER, HREF_START_MARKER));
+                metroLine.setRouteMapUrl(getRouteMenuUrl(routeMenu, ROUTE_MAP_MARKER, DATA_SRC_START_MARKER));
+            }
+            consumer.accept(metroLine);
+        }
+    }
+
+    /**
+     * Reads up to the next route's name, unless reading the last route's menu already did.
+     *
+     * @return {@link String} markup read before the route's name, or null if there are no more routes
+     */
+    private String readRouteItem() throws IOException {
+        if (nextRouteItem != null) {
+            String routeItem = nextRouteItem;
+            nextRouteItem = null;
+            return routeItem;
+        }
+        return readTailUntil(ROUTE_NAME_MARKER);
+    }
+
+    /**
+     * Reads a route's menu up to its end. A route without a menu runs into the next route's name first, the menu
+     * of the next route is never taken for its own and the markup read is kept as the next route's item.
+     *
+     * @return {@link String} fragment of the route's menu, or null if the route has none
+     */
+    private String readRouteMenu() throws IOException {
+        fragment.setLength(0);
+        int marker = scanAny(ROUTE_MENU_END_MARKER, ROUTE_NAME_MARKER);
+        if (marker == 0) {
+            fragment.setLength(fragment.length() - ROUTE_MENU_END_MARKER.length());
+            return fragment.toString();
+        }
+        if (marker == 1) {
+            fragment.setLength(fragment.length() - ROUTE_NAME_MARKER.length());
+            nextRouteItem = fragment.toString();
+        }
+        return null;
+    }
+
+    private String formatLineName(String lineName) {
+        return lineName.trim()
+                .replace("P&amp;R", "")
+                .replace("<span class=\"sr-only\">also known as SVT</span>", "");
+    }
+
+    /**
+     * Gets the attributes of a route from the class attribute of the last route item in the markup before the
+     * route's name.
+     *
+     * @param routeItem {@link String} markup read before the route's name
+     * @return {@link EnumSet} of the route's attributes, empty if there is no route item
+     */
+    private EnumSet<RouteAttribute> getRouteAttributes(String routeItem) {
+        int item = routeItem.lastIndexOf(ROUTE_ITEM_MARKER);
+        if (item == -1) {
+            return EnumSet.noneOf(RouteAttribute.class);
+        }
+        int start = item + CLASS_START_MARKER.length();
+        int end = routeItem.indexOf('"', start);
+        return end == -1
+                ? EnumSet.noneOf(RouteAttribute.class)
+                : RouteAttribute.fromCssClasses(routeItem.substring(start, end));
+    }
+
+    /**
+     * Gets the url of a link in a route's menu, from the given attribute of the first link in the list item
+     * with the given class.
+     *
+     * @param routeMenu {@link String} fragment of the route's menu
+     * @param itemMarker {@link String} class attribute of the list item
+     * @param attributeMarker {@link String} start of the attribute holding the url, up to its opening quote
+     * @return {@link String} url prefixed with the metro site top level domain, or null if the menu has no such link
+     */
+    private String getRouteMenuUrl(String routeMenu, String itemMarker, String attributeMarker) {
+        int item = routeMenu.indexOf(itemMarker);
+        if (item == -1) {
+            return null;
+        }
+        int itemEnd = routeMenu.indexOf(LIST_ITEM_END_MARKER, item);
+        int start = routeMenu.indexOf(attributeMarker, item);
+        if (start == -1 || (itemEnd != -1 && start > itemEnd)) {
+            return null;
+        }
+        start += attributeMarker.length();
+        int end = routeMenu.indexOf('"', start);
+        if (end <= start) {
+            return null;
+        }
+        String url = routeMenu.substring(start, end);
+        return url.startsWith("/") ? siteUrl + url : url;
+    }
+
+    /**
+     * Consumes characters up to and including the given marker.
+     *
+     * @param marker {@link String} to find
+     * @return true if the marker was found, false if the end of the stream was reached
+     */
+    private boolean skipTo(String marker) throws IOException {
+        return scan(marker, failureTable(marker), null, false);
+    }
+
+    /**
+     * Consumes characters up to and including the given marker and returns the last characters read before it,
+     * however far away the marker is.
+     *
+     * @param marker {@link String} to find
+     * @return {@link String} at most the last {@code MAX_FRAGMENT_LENGTH} characters before the marker, or null if
+     * the stream ended
+     */
+    private String readTailUntil(String marker) throws IOException {
+        fragment.setLength(0);
+        if (!scan(marker, failureTable(marker), fragment, true)) {
+            return null;
+        }
+        fragment.setLength(fragment.length() - marker.length());
+        return fragment.toString();
+    }
+
+    /**
+     * Consumes characters up to and including the given marker and returns the characters read before it.
+     *
+     * @param marker {@link String} that terminates the fragment
+     * @return {@link String} fragment, or null if the stream ended or the fragment was too long
+     */
+    private String readUntil(String marker) throws IOException {
+        fragment.setLength(0);
+        if (!scan(marker, failureTable(marker), fragment, false)) {
+            return null;
+        }
+        fragment.setLength(fragment.length() - marker.length());
+        return fragment.toString();
+    }
+
+    /**
+     * Streams characters until the marker is matched, optionally copying them into the given fragment. A fragment
+     * that grows too long fails the scan, or when only its tail is wanted, has its older half dropped.
+     * Matching uses the marker's failure table so each character is only ever read once.
+     */
+    private boolean scan(String marker, int[] failure, StringBuilder out, boolean tail) throws IOException {
+        int matched = 0;
+        int c;
+        while ((c = read()) != -1) {
+            if (out != null) {
+                if (out.length() == MAX_FRAGMENT_LENGTH) {
+                    if (!tail) {
+                        return false;
+                    }
+                    out.delete(0, MAX_FRAGMENT_LENGTH / 2);
+                }
+                out.append((char) c);
+            }
+            matched = match(marker, failure, matched, c);
+            if (matched == marker.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Streams characters into the fragment until either marker is matched. A fragment that grows too long fails
+     * the scan.
+     *
+     * @return 0 if the first marker was matched, 1 if the second was, -1 if the stream ended or the fragment was
+     * too long
+     */
+    private int scanAny(String first, String second) throws IOException {
+        int[] firstFailure = failureTable(first);
+        int[] secondFailure = failureTable(second);
+        int firstMatched = 0;
+        int secondMatched = 0;
+        int c;
+        while ((c = read()) != -1) {
+            if (fragment.length() == MAX_FRAGMENT_LENGTH) {
+                return -1;
+            }
+            fragment.append((char) c);
+            firstMatched = match(first, firstFailure, firstMatched, c);
+            if (firstMatched == first.length()) {
+                return 0;
+            }
+            secondMatched = match(second, secondFailure, secondMatched, c);
+            if (secondMatched == second.length()) {
+                return 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int match(String marker, int[] failure, int matched, int c) {
+        while (matched > 0 && marker.charAt(matched) != c) {
+            matched = failure[matched - 1];
+        }
+        return marker.charAt(matched) == c ? matched + 1 : matched;
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, BUFFER_SIZE);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    private static int[] failureTable(String marker) {
+        int[] failure = FAILURE_TABLES.get(marker);
+        if (failure != null) {
+            return failure;
+        }
+        failure = new int[marker.length()];
+        int k = 0;
+        for (int i = 1; i < marker.length(); i++) {
+            while (k > 0 && marker.charAt(i) != marker.charAt(k)) {
+                k = failure[k - 1];
+            }
+            if (marker.charAt(i) == marker.charAt(k)) {
+                k++;
+            }
+            failure[i] = k;
+        }
+        FAILURE_TABLES.put(marker, failure);
+        return failure;
+    }
+}
@@ -0,0 +1,185 @@
+package org.morris.unofficial.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * {@code org.morris.unofficial.utils.RoutesDigest} computes a SHA-256 digest of a document's content up to, and
+ * not including, an end marker. Bytes are fed in as they are streamed, so the document is never held in memory;
+ * once the marker is seen the remaining bytes are ignored. A document without the marker is digested in full.
+ * <p></p>
+ * Only the route list of a crawled metro page is meaningful for change detection, any content after the end of
+ * the routes may be dynamic and changed often.
+ *
+ * @see org.morris.unofficial.events.CrawlMetroEvent#END_ROUTES_MARKER
+ */
+public class RoutesDigest {
+    final static private int BUFFER_SIZE = 8192;
+
+    private final byte[] marker;
+    private final int[] failure;
+    private final MessageDigest messageDigest;
+    private int matched = 0;
+    private boolean complete = false;
+    private String hex;
+
+    public RoutesDigest(String endMarker) {
+        this.marker = endMarker.getBytes(StandardCharsets.UTF_8);
+        this.failure = failureTable(marker);
+        this.messageDigest = Sha256.newMessageDigest();
+    }
+
+    /**
+     * Streams the given {@link InputStream} until the end marker is found or the stream ends, and returns the
+     * digest of the content before the marker. The stream is not closed.
+     *
+     * @param inputStream {@link InputStream} of the document
+     * @param endMarker {@link String} marking the end of the content to digest
+     *
+     * @return {@link String} hex encoded SHA-256 digest
+     * @throws IOException if reading the stream fails
+     */
+    public static String digest(InputStream inputStream, String endMarker) throws IOException {
+        RoutesDigest routesDigest = new RoutesDigest(endMarker);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int length;
+        while (!routesDigest.isComplete() && (length = inputStream.read(buffer)) != -1) {
+            routesDigest.update(buffer, 0, length);
+        }
+        return routesDigest.toHex();
+    }
+
+    /**
+     * Wraps a {@link InputStream} so every byte read through it is fed to this digest, and a document is digested
+     * while it is copied elsewhere instead of being read a second time. Closing the returned stream closes the
+     * given one.
+     *
+     * @param inputStream {@link InputStream} of the document
+     *
+     * @return {@link InputStream} reading the document through this digest
+     */
+    public InputStream digesting(InputStream inputStream) {
+        return new DigestingInputStream(inputStream);
+    }
+
+    /**
+     * Feeds the next bytes of the document. Bytes that may be the start of the end marker are held back until
+     * it is known whether the marker follows.
+     */
+    public void update(byte[] bytes, int offset, int length) {
+        for (int i = offset; i < offset + length && !complete; i++) {
+            update(bytes[i]);
+        }
+    }
+
+    public void update(byte b) {
+        if (complete) {
+            return;
+        }
+        int previous = matched;
+        while (matched > 0 && marker[matched] != b) {
+            matched = failure[matched - 1];
+        }
+        if (marker[matched] == b) {
+            matched++;
+        }
+        if (matched == marker.length) {
+            complete = true;
+            return;
+        }
+
+        // the held back bytes were marker[0, previous) followed by b, release the ones no longer part of a match
+        int released = previous + 1 - matched;
+        if (released > previous) {
+            messageDigest.update(marker, 0, previous);
+            messageDigest.update(b);
+        } else if (released > 0) {
+            messageDigest.update(marker, 0, released);
+        }
+    }
+
+    /**
+     * @return true once the end marker has been seen and further input is ignored
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Completes the digest. Call once all input has been fed; a partially matched marker at the end of the
+     * document is treated as content.
+     *
+     * @return {@link String} hex encoded SHA-256 digest
+     */
+    public String toHex() {
+        if (hex == null) {
+            if (!complete) {
+                messageDigest.update(marker, 0, matched);
+                complete = true;
+            }
+            hex = Sha256.toHex(messageDigest.digest());
+        }
+        return hex;
+    }
+
+    private static int[] failureTable(byte[] marker) {
+        int[] failure = new int[marker.length];
+        int k = 0;
+        for (int i = 1; i < marker.length; i++) {
+            while (k > 0 && marker[i] != marker[k]) {
+                k = failure[k - 1];
+            }
+            if (marker[i] == marker[k]) {
+                k++;
+            }
+            failure[i] = k;
+        }
+        return failure;
+    }
+
+    private class DigestingInputStream extends FilterInputStream {
+
+        DigestingInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                update((byte) b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int length = super.read(b, off, len);
+            if (length > 0) {
+                update(b, off, length);
+            }
+            return length;
+        }
+
+        // skipped bytes are still part of the document, they are read so they are digested
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, Math.max(0, n))];
+            long skipped = 0;
+            int length;
+            while (skipped < n && (length = read(buffer, 0, (int) Math.min(buffer.length, n - skipped))) > 0) {
+                skipped += length;
+            }
+            return skipped;
+        }
+
+        // a reset would feed the bytes after the mark twice
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
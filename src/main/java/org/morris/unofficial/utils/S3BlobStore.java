@@ -0,0 +1,152 @@
+package org.morris.unofficial.utils;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * {@code org.morris.unofficial.utils.S3BlobStore} is the {@link BlobStore} of the deployed handlers. The
+ * {@link AmazonS3} client is resolved on first use, so a store that is never touched never builds its client.
+ * <p></p>
+ * Files larger than the multipart threshold, such as a schedule pdf spilled to /tmp, are uploaded in parts with a
+ * {@link TransferManager}; everything else is a single PUT of a known content length.
+ */
+public class S3BlobStore implements BlobStore {
+    final static private int NOT_FOUND = 404;
+
+    // parts of a large file's multipart upload
+    final static private long MULTIPART_UPLOAD_THRESHOLD = 16L * 1024 * 1024;
+    final static private long MINIMUM_UPLOAD_PART_SIZE = 8L * 1024 * 1024;
+
+    private final Supplier<AmazonS3> s3Client;
+
+    /**
+     * @param s3Client {@link Supplier} of the {@link AmazonS3} client, called on every request
+     */
+    public S3BlobStore(Supplier<AmazonS3> s3Client) {
+        this.s3Client = s3Client;
+    }
+
+    public S3BlobStore(AmazonS3 s3Client) {
+        this(() -> s3Client);
+    }
+
+    @Override
+    public BlobMetadata getMetadata(String bucket, String key) {
+        try {
+            return toBlobMetadata(key, s3Client.get().getObjectMetadata(bucket, key));
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == NOT_FOUND) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public InputStream getContent(String bucket, String key) {
+        try {
+            return s3Client.get().getObject(bucket, key).getObjectContent();
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == NOT_FOUND) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void put(String bucket, String key, byte[] content, String contentType, Map<String, String> userMetadata) {
+        ObjectMetadata metadata = toObjectMetadata(content.length, contentType, userMetadata);
+        s3Client.get().putObject(new PutObjectRequest(bucket, key, new ByteArrayInputStream(content), metadata));
+    }
+
+    @Override
+    public void put(String bucket, String key, Path file, String contentType, Map<String, String> userMetadata)
+            throws IOException {
+        long length = Files.size(file);
+        PutObjectRequest putObjectRequest = new PutObjectRequest(bucket, key, file.toFile())
+                .withMetadata(toObjectMetadata(length, contentType, userMetadata));
+        if (length <= MULTIPART_UPLOAD_THRESHOLD) {
+            s3Client.get().putObject(putObjectRequest);
+            return;
+        }
+
+        // a large file is rare, the transfer manager lives only as long as its upload
+        TransferManager transferManager = TransferManagerBuilder.standard()
+                .withS3Client(s3Client.get())
+                .withMultipartUploadThreshold(MULTIPART_UPLOAD_THRESHOLD)
+                .withMinimumUploadPartSize(MINIMUM_UPLOAD_PART_SIZE)
+                .build();
+        try {
+            transferManager.upload(putObjectRequest).waitForCompletion();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted uploading: " + key);
+        } finally {
+            // the shared s3 client outlives the transfer manager
+            transferManager.shutdownNow(false);
+        }
+    }
+
+    @Override
+    public List<BlobMetadata> list(String bucket, String prefix, int maxKeys) {
+        ListObjectsV2Request request = new ListObjectsV2Request()
+                .withBucketName(bucket)
+                .withPrefix(prefix);
+        if (maxKeys > 0) {
+            request.setMaxKeys(maxKeys);
+        }
+
+        List<BlobMetadata> blobs = new ArrayList<>();
+        try {
+            ListObjectsV2Result result;
+            do {
+                result = s3Client.get().listObjectsV2(request);
+                for (S3ObjectSummary summary : result.getObjectSummaries()) {
+                    blobs.add(new BlobMetadata(summary.getKey(), summary.getSize(), summary.getLastModified(), null,
+                            null));
+                }
+                request.setContinuationToken(result.getNextContinuationToken());
+            } while (result.isTruncated() && (maxKeys <= 0 || blobs.size() < maxKeys));
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == NOT_FOUND) {
+                return blobs;
+            }
+            throw e;
+        }
+        return blobs;
+    }
+
+    private ObjectMetadata toObjectMetadata(long length, String contentType, Map<String, String> userMetadata) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(length);
+        if (contentType != null) {
+            metadata.setContentType(contentType);
+        }
+        userMetadata.forEach(metadata::addUserMetadata);
+        return metadata;
+    }
+
+    private BlobMetadata toBlobMetadata(String key, ObjectMetadata metadata) {
+        return new BlobMetadata(key, metadata.getContentLength(), metadata.getLastModified(),
+                metadata.getContentType(), metadata.getUserMetadata());
+    }
+}
@@ -0,0 +1,129 @@
+package org.morris.unofficial.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Collections;
+
+/**
+ * {@code org.morris.unofficial.utils.SchedulePdfBuffer} holds a schedule pdf between its download and its upload.
+ * The body is read once, digested as it is read, and kept in memory, so the pdf is never staged in /tmp: it is
+ * uploaded with a single PUT of a known content length and PDFBox loads it from the same bytes.
+ * <p></p>
+ * A body larger than the memory limit spills to the line's own /tmp path, and is uploaded from there, which
+ * the {@link S3BlobStore} does as a multipart upload once the file is large enough.
+ *
+ * @see HttpFetcher.BodyConsumer
+ */
+public class SchedulePdfBuffer implements AutoCloseable {
+    final static public String PDF_CONTENT_TYPE = "application/pdf";
+    final static private int BUFFER_SIZE = 8192;
+
+    private final int memoryLimit;
+    private final Path spillPath;
+    private byte[] content;
+    private boolean spilled;
+    private long length;
+    private String sha256;
+
+    /**
+     * @param memoryLimit largest body, in bytes, held in memory
+     * @param spillPath {@link Path} the body is written to when it is larger than the memory limit
+     */
+    public SchedulePdfBuffer(int memoryLimit, Path spillPath) {
+        this.memoryLimit = memoryLimit;
+        this.spillPath = spillPath;
+    }
+
+    /**
+     * Reads a pdf body to its end. Meant to be handed to {@link HttpFetcher#fetch} as its body consumer.
+     *
+     * @param body {@link InputStream} of the pdf
+     * @throws IOException if the body can't be read or a spilled body can't be written
+     */
+    public void read(InputStream body) throws IOException {
+        MessageDigest messageDigest = Sha256.newMessageDigest();
+        ByteArrayOutputStream memory = new ByteArrayOutputStream(BUFFER_SIZE * 8);
+        OutputStream spill = null;
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                messageDigest.update(buffer, 0, read);
+                length += read;
+                if (spill == null && length > memoryLimit) {
+                    spill = Files.newOutputStream(spillPath);
+                    spilled = true;
+                    memory.writeTo(spill);
+                    memory = null;
+                }
+                if (spill == null) {
+                    memory.write(buffer, 0, read);
+                } else {
+                    spill.write(buffer, 0, read);
+                }
+            }
+        } finally {
+            if (spill != null) {
+                spill.close();
+            }
+        }
+        content = spilled ? null : memory.toByteArray();
+        sha256 = Sha256.toHex(messageDigest.digest());
+    }
+
+    /**
+     * Uploads the pdf, from memory or, when it spilled to /tmp, from its file.
+     *
+     * @param blobStore {@link BlobStore} to upload to
+     * @param bucket {@link String} bucket to upload to
+     * @param key {@link String} key of the pdf
+     * @throws IOException if the pdf can't be uploaded
+     */
+    public void upload(BlobStore blobStore, String bucket, String key) throws IOException {
+        if (spilled) {
+            blobStore.put(bucket, key, spillPath, PDF_CONTENT_TYPE, Collections.emptyMap());
+        } else {
+            blobStore.put(bucket, key, content, PDF_CONTENT_TYPE, Collections.emptyMap());
+        }
+    }
+
+    /**
+     * @param line {@link String} the line# name of the MetroLine (ex: 190)
+     * @param key {@link String} key of the pdf in the schedules bucket
+     * @return {@link ScheduleTextExtractor.SchedulePdf} of the buffered pdf
+     */
+    public ScheduleTextExtractor.SchedulePdf toSchedulePdf(String line, String key) {
+        return spilled
+                ? new ScheduleTextExtractor.SchedulePdf(line, spillPath.toString(), key)
+                : new ScheduleTextExtractor.SchedulePdf(line, content, key);
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public boolean isSpilled() {
+        return spilled;
+    }
+
+    /**
+     * Deletes the spilled copy of the pdf, if there is one.
+     */
+    @Override
+    public void close() throws IOException {
+        if (spilled) {
+            Files.deleteIfExists(spillPath);
+        }
+        content = null;
+    }
+}
@@ -0,0 +1,91 @@
+package org.morris.unofficial.utils;
+
+import java.io.IOException;
+
+/**
+ * {@code org.morris.unofficial.utils.ScheduleTextExtractor} extracts the text of a metro line's schedule pdf, one
+ * page at a time. Pages are handed to a {@link PageConsumer} in page order as soon as they are extracted, so a
+ * schedule's text never has to be held in full.
+ *
+ * @see PdfBoxScheduleTextExtractor
+ * @see TextractScheduleTextExtractor
+ * @see FallbackScheduleTextExtractor
+ */
+public interface ScheduleTextExtractor {
+
+    /**
+     * Extract the text of the schedule pdf.
+     *
+     * @param schedulePdf {@link SchedulePdf} to extract
+     * @param consumer {@link PageConsumer} of each page's text, in page order
+     * @return number of pages extracted
+     *
+     * @throws IOException if the text could not be extracted
+     * @throws InterruptedException if the extraction is cancelled
+     */
+    int extract(SchedulePdf schedulePdf, PageConsumer consumer) throws IOException, InterruptedException;
+
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Receives the text of a single page.
+     */
+    interface PageConsumer {
+        void accept(int page, String text) throws IOException;
+    }
+
+    /**
+     * A line's schedule pdf, held in memory or written to /tmp, and uploaded to the schedules bucket.
+     */
+    class SchedulePdf {
+        private final String line;
+        private final String path;
+        private final byte[] content;
+        private final String key;
+
+        /**
+         * @param line {@link String} the line# name of the MetroLine (ex: 190)
+         * @param path {@link String} /tmp path of the pdf
+         * @param key {@link String} key of the pdf in the schedules bucket
+         */
+        public SchedulePdf(String line, String path, String key) {
+            this.line = line;
+            this.path = path;
+            this.content = null;
+            this.key = key;
+        }
+
+        /**
+         * @param line {@link String} the line# name of the MetroLine (ex: 190)
+         * @param content the pdf's bytes, as downloaded
+         * @param key {@link String} key of the pdf in the schedules bucket
+         */
+        public SchedulePdf(String line, byte[] content, String key) {
+            this.line = line;
+            this.path = null;
+            this.content = content;
+            this.key = key;
+        }
+
+        public String getLine() {
+            return line;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return the pdf's bytes, or null if the pdf is only on disk at {@link #getPath()}
+         */
+        public byte[] getContent() {
+            return content;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+}
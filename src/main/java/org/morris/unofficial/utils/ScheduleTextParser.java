@@ -0,0 +1,267 @@
+package org.morris.unofficial.utils;
+
+import org.morris.unofficial.models.MetroStop;
+import org.morris.unofficial.models.Schedule;
+import org.morris.unofficial.models.StopTimes;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@code org.morris.unofficial.utils.ScheduleTextParser} turns the extracted text of a schedule pdf into
+ * {@link Schedule}s without any calls to an NLP service. The text is read once, front to back, with precompiled
+ * patterns: each timetable starts at its English heading, and everything in between, such as the Spanish
+ * translations, maps, fares and holiday notes, is skipped.
+ * <p></p>
+ * A timetable is laid out as its heading, the Spanish heading, the time point names, the stop names of each time
+ * point, the stop numbers of each time point and then the stop times row by row, one time per time point. The
+ * extracted text has no line breaks, so stop names are split where one name runs into the next, and a row's
+ * times are read in groups of one per stop.
+ * <p></p>
+ * example timetable text: {@code Route 190  Monday thru Friday to Downtown SeattleServicio de lunes a viernes al
+ * centro de SeattleStar Lake SODO Downtown SeattleRedondo Heights P&RI-5 & S 272 St Fwy Sta...Stop #60747 Stop
+ * #47972 ... Stop #10105:52 5:58 6:04 6:25 6:33 6:44 6:32 6:38 ...}
+ * <p></p>
+ * Bold PM times lose their bold in the text, so AM and PM is worked out from the times themselves. Times of a trip
+ * increase left to right and the times of a stop increase down the rows, so a time earlier than the one before it
+ * has crossed noon (or midnight). An explicit AM/PM after a time is always taken. A timetable that never crosses
+ * noon but is followed by the "Bold PM time" legend runs entirely in the afternoon.
+ */
+public class ScheduleTextParser {
+    final static public String AM = "AM";
+    final static public String PM = "PM";
+    final static public String STOP_NUMBER_PREFIX = "Stop #";
+
+    // Route 190  Monday thru Friday to Downtown Seattle, the destination runs into the Spanish heading
+    final static private Pattern TIMETABLE_HEADING_PATTERN = Pattern.compile(
+            "Route\\s+(\\w+)\\s+(.+?)\\s+to\\s+(.+?)\\s*(?=Servicio\\b|Horario\\b|Stop\\s*#)");
+
+    // the last stop number runs into the first time, 10105:52 is stop #1010 at 5:52
+    final static private Pattern STOP_NUMBER_PATTERN = Pattern.compile(
+            "\\s*Stop\\s*#\\s*(\\d+?)(?=\\s|Stop|(?:1[0-2]|[1-9]):[0-5]\\d|$)");
+
+    // a time with an optional am/pm, or a dash for a trip that skips the stop, a double dagger marks an estimate
+    final static private Pattern STOP_TIME_PATTERN = Pattern.compile(
+            "\\s*(?:(1[0-2]|[1-9]):([0-5]\\d)(?:\\s?([AaPp])\\.?[Mm]\\.?(?![A-Za-z]))?"
+                    + "|[\\u2013\\u2014-](?!\\d))\\u2021?");
+
+    // one stop name runs into the next, ex: Redondo Heights P&RI-5 & S 272 St Fwy StaI-5 & Kent Des Moines, Ave S3rd Ave
+    final static private Pattern STOP_NAME_BOUNDARY_PATTERN = Pattern.compile(
+            "(?<=[a-z])(?=[A-Z0-9])|(?<=P&R)(?=\\S)|(?<=\\b(?:N|S|E|W|NE|NW|SE|SW))(?=\\d)");
+    final static private Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+");
+    final static private Pattern PM_LEGEND_PATTERN = Pattern.compile("Bold PM time|PM en negrita");
+
+    final static private int NO_TIME = -1;
+    final static private int MINUTES_PER_HALF_DAY = 12 * 60;
+
+    /**
+     * Parses the timetables of a schedule pdf's extracted text file.
+     *
+     * @param path {@link Path} to the schedule pdf's text
+     * @return {@link List} of {@link Schedule}, one per timetable
+     * @throws IOException if the file can't be read
+     */
+    public static List<Schedule> parse(Path path) throws IOException {
+        return parse(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses the timetables of a schedule pdf's extracted text, in the order they appear.
+     *
+     * @param scheduleText {@link String} text of the schedule pdf
+     * @return {@link List} of {@link Schedule}, one per timetable, empty if the text has no timetables
+     */
+    public static List<Schedule> parse(String scheduleText) {
+        String text = scheduleText.replace('\u00a0', ' ');
+        Matcher headingMatcher = TIMETABLE_HEADING_PATTERN.matcher(text);
+        Matcher stopNumberMatcher = STOP_NUMBER_PATTERN.matcher(text);
+        Matcher stopTimeMatcher = STOP_TIME_PATTERN.matcher(text);
+        Matcher legendMatcher = PM_LEGEND_PATTERN.matcher(text);
+
+        List<Schedule> schedules = new ArrayList<>();
+        boolean found = headingMatcher.find();
+        while (found) {
+            String route = headingMatcher.group(1);
+            String serviceDays = collapseWhitespace(headingMatcher.group(2));
+            String destination = collapseWhitespace(headingMatcher.group(3));
+            int headingEnd = headingMatcher.end();
+
+            // stop names sit between the heading and the first stop number
+            stopNumberMatcher.region(headingEnd, text.length());
+            if (!stopNumberMatcher.find()) {
+                break;
+            }
+            int stopsStart = stopNumberMatcher.start();
+            List<String> stopNumbers = new ArrayList<>();
+            int position = stopsStart;
+            stopNumberMatcher.region(position, text.length());
+            while (stopNumberMatcher.lookingAt()) {
+                stopNumbers.add(stopNumberMatcher.group(1));
+                position = stopNumberMatcher.end();
+                stopNumberMatcher.region(position, text.length());
+            }
+
+            List<Integer> clockTimes = new ArrayList<>();
+            List<String> meridiems = new ArrayList<>();
+            stopTimeMatcher.region(position, text.length());
+            while (stopTimeMatcher.lookingAt()) {
+                if (stopTimeMatcher.group(1) == null) {
+                    clockTimes.add(NO_TIME);
+                    meridiems.add(null);
+                } else {
+                    int hour = Integer.parseInt(stopTimeMatcher.group(1));
+                    int minute = Integer.parseInt(stopTimeMatcher.group(2));
+                    clockTimes.add((hour % 12) * 60 + minute);
+                    String meridiem = stopTimeMatcher.group(3);
+                    meridiems.add(meridiem == null ? null : meridiem.equalsIgnoreCase("a") ? AM : PM);
+                }
+                position = stopTimeMatcher.end();
+                stopTimeMatcher.region(position, text.length());
+            }
+
+            // the legend between this timetable and the next tells whether it has any bold times
+            headingMatcher.region(position, text.length());
+            found = headingMatcher.find();
+            int timetableEnd = found ? headingMatcher.start() : text.length();
+            legendMatcher.region(position, timetableEnd);
+            boolean pmLegend = legendMatcher.find();
+
+            if (!stopNumbers.isEmpty() && !clockTimes.isEmpty()) {
+                List<String> stopNames = getStopNames(text.substring(headingEnd, stopsStart), stopNumbers.size());
+                schedules.add(getSchedule(route, serviceDays, destination, stopNumbers, stopNames,
+                        getStopTimes(clockTimes, meridiems, stopNumbers.size(), pmLegend)));
+            }
+        }
+        return schedules;
+    }
+
+    /**
+     * The text between the heading and the stop numbers holds the Spanish heading, the time point names and the
+     * stop names, all run together. The stop names are the last of the pieces once the text is split where one
+     * name runs into the next.
+     *
+     * @param namesText {@link String} text between the timetable heading and its first stop number
+     * @param stops number of stops in the timetable
+     * @return {@link List} of stop names, or null if the text can't be split into enough names
+     */
+    private static List<String> getStopNames(String namesText, int stops) {
+        List<String> pieces = Arrays.asList(STOP_NAME_BOUNDARY_PATTERN.split(namesText));
+        if (pieces.size() < stops) {
+            return null;
+        }
+        List<String> stopNames = new ArrayList<>(stops);
+        for (String piece : pieces.subList(pieces.size() - stops, pieces.size())) {
+            String stopName = collapseWhitespace(piece);
+            if (stopName.isEmpty()) {
+                return null;
+            }
+            stopNames.add(stopName);
+        }
+        return stopNames;
+    }
+
+    /**
+     * Lays the times out as rows of one time per stop, in the order they were read, and works out each time's AM
+     * or PM to give its minutes since the start of the service day.
+     *
+     * @param clockTimes {@link List} of minutes past 12 of each time, {@link #NO_TIME} for a stop that is skipped
+     * @param meridiems {@link List} of the explicit AM or PM of each time, null where there is none
+     * @param stops number of stops in the timetable
+     * @param pmLegend whether the timetable is followed by the bold PM time legend
+     * @return {@link StopTimes} of each stop, indexed by stop
+     */
+    private static List<StopTimes> getStopTimes(List<Integer> clockTimes, List<String> meridiems, int stops,
+                                                   boolean pmLegend) {
+        // half days since the start of the service day: even is AM, odd is PM
+        int[] halves = new int[clockTimes.size()];
+        int[] stopHalves = new int[stops];
+        int[] stopClockTimes = new int[stops];
+        Arrays.fill(stopClockTimes, NO_TIME);
+        int[] stopSizes = new int[stops];
+        boolean explicit = false;
+        int half = 0;
+        int lastHalf = 0;
+        int previousClockTime = NO_TIME;
+        for (int index = 0; index < clockTimes.size(); index++) {
+            int stop = index % stops;
+            if (stop == 0) {
+                previousClockTime = NO_TIME;
+            }
+            int clockTime = clockTimes.get(index);
+            if (clockTime == NO_TIME) {
+                continue;
+            }
+
+            if (previousClockTime == NO_TIME && stopClockTimes[stop] != NO_TIME) {
+                // the first time of a row follows the stop's time in the row above
+                half = stopHalves[stop] + (clockTime < stopClockTimes[stop] ? 1 : 0);
+            } else if (previousClockTime != NO_TIME && clockTime < previousClockTime) {
+                half++;
+            }
+            String meridiem = meridiems.get(index);
+            if (meridiem != null) {
+                explicit = true;
+                if ((half % 2 == 0) != AM.equals(meridiem)) {
+                    half++;
+                }
+            }
+
+            halves[index] = half;
+            lastHalf = Math.max(lastHalf, half);
+            stopSizes[stop]++;
+            stopHalves[stop] = half;
+            stopClockTimes[stop] = clockTime;
+            previousClockTime = clockTime;
+        }
+        int offset = !explicit && pmLegend && lastHalf == 0 ? 1 : 0;
+
+        int[][] stopMinutes = new int[stops][];
+        for (int stop = 0; stop < stops; stop++) {
+            stopMinutes[stop] = new int[stopSizes[stop]];
+            stopSizes[stop] = 0;
+        }
+        for (int index = 0; index < clockTimes.size(); index++) {
+            int clockTime = clockTimes.get(index);
+            if (clockTime != NO_TIME) {
+                int stop = index % stops;
+                stopMinutes[stop][stopSizes[stop]++] = (halves[index] + offset) * MINUTES_PER_HALF_DAY + clockTime;
+            }
+        }
+
+        List<StopTimes> stopTimes = new ArrayList<>(stops);
+        for (int stop = 0; stop < stops; stop++) {
+            stopTimes.add(StopTimes.of(stopMinutes[stop]));
+        }
+        return stopTimes;
+    }
+
+    private static Schedule getSchedule(String route, String serviceDays, String destination, List<String> stopNumbers,
+                                        List<String> stopNames, List<StopTimes> stopTimes) {
+        List<MetroStop> metroStops = new ArrayList<>(stopNumbers.size());
+        for (int stop = 0; stop < stopNumbers.size(); stop++) {
+            MetroStop metroStop = new MetroStop();
+            metroStop.setStopNumber(stopNumbers.get(stop));
+            metroStop.setLineStop(stopNames == null ? STOP_NUMBER_PREFIX + stopNumbers.get(stop) : stopNames.get(stop));
+            metroStop.setStopTimes(stopTimes.get(stop));
+            metroStops.add(metroStop);
+        }
+
+        Schedule schedule = new Schedule();
+        schedule.setRoute(route);
+        schedule.setServiceDays(serviceDays);
+        schedule.setDestination(destination);
+        schedule.setSchedule(metroStops);
+        return schedule;
+    }
+
+    private static String collapseWhitespace(String text) {
+        return WHITESPACE_PATTERN.matcher(text).replaceAll(" ").trim();
+    }
+}
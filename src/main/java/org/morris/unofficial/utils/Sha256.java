@@ -0,0 +1,60 @@
+package org.morris.unofficial.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * {@code org.morris.unofficial.utils.Sha256} creates the SHA-256 digests used to detect changed routes documents,
+ * schedule pdfs and table items, and hex encodes them.
+ */
+public class Sha256 {
+    final static private String ALGORITHM = "SHA-256";
+    final static private char[] HEX = "0123456789abcdef".toCharArray();
+    final static private int BUFFER_SIZE = 8192;
+
+    /**
+     * @return a new SHA-256 {@link MessageDigest}
+     */
+    public static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param digest completed digest
+     * @return {@link String} lower case hex encoding of the digest
+     */
+    public static String toHex(byte[] digest) {
+        char[] chars = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            chars[i * 2] = HEX[(digest[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[digest[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @param path {@link Path} of the file to digest
+     * @return {@link String} hex encoded SHA-256 digest of the file
+     * @throws IOException if the file can't be read
+     */
+    public static String digest(Path path) throws IOException {
+        MessageDigest messageDigest = newMessageDigest();
+        try (InputStream inputStream = new DigestInputStream(Files.newInputStream(path), messageDigest)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (inputStream.read(buffer) != -1) {
+                // the digest is updated as the file is read
+            }
+        }
+        return toHex(messageDigest.digest());
+    }
+}
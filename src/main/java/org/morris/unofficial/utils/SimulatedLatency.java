@@ -0,0 +1,86 @@
+package org.morris.unofficial.utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code org.morris.unofficial.utils.SimulatedLatency} stands in for the round trip to a remote service in the
+ * in-memory and local implementations of {@link BlobStore}, {@link MessageQueue}, {@link TextDetectionService} and
+ * {@link KeyPhraseService}, so a crawl run offline spends its time roughly where it would against AWS. Every call
+ * pauses for a fixed latency plus a uniformly random jitter, and a transfer also pauses for its bytes at the
+ * given throughput.
+ * <p></p>
+ * Example: {@code new SimulatedLatency(20, 10, 50 * 1024 * 1024)} is a 20-30ms round trip moving 50 MB a second.
+ */
+public class SimulatedLatency {
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final long bytesPerSecond;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong pausedMillis = new AtomicLong();
+
+    /**
+     * @param latencyMillis fixed pause of every call
+     * @param jitterMillis largest random pause added to every call
+     * @param bytesPerSecond throughput of a transfer, 0 for no limit
+     */
+    public SimulatedLatency(long latencyMillis, long jitterMillis, long bytesPerSecond) {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * @return {@link SimulatedLatency} that never pauses, only counts calls
+     */
+    public static SimulatedLatency none() {
+        return new SimulatedLatency(0, 0, 0);
+    }
+
+    /**
+     * Pauses for the round trip of a call that transfers nothing.
+     */
+    public void pause() {
+        pause(0);
+    }
+
+    /**
+     * Pauses for the round trip of a call and its transfer. An interrupted pause returns early with the thread's
+     * interrupt status set.
+     *
+     * @param bytes number of bytes transferred by the call
+     */
+    public void pause(long bytes) {
+        calls.incrementAndGet();
+        long millis = latencyMillis;
+        if (jitterMillis > 0) {
+            millis += ThreadLocalRandom.current().nextLong(jitterMillis + 1);
+        }
+        if (bytesPerSecond > 0 && bytes > 0) {
+            millis += TimeUnit.SECONDS.toMillis(bytes) / bytesPerSecond;
+        }
+        if (millis <= 0) {
+            return;
+        }
+        pausedMillis.addAndGet(millis);
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getCalls() {
+        return calls.get();
+    }
+
+    public long getPausedMillis() {
+        return pausedMillis.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("calls: %d, paused: %dms", calls.get(), pausedMillis.get());
+    }
+}
@@ -0,0 +1,114 @@
+package org.morris.unofficial.utils;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * {@code org.morris.unofficial.utils.SqsMessageQueue} is the {@link MessageQueue} of the deployed handlers, the
+ * metro SQS queue. The client and the queue url are resolved on first use, so a handler that never waits on a
+ * notification never looks the queue up. Client errors are reported as {@link IOException}s.
+ */
+public class SqsMessageQueue implements MessageQueue {
+    final static private String FIFO_SUFFIX = ".fifo";
+    final static private String MESSAGE_GROUP_ID = "metro";
+    final static private int VISIBLE_NOW = 0;
+
+    private final Supplier<AmazonSQS> sqsClient;
+    private final Supplier<String> queueUrl;
+
+    /**
+     * @param sqsClient {@link Supplier} of the {@link AmazonSQS} client, called on every request
+     * @param queueUrl {@link Supplier} of the queue url, called on every request
+     */
+    public SqsMessageQueue(Supplier<AmazonSQS> sqsClient, Supplier<String> queueUrl) {
+        this.sqsClient = sqsClient;
+        this.queueUrl = queueUrl;
+    }
+
+    public SqsMessageQueue(AmazonSQS sqsClient, String queueUrl) {
+        this(() -> sqsClient, () -> queueUrl);
+    }
+
+    @Override
+    public void send(String body) throws IOException {
+        String url = queueUrl.get();
+        SendMessageRequest sendMessageRequest = new SendMessageRequest(url, body);
+
+        // a fifo queue needs every message grouped and deduplicated
+        if (url.endsWith(FIFO_SUFFIX)) {
+            sendMessageRequest.withMessageGroupId(MESSAGE_GROUP_ID)
+                    .withMessageDeduplicationId(UUID.randomUUID().toString());
+        }
+        try {
+            sqsClient.get().sendMessage(sendMessageRequest);
+        } catch (AmazonClientException e) {
+            throw new IOException("unable to send message to: " + url, e);
+        }
+    }
+
+    @Override
+    public List<QueueMessage> receive(int maxMessages, int waitTimeSeconds) throws IOException {
+        ReceiveMessageRequest receiveMessageRequest = new ReceiveMessageRequest(queueUrl.get())
+                .withWaitTimeSeconds(waitTimeSeconds)
+                .withMaxNumberOfMessages(maxMessages);
+        List<Message> messages;
+        try {
+            messages = sqsClient.get().receiveMessage(receiveMessageRequest).getMessages();
+        } catch (AmazonClientException e) {
+            throw new IOException("unable to receive messages", e);
+        }
+
+        List<QueueMessage> received = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            received.add(new QueueMessage(message.getMessageId(), message.getReceiptHandle(), message.getBody()));
+        }
+        return received;
+    }
+
+    @Override
+    public void delete(List<QueueMessage> messages) throws IOException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        List<DeleteMessageBatchRequestEntry> entries = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            entries.add(new DeleteMessageBatchRequestEntry(String.valueOf(i), messages.get(i).getReceiptHandle()));
+        }
+        try {
+            sqsClient.get().deleteMessageBatch(new DeleteMessageBatchRequest(queueUrl.get(), entries));
+        } catch (AmazonClientException e) {
+            throw new IOException("unable to delete messages", e);
+        }
+    }
+
+    @Override
+    public void release(List<QueueMessage> messages) throws IOException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        List<ChangeMessageVisibilityBatchRequestEntry> entries = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            entries.add(new ChangeMessageVisibilityBatchRequestEntry(String.valueOf(i),
+                    messages.get(i).getReceiptHandle()).withVisibilityTimeout(VISIBLE_NOW));
+        }
+        try {
+            sqsClient.get().changeMessageVisibilityBatch(new ChangeMessageVisibilityBatchRequest(queueUrl.get(),
+                    entries));
+        } catch (AmazonClientException e) {
+            throw new IOException("unable to release messages", e);
+        }
+    }
+}
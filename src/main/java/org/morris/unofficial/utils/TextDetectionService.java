@@ -0,0 +1,43 @@
+package org.morris.unofficial.utils;
+
+import com.amazonaws.services.textract.model.GetDocumentTextDetectionResult;
+
+import java.io.IOException;
+
+/**
+ * {@code org.morris.unofficial.utils.TextDetectionService} detects the text of a document stored in a
+ * {@link BlobStore}, asynchronously, the way Textract's document text detection does. A started detection's
+ * {@link TextractJobNotification} is delivered to the metro {@link MessageQueue} once it completes, and its LINE
+ * blocks are then paged with the job id.
+ *
+ * @see TextractTextDetectionService
+ * @see InMemoryTextDetectionService
+ * @see TextractScheduleTextExtractor
+ */
+public interface TextDetectionService {
+
+    /**
+     * Starts detecting the text of a stored document. Detections started with the same client request token
+     * share a job.
+     *
+     * @param bucket {@link String} bucket of the document
+     * @param key {@link String} key of the document
+     * @param clientRequestToken {@link String} idempotency token of the request
+     * @param jobTag {@link String} tag returned in the completion notification
+     * @return {@link String} the job id of the detection
+     * @throws IOException if the detection could not be started
+     */
+    String startDocumentTextDetection(String bucket, String key, String clientRequestToken, String jobTag)
+            throws IOException;
+
+    /**
+     * Gets a page of the blocks of a completed detection. Throttled requests fail with the service's throttling
+     * exception so they can be retried.
+     *
+     * @param jobId {@link String} the job id of a completed detection
+     * @param maxResults largest number of blocks in the page
+     * @param nextToken {@link String} token of the page, or null for the first page
+     * @return {@link GetDocumentTextDetectionResult} with the page's blocks, and the next page's token if there is one
+     */
+    GetDocumentTextDetectionResult getDocumentTextDetection(String jobId, int maxResults, String nextToken);
+}
@@ -0,0 +1,278 @@
+package org.morris.unofficial.utils;
+
+import org.morris.unofficial.utils.MessageQueue.QueueMessage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code org.morris.unofficial.utils.TextractJobDispatcher} waits on the completion notifications of many Textract
+ * detection jobs at once. A single background thread long polls the metro {@link MessageQueue}, receiving up to
+ * ten messages per request and waiting up to twenty seconds for one to arrive, so an idle queue costs one request
+ * every twenty seconds instead of a request and a fixed sleep per waiting job. Each notification is handed to the
+ * job that registered for it, and the claimed messages are deleted in a single batch.
+ * <p></p>
+ * A notification that arrives before its job is registered is held for a short while and handed over on
+ * registration. Held notifications are released back to the queue once they have been held for
+ * {@value #UNCLAIMED_HOLD_MILLIS}ms, when more than {@value #MAX_UNCLAIMED_NOTIFICATIONS} are held, or when the
+ * poller stops, so a notification for a job started by another invocation is never kept past its visibility
+ * timeout with a stale receipt handle, and never holds up the messages behind it. While a notification is held
+ * the queue is polled with a short wait, so it is released on time. The poller only runs while at least one job
+ * is waiting.
+ *
+ * @see TextractJobNotification
+ */
+public class TextractJobDispatcher {
+    final static private int WAIT_TIME_SECONDS = 20;
+    final static private int MAX_MESSAGES = 10;
+    final static private int MAX_RECEIVE_FAILURES = 3;
+    final static private long RECEIVE_RETRY_MILLIS = 1000;
+
+    // notifications received before their job registers, a registration follows its job's start within moments
+    final static private int HELD_WAIT_TIME_SECONDS = 1;
+    final static private long UNCLAIMED_HOLD_MILLIS = 2000;
+    final static private int MAX_UNCLAIMED_NOTIFICATIONS = 100;
+
+    private final MessageQueue messageQueue;
+    private final Map<String, CompletableFuture<TextractJobNotification>> pendingJobs = new HashMap<>();
+    private final Map<String, ReceivedNotification> unclaimedNotifications = new LinkedHashMap<>();
+    private final AtomicLong receiveRequests = new AtomicLong();
+    private final AtomicLong deletedMessages = new AtomicLong();
+    private final AtomicLong releasedMessages = new AtomicLong();
+    private Thread poller;
+
+    public TextractJobDispatcher(MessageQueue messageQueue) {
+        this.messageQueue = messageQueue;
+    }
+
+    /**
+     * Register interest in the completion of a job. The returned future completes with the job's notification,
+     * and polling starts if it is not already running.
+     *
+     * @param jobId the job id of a started detection
+     * @return {@link CompletableFuture} of the job's {@link TextractJobNotification}
+     */
+    public CompletableFuture<TextractJobNotification> register(String jobId) {
+        CompletableFuture<TextractJobNotification> completion;
+        ReceivedNotification early;
+        synchronized (this) {
+            completion = pendingJobs.get(jobId);
+            if (completion != null) {
+                return completion;
+            }
+            completion = new CompletableFuture<>();
+            early = unclaimedNotifications.remove(jobId);
+            if (early == null) {
+                pendingJobs.put(jobId, completion);
+                startPolling();
+            }
+        }
+        if (early != null) {
+            deleteMessages(Collections.singletonList(early.message));
+            completion.complete(early.notification);
+        }
+        return completion;
+    }
+
+    /**
+     * Register a job and block until its notification arrives.
+     *
+     * @param jobId the job id of a started detection
+     * @param timeoutMillis maximum time to wait in milliseconds
+     * @return {@link TextractJobNotification} of the job
+     *
+     * @throws InterruptedException if the waiting thread is interrupted
+     * @throws TimeoutException if no notification arrived in time
+     * @throws IOException if the queue could not be polled
+     */
+    public TextractJobNotification await(String jobId, long timeoutMillis)
+            throws InterruptedException, TimeoutException, IOException {
+        try {
+            return register(jobId).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IOException("unable to receive notification for job: " + jobId, e.getCause());
+        } finally {
+            synchronized (this) {
+                pendingJobs.remove(jobId);
+            }
+        }
+    }
+
+    public long getReceiveRequests() {
+        return receiveRequests.get();
+    }
+
+    public long getDeletedMessages() {
+        return deletedMessages.get();
+    }
+
+    public long getReleasedMessages() {
+        return releasedMessages.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("receive requests: %d, deleted messages: %d, released messages: %d",
+                receiveRequests.get(), deletedMessages.get(), releasedMessages.get());
+    }
+
+    private synchronized void startPolling() {
+        if (poller == null) {
+            poller = new Thread(this::poll, "textract-dispatcher");
+            poller.setDaemon(true);
+            poller.start();
+        }
+    }
+
+    private void poll() {
+        int failures = 0;
+
+        while (true) {
+            int waitTimeSeconds;
+            synchronized (this) {
+                if (pendingJobs.isEmpty()) {
+                    poller = null;
+                    List<QueueMessage> held = new ArrayList<>();
+                    unclaimedNotifications.values().forEach(unclaimed -> held.add(unclaimed.message));
+                    unclaimedNotifications.clear();
+                    releaseMessages(held);
+                    return;
+                }
+                waitTimeSeconds = unclaimedNotifications.isEmpty() ? WAIT_TIME_SECONDS : HELD_WAIT_TIME_SECONDS;
+            }
+
+            List<QueueMessage> messages;
+            try {
+                receiveRequests.incrementAndGet();
+                messages = messageQueue.receive(MAX_MESSAGES, waitTimeSeconds);
+                failures = 0;
+            } catch (InterruptedException e) {
+                failPendingJobs(e);
+                Thread.currentThread().interrupt();
+                continue;
+            } catch (IOException e) {
+                if (++failures >= MAX_RECEIVE_FAILURES) {
+                    failPendingJobs(e);
+                    continue;
+                }
+                try {
+                    TimeUnit.MILLISECONDS.sleep(RECEIVE_RETRY_MILLIS * failures);
+                } catch (InterruptedException interrupted) {
+                    failPendingJobs(interrupted);
+                    Thread.currentThread().interrupt();
+                }
+                continue;
+            }
+            dispatch(messages);
+            releaseMessages(takeExpiredNotifications());
+        }
+    }
+
+    private void dispatch(List<QueueMessage> messages) {
+        List<QueueMessage> claimed = new ArrayList<>();
+        Map<CompletableFuture<TextractJobNotification>, TextractJobNotification> completions = new HashMap<>();
+
+        synchronized (this) {
+            for (QueueMessage message : messages) {
+                TextractJobNotification notification;
+                try {
+                    notification = TextractJobNotification.parse(message.getBody());
+                } catch (IOException e) {
+                    // not a textract notification, leave it for whoever reads this queue
+                    continue;
+                }
+                CompletableFuture<TextractJobNotification> completion = pendingJobs.remove(notification.getJobId());
+                if (completion != null) {
+                    claimed.add(message);
+                    completions.put(completion, notification);
+                } else {
+                    unclaimedNotifications.put(notification.getJobId(), new ReceivedNotification(message, notification,
+                            System.nanoTime()));
+                }
+            }
+        }
+
+        deleteMessages(claimed);
+        completions.forEach(CompletableFuture::complete);
+    }
+
+    private void deleteMessages(List<QueueMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        try {
+            messageQueue.delete(messages);
+            deletedMessages.addAndGet(messages.size());
+        } catch (IOException e) {
+            // an undeleted notification is received again later and ignored, its job is already complete
+        }
+    }
+
+    /**
+     * Removes the notifications held for longer than {@link #UNCLAIMED_HOLD_MILLIS} and, oldest first, any beyond
+     * {@link #MAX_UNCLAIMED_NOTIFICATIONS}.
+     *
+     * @return {@link List} of the removed notifications' messages
+     */
+    private synchronized List<QueueMessage> takeExpiredNotifications() {
+        List<QueueMessage> expired = new ArrayList<>();
+        long now = System.nanoTime();
+        Iterator<ReceivedNotification> iterator = unclaimedNotifications.values().iterator();
+        while (iterator.hasNext()) {
+            ReceivedNotification unclaimed = iterator.next();
+            if (unclaimedNotifications.size() <= MAX_UNCLAIMED_NOTIFICATIONS
+                    && TimeUnit.NANOSECONDS.toMillis(now - unclaimed.receivedNanos) < UNCLAIMED_HOLD_MILLIS) {
+                break;
+            }
+            iterator.remove();
+            expired.add(unclaimed.message);
+        }
+        return expired;
+    }
+
+    private void releaseMessages(List<QueueMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        try {
+            messageQueue.release(messages);
+            releasedMessages.addAndGet(messages.size());
+        } catch (IOException e) {
+            // an unreleased notification is still received again once its visibility timeout passes
+        }
+    }
+
+    private void failPendingJobs(Exception cause) {
+        List<CompletableFuture<TextractJobNotification>> failed;
+        synchronized (this) {
+            failed = new ArrayList<>(pendingJobs.values());
+            pendingJobs.clear();
+        }
+        for (CompletableFuture<TextractJobNotification> completion : failed) {
+            completion.completeExceptionally(cause);
+        }
+    }
+
+    private static class ReceivedNotification {
+        private final QueueMessage message;
+        private final TextractJobNotification notification;
+        private final long receivedNanos;
+
+        ReceivedNotification(QueueMessage message, TextractJobNotification notification, long receivedNanos) {
+            this.message = message;
+            this.notification = notification;
+            this.receivedNanos = receivedNanos;
+        }
+    }
+}
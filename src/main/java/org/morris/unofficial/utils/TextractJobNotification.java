@@ -0,0 +1,103 @@
+package org.morris.unofficial.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+
+/**
+ * {@code org.morris.unofficial.utils.TextractJobNotification} is the completion notification Textract publishes
+ * to the SNS notification channel of a document text detection job. The notification reaches the metro SQS queue
+ * either wrapped in an SNS envelope, with the notification as the envelope's Message, or as the raw notification
+ * when raw message delivery is enabled; both forms are accepted.
+ *
+ * @see com.amazonaws.services.textract.model.NotificationChannel
+ */
+public class TextractJobNotification {
+    final static public String SUCCEEDED = "SUCCEEDED";
+    final static public String FAILED = "FAILED";
+    final static public String JOB_ID = "JobId";
+    final static public String STATUS = "Status";
+    final static public String JOB_TAG = "JobTag";
+    final static public String MESSAGE = "Message";
+
+    final static private ObjectMapper OBJECT_MAPPER = MetroJson.getObjectMapper();
+
+    private final String jobId;
+    private final String status;
+    private final String jobTag;
+
+    public TextractJobNotification(String jobId, String status, String jobTag) {
+        this.jobId = jobId;
+        this.status = status;
+        this.jobTag = jobTag;
+    }
+
+    /**
+     * Parse a Textract completion notification from the body of an SQS message.
+     *
+     * @param body {@link String} SQS message body
+     * @return {@link TextractJobNotification}
+     *
+     * @throws IOException if the body is not a Textract completion notification
+     */
+    public static TextractJobNotification parse(String body) throws IOException {
+        JsonNode notification = OBJECT_MAPPER.readTree(body);
+        if (notification == null || !notification.isObject()) {
+            throw new IOException("message is not a textract notification: " + body);
+        }
+
+        // unwrap the SNS envelope, the textract notification is its message
+        JsonNode message = notification.get(MESSAGE);
+        if (message != null && message.isTextual()) {
+            notification = OBJECT_MAPPER.readTree(message.textValue());
+        }
+
+        JsonNode jobId = notification.get(JOB_ID);
+        JsonNode status = notification.get(STATUS);
+        if (jobId == null || status == null) {
+            throw new IOException("message is not a textract notification: " + body);
+        }
+        JsonNode jobTag = notification.get(JOB_TAG);
+        return new TextractJobNotification(jobId.asText(), status.asText(), jobTag == null ? null : jobTag.asText());
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * @return {@link String} the job tag the detection was started with, or null if none was given
+     */
+    public String getJobTag() {
+        return jobTag;
+    }
+
+    public boolean isSucceeded() {
+        return SUCCEEDED.equals(status);
+    }
+
+    /**
+     * @return {@link String} the notification as Textract sends it with raw message delivery, readable by
+     * {@link #parse(String)}
+     */
+    public String toJson() {
+        ObjectNode notification = OBJECT_MAPPER.createObjectNode()
+                .put(JOB_ID, jobId)
+                .put(STATUS, status);
+        if (jobTag != null) {
+            notification.put(JOB_TAG, jobTag);
+        }
+        return notification.toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("job: %s, status: %s, tag: %s", jobId, status, jobTag);
+    }
+}
@@ -0,0 +1,179 @@
+package org.morris.unofficial.utils;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.textract.model.Block;
+import com.amazonaws.services.textract.model.GetDocumentTextDetectionResult;
+import com.amazonaws.services.textract.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.textract.model.ThrottlingException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * {@code org.morris.unofficial.utils.TextractResultCollector} pages the results of many completed
+ * {@link TextDetectionService} detections at the same time. The pages of a single job depend on each other's next
+ * token and are fetched in order, while the jobs themselves are paged concurrently. Every GetDocumentTextDetection
+ * request across all jobs shares one rate limit, since Textract's request quota is per account, and throttled or
+ * failed requests are retried with exponential backoff and full jitter.
+ * <p></p>
+ * Blocks are handed to a consumer one page at a time and are not kept, so heap use stays flat no matter how
+ * many pages a schedule pdf has. A job's consumer is only ever called from one thread at a time.
+ */
+public class TextractResultCollector implements AutoCloseable {
+
+    // textract's GetDocumentTextDetection quota is per account, shared by every detection paging its results
+    final static public String TEXTRACT_GET_REQUESTS_PER_SECOND = "TEXTRACT_GET_REQUESTS_PER_SECOND";
+    final static public int DEFAULT_TEXTRACT_GET_REQUESTS_PER_SECOND = 5;
+
+    final static private int MAX_RESULTS = 1000;
+    final static private int MAX_ATTEMPTS = 5;
+    final static private long BASE_BACKOFF_MILLIS = 200;
+    final static private long MAX_BACKOFF_MILLIS = 5000;
+    final static private int SERVER_ERROR = 500;
+
+    private final TextDetectionService textDetectionService;
+    private final ExecutorService executor;
+    private final RateLimiter rateLimiter;
+    private final AtomicLong pages = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+
+    /**
+     * @param textDetectionService {@link TextDetectionService} the detections were started with
+     * @param concurrency number of jobs paged at the same time
+     * @param requestsPerSecond maximum GetDocumentTextDetection requests per second across all jobs
+     */
+    public TextractResultCollector(TextDetectionService textDetectionService, int concurrency,
+                                   double requestsPerSecond) {
+        this(textDetectionService, concurrency, new RateLimiter(requestsPerSecond));
+    }
+
+    /**
+     * @param textDetectionService {@link TextDetectionService} the detections were started with
+     * @param concurrency number of jobs paged at the same time
+     * @param rateLimiter {@link RateLimiter} every GetDocumentTextDetection request across all jobs acquires
+     */
+    public TextractResultCollector(TextDetectionService textDetectionService, int concurrency,
+                                   RateLimiter rateLimiter) {
+        this.textDetectionService = textDetectionService;
+        this.rateLimiter = rateLimiter;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, concurrency), runnable -> {
+            Thread thread = new Thread(runnable, "textract-collector-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Pages every result of a completed detection in the background, passing each {@link Block} to the consumer
+     * as its page arrives.
+     *
+     * @param jobId the job id of a succeeded detection
+     * @param consumer {@link Consumer} of the job's blocks, in document order
+     * @return {@link CompletableFuture} of the number of blocks collected, completed exceptionally if a page
+     * could not be fetched
+     */
+    public CompletableFuture<Long> collect(String jobId, Consumer<Block> consumer) {
+        return CompletableFuture.supplyAsync(() -> collectPages(jobId, consumer), executor);
+    }
+
+    /**
+     * Pages every result of a completed detection and waits for it to finish.
+     *
+     * @param jobId the job id of a succeeded detection
+     * @param consumer {@link Consumer} of the job's blocks, in document order
+     * @return number of blocks collected
+     *
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public long collectAndWait(String jobId, Consumer<Block> consumer) throws InterruptedException {
+        try {
+            return collect(jobId, consumer).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    public long getPages() {
+        return pages.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("pages: %d, retries: %d", pages.get(), retries.get());
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private long collectPages(String jobId, Consumer<Block> consumer) {
+        long blocks = 0;
+        String paginationToken = null;
+        do {
+            GetDocumentTextDetectionResult getDocumentTextDetectionResult = getPage(jobId, paginationToken);
+            pages.incrementAndGet();
+            for (Block block : getDocumentTextDetectionResult.getBlocks()) {
+                consumer.accept(block);
+                blocks++;
+            }
+
+            // get the next page, if there is one
+            paginationToken = getDocumentTextDetectionResult.getNextToken();
+        } while (paginationToken != null);
+        return blocks;
+    }
+
+    private GetDocumentTextDetectionResult getPage(String jobId, String paginationToken) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                rateLimiter.acquire();
+                return textDetectionService.getDocumentTextDetection(jobId, MAX_RESULTS, paginationToken);
+            } catch (AmazonServiceException e) {
+                if (attempt >= MAX_ATTEMPTS || !isRetryable(e)) {
+                    throw e;
+                }
+                retries.incrementAndGet();
+                sleep(ThreadLocalRandom.current().nextLong(backoffMillis(attempt) + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        }
+    }
+
+    private boolean isRetryable(AmazonServiceException e) {
+        return e instanceof ThrottlingException
+                || e instanceof ProvisionedThroughputExceededException
+                || e.getStatusCode() >= SERVER_ERROR;
+    }
+
+    private long backoffMillis(int attempt) {
+        return Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << (attempt - 1));
+    }
+
+    private void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+}
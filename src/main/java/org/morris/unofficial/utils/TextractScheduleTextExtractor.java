@@ -0,0 +1,163 @@
+package org.morris.unofficial.utils;
+
+import com.amazonaws.services.textract.model.Block;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@code org.morris.unofficial.utils.TextractScheduleTextExtractor} extracts a schedule pdf's text with an
+ * asynchronous {@link TextDetectionService} detection of the pdf uploaded to the schedules bucket. The detection's
+ * completion notification is awaited through a {@link TextractJobDispatcher} and the text of its LINE blocks is
+ * paged by a {@link TextractResultCollector}, one page of the pdf at a time.
+ * <p></p>
+ * Without a dispatcher the detection is only started: no pages are extracted here and the detected text is
+ * handled by {@link org.morris.unofficial.events.TextractCompletionEvent} once the notification arrives.
+ */
+public class TextractScheduleTextExtractor implements ScheduleTextExtractor {
+    final static public String CLIENT_REQUEST_TOKEN = "MetroLineRequestToken";
+    final static private String LINE_BLOCK_TYPE = "LINE";
+
+    private final TextDetectionService textDetectionService;
+    private final TextractJobDispatcher textractJobDispatcher;
+    private final TextractResultCollector textractResultCollector;
+    private final String bucket;
+    private final long jobTimeoutMillis;
+
+    /**
+     * @param textDetectionService {@link TextDetectionService} the detections are started with
+     * @param textractJobDispatcher {@link TextractJobDispatcher} to wait on detections, or null to only start them
+     * @param textractResultCollector {@link TextractResultCollector} to page the detected text
+     * @param bucket {@link String} bucket the schedule pdfs are uploaded to
+     * @param jobTimeoutMillis maximum time to wait for a detection to complete
+     */
+    public TextractScheduleTextExtractor(TextDetectionService textDetectionService,
+                                         TextractJobDispatcher textractJobDispatcher,
+                                         TextractResultCollector textractResultCollector, String bucket,
+                                         long jobTimeoutMillis) {
+        this.textDetectionService = textDetectionService;
+        this.textractJobDispatcher = textractJobDispatcher;
+        this.textractResultCollector = textractResultCollector;
+        this.bucket = bucket;
+        this.jobTimeoutMillis = jobTimeoutMillis;
+    }
+
+    @Override
+    public int extract(SchedulePdf schedulePdf, PageConsumer consumer) throws IOException, InterruptedException {
+        String jobId = start(schedulePdf);
+        if (textractJobDispatcher == null) {
+            return 0;
+        }
+
+        TextractJobNotification notification;
+        try {
+            notification = textractJobDispatcher.await(jobId, jobTimeoutMillis);
+        } catch (TimeoutException e) {
+            throw new IOException("document text detection timed out for line: " + schedulePdf.getLine());
+        }
+        if (!notification.isSucceeded()) {
+            throw new IOException(String.format("document text detection failed for line: %s, %s",
+                    schedulePdf.getLine(), notification));
+        }
+
+        // blocks arrive in page order, a page is handed over once the first block of the next page shows up
+        PageBuffer pageBuffer = new PageBuffer(consumer);
+        try {
+            textractResultCollector.collectAndWait(jobId, pageBuffer::accept);
+            return pageBuffer.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Starts detecting the text of the schedule pdf. A {@link TextractJobNotification} is delivered to the metro
+     * queue once the detection completes; the line is carried in the job tag.
+     *
+     * @param schedulePdf {@link SchedulePdf} uploaded to the schedules bucket
+     * @return {@link String} the job id of the detection
+     * @throws IOException if the detection could not be started
+     *
+     * @see TextDetectionService#startDocumentTextDetection(String, String, String, String)
+     */
+    public String start(SchedulePdf schedulePdf) throws IOException {
+        return textDetectionService.startDocumentTextDetection(bucket, schedulePdf.getKey(),
+                getClientRequestToken(schedulePdf.getLine()), getJobTag(schedulePdf.getLine()));
+    }
+
+    /**
+     * Textract returns the same JobId for requests that share a client request token, so every line needs its
+     * own token. Tokens may only contain alphanumerics, hyphens and underscores.
+     *
+     * @param line {@link String} the line# name of the MetroLine (ex: 190)
+     * @return {@link String} client request token for the line's detection request
+     */
+    private String getClientRequestToken(String line) {
+        return CLIENT_REQUEST_TOKEN + "-" + getJobTag(line);
+    }
+
+    /**
+     * The job tag is returned in the detection's completion notification, so the handler of the notification
+     * knows which line the detection belongs to. Tags may only contain alphanumerics and the characters _.-:
+     *
+     * @param line {@link String} the line# name of the MetroLine (ex: 190)
+     * @return {@link String} job tag for the line's detection request
+     */
+    public static String getJobTag(String line) {
+        return line.replaceAll("[^A-Za-z0-9]+", "-");
+    }
+
+    /**
+     * Gathers the LINE blocks of the current page and hands the page's text over when the next one starts. A
+     * {@link PageConsumer} failure is rethrown as an {@link UncheckedIOException}.
+     */
+    public static class PageBuffer {
+        private final PageConsumer consumer;
+        private final StringBuilder text = new StringBuilder();
+        private int page = 0;
+        private int pages = 0;
+
+        public PageBuffer(PageConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        /**
+         * @param block {@link Block} of a detection's results, in page order; only LINE blocks have text kept
+         */
+        public void accept(Block block) {
+            if (LINE_BLOCK_TYPE.equals(block.getBlockType()) && block.getText() != null) {
+                append(block.getPage() == null ? 1 : block.getPage(), block.getText());
+            }
+        }
+
+        private void append(int blockPage, String line) {
+            if (blockPage != page) {
+                flush();
+                page = blockPage;
+            }
+            text.append(line).append(System.lineSeparator());
+        }
+
+        /**
+         * @return the number of pages handed over, once the last page is
+         */
+        public int finish() {
+            flush();
+            return pages;
+        }
+
+        private void flush() {
+            if (page == 0) {
+                return;
+            }
+            try {
+                consumer.accept(page, text.toString());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            text.setLength(0);
+            pages++;
+        }
+    }
+}
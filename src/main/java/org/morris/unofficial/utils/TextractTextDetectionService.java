@@ -0,0 +1,65 @@
+package org.morris.unofficial.utils;
+
+import com.amazonaws.services.textract.AmazonTextract;
+import com.amazonaws.services.textract.model.DocumentLocation;
+import com.amazonaws.services.textract.model.GetDocumentTextDetectionRequest;
+import com.amazonaws.services.textract.model.GetDocumentTextDetectionResult;
+import com.amazonaws.services.textract.model.NotificationChannel;
+import com.amazonaws.services.textract.model.StartDocumentTextDetectionRequest;
+
+import java.util.function.Supplier;
+
+/**
+ * {@code org.morris.unofficial.utils.TextractTextDetectionService} is the {@link TextDetectionService} of the
+ * deployed handlers. Detections publish their completion to the Textract SNS topic, which delivers it to the metro
+ * SQS queue. The client is resolved on first use, so a handler whose schedules all extract with PDFBox never
+ * builds it.
+ */
+public class TextractTextDetectionService implements TextDetectionService {
+    private final Supplier<AmazonTextract> textractClient;
+
+    /**
+     * @param textractClient {@link Supplier} of the {@link AmazonTextract} client, called on every request
+     */
+    public TextractTextDetectionService(Supplier<AmazonTextract> textractClient) {
+        this.textractClient = textractClient;
+    }
+
+    public TextractTextDetectionService(AmazonTextract textractClient) {
+        this(() -> textractClient);
+    }
+
+    /**
+     * @see StartDocumentTextDetectionRequest
+     */
+    @Override
+    public String startDocumentTextDetection(String bucket, String key, String clientRequestToken, String jobTag) {
+        String textractTopicArn = ProcessEventUtils.getTextractTopicArn();
+        String txfftxyyftArn = ProcessEventUtils.getTXFFTXYYFTRole();
+
+        // send detection to SNS notification channel - topic arn and role arn is needed
+        NotificationChannel notificationChannel = new NotificationChannel()
+                .withSNSTopicArn(textractTopicArn)
+                .withRoleArn(txfftxyyftArn);
+
+        // create document location to feed to document text detection request
+        DocumentLocation documentLocation = new DocumentLocation()
+                .withS3Object(ProcessEventUtils.getTextractS3Object(key, bucket));
+
+        StartDocumentTextDetectionRequest detectDocumentTextRequest = new StartDocumentTextDetectionRequest()
+                .withDocumentLocation(documentLocation)
+                .withNotificationChannel(notificationChannel)
+                .withClientRequestToken(clientRequestToken)
+                .withJobTag(jobTag);
+        return textractClient.get().startDocumentTextDetection(detectDocumentTextRequest).getJobId();
+    }
+
+    @Override
+    public GetDocumentTextDetectionResult getDocumentTextDetection(String jobId, int maxResults, String nextToken) {
+        GetDocumentTextDetectionRequest getDocumentTextDetectionRequest = new GetDocumentTextDetectionRequest()
+                .withJobId(jobId)
+                .withMaxResults(maxResults)
+                .withNextToken(nextToken);
+        return textractClient.get().getDocumentTextDetection(getDocumentTextDetectionRequest);
+    }
+}
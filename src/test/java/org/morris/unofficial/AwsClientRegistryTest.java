@@ -0,0 +1,34 @@
+package org.morris.unofficial;
+
+import com.amazonaws.services.s3.AmazonS3;
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.utils.AwsClientRegistry;
+import org.morris.unofficial.utils.ProcessEventUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class AwsClientRegistryTest {
+
+    @Test
+    public void testS3ClientIsCreatedOnceAndReused() throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<AmazonS3>> calls = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            calls.add(ProcessEventUtils::getS3Client);
+        }
+        AmazonS3 s3Client = ProcessEventUtils.getS3Client();
+        for (Future<AmazonS3> future : executor.invokeAll(calls)) {
+            Assert.assertSame(s3Client, future.get());
+        }
+        executor.shutdown();
+
+        Assert.assertEquals(Integer.valueOf(1), AwsClientRegistry.getCreatedClientCounts().get("s3"));
+    }
+}
@@ -0,0 +1,110 @@
+package org.morris.unofficial;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.utils.BlobStore;
+import org.morris.unofficial.utils.BlobStore.BlobMetadata;
+import org.morris.unofficial.utils.InMemoryBlobStore;
+import org.morris.unofficial.utils.LocalBlobStore;
+import org.morris.unofficial.utils.SimulatedLatency;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class BlobStoreTest {
+    private final String BUCKET = "schedules-bucket";
+
+    @Test
+    public void testInMemoryBlobStore() throws IOException {
+        SimulatedLatency latency = new SimulatedLatency(1, 0, 0);
+        InMemoryBlobStore blobStore = new InMemoryBlobStore(latency);
+        assertBlobStore(blobStore);
+        Assert.assertEquals(4, blobStore.getPuts());
+        Assert.assertTrue(latency.getCalls() > 0);
+        Assert.assertTrue(latency.getPausedMillis() > 0);
+    }
+
+    @Test
+    public void testLocalBlobStore() throws IOException {
+        Path root = Files.createTempDirectory("blobs");
+        try {
+            assertBlobStore(new LocalBlobStore(root));
+
+            // objects are kept in the bucket's directory, where a local run can read them
+            Assert.assertEquals("190 timetable", new String(Files.readAllBytes(root.resolve(BUCKET)
+                    .resolve("docs/2022/10/8/190/line_schedule.json")), StandardCharsets.UTF_8));
+        } finally {
+            deleteRecursively(root);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testLocalBlobStoreRejectsKeysOutsideTheBucket() throws IOException {
+        Path root = Files.createTempDirectory("blobs");
+        try {
+            new LocalBlobStore(root).put(BUCKET, "../other-bucket/doc.txt", new byte[1], "text/plain",
+                    Collections.emptyMap());
+        } finally {
+            deleteRecursively(root);
+        }
+    }
+
+    private void assertBlobStore(BlobStore blobStore) throws IOException {
+        Assert.assertNull(blobStore.getMetadata(BUCKET, "index/line_fingerprints.json"));
+        Assert.assertNull(blobStore.getContent(BUCKET, "index/line_fingerprints.json"));
+        Assert.assertTrue(blobStore.list("missing-bucket", "docs/", 0).isEmpty());
+
+        put(blobStore, "docs/2022/10/8/190/line_schedule.json", "190 timetable");
+        put(blobStore, "docs/2022/10/8/7/line_schedule.json", "7 timetable");
+        put(blobStore, "docs/2022/10/1/190/line_schedule.json", "old 190 timetable");
+        blobStore.put(BUCKET, "index/latest_routes_doc", "docs/2022/10/8/".getBytes(StandardCharsets.UTF_8),
+                "text/plain", Collections.singletonMap("latest-key", "docs/2022/10/8/"));
+
+        BlobMetadata metadata = blobStore.getMetadata(BUCKET, "index/latest_routes_doc");
+        Assert.assertEquals("index/latest_routes_doc", metadata.getKey());
+        Assert.assertEquals(15, metadata.getLength());
+        Assert.assertEquals("text/plain", metadata.getContentType());
+        Assert.assertEquals("docs/2022/10/8/", metadata.getUserMetadata("latest-key"));
+        Assert.assertNotNull(metadata.getLastModified());
+
+        try (InputStream content = blobStore.getContent(BUCKET, "docs/2022/10/8/7/line_schedule.json")) {
+            Assert.assertEquals("7 timetable", read(content));
+        }
+
+        List<BlobMetadata> schedules = blobStore.list(BUCKET, "docs/2022/10/8/", 0);
+        Assert.assertEquals(2, schedules.size());
+        Assert.assertEquals("docs/2022/10/8/190/line_schedule.json", schedules.get(0).getKey());
+        Assert.assertEquals("docs/2022/10/8/7/line_schedule.json", schedules.get(1).getKey());
+        Assert.assertEquals(13, schedules.get(0).getLength());
+        Assert.assertEquals(1, blobStore.list(BUCKET, "docs/", 1).size());
+        Assert.assertEquals(4, blobStore.list(BUCKET, "", 0).size());
+    }
+
+    private void put(BlobStore blobStore, String key, String content) throws IOException {
+        blobStore.put(BUCKET, key, content.getBytes(StandardCharsets.UTF_8), "application/json",
+                Collections.emptyMap());
+    }
+
+    private String read(InputStream content) throws IOException {
+        byte[] buffer = new byte[1024];
+        int length = 0;
+        int read;
+        while ((read = content.read(buffer, length, buffer.length - length)) > 0) {
+            length += read;
+        }
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private void deleteRecursively(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
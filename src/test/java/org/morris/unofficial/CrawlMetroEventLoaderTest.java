@@ -5,19 +5,32 @@ import com.amazonaws.services.lambda.runtime.tests.EventLoader;
 import org.junit.Assert;
 import org.junit.Test;
 import org.morris.unofficial.events.CrawlMetroEvent;
+import org.apache.commons.io.IOUtils;
 import org.morris.unofficial.utils.FileUtils;
+import org.morris.unofficial.utils.InMemoryBlobStore;
+import org.morris.unofficial.utils.LatestDocumentIndex;
+import org.morris.unofficial.utils.LatestDocumentIndex.LatestDocument;
+import org.morris.unofficial.utils.RoutesDigest;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.math.BigInteger;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 public class CrawlMetroEventLoaderTest {
     private final String TRIGGERED_CRAWL_METRO_EVENT_JSON_PATH = "/notifications/scheduled-event-metro-crawl.json";
     private final String LATEST_CRAWL_METRO_DOCUMENT_PATH_1 = "/s3-event-crawl-metro-latest-1.txt";
     private final String RECENT_CRAWL_METRO_DOCUMENT_PATH_1 = "/s3-event-crawl-metro-recent-1.txt";
     private final String RECENT_CRAWL_METRO_DOCUMENT_PATH_2 = "/s3-event-crawl-metro-recent-2.txt";
+    private final String UNPROCESSED_BUCKET = System.getenv("UNPROCESSED_BUCKET_NAME");
+    private final String SCHEDULES_MAPS_PATH = "/depts/transportation/metro/schedules-maps.aspx";
 
     @Test
     public void testTriggeredCrawlEventJson() {
@@ -88,4 +101,93 @@ public class CrawlMetroEventLoaderTest {
         Assert.assertEquals(latestDocumentStr, recentDocumentStr1);
         Assert.assertNotEquals(latestDocumentStr, recentDocumentStr2);
     }
+
+    @Test
+    public void testLatestDocumentDigestMatchesRecentDocumentDigest() throws IOException, NoSuchAlgorithmException {
+        String latestDigest = getRoutesDigest(LATEST_CRAWL_METRO_DOCUMENT_PATH_1);
+        String recentDigest1 = getRoutesDigest(RECENT_CRAWL_METRO_DOCUMENT_PATH_1);
+        String recentDigest2 = getRoutesDigest(RECENT_CRAWL_METRO_DOCUMENT_PATH_2);
+
+        Assert.assertEquals(latestDigest, recentDigest1);
+        Assert.assertNotEquals(latestDigest, recentDigest2);
+
+        // digest only covers the content before the end of the routes
+        URL latestDocumentTxtUrl = FileUtils.getResource(LATEST_CRAWL_METRO_DOCUMENT_PATH_1);
+        String latestDocumentStr = new String(Files.readAllBytes(new File(latestDocumentTxtUrl.getFile()).toPath()),
+                StandardCharsets.UTF_8).split(CrawlMetroEvent.END_ROUTES_MARKER)[0];
+        byte[] expected = MessageDigest.getInstance("SHA-256").digest(latestDocumentStr.getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(String.format("%064x", new BigInteger(1, expected)), latestDigest);
+    }
+
+    @Test
+    public void testRoutesDigestHoldsBackPartialMarker() throws IOException {
+        String partialMarker = "<!-- end #route";
+        String document = "routes " + partialMarker + " more routes";
+        String withMarker = document + CrawlMetroEvent.END_ROUTES_MARKER + " dynamic content";
+
+        Assert.assertEquals(RoutesDigest.digest(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)),
+                        CrawlMetroEvent.END_ROUTES_MARKER),
+                RoutesDigest.digest(new ByteArrayInputStream(withMarker.getBytes(StandardCharsets.UTF_8)),
+                        CrawlMetroEvent.END_ROUTES_MARKER));
+    }
+
+    @Test
+    public void testRoutesDigestOfCopiedDocument() throws IOException {
+        byte[] latestDocument = getResourceBytes(LATEST_CRAWL_METRO_DOCUMENT_PATH_1);
+        RoutesDigest routesDigest = new RoutesDigest(CrawlMetroEvent.END_ROUTES_MARKER);
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        IOUtils.copy(routesDigest.digesting(new ByteArrayInputStream(latestDocument)), copy);
+
+        // the whole document is copied, and digested as it passes through
+        Assert.assertArrayEquals(latestDocument, copy.toByteArray());
+        Assert.assertEquals(getRoutesDigest(LATEST_CRAWL_METRO_DOCUMENT_PATH_1), routesDigest.toHex());
+    }
+
+    @Test
+    public void testUnchangedRoutesRecordTheNewValidators() throws IOException {
+        byte[] latestDocument = getResourceBytes(LATEST_CRAWL_METRO_DOCUMENT_PATH_1);
+        InMemoryBlobStore blobStore = new InMemoryBlobStore();
+        LatestDocumentIndex latestDocumentIndex = new LatestDocumentIndex(blobStore, UNPROCESSED_BUCKET,
+                CrawlMetroEvent.LATEST_ROUTES_DOC_INDEX);
+        try (TestMetroSite site = new TestMetroSite()) {
+            CrawlMetroEvent crawlMetroEvent = new CrawlMetroEvent(blobStore, site.getUrl());
+            site.put(SCHEDULES_MAPS_PATH, latestDocument);
+            Assert.assertEquals("success", crawlMetroEvent.handleRequest(new ScheduledEvent(),
+                    new TestLambdaContext(60000)));
+            LatestDocument uploaded = latestDocumentIndex.getLatest();
+            Assert.assertEquals(site.getEtag(SCHEDULES_MAPS_PATH),
+                    uploaded.getMetadata(CrawlMetroEvent.SOURCE_ETAG_METADATA));
+
+            // the page changes after its routes only, so the recent document is kept with the page's new etag
+            site.put(SCHEDULES_MAPS_PATH, getResourceBytes(RECENT_CRAWL_METRO_DOCUMENT_PATH_1));
+            Assert.assertEquals("success", crawlMetroEvent.handleRequest(new ScheduledEvent(),
+                    new TestLambdaContext(60000)));
+            LatestDocument recent = latestDocumentIndex.getLatest();
+            Assert.assertEquals(uploaded.getKey(), recent.getKey());
+            Assert.assertEquals(uploaded.getMetadata(CrawlMetroEvent.ROUTES_DIGEST_METADATA),
+                    recent.getMetadata(CrawlMetroEvent.ROUTES_DIGEST_METADATA));
+            Assert.assertEquals(site.getEtag(SCHEDULES_MAPS_PATH),
+                    recent.getMetadata(CrawlMetroEvent.SOURCE_ETAG_METADATA));
+            try (InputStream content = blobStore.getContent(UNPROCESSED_BUCKET, recent.getKey())) {
+                Assert.assertArrayEquals(latestDocument, IOUtils.toByteArray(content));
+            }
+
+            // the next crawl sends the new etag and is answered with a 304, the changed page was sent once
+            Assert.assertEquals("success", crawlMetroEvent.handleRequest(new ScheduledEvent(),
+                    new TestLambdaContext(60000)));
+            Assert.assertEquals(1, site.getBodiesSent(SCHEDULES_MAPS_PATH));
+        }
+    }
+
+    private byte[] getResourceBytes(String path) throws IOException {
+        try (InputStream inputStream = FileUtils.getResourceAsStream(path)) {
+            return IOUtils.toByteArray(inputStream);
+        }
+    }
+
+    private String getRoutesDigest(String path) throws IOException {
+        try (InputStream inputStream = FileUtils.getResourceAsStream(path)) {
+            return RoutesDigest.digest(inputStream, CrawlMetroEvent.END_ROUTES_MARKER);
+        }
+    }
 }
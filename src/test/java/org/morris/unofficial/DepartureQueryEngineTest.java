@@ -0,0 +1,82 @@
+package org.morris.unofficial;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.models.MetroStop;
+import org.morris.unofficial.models.Schedule;
+import org.morris.unofficial.models.StopTimes;
+import org.morris.unofficial.utils.DepartureQueryEngine;
+import org.morris.unofficial.utils.FileUtils;
+import org.morris.unofficial.utils.ScheduleTextParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class DepartureQueryEngineTest {
+    private final String SCHEDULE_PDF_TEXT_190_PATH = "/schedule-pdf-text-dump/schedule-pdf-text-190.txt";
+
+    @Test
+    public void testNextDeparturesFromParsedSchedule() throws IOException {
+        DepartureQueryEngine engine = DepartureQueryEngine.build(getSchedules190());
+
+        int[] departures = new int[3];
+        Assert.assertEquals(3, engine.nextDepartures("47972", "190", StopTimes.parse("6:00 AM"), departures));
+        Assert.assertArrayEquals(new int[] {StopTimes.parse("6:38 AM"), StopTimes.parse("6:53 AM"),
+                StopTimes.parse("7:08 AM")}, departures);
+
+        // fewer departures left than asked for
+        Assert.assertEquals(1, engine.nextDepartures("47972", "190", StopTimes.parse("7:00 AM"), departures));
+        Assert.assertEquals(StopTimes.parse("7:08 AM"), departures[0]);
+        Assert.assertEquals(0, engine.nextDepartures("47972", "190", StopTimes.parse("7:09 AM"), departures));
+
+        Assert.assertEquals(StopTimes.parse("3:23 PM"), engine.nextDeparture("250", "190", StopTimes.parse("8:00 AM")));
+
+        // redondo heights p&r is in both timetables
+        Assert.assertEquals(StopTimes.parse("7:02 AM"), engine.nextDeparture("60747", "190", StopTimes.parse("6:50 AM")));
+        Assert.assertEquals(StopTimes.parse("4:18 PM"), engine.nextDeparture("60747", "190", StopTimes.parse("7:03 AM")));
+
+        Assert.assertEquals(DepartureQueryEngine.NO_DEPARTURE, engine.nextDeparture("60747", "193", 0));
+        Assert.assertEquals(DepartureQueryEngine.NO_DEPARTURE, engine.nextDeparture("1", "190", 0));
+        Assert.assertEquals(11, engine.getStopCount());
+    }
+
+    @Test
+    public void testLinesServingStop() {
+        List<Schedule> schedules = new ArrayList<>();
+        schedules.add(getSchedule("E Line", getMetroStop("578", 360, 375)));
+        schedules.add(getSchedule("5", getMetroStop("578", 370, 400), getMetroStop("1010", 380)));
+        schedules.add(getSchedule("28", getMetroStop("578", 365)));
+        DepartureQueryEngine engine = DepartureQueryEngine.build(schedules);
+
+        Assert.assertEquals(Arrays.asList("28", "5", "E Line"), engine.getLines("578"));
+        Assert.assertEquals(Collections.singletonList("5"), engine.getLines("1010"));
+        Assert.assertTrue(engine.getLines("99999").isEmpty());
+        Assert.assertEquals(375, engine.nextDeparture("578", "E Line", 361));
+    }
+
+    private List<Schedule> getSchedules190() throws IOException {
+        try (InputStream inputStream = FileUtils.getResourceAsStream(SCHEDULE_PDF_TEXT_190_PATH)) {
+            return ScheduleTextParser.parse(IOUtils.toString(inputStream, StandardCharsets.UTF_8));
+        }
+    }
+
+    private Schedule getSchedule(String route, MetroStop... metroStops) {
+        Schedule schedule = new Schedule();
+        schedule.setRoute(route);
+        schedule.setSchedule(Arrays.asList(metroStops));
+        return schedule;
+    }
+
+    private MetroStop getMetroStop(String stopNumber, int... minutes) {
+        MetroStop metroStop = new MetroStop();
+        metroStop.setStopNumber(stopNumber);
+        metroStop.setStopTimes(StopTimes.of(minutes));
+        return metroStop;
+    }
+}
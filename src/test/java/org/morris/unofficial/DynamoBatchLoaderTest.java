@@ -0,0 +1,302 @@
+package org.morris.unofficial;
+
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.models.MetroLine;
+import org.morris.unofficial.models.Schedule;
+import org.morris.unofficial.utils.DynamoBatchLoader;
+import org.morris.unofficial.utils.MetroTableItems;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class DynamoBatchLoaderTest {
+    private final String METRO_TABLE = "metro-table";
+
+    @Test
+    public void testLoadsInBatchesAndRetriesUnprocessedItems() throws InterruptedException {
+        InMemoryDynamoDB dynamoDB = new InMemoryDynamoDB();
+        dynamoDB.unprocessedWrites.set(3);
+        dynamoDB.unprocessedReads.set(2);
+
+        try (DynamoBatchLoader loader = new DynamoBatchLoader(dynamoDB, METRO_TABLE, 4)) {
+            for (int line = 0; line < 110; line++) {
+                loader.put(MetroTableItems.getRouteItem(getMetroLine(line), 100, "docs/routes_doc.json"));
+            }
+            loader.flush();
+
+            Assert.assertEquals(110, dynamoDB.items.size());
+            Assert.assertEquals(5, loader.getBatches());
+            Assert.assertEquals(110, loader.getWritten());
+            Assert.assertEquals(0, loader.getFailed());
+            Assert.assertEquals(5, loader.getRetries());
+            Assert.assertTrue(dynamoDB.largestRead <= DynamoBatchLoader.MAX_BATCH_SIZE);
+        }
+        Map<String, AttributeValue> item = dynamoDB.items.get("LINE#7/ROUTE");
+        Assert.assertEquals("line 7 name", item.get("line_name").getS());
+        Assert.assertEquals("100", item.get(DynamoBatchLoader.VERSION).getN());
+    }
+
+    @Test
+    public void testWritesAreIdempotentByVersion() throws InterruptedException {
+        InMemoryDynamoDB dynamoDB = new InMemoryDynamoDB();
+        loadRoutes(dynamoDB, 40, 200);
+        int writeRequests = dynamoDB.writeRequests.get();
+
+        // the same document again writes nothing
+        DynamoBatchLoader loader = loadRoutes(dynamoDB, 40, 200);
+        Assert.assertEquals(writeRequests, dynamoDB.writeRequests.get());
+        Assert.assertEquals(40, loader.getSkipped());
+
+        // an older document never overwrites a newer one, a newer document only writes what it adds
+        loader = loadRoutes(dynamoDB, 40, 150);
+        Assert.assertEquals(40, loader.getSkipped());
+        Assert.assertEquals("200", dynamoDB.items.get("LINE#0/ROUTE").get(DynamoBatchLoader.VERSION).getN());
+
+        loader = loadRoutes(dynamoDB, 45, 300);
+        Assert.assertEquals(5, loader.getWritten());
+        Assert.assertEquals(40, loader.getSkipped());
+        Assert.assertEquals("200", dynamoDB.items.get("LINE#0/ROUTE").get(DynamoBatchLoader.VERSION).getN());
+        Assert.assertEquals("300", dynamoDB.items.get("LINE#44/ROUTE").get(DynamoBatchLoader.VERSION).getN());
+    }
+
+    @Test
+    public void testNewerVersionsOnlyWriteChangedContent() throws InterruptedException {
+        InMemoryDynamoDB dynamoDB = new InMemoryDynamoDB();
+        loadRoutes(dynamoDB, 10, 200);
+
+        try (DynamoBatchLoader loader = new DynamoBatchLoader(dynamoDB, METRO_TABLE, 2)) {
+            for (int line = 0; line < 10; line++) {
+                MetroLine metroLine = getMetroLine(line);
+                if (line == 3) {
+                    metroLine.setLineName("line 3 renamed");
+                }
+                loader.put(MetroTableItems.getRouteItem(metroLine, 300, "docs/routes_doc.json"));
+            }
+            loader.flush();
+            Assert.assertEquals(1, loader.getWritten());
+            Assert.assertEquals(9, loader.getSkipped());
+        }
+        Map<String, AttributeValue> item = dynamoDB.items.get("LINE#3/ROUTE");
+        Assert.assertEquals("line 3 renamed", item.get("line_name").getS());
+        Assert.assertEquals("300", item.get(DynamoBatchLoader.VERSION).getN());
+    }
+
+    @Test
+    public void testFingerprintIgnoresVersionAndSourceKey() {
+        Map<String, AttributeValue> item = MetroTableItems.getRouteItem(getMetroLine(1), 100, "docs/2022/9/17/routes_doc.json");
+        Map<String, AttributeValue> reloaded = MetroTableItems.getRouteItem(getMetroLine(1), 200, "docs/2022/9/24/routes_doc.json");
+        Map<String, AttributeValue> changed = MetroTableItems.getRouteItem(getMetroLine(2), 100, "docs/2022/9/17/routes_doc.json");
+        Assert.assertEquals(item.get(DynamoBatchLoader.FINGERPRINT), reloaded.get(DynamoBatchLoader.FINGERPRINT));
+        Assert.assertNotEquals(item.get(DynamoBatchLoader.FINGERPRINT), changed.get(DynamoBatchLoader.FINGERPRINT));
+    }
+
+    @Test
+    public void testNewerItemWrittenAfterTheVersionReadIsKept() throws InterruptedException {
+        InMemoryDynamoDB dynamoDB = new InMemoryDynamoDB();
+
+        // another load writes a newer route between this batch's read and its write
+        dynamoDB.afterRead.set(() -> dynamoDB.items.put("LINE#1/ROUTE",
+                MetroTableItems.getRouteItem(getMetroLine(1), 300, "docs/newer/routes_doc.json")));
+        DynamoBatchLoader loader = loadRoutes(dynamoDB, 2, 200);
+        Assert.assertEquals(1, loader.getWritten());
+        Assert.assertEquals(1, loader.getSkipped());
+        Assert.assertEquals("300", dynamoDB.items.get("LINE#1/ROUTE").get(DynamoBatchLoader.VERSION).getN());
+        Assert.assertEquals("200", dynamoDB.items.get("LINE#0/ROUTE").get(DynamoBatchLoader.VERSION).getN());
+    }
+
+    @Test
+    public void testTimetablesMissingFromANewerDocumentAreDeleted() throws Exception {
+        InMemoryDynamoDB dynamoDB = new InMemoryDynamoDB();
+        loadSchedules(dynamoDB, 4, 100);
+        dynamoDB.items.put("LINE#7/ROUTE", MetroTableItems.getRouteItem(getMetroLine(7), 100, "docs/routes_doc.json"));
+
+        // an older document never deletes the timetables a newer one wrote
+        DynamoBatchLoader loader = loadSchedules(dynamoDB, 2, 200);
+        Assert.assertEquals(2, loader.getWritten());
+        Assert.assertEquals(2, loader.getDeleted());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("LINE#7/SCHEDULE#0", "LINE#7/SCHEDULE#1", "LINE#7/ROUTE")),
+                dynamoDB.items.keySet());
+        Assert.assertEquals(0, loadSchedules(dynamoDB, 1, 150).getDeleted());
+        Assert.assertEquals("200", dynamoDB.items.get("LINE#7/SCHEDULE#1").get(DynamoBatchLoader.VERSION).getN());
+    }
+
+    @Test
+    public void testRemovedLineLosesEveryItem() throws Exception {
+        InMemoryDynamoDB dynamoDB = new InMemoryDynamoDB();
+        loadSchedules(dynamoDB, 2, 100);
+        loadRoutes(dynamoDB, 8, 100);
+
+        try (DynamoBatchLoader loader = new DynamoBatchLoader(dynamoDB, METRO_TABLE, 2)) {
+            Assert.assertEquals(3, loader.deleteOlderItems("LINE#7", "", Collections.emptySet(), 200));
+        }
+        Assert.assertEquals(7, dynamoDB.items.size());
+        Assert.assertFalse(dynamoDB.items.containsKey("LINE#7/ROUTE"));
+    }
+
+    @Test
+    public void testRepeatedKeysInABatchAreWrittenOnce() throws InterruptedException {
+        InMemoryDynamoDB dynamoDB = new InMemoryDynamoDB();
+        try (DynamoBatchLoader loader = new DynamoBatchLoader(dynamoDB, METRO_TABLE, 2)) {
+            loader.put(MetroTableItems.getRouteItem(getMetroLine(1), 100, "docs/routes_doc.json"));
+            loader.put(MetroTableItems.getRouteItem(getMetroLine(1), 100, "docs/routes_doc.json"));
+            loader.flush();
+            Assert.assertEquals(1, loader.getWritten());
+        }
+    }
+
+    private DynamoBatchLoader loadRoutes(InMemoryDynamoDB dynamoDB, int lines, long version) throws InterruptedException {
+        try (DynamoBatchLoader loader = new DynamoBatchLoader(dynamoDB, METRO_TABLE, 3)) {
+            for (int line = 0; line < lines; line++) {
+                loader.put(MetroTableItems.getRouteItem(getMetroLine(line), version, "docs/routes_doc.json"));
+            }
+            loader.flush();
+            return loader;
+        }
+    }
+
+    private DynamoBatchLoader loadSchedules(InMemoryDynamoDB dynamoDB, int timetables, long version)
+            throws InterruptedException, JsonProcessingException {
+        try (DynamoBatchLoader loader = new DynamoBatchLoader(dynamoDB, METRO_TABLE, 2)) {
+            Set<String> sortKeys = new HashSet<>();
+            for (int index = 0; index < timetables; index++) {
+                Schedule schedule = new Schedule();
+                schedule.setRoute("7");
+                schedule.setDestination("destination " + index + " of " + version);
+                sortKeys.add(MetroTableItems.SCHEDULE_SORT_KEY_PREFIX + index);
+                loader.put(MetroTableItems.getScheduleItem("7", schedule, index, version, "docs/line_schedule.json"));
+            }
+            loader.flush();
+            loader.deleteOlderItems("LINE#7", MetroTableItems.SCHEDULE_SORT_KEY_PREFIX, sortKeys, version);
+            return loader;
+        }
+    }
+
+    private MetroLine getMetroLine(int line) {
+        MetroLine metroLine = new MetroLine();
+        metroLine.setLine(String.valueOf(line));
+        metroLine.setLineName("line " + line + " name");
+        metroLine.setLineScheduleUrl("https://kingcounty.gov/depts/transportation/metro/schedules-maps/" + line + ".aspx");
+        return metroLine;
+    }
+
+    /**
+     * A table held in memory that hands back the given number of unprocessed keys, one per call, and throttles
+     * the given number of writes, like a throttled table does. Writes and deletes only check the version
+     * condition the loader puts on them.
+     */
+    private static class InMemoryDynamoDB extends AbstractAmazonDynamoDB {
+        private final Map<String, Map<String, AttributeValue>> items = new ConcurrentHashMap<>();
+        private final AtomicInteger unprocessedWrites = new AtomicInteger();
+        private final AtomicInteger unprocessedReads = new AtomicInteger();
+        private final AtomicInteger writeRequests = new AtomicInteger();
+        private final AtomicReference<Runnable> afterRead = new AtomicReference<>();
+        private volatile int largestRead;
+
+        @Override
+        public BatchGetItemResult batchGetItem(BatchGetItemRequest request) {
+            List<Map<String, AttributeValue>> keys = new ArrayList<>();
+            Map<String, KeysAndAttributes> unprocessedKeys = new HashMap<>();
+            for (Map.Entry<String, KeysAndAttributes> table : request.getRequestItems().entrySet()) {
+                List<Map<String, AttributeValue>> tableKeys = table.getValue().getKeys();
+                synchronized (this) {
+                    largestRead = Math.max(largestRead, tableKeys.size());
+                }
+                if (tableKeys.size() > 1 && unprocessedReads.getAndUpdate(reads -> Math.max(0, reads - 1)) > 0) {
+                    unprocessedKeys.put(table.getKey(), new KeysAndAttributes()
+                            .withKeys(tableKeys.subList(tableKeys.size() - 1, tableKeys.size())));
+                    tableKeys = tableKeys.subList(0, tableKeys.size() - 1);
+                }
+                keys.addAll(tableKeys);
+            }
+
+            List<Map<String, AttributeValue>> found = new ArrayList<>();
+            for (Map<String, AttributeValue> key : keys) {
+                Map<String, AttributeValue> item = items.get(getKey(key));
+                if (item != null) {
+                    found.add(item);
+                }
+            }
+            Runnable runnable = afterRead.getAndSet(null);
+            if (runnable != null) {
+                runnable.run();
+            }
+            String table = request.getRequestItems().keySet().iterator().next();
+            return new BatchGetItemResult()
+                    .withResponses(Collections.singletonMap(table, found))
+                    .withUnprocessedKeys(unprocessedKeys);
+        }
+
+        @Override
+        public PutItemResult putItem(PutItemRequest request) {
+            writeRequests.incrementAndGet();
+            if (unprocessedWrites.getAndUpdate(writes -> Math.max(0, writes - 1)) > 0) {
+                throw new ProvisionedThroughputExceededException("slow down");
+            }
+            synchronized (this) {
+                checkVersion(request.getItem(), request.getExpressionAttributeValues());
+                items.put(getKey(request.getItem()), request.getItem());
+            }
+            return new PutItemResult();
+        }
+
+        @Override
+        public DeleteItemResult deleteItem(DeleteItemRequest request) {
+            synchronized (this) {
+                checkVersion(request.getKey(), request.getExpressionAttributeValues());
+                items.remove(getKey(request.getKey()));
+            }
+            return new DeleteItemResult();
+        }
+
+        @Override
+        public QueryResult query(QueryRequest request) {
+            String partitionKey = request.getExpressionAttributeValues().get(":pk").getS();
+            AttributeValue sortKeyPrefix = request.getExpressionAttributeValues().get(":sk");
+            List<Map<String, AttributeValue>> found = new ArrayList<>();
+            for (Map<String, AttributeValue> item : items.values()) {
+                if (item.get(DynamoBatchLoader.PARTITION_KEY).getS().equals(partitionKey) && (sortKeyPrefix == null
+                        || item.get(DynamoBatchLoader.SORT_KEY).getS().startsWith(sortKeyPrefix.getS()))) {
+                    found.add(item);
+                }
+            }
+            return new QueryResult().withItems(found);
+        }
+
+        // the stored item must be missing or older than the condition's version
+        private void checkVersion(Map<String, AttributeValue> key, Map<String, AttributeValue> values) {
+            Map<String, AttributeValue> storedItem = items.get(getKey(key));
+            if (storedItem != null && Long.parseLong(storedItem.get(DynamoBatchLoader.VERSION).getN())
+                    >= Long.parseLong(values.get(":version").getN())) {
+                throw new ConditionalCheckFailedException("the conditional request failed");
+            }
+        }
+
+        private String getKey(Map<String, AttributeValue> item) {
+            return item.get(DynamoBatchLoader.PARTITION_KEY).getS() + "/" + item.get(DynamoBatchLoader.SORT_KEY).getS();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package org.morris.unofficial;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.morris.unofficial.models.HttpValidators;
+import org.morris.unofficial.utils.HttpFetcher;
+import org.morris.unofficial.utils.HttpFetcher.FetchResult;
+import org.morris.unofficial.utils.ProcessEventUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+public class HttpFetcherTest {
+    private final String LAST_MODIFIED = "Sat, 17 Sep 2022 07:00:00 GMT";
+    private final int LARGE_PAGE_LENGTH = 4 * 1024 * 1024;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private String baseUrl;
+    private final AtomicReference<String> body = new AtomicReference<>("<html>route list</html>");
+    private final AtomicInteger version = new AtomicInteger(1);
+    private final AtomicInteger bodiesSent = new AtomicInteger();
+    private final List<String> connections = new ArrayList<>();
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/schedules-maps.aspx", this::handleSchedulesPage);
+        server.createContext("/error.aspx", exchange -> respond(exchange, 500, "error".getBytes(StandardCharsets.UTF_8)));
+        server.createContext("/hastop/190.aspx", exchange -> {
+            byte[] page = new byte[LARGE_PAGE_LENGTH];
+            Arrays.fill(page, (byte) ' ');
+            respond(exchange, 200, page);
+        });
+        server.createContext("/slow.pdf", exchange -> {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, new byte[0]);
+        });
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testUnchangedResourceCostsA304() throws IOException {
+        HttpFetcher fetcher = new HttpFetcher(1000, 1000);
+        String url = baseUrl + "/schedules-maps.aspx";
+
+        AtomicReference<String> fetched = new AtomicReference<>();
+        FetchResult result = fetcher.fetch(url, null, in -> fetched.set(read(in)));
+        Assert.assertEquals(200, result.getStatus());
+        Assert.assertEquals("<html>route list</html>", fetched.get());
+        Assert.assertEquals("\"v1\"", result.getValidators().getEtag());
+        Assert.assertEquals(LAST_MODIFIED, result.getValidators().getLastModified());
+
+        fetched.set(null);
+        FetchResult unchanged = fetcher.fetch(url, result.getValidators(), in -> fetched.set(read(in)));
+        Assert.assertTrue(unchanged.isNotModified());
+        Assert.assertNull(fetched.get());
+        Assert.assertEquals(result.getValidators(), unchanged.getValidators());
+
+        // the page changes, the old validators no longer match
+        body.set("<html>new route list</html>");
+        version.incrementAndGet();
+        FetchResult changed = fetcher.fetch(url, result.getValidators(), in -> fetched.set(read(in)));
+        Assert.assertEquals(200, changed.getStatus());
+        Assert.assertEquals("<html>new route list</html>", fetched.get());
+        Assert.assertEquals("\"v2\"", changed.getValidators().getEtag());
+
+        Assert.assertEquals(3, fetcher.getRequests());
+        Assert.assertEquals(1, fetcher.getNotModified());
+        Assert.assertEquals(2, bodiesSent.get());
+        Assert.assertTrue(fetcher.getBytes() > 0);
+    }
+
+    @Test
+    public void testBodyPrintedToFile() throws IOException {
+        HttpFetcher fetcher = new HttpFetcher(1000, 1000);
+        Path file = Files.createTempFile("routes_doc", ".txt");
+        try {
+            // the body is left open for the fetcher to drain, as the crawl prints the route list to /tmp
+            FetchResult result = fetcher.fetch(baseUrl + "/schedules-maps.aspx", null,
+                    in -> ProcessEventUtils.printToFile(in, file.toString(), new TestLambdaContext(0).getLogger()));
+            Assert.assertEquals(200, result.getStatus());
+            Assert.assertEquals("<html>route list</html>",
+                    new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testIfModifiedSinceAloneIsHonored() throws IOException {
+        HttpFetcher fetcher = new HttpFetcher(1000, 1000);
+        FetchResult result = fetcher.fetch(baseUrl + "/schedules-maps.aspx", new HttpValidators(null, LAST_MODIFIED),
+                in -> Assert.fail("an unchanged page has no body"));
+        Assert.assertTrue(result.isNotModified());
+    }
+
+    @Test
+    public void testConnectionsAreReused() throws IOException {
+        HttpFetcher fetcher = new HttpFetcher(1000, 1000);
+        for (int i = 0; i < 5; i++) {
+            fetcher.fetch(baseUrl + "/schedules-maps.aspx", null, in -> {
+                // the fetcher reads whatever is left
+            });
+        }
+        synchronized (connections) {
+            Assert.assertEquals(5, connections.size());
+            Assert.assertEquals(1, connections.stream().distinct().count());
+        }
+    }
+
+    @Test
+    public void testAbandonedBodyIsNotDownloaded() throws IOException {
+        HttpFetcher fetcher = new HttpFetcher(1000, 1000);
+        AtomicInteger read = new AtomicInteger();
+        fetcher.fetchUntil(baseUrl + "/hastop/190.aspx", null, in -> {
+            read.set(in.read(new byte[1024]));
+            return true;
+        });
+        Assert.assertTrue(read.get() > 0);
+        Assert.assertEquals(1, fetcher.getAbandoned());
+        Assert.assertTrue(fetcher.getBytes() < LARGE_PAGE_LENGTH / 2);
+
+        // the fetcher carries on with a new connection
+        Assert.assertEquals(200, fetcher.fetch(baseUrl + "/schedules-maps.aspx", null, in -> {
+        }).getStatus());
+    }
+
+    @Test(expected = IOException.class)
+    public void testErrorStatusFails() throws IOException {
+        new HttpFetcher(1000, 1000).fetch(baseUrl + "/error.aspx", null, in -> Assert.fail("no body on an error"));
+    }
+
+    @Test(expected = SocketTimeoutException.class)
+    public void testReadTimeout() throws IOException {
+        new HttpFetcher(1000, 200).fetch(baseUrl + "/slow.pdf", null, in -> Assert.fail("no body on a timeout"));
+    }
+
+    /**
+     * Answers like the metro site: a gzip encoded body when asked for one, and a 304 when either validator
+     * matches the current version of the page.
+     */
+    private void handleSchedulesPage(HttpExchange exchange) throws IOException {
+        synchronized (connections) {
+            connections.add(exchange.getRemoteAddress().toString());
+        }
+        String etag = "\"v" + version.get() + "\"";
+        String lastModified = version.get() == 1 ? LAST_MODIFIED : "Sat, 24 Sep 2022 07:00:00 GMT";
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Last-Modified", lastModified);
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+        if (etag.equals(ifNoneMatch) || (ifNoneMatch == null && lastModified.equals(ifModifiedSince))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] content = body.get().getBytes(StandardCharsets.UTF_8);
+        if ("gzip".equals(exchange.getRequestHeaders().getFirst("Accept-Encoding"))) {
+            ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(gzipped)) {
+                gzipOutputStream.write(content);
+            }
+            content = gzipped.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        bodiesSent.incrementAndGet();
+        respond(exchange, 200, content);
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] content) throws IOException {
+        exchange.sendResponseHeaders(status, content.length == 0 ? -1 : content.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(content);
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int length;
+        while ((length = in.read(buffer)) != -1) {
+            out.write(buffer, 0, length);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,105 @@
+package org.morris.unofficial;
+
+import com.amazonaws.services.textract.model.InvalidJobIdException;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.utils.InMemoryBlobStore;
+import org.morris.unofficial.utils.InMemoryMessageQueue;
+import org.morris.unofficial.utils.InMemoryTextDetectionService;
+import org.morris.unofficial.utils.PdfBoxScheduleTextExtractor;
+import org.morris.unofficial.utils.SchedulePdfBuffer;
+import org.morris.unofficial.utils.ScheduleTextExtractor.SchedulePdf;
+import org.morris.unofficial.utils.SimulatedLatency;
+import org.morris.unofficial.utils.TextractJobDispatcher;
+import org.morris.unofficial.utils.TextractResultCollector;
+import org.morris.unofficial.utils.TextractScheduleTextExtractor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class InMemoryTextDetectionServiceTest {
+    private final String SCHEDULES_BUCKET = "schedules-bucket";
+    private final String PDF_KEY = "docs/2022/10/8/190/line_schedule_doc.pdf";
+
+    @Test
+    public void testScheduleTextIsDetectedOffline() throws Exception {
+        InMemoryBlobStore blobStore = new InMemoryBlobStore();
+        blobStore.put(SCHEDULES_BUCKET, PDF_KEY, writeSchedulePdf(3), SchedulePdfBuffer.PDF_CONTENT_TYPE,
+                Collections.emptyMap());
+        InMemoryMessageQueue messageQueue = new InMemoryMessageQueue(new SimulatedLatency(5, 5, 0), 30000);
+
+        // the dispatcher, collector and textract extractor run as they do against the deployed services
+        List<String> pages = new ArrayList<>();
+        try (PdfBoxScheduleTextExtractor pdfBoxExtractor = new PdfBoxScheduleTextExtractor(1);
+             InMemoryTextDetectionService textDetectionService = new InMemoryTextDetectionService(blobStore,
+                     messageQueue, pdfBoxExtractor, new SimulatedLatency(5, 5, 0));
+             TextractResultCollector collector = new TextractResultCollector(textDetectionService, 2, 100)) {
+            TextractScheduleTextExtractor extractor = new TextractScheduleTextExtractor(textDetectionService,
+                    new TextractJobDispatcher(messageQueue), collector, SCHEDULES_BUCKET, 10000);
+
+            int extractedPages = extractor.extract(new SchedulePdf("190", (byte[]) null, PDF_KEY),
+                    (page, text) -> pages.add(text));
+
+            Assert.assertEquals(3, extractedPages);
+            Assert.assertEquals(1, textDetectionService.getDetections());
+        }
+        Assert.assertEquals(3, pages.size());
+        for (int page = 1; page <= 3; page++) {
+            Assert.assertTrue(pages.get(page - 1).contains("Route 190 page " + page));
+            Assert.assertTrue(pages.get(page - 1).contains("5:52 5:58 6:04"));
+        }
+        Assert.assertEquals(0, messageQueue.size());
+    }
+
+    @Test
+    public void testDetectionsAreIdempotentPerClientRequestToken() throws Exception {
+        InMemoryBlobStore blobStore = new InMemoryBlobStore();
+        InMemoryMessageQueue messageQueue = new InMemoryMessageQueue(SimulatedLatency.none(), 30000);
+        try (PdfBoxScheduleTextExtractor pdfBoxExtractor = new PdfBoxScheduleTextExtractor(1);
+             InMemoryTextDetectionService textDetectionService = new InMemoryTextDetectionService(blobStore,
+                     messageQueue, pdfBoxExtractor, SimulatedLatency.none())) {
+            String jobId = textDetectionService.startDocumentTextDetection(SCHEDULES_BUCKET, PDF_KEY, "token-190",
+                    "190");
+            Assert.assertEquals(jobId, textDetectionService.startDocumentTextDetection(SCHEDULES_BUCKET, PDF_KEY,
+                    "token-190", "190"));
+            Assert.assertEquals(1, textDetectionService.getDetections());
+
+            // a missing document fails its detection, and the failure is still notified
+            Assert.assertEquals(1, messageQueue.receive(10, 5).size());
+            try {
+                textDetectionService.getDocumentTextDetection(jobId, 100, null);
+                Assert.fail("a failed detection has no results");
+            } catch (InvalidJobIdException e) {
+                Assert.assertEquals(400, e.getStatusCode());
+            }
+        }
+    }
+
+    private byte[] writeSchedulePdf(int pages) throws IOException {
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        try (PDDocument document = new PDDocument()) {
+            for (int page = 1; page <= pages; page++) {
+                PDPage pdPage = new PDPage();
+                document.addPage(pdPage);
+                try (PDPageContentStream content = new PDPageContentStream(document, pdPage)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 12);
+                    content.newLineAtOffset(50, 700);
+                    content.showText("Route 190 page " + page);
+                    content.newLineAtOffset(0, -20);
+                    content.showText("5:52 5:58 6:04 6:25 6:33 6:44");
+                    content.endText();
+                }
+            }
+            document.save(pdf);
+        }
+        return pdf.toByteArray();
+    }
+}
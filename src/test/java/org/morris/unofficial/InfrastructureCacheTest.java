@@ -0,0 +1,112 @@
+package org.morris.unofficial;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.utils.InfrastructureCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class InfrastructureCacheTest {
+    private final String TOPIC_ARN = "arn:aws:sns:us-west-2:123456789012:AmazonTextract-detection";
+
+    @Test
+    public void testLookupIsLoadedOnceWithinTtl() {
+        AtomicLong now = new AtomicLong(0);
+        AtomicInteger lookups = new AtomicInteger();
+        InfrastructureCache cache = new InfrastructureCache(1000, null, now::get);
+
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(TOPIC_ARN, cache.get("topic", () -> {
+                lookups.incrementAndGet();
+                return TOPIC_ARN;
+            }));
+        }
+        Assert.assertEquals(1, lookups.get());
+        Assert.assertEquals(4, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+
+        // expired entries are looked up again
+        now.set(1000);
+        cache.get("topic", () -> {
+            lookups.incrementAndGet();
+            return TOPIC_ARN;
+        });
+        Assert.assertEquals(2, lookups.get());
+        Assert.assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testNullLookupIsNotCached() {
+        AtomicInteger lookups = new AtomicInteger();
+        InfrastructureCache cache = new InfrastructureCache(1000, null, () -> 0);
+
+        Assert.assertNull(cache.get("topic", () -> {
+            lookups.incrementAndGet();
+            return null;
+        }));
+        Assert.assertNull(cache.get("topic", () -> {
+            lookups.incrementAndGet();
+            return null;
+        }));
+        Assert.assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void testSlowLookupIsSharedAndDoesNotBlockOtherKeys() throws Exception {
+        AtomicInteger lookups = new AtomicInteger();
+        CountDownLatch lookupStarted = new CountDownLatch(1);
+        CountDownLatch releaseLookup = new CountDownLatch(1);
+        InfrastructureCache cache = new InfrastructureCache(1000, null, () -> 0);
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> cache.get("topic", () -> {
+            lookups.incrementAndGet();
+            lookupStarted.countDown();
+            try {
+                releaseLookup.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return TOPIC_ARN;
+        }));
+        Assert.assertTrue(lookupStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> cache.get("topic", () -> {
+            lookups.incrementAndGet();
+            return "second lookup";
+        }));
+
+        // other keys are looked up while the slow lookup is still running
+        Assert.assertEquals("queue-url", cache.get("queue", () -> "queue-url"));
+        releaseLookup.countDown();
+        Assert.assertEquals(TOPIC_ARN, first.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(TOPIC_ARN, second.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, lookups.get());
+    }
+
+    @Test
+    public void testPersistedEntriesWarmNewCache() throws IOException {
+        File persistFile = File.createTempFile("infrastructure_cache", ".properties");
+        Assert.assertTrue(persistFile.delete());
+        try {
+            new InfrastructureCache(1000, persistFile.getPath(), () -> 0).get("topic", () -> TOPIC_ARN);
+            Assert.assertTrue(persistFile.exists());
+
+            InfrastructureCache warmCache = new InfrastructureCache(1000, persistFile.getPath(), () -> 500);
+            Assert.assertEquals(TOPIC_ARN, warmCache.get("topic", () -> {
+                throw new AssertionError("persisted entry should have been used");
+            }));
+            Assert.assertEquals(1, warmCache.getHits());
+
+            // persisted entries keep their original expiry
+            InfrastructureCache expiredCache = new InfrastructureCache(1000, persistFile.getPath(), () -> 1000);
+            Assert.assertEquals("refreshed", expiredCache.get("topic", () -> "refreshed"));
+        } finally {
+            persistFile.delete();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.morris.unofficial;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.utils.ComprehendKeyPhraseService;
+import org.morris.unofficial.utils.KeyPhraseLanguageFilter;
+import org.morris.unofficial.utils.KeyPhraseService;
+import software.amazon.awssdk.services.comprehend.ComprehendClient;
+import software.amazon.awssdk.services.comprehend.model.BatchDetectDominantLanguageItemResult;
+import software.amazon.awssdk.services.comprehend.model.BatchDetectDominantLanguageRequest;
+import software.amazon.awssdk.services.comprehend.model.BatchDetectDominantLanguageResponse;
+import software.amazon.awssdk.services.comprehend.model.BatchItemError;
+import software.amazon.awssdk.services.comprehend.model.DetectDominantLanguageRequest;
+import software.amazon.awssdk.services.comprehend.model.DetectDominantLanguageResponse;
+import software.amazon.awssdk.services.comprehend.model.DominantLanguage;
+import software.amazon.awssdk.services.comprehend.model.KeyPhrase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class KeyPhraseLanguageFilterTest {
+
+    @Test
+    public void testSpanishPhrasesAreRemovedInBatches() {
+        List<KeyPhrase> keyPhrases = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            keyPhrases.add(getKeyPhrase("Downtown Seattle stop " + i));
+            keyPhrases.add(getKeyPhrase("servicio de lunes a viernes " + i));
+        }
+        keyPhrases.add(getKeyPhrase("Stop #60747"));
+
+        FakeComprehend comprehend = new FakeComprehend();
+        KeyPhraseService keyPhraseService = new ComprehendKeyPhraseService(comprehend);
+        try (KeyPhraseLanguageFilter filter = new KeyPhraseLanguageFilter(keyPhraseService, 3)) {
+            List<KeyPhrase> filtered = filter.removeSpanish(keyPhrases);
+
+            Assert.assertEquals(31, filtered.size());
+            Assert.assertEquals("Downtown Seattle stop 0", filtered.get(0).text());
+            Assert.assertEquals("Stop #60747", filtered.get(30).text());
+
+            // 61 phrases need 3 batches of at most 25, never one call per phrase
+            Assert.assertEquals(3, comprehend.batchCalls.get());
+            Assert.assertEquals(0, comprehend.singleCalls.get());
+            Assert.assertEquals(3, filter.getRoundTrips());
+            Assert.assertTrue(comprehend.largestBatch <= KeyPhraseLanguageFilter.MAX_BATCH_SIZE);
+        }
+    }
+
+    @Test
+    public void testTimesAndStopNumbersSkipComprehend() {
+        List<KeyPhrase> keyPhrases = new ArrayList<>();
+        for (String text : new String[] {"5:25", "12:06\u2021", "#1234", "$2.75", "(0-18)", "6:33 6:44"}) {
+            keyPhrases.add(getKeyPhrase(text));
+        }
+
+        FakeComprehend comprehend = new FakeComprehend();
+        KeyPhraseService keyPhraseService = new ComprehendKeyPhraseService(comprehend);
+        try (KeyPhraseLanguageFilter filter = new KeyPhraseLanguageFilter(keyPhraseService, 2)) {
+            Assert.assertEquals(6, filter.removeSpanish(keyPhrases).size());
+            Assert.assertEquals(0, comprehend.batchCalls.get());
+            Assert.assertEquals(6, filter.getLocallyClassified());
+        }
+    }
+
+    @Test
+    public void testRepeatedPhrasesAreSentOnceAndErrorsAreKept() {
+        List<KeyPhrase> keyPhrases = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            keyPhrases.add(getKeyPhrase("Estimated time"));
+            keyPhrases.add(getKeyPhrase("Tiempo estimado"));
+        }
+        keyPhrases.add(getKeyPhrase("unclassifiable"));
+
+        FakeComprehend comprehend = new FakeComprehend();
+        KeyPhraseService keyPhraseService = new ComprehendKeyPhraseService(comprehend);
+        try (KeyPhraseLanguageFilter filter = new KeyPhraseLanguageFilter(keyPhraseService, 2)) {
+            List<KeyPhrase> filtered = filter.removeSpanish(keyPhrases);
+
+            Assert.assertEquals(41, filtered.size());
+            Assert.assertEquals("unclassifiable", filtered.get(40).text());
+            Assert.assertEquals(1, comprehend.batchCalls.get());
+            Assert.assertEquals(3, comprehend.largestBatch);
+        }
+    }
+
+    private KeyPhrase getKeyPhrase(String text) {
+        return KeyPhrase.builder().text(text).build();
+    }
+
+    /**
+     * Classifies phrases containing common spanish words as spanish and counts every round trip.
+     */
+    private static class FakeComprehend implements ComprehendClient {
+        private final AtomicInteger batchCalls = new AtomicInteger();
+        private final AtomicInteger singleCalls = new AtomicInteger();
+        private volatile int largestBatch;
+
+        @Override
+        public BatchDetectDominantLanguageResponse batchDetectDominantLanguage(BatchDetectDominantLanguageRequest request) {
+            batchCalls.incrementAndGet();
+            synchronized (this) {
+                largestBatch = Math.max(largestBatch, request.textList().size());
+            }
+            List<BatchDetectDominantLanguageItemResult> results = new ArrayList<>();
+            List<BatchItemError> errors = new ArrayList<>();
+            for (int i = 0; i < request.textList().size(); i++) {
+                String text = request.textList().get(i);
+                if (text.equals("unclassifiable")) {
+                    errors.add(BatchItemError.builder().index(i).errorCode("INTERNAL_SERVER_ERROR").build());
+                    continue;
+                }
+                String languageCode = text.matches(".*\\b(de|servicio|estimado)\\b.*") ? "es" : "en";
+                results.add(BatchDetectDominantLanguageItemResult.builder()
+                        .index(i)
+                        .languages(Collections.singletonList(DominantLanguage.builder().languageCode(languageCode).build()))
+                        .build());
+            }
+            return BatchDetectDominantLanguageResponse.builder().resultList(results).errorList(errors).build();
+        }
+
+        @Override
+        public DetectDominantLanguageResponse detectDominantLanguage(DetectDominantLanguageRequest request) {
+            singleCalls.incrementAndGet();
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String serviceName() {
+            return "comprehend";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.morris.unofficial;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.utils.InMemoryBlobStore;
+import org.morris.unofficial.utils.LatestDocumentIndex;
+import org.morris.unofficial.utils.LatestDocumentIndex.LatestDocument;
+import org.morris.unofficial.utils.SimulatedLatency;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LatestDocumentIndexTest {
+    private final String BUCKET = "unprocessed-bucket";
+    private final String INDEX_KEY = "index/latest_routes_doc";
+    private final String ROUTES_DOC_FILE = "routes_doc.txt";
+
+    @Test
+    public void testPointerIsReadWithTheDocumentsMetadata() throws IOException {
+        AtomicLong now = new AtomicLong(1000);
+        InMemoryBlobStore blobStore = new InMemoryBlobStore(SimulatedLatency.none(), now::get);
+        LatestDocumentIndex index = new LatestDocumentIndex(blobStore, BUCKET, INDEX_KEY);
+        Assert.assertNull(index.getLatest());
+
+        index.update("docs/2022/10/8/routes_doc.txt", Collections.singletonMap("routes-digest", "abc"));
+        now.set(2000);
+        index.update("docs/2022/10/15/routes_doc.txt", Collections.singletonMap("routes-digest", "def"));
+
+        LatestDocument latest = index.getLatest();
+        Assert.assertEquals("docs/2022/10/15/routes_doc.txt", latest.getKey());
+        Assert.assertEquals("def", latest.getMetadata("routes-digest"));
+        Assert.assertEquals(2000, latest.getLastModified().getTime());
+        Assert.assertEquals("docs/2022/10/15/routes_doc.txt", latest.getMetadata(
+                LatestDocumentIndex.LATEST_KEY_METADATA));
+    }
+
+    @Test
+    public void testPointerWithoutLatestKeyIsIgnored() throws IOException {
+        InMemoryBlobStore blobStore = new InMemoryBlobStore();
+        put(blobStore, INDEX_KEY);
+        Assert.assertNull(new LatestDocumentIndex(blobStore, BUCKET, INDEX_KEY).getLatest());
+    }
+
+    @Test
+    public void testNewestDocumentIsFoundByListingWithoutAPointer() throws IOException {
+        AtomicLong now = new AtomicLong(1000);
+        InMemoryBlobStore blobStore = new InMemoryBlobStore(SimulatedLatency.none(), now::get);
+        LatestDocumentIndex index = new LatestDocumentIndex(blobStore, BUCKET, INDEX_KEY);
+        Assert.assertNull(index.findLatestByListing("docs/", ROUTES_DOC_FILE));
+
+        // date prefixes are not zero padded, docs/2022/9/ sorts after the newer docs/2022/10/
+        put(blobStore, "docs/2022/9/30/routes_doc.txt");
+        now.set(2000);
+        put(blobStore, "docs/2022/10/8/routes_doc.txt");
+        now.set(3000);
+        put(blobStore, "docs/2022/10/8/routes_doc.json");
+
+        Assert.assertEquals("docs/2022/10/8/routes_doc.txt", index.findLatestByListing("docs/", ROUTES_DOC_FILE));
+        Assert.assertNull(index.getLatest());
+    }
+
+    @Test
+    public void testContainsDocumentsProbesEachPrefixOnce() throws IOException {
+        InMemoryBlobStore blobStore = new InMemoryBlobStore();
+        Assert.assertFalse(new LatestDocumentIndex(blobStore, BUCKET, INDEX_KEY).containsDocuments("docs/"));
+        Assert.assertEquals(1, blobStore.getLists());
+
+        // the pointer lives outside of docs/, so it is not taken for a document
+        LatestDocumentIndex index = new LatestDocumentIndex(blobStore, BUCKET, INDEX_KEY);
+        index.update("docs/2022/10/8/routes_doc.txt", Collections.emptyMap());
+        Assert.assertFalse(index.containsDocuments("docs/"));
+
+        for (int i = 0; i < 3; i++) {
+            put(blobStore, "docs/2022/10/" + (i + 8) + "/routes_doc.txt");
+        }
+        LatestDocumentIndex nextIndex = new LatestDocumentIndex(blobStore, BUCKET, INDEX_KEY);
+        Assert.assertTrue(nextIndex.containsDocuments("docs/"));
+        Assert.assertTrue(nextIndex.containsDocuments("docs/"));
+        Assert.assertFalse(nextIndex.containsDocuments("docs/2021/"));
+        Assert.assertEquals(4, blobStore.getLists());
+
+        // an answer is kept for the life of the index
+        Assert.assertFalse(index.containsDocuments("docs/"));
+        Assert.assertEquals(4, blobStore.getLists());
+    }
+
+    private void put(InMemoryBlobStore blobStore, String key) throws IOException {
+        blobStore.put(BUCKET, key, key.getBytes(StandardCharsets.UTF_8), "text/plain", Collections.emptyMap());
+    }
+}
@@ -0,0 +1,106 @@
+package org.morris.unofficial;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.models.LineFingerprint;
+import org.morris.unofficial.utils.InMemoryBlobStore;
+import org.morris.unofficial.utils.LineFingerprintIndex;
+import org.morris.unofficial.utils.Sha256;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class LineFingerprintIndexTest {
+    private final String SCHEDULES_BUCKET = "schedules-bucket";
+    private final String INDEX_KEY = "index/line_fingerprints.json";
+
+    @Test
+    public void testOnlyChangedLinesAreProcessedAgain() throws IOException {
+        InMemoryBlobStore blobStore = new InMemoryBlobStore();
+
+        // without an index every line is new
+        LineFingerprintIndex index = new LineFingerprintIndex(blobStore, SCHEDULES_BUCKET, INDEX_KEY);
+        index.load();
+        for (String line : Arrays.asList("190", "7", "E Line")) {
+            Assert.assertFalse(index.isUnchanged(line, getFingerprint(line, "a")));
+            index.update(line, getFingerprint(line, "a"));
+        }
+        Assert.assertTrue(index.save());
+        Assert.assertEquals(1, blobStore.getPuts());
+
+        LineFingerprintIndex nextIndex = new LineFingerprintIndex(blobStore, SCHEDULES_BUCKET, INDEX_KEY);
+        nextIndex.load();
+        Assert.assertEquals(Collections.singletonList("7"), nextIndex.retainLines(Arrays.asList("190", "E Line", "8")));
+        Assert.assertTrue(nextIndex.isUnchanged("190", getFingerprint("190", "a")));
+        Assert.assertFalse(nextIndex.isUnchanged("E Line", getFingerprint("E Line", "b")));
+        Assert.assertFalse(nextIndex.isUnchanged("8", getFingerprint("8", "a")));
+        Assert.assertEquals(1, nextIndex.getUnchanged());
+        Assert.assertEquals(2, nextIndex.getChanged());
+        Assert.assertNull(nextIndex.get("7"));
+        Assert.assertEquals(getFingerprint("E Line", "a"), nextIndex.get("E Line"));
+    }
+
+    @Test
+    public void testUnmodifiedIndexIsNotWritten() throws IOException {
+        InMemoryBlobStore blobStore = new InMemoryBlobStore();
+        LineFingerprintIndex index = new LineFingerprintIndex(blobStore, SCHEDULES_BUCKET, INDEX_KEY);
+        index.load();
+        index.update("190", getFingerprint("190", "a"));
+        Assert.assertTrue(index.save());
+
+        LineFingerprintIndex nextIndex = new LineFingerprintIndex(blobStore, SCHEDULES_BUCKET, INDEX_KEY);
+        nextIndex.load();
+        Assert.assertTrue(nextIndex.retainLines(Collections.singletonList("190")).isEmpty());
+        nextIndex.update("190", getFingerprint("190", "a"));
+        Assert.assertFalse(nextIndex.save());
+        Assert.assertEquals(1, blobStore.getPuts());
+    }
+
+    @Test
+    public void testSaveKeepsLinesRecordedSinceTheIndexWasLoaded() throws IOException {
+        InMemoryBlobStore blobStore = new InMemoryBlobStore();
+        LineFingerprintIndex index = new LineFingerprintIndex(blobStore, SCHEDULES_BUCKET, INDEX_KEY);
+        index.load();
+        index.update("190", getFingerprint("190", "a"));
+        index.update("7", getFingerprint("7", "a"));
+        Assert.assertTrue(index.save());
+
+        // a run loads the index, then a completed detection records 190 before the run saves
+        LineFingerprintIndex run = new LineFingerprintIndex(blobStore, SCHEDULES_BUCKET, INDEX_KEY);
+        run.load();
+        LineFingerprintIndex completion = new LineFingerprintIndex(blobStore, SCHEDULES_BUCKET, INDEX_KEY);
+        completion.update("190", getFingerprint("190", "b"));
+        Assert.assertTrue(completion.save());
+        Assert.assertEquals(Collections.singletonList("7"), run.retainLines(Arrays.asList("190", "8")));
+        run.update("8", getFingerprint("8", "a"));
+        Assert.assertTrue(run.save());
+
+        LineFingerprintIndex nextIndex = new LineFingerprintIndex(blobStore, SCHEDULES_BUCKET, INDEX_KEY);
+        nextIndex.load();
+        Assert.assertEquals(getFingerprint("190", "b"), nextIndex.get("190"));
+        Assert.assertEquals(getFingerprint("8", "a"), nextIndex.get("8"));
+        Assert.assertNull(nextIndex.get("7"));
+    }
+
+    @Test
+    public void testSha256() throws IOException {
+        Path file = Files.createTempFile("line_schedule_doc", ".pdf");
+        try {
+            Files.write(file, "abc".getBytes(StandardCharsets.UTF_8));
+            Assert.assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                    Sha256.digest(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private LineFingerprint getFingerprint(String line, String pdfContent) {
+        return new LineFingerprint("https://kingcounty.gov/depts/transportation/metro/schedules-maps/" + line + ".aspx",
+                "https://kingcounty.gov/~/media/depts/transportation/metro/schedules/" + line + ".pdf",
+                "sha256-of-" + pdfContent);
+    }
+}
@@ -0,0 +1,85 @@
+package org.morris.unofficial;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.utils.FileUtils;
+import org.morris.unofficial.utils.MarkerScanner;
+import org.morris.unofficial.utils.MarkerScanner.Marker;
+import org.morris.unofficial.utils.MarkerScanner.ScanResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class MarkerScannerTest {
+    private final String SCHEDULE_DOCUMENT_DUMP_PATH_190 = "/schedule-document-dumps/schedule-document-190.txt";
+    private final int SCHEDULE_DOCUMENT_LENGTH_190 = 122089;
+
+    @Test
+    public void testScanStopsAtThePdfTimetableLink() throws IOException {
+        MarkerScanner scanner = new MarkerScanner(Collections.singletonList(new Marker("pdf-timetable-link",
+                "id=\"pdf-timetable-link\">", "target=\"_blank\">PDF timetable")), 4096);
+        ScanResult scanResult;
+        try (InputStream inputStream = FileUtils.getResourceAsStream(SCHEDULE_DOCUMENT_DUMP_PATH_190)) {
+            scanResult = scanner.scan(inputStream);
+        }
+        Assert.assertTrue(scanResult.isComplete());
+        Assert.assertEquals("<a href=\"#\" onclick=\"window.open('/~/media/depts/metro/schedules/pdf/09172022/rt-' "
+                + "+ routeName + '.pdf');return false;\" ", scanResult.get("pdf-timetable-link"));
+
+        // the link is a little under half way through the page, the rest is never read
+        Assert.assertTrue(scanResult.getBytesScanned() < SCHEDULE_DOCUMENT_LENGTH_190 / 2);
+    }
+
+    @Test
+    public void testManyMarkersInOnePass() throws IOException {
+        MarkerScanner scanner = new MarkerScanner(Arrays.asList(
+                new Marker("title", "<title>", "</title>"),
+                new Marker("pdf", "class=\"pdf-timetable\"><a href=\"", "\""),
+                new Marker("pdf", "id=\"pdf-timetable-link\">", "PDF timetable"),
+                new Marker("map", "data-src=\"", "\"")), 4096);
+        String page = "<title>Route 7</title> <li class=\"map\"><a data-src=\"/maps/m007.jpg\">Route map</a></li>"
+                + " <li class=\"pdf-timetable\"><a href=\"/pdf/rt-7.pdf\">PDF timetable</a></li> <title>ignored</title>";
+
+        // single byte reads force every marker to be matched across reads
+        InputStream oneByteStream = new ByteArrayInputStream(page.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+        ScanResult scanResult = scanner.scan(oneByteStream);
+        Assert.assertTrue(scanResult.isComplete());
+        Assert.assertEquals("Route 7", scanResult.get("title"));
+        Assert.assertEquals("/maps/m007.jpg", scanResult.get("map"));
+        Assert.assertEquals("/pdf/rt-7.pdf", scanResult.get("pdf"));
+        Assert.assertEquals(page.indexOf("rt-7.pdf\"") + "rt-7.pdf\"".length(), scanResult.getBytesScanned());
+    }
+
+    @Test
+    public void testOverlappingAndMissingMarkers() throws IOException {
+        // 'aab' starts inside 'aaab', and 'ab' ends inside both
+        MarkerScanner scanner = new MarkerScanner(Arrays.asList(
+                new Marker("aab", "aab", ";"),
+                new Marker("ab", "ab", ";"),
+                new Marker("missing", "zz", ";")), 4096);
+        ScanResult scanResult = scanner.scan(new ByteArrayInputStream("xaaab1;ab2;".getBytes(StandardCharsets.UTF_8)));
+        Assert.assertFalse(scanResult.isComplete());
+        Assert.assertEquals("1", scanResult.get("aab"));
+        Assert.assertEquals("2", scanResult.get("ab"));
+        Assert.assertNull(scanResult.get("missing"));
+        Assert.assertEquals(11, scanResult.getBytesScanned());
+    }
+
+    @Test
+    public void testFragmentLongerThanTheLimitIsAbandoned() throws IOException {
+        MarkerScanner scanner = new MarkerScanner(Collections.singletonList(new Marker("href", "href=\"", "\"")), 8);
+        ScanResult scanResult = scanner.scan(new ByteArrayInputStream(
+                "href=\"/a/very/long/path\" href=\"/short\"".getBytes(StandardCharsets.UTF_8)));
+        Assert.assertTrue(scanResult.isComplete());
+        Assert.assertEquals("/short", scanResult.get("href"));
+    }
+}
@@ -0,0 +1,77 @@
+package org.morris.unofficial;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.models.MetroLine;
+import org.morris.unofficial.models.RouteAttribute;
+import org.morris.unofficial.utils.FileUtils;
+import org.morris.unofficial.utils.MetroJson;
+import org.morris.unofficial.utils.RouteListParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+public class MetroJsonTest {
+    private final String LATEST_CRAWL_METRO_DOCUMENT_PATH_1 = "/s3-event-crawl-metro-latest-1.txt";
+
+    @Test
+    public void testRoutesDocumentRoundTrip() throws IOException {
+        List<MetroLine> metroLines;
+        try (Reader reader = new InputStreamReader(FileUtils.getResourceAsStream(LATEST_CRAWL_METRO_DOCUMENT_PATH_1),
+                StandardCharsets.UTF_8)) {
+            metroLines = new RouteListParser(reader).parse();
+        }
+
+        ByteArrayOutputStream routesDocument = new ByteArrayOutputStream();
+        MetroJson.writeMetroLines(metroLines, routesDocument);
+        String json = new String(routesDocument.toByteArray(), StandardCharsets.UTF_8);
+        Assert.assertTrue(json.startsWith("[{\"line\":\"A Line\",\"line_name\":\"Tukwila International Boulevard "
+                + "Station, Federal Way Transit Center\",\"line_schedule_url\":"));
+
+        // a route without a pdf timetable or map leaves them out
+        Assert.assertTrue(json.contains("{\"line\":\"Streetcar\",\"line_name\":\"First Hill\",\"line_schedule_url\":"
+                + "\"https://kingcounty.gov/depts/transportation/metro/schedules-maps/hastop/streetcar-fh.aspx\","
+                + "\"route_attributes\":["));
+
+        List<MetroLine> readMetroLines = MetroJson.readMetroLines(new ByteArrayInputStream(routesDocument.toByteArray()));
+        Assert.assertEquals(metroLines.size(), readMetroLines.size());
+        for (int i = 0; i < metroLines.size(); i++) {
+            MetroLine expected = metroLines.get(i);
+            MetroLine actual = readMetroLines.get(i);
+            Assert.assertEquals(expected.getLine(), actual.getLine());
+            Assert.assertEquals(expected.getLineName(), actual.getLineName());
+            Assert.assertEquals(expected.getLineScheduleUrl(), actual.getLineScheduleUrl());
+            Assert.assertEquals(expected.getPdfTimetableUrl(), actual.getPdfTimetableUrl());
+            Assert.assertEquals(expected.getRouteMapUrl(), actual.getRouteMapUrl());
+            Assert.assertEquals(expected.getRouteAttributes(), actual.getRouteAttributes());
+        }
+    }
+
+    @Test
+    public void testReadsOlderAndNewerDocuments() throws IOException {
+        String routesDocument = "[{\"line\":\"190\",\"line_name\":\"Redondo Heights\","
+                + "\"line_schedule_url\":\"https://kingcounty.gov/hastop/190.aspx\"},"
+                + "{\"line\":\"7\",\"route_attributes\":[\"weekday\"],\"route_color\":\"blue\"}]";
+        List<MetroLine> metroLines = new ArrayList<>();
+        MetroJson.readMetroLines(new ByteArrayInputStream(routesDocument.getBytes(StandardCharsets.UTF_8)),
+                metroLines::add);
+
+        Assert.assertEquals(2, metroLines.size());
+        Assert.assertEquals("https://kingcounty.gov/hastop/190.aspx", metroLines.get(0).getLineScheduleUrl());
+        Assert.assertNull(metroLines.get(0).getPdfTimetableUrl());
+        Assert.assertTrue(metroLines.get(0).getRouteAttributes().isEmpty());
+        Assert.assertEquals(EnumSet.of(RouteAttribute.WEEKDAY), metroLines.get(1).getRouteAttributes());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRoutesDocumentMustBeAnArray() throws IOException {
+        MetroJson.readMetroLines(new ByteArrayInputStream("{\"line\":\"7\"}".getBytes(StandardCharsets.UTF_8)));
+    }
+}
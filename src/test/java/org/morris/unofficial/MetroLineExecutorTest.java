@@ -0,0 +1,69 @@
+package org.morris.unofficial;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.models.MetroLine;
+import org.morris.unofficial.utils.MetroLineExecutor;
+import org.morris.unofficial.utils.MetroLineExecutor.MetroLineResult;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MetroLineExecutorTest {
+
+    @Test
+    public void testEachLineFailureIsReportedSeparately() throws InterruptedException {
+        List<MetroLine> metroLines = getMetroLines(4);
+        List<MetroLineResult> results = new MetroLineExecutor(2).processAll(metroLines, metroLine -> {
+            if (metroLine.getLine().equals("2")) {
+                throw new IOException("pdf schedule missing");
+            }
+        }, 5000);
+
+        Assert.assertEquals(4, results.size());
+        Assert.assertEquals(MetroLineResult.Status.SUCCEEDED, results.get(0).getStatus());
+        Assert.assertEquals(MetroLineResult.Status.SUCCEEDED, results.get(1).getStatus());
+        Assert.assertEquals(MetroLineResult.Status.FAILED, results.get(2).getStatus());
+        Assert.assertTrue(results.get(2).getMessage().contains("pdf schedule missing"));
+        Assert.assertEquals(MetroLineResult.Status.SUCCEEDED, results.get(3).getStatus());
+    }
+
+    @Test
+    public void testConcurrencyIsCapped() throws InterruptedException {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        List<MetroLineResult> results = new MetroLineExecutor(3).processAll(getMetroLines(12), metroLine -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            inFlight.decrementAndGet();
+        }, 5000);
+
+        Assert.assertEquals(12, results.size());
+        Assert.assertTrue(maxInFlight.get() <= 3);
+        for (MetroLineResult result : results) {
+            Assert.assertEquals(MetroLineResult.Status.SUCCEEDED, result.getStatus());
+        }
+    }
+
+    @Test
+    public void testLinesOutsideBudgetAreTimedOutOrSkipped() throws InterruptedException {
+        List<MetroLineResult> results = new MetroLineExecutor(1).processAll(getMetroLines(3),
+                metroLine -> Thread.sleep(10000), 200);
+
+        Assert.assertEquals(MetroLineResult.Status.TIMED_OUT, results.get(0).getStatus());
+        Assert.assertEquals(MetroLineResult.Status.SKIPPED, results.get(1).getStatus());
+        Assert.assertEquals(MetroLineResult.Status.SKIPPED, results.get(2).getStatus());
+    }
+
+    private List<MetroLine> getMetroLines(int count) {
+        List<MetroLine> metroLines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            MetroLine metroLine = new MetroLine();
+            metroLine.setLine(String.valueOf(i));
+            metroLines.add(metroLine);
+        }
+        return metroLines;
+    }
+}
@@ -0,0 +1,141 @@
+package org.morris.unofficial;
+
+import com.amazonaws.services.lambda.runtime.events.ScheduledEvent;
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.morris.unofficial.events.CrawlMetroEvent;
+import org.morris.unofficial.events.ProcessCrawledMetroDataEvent;
+import org.morris.unofficial.events.ProcessCrawledMetroScheduleDataEvent;
+import org.morris.unofficial.models.MetroLine;
+import org.morris.unofficial.models.Schedule;
+import org.morris.unofficial.utils.InMemoryBlobStore;
+import org.morris.unofficial.utils.InMemoryKeyPhraseService;
+import org.morris.unofficial.utils.InMemoryMessageQueue;
+import org.morris.unofficial.utils.InMemoryTextDetectionService;
+import org.morris.unofficial.utils.LatestDocumentIndex;
+import org.morris.unofficial.utils.LineFingerprintIndex;
+import org.morris.unofficial.utils.MetroJson;
+import org.morris.unofficial.utils.ProcessEventUtils;
+import org.morris.unofficial.utils.SimulatedLatency;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Runs the crawl, the route list processing and the schedule processing one after the other, offline: the metro
+ * site is a local {@link TestMetroSite} and every port is in memory.
+ */
+public class MetroPipelineTest {
+    private final String UNPROCESSED_BUCKET = System.getenv("UNPROCESSED_BUCKET_NAME");
+    private final String PROCESSED_BUCKET = System.getenv("PROCESSED_BUCKET_NAME");
+    private final String SCHEDULES_BUCKET = System.getenv("SCHEDULES_BUCKET_NAME");
+    private final String SCHEDULES_MAPS_PATH = "/depts/transportation/metro/schedules-maps.aspx";
+    private final String SCHEDULE_PAGE_7_PATH = "/hastop/007.aspx";
+    private final String PDF_190_PATH = "/media/rt-190.pdf";
+    private final String PDF_7_PATH = "/media/rt-7.pdf";
+
+    // line 190 links its pdf timetable in the route list, line 7's pdf is found on its schedule page
+    private final String ROUTE_LIST = "<h3>Route list</h3>"
+            + "<li id=\"route190\" class=\"route-item weekday\"><a href=\"/x\" class=\"route-name\"><strong>190"
+            + "</strong> - Redondo Heights, Downtown Seattle</a> <ul class=\"dropdown-menu\"> <li><a href=\""
+            + "/hastop/190.aspx\">Online schedule</a></li> <li class=\"pdf-timetable\"><a href=\"" + PDF_190_PATH
+            + "\" target=\"_blank\">PDF timetable</a></li> </ul></li>"
+            + "<li id=\"route7\" class=\"route-item weekday\"><a href=\"/x\" class=\"route-name\"><strong>7"
+            + "</strong> - Rainier Beach, Downtown Seattle</a> <ul class=\"dropdown-menu\"> <li><a href=\""
+            + SCHEDULE_PAGE_7_PATH + "\">Online schedule</a></li> </ul></li>"
+            + CrawlMetroEvent.END_ROUTES_MARKER + "<footer></footer>";
+    private final String SCHEDULE_PAGE_7 = "<html><body><ul><li class=\"pdf-timetable\"><a href=\"" + PDF_7_PATH
+            + "\" target=\"_blank\">PDF timetable</a></li></ul></body></html>";
+
+    private TestMetroSite site;
+    private InMemoryBlobStore blobStore;
+
+    @Before
+    public void setUp() throws IOException {
+        byte[] schedulePdf = TestMetroSite.writeSchedulePdf();
+        site = new TestMetroSite();
+        site.put(SCHEDULES_MAPS_PATH, ROUTE_LIST.getBytes(StandardCharsets.UTF_8));
+        site.put(SCHEDULE_PAGE_7_PATH, SCHEDULE_PAGE_7.getBytes(StandardCharsets.UTF_8));
+        site.put(PDF_190_PATH, schedulePdf);
+        site.put(PDF_7_PATH, schedulePdf);
+        blobStore = new InMemoryBlobStore();
+    }
+
+    @After
+    public void tearDown() {
+        site.close();
+    }
+
+    @Test
+    public void testCrawlToSchedules() throws Exception {
+        CrawlMetroEvent crawlMetroEvent = new CrawlMetroEvent(blobStore, site.getUrl());
+        ProcessCrawledMetroDataEvent processCrawledMetroDataEvent = new ProcessCrawledMetroDataEvent(blobStore,
+                site.getUrl());
+        TestLambdaContext context = new TestLambdaContext(60000);
+        String result = crawlMetroEvent.handleRequest(getScheduledEvent(), context);
+        Assert.assertEquals(context.getMessages().toString(), "success", result);
+
+        // the crawled page is the latest routes document, and is processed into the routes json
+        String routesDocKey = new LatestDocumentIndex(blobStore, UNPROCESSED_BUCKET,
+                CrawlMetroEvent.LATEST_ROUTES_DOC_INDEX).getLatest().getKey();
+        Assert.assertEquals("success", processCrawledMetroDataEvent.handleRequest(
+                TestMetroSite.getS3Event(UNPROCESSED_BUCKET, routesDocKey), new TestLambdaContext(60000)));
+        String routesJsonKey = ProcessEventUtils.getPrefix() + "routes_doc.json";
+        List<MetroLine> metroLines;
+        try (InputStream content = blobStore.getContent(PROCESSED_BUCKET, routesJsonKey)) {
+            metroLines = MetroJson.readMetroLines(content);
+        }
+        Assert.assertEquals(2, metroLines.size());
+        Assert.assertEquals(site.getUrl(PDF_190_PATH), metroLines.get(0).getPdfTimetableUrl());
+        Assert.assertEquals(site.getUrl(SCHEDULE_PAGE_7_PATH), metroLines.get(1).getLineScheduleUrl());
+        Assert.assertNull(metroLines.get(1).getPdfTimetableUrl());
+
+        // both lines' schedules are parsed from their pdfs and their fingerprints recorded
+        runScheduleEvent(routesJsonKey);
+        for (String line : new String[] {"190", "7"}) {
+            try (InputStream content = blobStore.getContent(SCHEDULES_BUCKET,
+                    ProcessEventUtils.getSchedulePdfKey("line_schedule.json", line))) {
+                Assert.assertNotNull("no schedule for line " + line, content);
+                List<Schedule> schedules = MetroJson.getObjectMapper().readValue(content,
+                        new TypeReference<List<Schedule>>() {});
+                Assert.assertFalse(schedules.isEmpty());
+            }
+        }
+        LineFingerprintIndex fingerprintIndex = new LineFingerprintIndex(blobStore, SCHEDULES_BUCKET,
+                "index/line_fingerprints.json");
+        fingerprintIndex.load();
+        Assert.assertEquals(site.getUrl(PDF_7_PATH), fingerprintIndex.get("7").getPdfScheduleUrl());
+
+        // a second run of the unchanged site costs a 304 per page and downloads nothing
+        Assert.assertEquals("success", crawlMetroEvent.handleRequest(getScheduledEvent(),
+                new TestLambdaContext(60000)));
+        runScheduleEvent(routesJsonKey);
+        Assert.assertEquals(1, site.getBodiesSent(SCHEDULES_MAPS_PATH));
+        Assert.assertEquals(1, site.getBodiesSent(SCHEDULE_PAGE_7_PATH));
+        Assert.assertEquals(1, site.getBodiesSent(PDF_190_PATH));
+        Assert.assertEquals(1, site.getBodiesSent(PDF_7_PATH));
+    }
+
+    private void runScheduleEvent(String routesJsonKey) throws Exception {
+        InMemoryMessageQueue messageQueue = new InMemoryMessageQueue(SimulatedLatency.none(), 30000);
+        try (InMemoryTextDetectionService textDetectionService = new InMemoryTextDetectionService(blobStore,
+                messageQueue, (pdf, consumer) -> 0, SimulatedLatency.none())) {
+            ProcessCrawledMetroScheduleDataEvent handler = new ProcessCrawledMetroScheduleDataEvent(blobStore,
+                    messageQueue, textDetectionService, new InMemoryKeyPhraseService(SimulatedLatency.none()),
+                    site.getUrl());
+            Assert.assertEquals("success", handler.handleRequest(TestMetroSite.getS3Event(PROCESSED_BUCKET,
+                    routesJsonKey), new TestLambdaContext(120000)));
+        }
+    }
+
+    private ScheduledEvent getScheduledEvent() {
+        ScheduledEvent event = new ScheduledEvent();
+        event.setId("metro-crawl");
+        return event;
+    }
+}
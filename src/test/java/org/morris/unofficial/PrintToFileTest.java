@@ -0,0 +1,80 @@
+package org.morris.unofficial;
+
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.utils.ProcessEventUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class PrintToFileTest {
+    private final List<String> logs = new ArrayList<>();
+    private final LambdaLogger logger = new LambdaLogger() {
+        @Override
+        public void log(String message) {
+            logs.add(message);
+        }
+
+        @Override
+        public void log(byte[] message) {
+            logs.add(new String(message, StandardCharsets.UTF_8));
+        }
+    };
+
+    @Test
+    public void testBytesArePreservedExactly() throws IOException {
+        byte[] page = ("<html>\r\n  <li id=\"pdf-timetable-link\">\n    Bothell\u2013Kirkland \u00e1rea\n</html>\n")
+                .getBytes(StandardCharsets.UTF_8);
+        Path file = Files.createTempFile("line_schedule_doc", ".txt");
+        try {
+            Assert.assertEquals(page.length, ProcessEventUtils.printToFile(new ByteArrayInputStream(page),
+                    file.toString(), logger));
+            Assert.assertArrayEquals(page, Files.readAllBytes(file));
+            Assert.assertTrue(logs.get(0).startsWith("wrote " + page.length + " bytes"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testLargeBodyIsCopiedAndReplacesTheOldFile() throws IOException {
+        // a routes page is a few hundred KB, delivered in small reads like a socket
+        byte[] page = new byte[375 * 1024 + 17];
+        new Random(190).nextBytes(page);
+        Path file = Files.createTempFile("routes_doc", ".txt");
+        try {
+            Files.write(file, new byte[page.length * 2]);
+            InputStream trickle = new ByteArrayInputStream(page) {
+                @Override
+                public synchronized int read(byte[] b, int off, int len) {
+                    return super.read(b, off, Math.min(len, 1500));
+                }
+            };
+            Assert.assertEquals(page.length, ProcessEventUtils.printToFile(trickle, file.toString(), logger));
+            Assert.assertArrayEquals(page, Files.readAllBytes(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testEmptyBody() throws IOException {
+        Path file = Files.createTempFile("routes_doc", ".txt");
+        try {
+            Files.write(file, "stale".getBytes(StandardCharsets.UTF_8));
+            Assert.assertEquals(0, ProcessEventUtils.printToFile(new ByteArrayInputStream(new byte[0]),
+                    file.toString(), logger));
+            Assert.assertEquals(0, Files.size(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.morris.unofficial;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.events.ProcessCrawledMetroDataEvent;
+import org.morris.unofficial.utils.FileUtils;
+import org.morris.unofficial.utils.InMemoryBlobStore;
+import org.morris.unofficial.utils.ProcessEventUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class ProcessCrawledMetroDataEventTest {
+    private final String UNPROCESSED_BUCKET = System.getenv("UNPROCESSED_BUCKET_NAME");
+    private final String PROCESSED_BUCKET = System.getenv("PROCESSED_BUCKET_NAME");
+    private final String ROUTES_DOC_KEY = "docs/2022/10/8/routes_doc.txt";
+    private final String LATEST_CRAWL_METRO_DOCUMENT_PATH_1 = "/s3-event-crawl-metro-latest-1.txt";
+
+    @Test
+    public void testDocumentWithoutRouteListIsNotProcessed() {
+        InMemoryBlobStore blobStore = new InMemoryBlobStore();
+        blobStore.put(UNPROCESSED_BUCKET, ROUTES_DOC_KEY, "<html><body>maintenance</body></html>"
+                .getBytes(StandardCharsets.UTF_8), "text/plain", Collections.emptyMap());
+
+        Assert.assertEquals("failure", handleRequest(blobStore));
+        Assert.assertNull(blobStore.getMetadata(PROCESSED_BUCKET, getRoutesJsonKey()));
+    }
+
+    @Test
+    public void testDocumentThatFailsPartwayIsNotProcessed() throws IOException {
+        byte[] document;
+        try (InputStream inputStream = FileUtils.getResourceAsStream(LATEST_CRAWL_METRO_DOCUMENT_PATH_1)) {
+            document = IOUtils.toByteArray(inputStream);
+        }
+
+        // the stream fails halfway through the route list
+        InMemoryBlobStore blobStore = new InMemoryBlobStore() {
+            @Override
+            public InputStream getContent(String bucket, String key) {
+                return new SequenceInputStream(new ByteArrayInputStream(Arrays.copyOf(document, document.length / 2)),
+                        new InputStream() {
+                            @Override
+                            public int read() throws IOException {
+                                throw new IOException("connection reset");
+                            }
+                        });
+            }
+        };
+        blobStore.put(UNPROCESSED_BUCKET, ROUTES_DOC_KEY, document, "text/plain", Collections.emptyMap());
+
+        Assert.assertEquals("failure", handleRequest(blobStore));
+        Assert.assertNull(blobStore.getMetadata(PROCESSED_BUCKET, getRoutesJsonKey()));
+    }
+
+    private String handleRequest(InMemoryBlobStore blobStore) {
+        return new ProcessCrawledMetroDataEvent(blobStore, ProcessEventUtils.METRO_TOP_LEVEL_URL).handleRequest(
+                TestMetroSite.getS3Event(UNPROCESSED_BUCKET, ROUTES_DOC_KEY), new TestLambdaContext(60000));
+    }
+
+    private String getRoutesJsonKey() {
+        return ProcessEventUtils.getPrefix() + "routes_doc.json";
+    }
+}
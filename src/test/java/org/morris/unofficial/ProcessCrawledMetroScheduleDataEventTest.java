@@ -0,0 +1,163 @@
+package org.morris.unofficial;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.morris.unofficial.events.ProcessCrawledMetroScheduleDataEvent;
+import org.morris.unofficial.models.HttpValidators;
+import org.morris.unofficial.models.LineFingerprint;
+import org.morris.unofficial.models.MetroLine;
+import org.morris.unofficial.models.Schedule;
+import org.morris.unofficial.utils.InMemoryBlobStore;
+import org.morris.unofficial.utils.InMemoryKeyPhraseService;
+import org.morris.unofficial.utils.InMemoryMessageQueue;
+import org.morris.unofficial.utils.InMemoryTextDetectionService;
+import org.morris.unofficial.utils.LineFingerprintIndex;
+import org.morris.unofficial.utils.MetroJson;
+import org.morris.unofficial.utils.ProcessEventUtils;
+import org.morris.unofficial.utils.SimulatedLatency;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ProcessCrawledMetroScheduleDataEventTest {
+    private final String PROCESSED_BUCKET = System.getenv("PROCESSED_BUCKET_NAME");
+    private final String SCHEDULES_BUCKET = System.getenv("SCHEDULES_BUCKET_NAME");
+    private final String ROUTES_KEY = "processed/routes.json";
+    private final String INDEX_KEY = "index/line_fingerprints.json";
+    private final String PDF_PATH = "/190.pdf";
+    private final int RECORDED_LINES = 20;
+
+    private TestMetroSite site;
+    private byte[] schedulePdf;
+
+    @Before
+    public void setUp() throws IOException {
+        schedulePdf = TestMetroSite.writeSchedulePdf();
+        site = new TestMetroSite();
+        site.put(PDF_PATH, schedulePdf);
+    }
+
+    @After
+    public void tearDown() {
+        site.close();
+    }
+
+    @Test
+    public void testUnchangedPdfOfAMovedSchedulePageIsDownloaded() throws Exception {
+        InMemoryBlobStore blobStore = new InMemoryBlobStore();
+        MetroLine metroLine = new MetroLine();
+        metroLine.setLine("190");
+        metroLine.setLineScheduleUrl(site.getUrl("/schedules/190-new.aspx"));
+        metroLine.setPdfTimetableUrl(site.getUrl(PDF_PATH));
+        ByteArrayOutputStream routes = new ByteArrayOutputStream();
+        MetroJson.writeMetroLines(Collections.singletonList(metroLine), routes);
+        blobStore.put(PROCESSED_BUCKET, ROUTES_KEY, routes.toByteArray(), "application/json", Collections.emptyMap());
+
+        // the last run saw the same pdf from the line's old schedule page, so the pdf fetch answers 304
+        LineFingerprint lastFingerprint = new LineFingerprint(site.getUrl("/schedules/190-old.aspx"),
+                metroLine.getPdfTimetableUrl(), "sha256-of-190");
+        lastFingerprint.setPdfValidators(new HttpValidators(site.getEtag(PDF_PATH), null));
+        LineFingerprintIndex fingerprintIndex = new LineFingerprintIndex(blobStore, SCHEDULES_BUCKET, INDEX_KEY);
+        fingerprintIndex.load();
+        fingerprintIndex.update("190", lastFingerprint);
+        fingerprintIndex.save();
+
+        InMemoryMessageQueue messageQueue = new InMemoryMessageQueue(SimulatedLatency.none(), 30000);
+        TestLambdaContext context = new TestLambdaContext(120000);
+        try (InMemoryTextDetectionService textDetectionService = new InMemoryTextDetectionService(blobStore,
+                messageQueue, (pdf, consumer) -> 0, SimulatedLatency.none())) {
+            ProcessCrawledMetroScheduleDataEvent handler = new ProcessCrawledMetroScheduleDataEvent(blobStore,
+                    messageQueue, textDetectionService, new InMemoryKeyPhraseService(SimulatedLatency.none()),
+                    site.getUrl());
+            Assert.assertEquals("success", handler.handleRequest(TestMetroSite.getS3Event(PROCESSED_BUCKET,
+                    ROUTES_KEY), context));
+        }
+
+        // the pdf is downloaded after all, uploaded and parsed
+        Assert.assertEquals(1, site.getBodiesSent(PDF_PATH));
+        String pdfKey = ProcessEventUtils.getSchedulePdfKey("line_schedule_doc.pdf", "190");
+        try (InputStream content = blobStore.getContent(SCHEDULES_BUCKET, pdfKey)) {
+            Assert.assertArrayEquals(schedulePdf, IOUtils.toByteArray(content));
+        }
+        List<Schedule> schedules;
+        try (InputStream content = blobStore.getContent(SCHEDULES_BUCKET,
+                ProcessEventUtils.getSchedulePdfKey("line_schedule.json", "190"))) {
+            Assert.assertNotNull(context.getMessages().toString(), content);
+            schedules = MetroJson.getObjectMapper().readValue(content, new TypeReference<List<Schedule>>() {});
+        }
+        Assert.assertFalse(schedules.isEmpty());
+        Assert.assertEquals("190", schedules.get(0).getRoute());
+
+        // the line's new fingerprint names its new schedule page and the pdf's real digest
+        fingerprintIndex = new LineFingerprintIndex(blobStore, SCHEDULES_BUCKET, INDEX_KEY);
+        fingerprintIndex.load();
+        LineFingerprint fingerprint = fingerprintIndex.get("190");
+        Assert.assertEquals(metroLine.getLineScheduleUrl(), fingerprint.getLineScheduleUrl());
+        Assert.assertNotEquals("sha256-of-190", fingerprint.getPdfSha256());
+        Assert.assertEquals(site.getEtag(PDF_PATH), fingerprint.getPdfValidators().getEtag());
+    }
+
+    @Test
+    public void testEmptyRouteListRemovesNothing() throws Exception {
+        assertNothingRemoved(Collections.emptyList());
+    }
+
+    @Test
+    public void testTruncatedRouteListRemovesNothing() throws Exception {
+        MetroLine metroLine = new MetroLine();
+        metroLine.setLine("190");
+        metroLine.setPdfTimetableUrl(site.getUrl(PDF_PATH));
+        assertNothingRemoved(Collections.singletonList(metroLine));
+    }
+
+    private void assertNothingRemoved(List<MetroLine> metroLines) throws Exception {
+        InMemoryBlobStore blobStore = new InMemoryBlobStore();
+        ByteArrayOutputStream routes = new ByteArrayOutputStream();
+        MetroJson.writeMetroLines(metroLines, routes);
+        blobStore.put(PROCESSED_BUCKET, ROUTES_KEY, routes.toByteArray(), "application/json", Collections.emptyMap());
+
+        // the last run recorded every line
+        LineFingerprintIndex fingerprintIndex = new LineFingerprintIndex(blobStore, SCHEDULES_BUCKET, INDEX_KEY);
+        fingerprintIndex.load();
+        List<String> recordedLines = new ArrayList<>();
+        recordedLines.add("190");
+        for (int line = 1; line < RECORDED_LINES; line++) {
+            recordedLines.add(String.valueOf(line));
+        }
+        for (String line : recordedLines) {
+            fingerprintIndex.update(line, new LineFingerprint(site.getUrl("/schedules/" + line + ".aspx"),
+                    site.getUrl("/" + line + ".pdf"), "sha256-of-" + line));
+        }
+        fingerprintIndex.save();
+
+        InMemoryMessageQueue messageQueue = new InMemoryMessageQueue(SimulatedLatency.none(), 30000);
+        TestLambdaContext context = new TestLambdaContext(120000);
+        try (InMemoryTextDetectionService textDetectionService = new InMemoryTextDetectionService(blobStore,
+                messageQueue, (pdf, consumer) -> 0, SimulatedLatency.none())) {
+            ProcessCrawledMetroScheduleDataEvent handler = new ProcessCrawledMetroScheduleDataEvent(blobStore,
+                    messageQueue, textDetectionService, new InMemoryKeyPhraseService(SimulatedLatency.none()),
+                    site.getUrl());
+            Assert.assertEquals("success", handler.handleRequest(TestMetroSite.getS3Event(PROCESSED_BUCKET,
+                    ROUTES_KEY), context));
+        }
+
+        // the loader is given no lines to delete, and every line stays recorded
+        Assert.assertNull(blobStore.getMetadata(SCHEDULES_BUCKET,
+                ProcessEventUtils.getPrefix() + "removed_lines.json"));
+        Assert.assertTrue(context.getMessages().toString(), context.getMessages().toString().contains("refusing"));
+        fingerprintIndex = new LineFingerprintIndex(blobStore, SCHEDULES_BUCKET, INDEX_KEY);
+        fingerprintIndex.load();
+        Assert.assertEquals(RECORDED_LINES, fingerprintIndex.size());
+        for (String line : recordedLines) {
+            Assert.assertNotNull(line, fingerprintIndex.get(line));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.morris.unofficial;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.models.MetroLine;
+import org.morris.unofficial.models.RouteAttribute;
+import org.morris.unofficial.utils.FileUtils;
+import org.morris.unofficial.utils.RouteAttributeIndex;
+import org.morris.unofficial.utils.RouteListParser;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+public class RouteAttributeIndexTest {
+    final static private String LATEST_CRAWL_METRO_DOCUMENT_PATH_1 = "/s3-event-crawl-metro-latest-1.txt";
+    final static private EnumSet<RouteAttribute> NONE = EnumSet.noneOf(RouteAttribute.class);
+
+    @Test
+    public void testRouteAttributesAreParsed() throws IOException {
+        List<MetroLine> metroLines = parseRoutes();
+        MetroLine aLine = metroLines.get(0);
+        Assert.assertEquals(EnumSet.of(RouteAttribute.RAPIDRIDE, RouteAttribute.NIGHT_OWL, RouteAttribute.WEEKDAY,
+                RouteAttribute.SATURDAY, RouteAttribute.SUNDAY, RouteAttribute.NOT_SUSPENDED,
+                RouteAttribute.EMERGENCY_SNOW_NETWORK), aLine.getRouteAttributes());
+        for (MetroLine metroLine : metroLines) {
+            Assert.assertTrue(metroLine.getLine(), metroLine.getRouteAttributes().contains(RouteAttribute.NOT_SUSPENDED));
+        }
+    }
+
+    @Test
+    public void testQueries() throws IOException {
+        List<MetroLine> metroLines = parseRoutes();
+        RouteAttributeIndex index = RouteAttributeIndex.build(metroLines);
+        Assert.assertEquals(metroLines.size(), index.getLines().size());
+
+        // RapidRide lines running Sunday that aren't suspended
+        Assert.assertEquals(Arrays.asList("A Line", "B Line", "C Line", "D Line", "E Line", "F Line"),
+                index.getLines(EnumSet.of(RouteAttribute.RAPIDRIDE, RouteAttribute.SUNDAY, RouteAttribute.NOT_SUSPENDED),
+                        NONE));
+
+        // night owl service that isn't RapidRide
+        Assert.assertEquals(Arrays.asList("7", "36", "48", "49", "120", "124", "160", "161"),
+                index.getLines(EnumSet.of(RouteAttribute.NIGHT_OWL), EnumSet.of(RouteAttribute.RAPIDRIDE)));
+
+        // weekday only service
+        Assert.assertEquals(50, index.count(EnumSet.of(RouteAttribute.WEEKDAY),
+                EnumSet.of(RouteAttribute.SATURDAY, RouteAttribute.SUNDAY)));
+
+        Assert.assertEquals(metroLines.size(), index.count(NONE, NONE));
+        Assert.assertTrue(index.getLines(EnumSet.of(RouteAttribute.SUSPENDED), NONE).isEmpty());
+    }
+
+    @Test
+    public void testRouteAttributesJsonRoundTrip() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        MetroLine metroLine = objectMapper.readValue("{\"line\": \"7\", \"route_attributes\": "
+                + "[\"night-owl-route\", \"weekday\", \"not-suspended\"]}", MetroLine.class);
+        Assert.assertEquals(EnumSet.of(RouteAttribute.NIGHT_OWL, RouteAttribute.WEEKDAY, RouteAttribute.NOT_SUSPENDED),
+                metroLine.getRouteAttributes());
+
+        String json = objectMapper.writeValueAsString(metroLine);
+        Assert.assertTrue(json, json.contains("\"route_attributes\":[\"night-owl-route\",\"weekday\",\"not-suspended\"]"));
+        Assert.assertEquals("night-owl-route weekday not-suspended",
+                RouteAttribute.toCssClasses(metroLine.getRouteAttributes()));
+
+        // a routes document written before route attributes has none
+        Assert.assertTrue(objectMapper.readValue("{\"line\": \"7\"}", MetroLine.class).getRouteAttributes().isEmpty());
+    }
+
+    private List<MetroLine> parseRoutes() throws IOException {
+        try (Reader reader = new InputStreamReader(FileUtils.getResourceAsStream(LATEST_CRAWL_METRO_DOCUMENT_PATH_1),
+                StandardCharsets.UTF_8)) {
+            return new RouteListParser(reader).parse();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.morris.unofficial;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.models.MetroLine;
+import org.morris.unofficial.models.RouteAttribute;
+import org.morris.unofficial.utils.FileUtils;
+import org.morris.unofficial.utils.RouteListParser;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class RouteListParserTest {
+    private final String LATEST_CRAWL_METRO_DOCUMENT_PATH_1 = "/s3-event-crawl-metro-latest-1.txt";
+
+    @Test
+    public void testParseLatestCrawledDocumentRoutes() throws IOException {
+        List<MetroLine> metroLines;
+        try (Reader reader = new InputStreamReader(FileUtils.getResourceAsStream(LATEST_CRAWL_METRO_DOCUMENT_PATH_1),
+                StandardCharsets.UTF_8)) {
+            metroLines = new RouteListParser(reader).parse();
+        }
+        Assert.assertEquals(161, metroLines.size());
+
+        MetroLine aLine = metroLines.get(0);
+        Assert.assertEquals("A Line", aLine.getLine());
+        Assert.assertEquals("Tukwila International Boulevard Station, Federal Way Transit Center", aLine.getLineName());
+        Assert.assertEquals("https://kingcounty.gov/depts/transportation/metro/schedules-maps/hastop/a-line.aspx",
+                aLine.getLineScheduleUrl());
+        Assert.assertEquals("https://kingcounty.gov/~/media/depts/metro/schedules/pdf/09172022/rt-a-line.pdf",
+                aLine.getPdfTimetableUrl());
+        Assert.assertEquals("https://kingcounty.gov/~/media/depts/metro/maps/route/09172022/large/m671.jpg",
+                aLine.getRouteMapUrl());
+
+        MetroLine line190 = metroLines.stream()
+                .filter(metroLine -> metroLine.getLine().equals("190"))
+                .findFirst()
+                .orElse(null);
+        Assert.assertNotNull(line190);
+        Assert.assertEquals("Redondo Heights, Star Lake, Kent-Des Moines , Downtown Seattle", line190.getLineName());
+        Assert.assertEquals("https://kingcounty.gov/depts/transportation/metro/schedules-maps/hastop/190.aspx",
+                line190.getLineScheduleUrl());
+        Assert.assertEquals("https://kingcounty.gov/~/media/depts/metro/schedules/pdf/09172022/rt-190.pdf",
+                line190.getPdfTimetableUrl());
+
+        // the valley shuttle, streetcars and water taxis are the only routes without a pdf timetable to link
+        List<String> linesWithoutPdfTimetable = metroLines.stream()
+                .filter(metroLine -> metroLine.getPdfTimetableUrl() == null)
+                .map(MetroLine::getLine)
+                .collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList("Snoqualmie Valley", "Streetcar", "Streetcar", "Water Taxi", "Water Taxi"),
+                linesWithoutPdfTimetable);
+    }
+
+    @Test
+    public void testRouteMenuWithoutLinks() throws IOException {
+        String markup = "<h3>Route list</h3><a href=\"/x\" class=\"route-name\"><strong>Water Taxi</strong> - "
+                + "West Seattle to Seattle</a> <ul class=\"dropdown-menu\"> <li><a href=\"/water-taxi/west-seattle.aspx\">"
+                + "Online schedule</a></li> <li class=\"map\"><a href=\"/water-taxi/map.aspx\">Route map</a></li> </ul>"
+                + "<a href=\"/x\" class=\"route-name\"><strong>7</strong> - Rainier Beach, Downtown Seattle</a> "
+                + "<ul class=\"dropdown-menu\"> <li><a href=\"/hastop/007.aspx\">Online schedule</a></li> "
+                + "<li class=\"pdf-timetable\"><a href=\"/~/media/rt-7.pdf\" target=\"_blank\">PDF timetable</a></li> </ul>";
+
+        List<MetroLine> metroLines = new RouteListParser(new StringReader(markup)).parse();
+        Assert.assertEquals(2, metroLines.size());
+        Assert.assertNull(metroLines.get(0).getPdfTimetableUrl());
+        Assert.assertNull(metroLines.get(0).getRouteMapUrl());
+        Assert.assertEquals("https://kingcounty.gov/~/media/rt-7.pdf", metroLines.get(1).getPdfTimetableUrl());
+        Assert.assertNull(metroLines.get(1).getRouteMapUrl());
+    }
+
+    @Test
+    public void testRouteWithoutMenuKeepsItsOwnLinks() throws IOException {
+        String markup = "<h3>Route list</h3><li class=\"route-item weekday\"><a href=\"/x\" class=\"route-name\">"
+                + "<strong>Water Taxi</strong> - West Seattle to Seattle</a> <a href=\"/water-taxi/west-seattle.aspx\">"
+                + "Online schedule</a></li>"
+                + "<li class=\"route-item night-owl-route\"><a href=\"/x\" class=\"route-name\"><strong>7</strong> - "
+                + "Rainier Beach, Downtown Seattle</a> <ul class=\"dropdown-menu\"> <li><a href=\"/hastop/007.aspx\">"
+                + "Online schedule</a></li> <li class=\"pdf-timetable\"><a href=\"/~/media/rt-7.pdf\" "
+                + "target=\"_blank\">PDF timetable</a></li> </ul></li>";
+
+        List<MetroLine> metroLines = new RouteListParser(new StringReader(markup)).parse();
+        Assert.assertEquals(2, metroLines.size());
+        Assert.assertEquals("Water Taxi", metroLines.get(0).getLine());
+        Assert.assertNull(metroLines.get(0).getPdfTimetableUrl());
+        Assert.assertEquals("7", metroLines.get(1).getLine());
+        Assert.assertEquals("https://kingcounty.gov/~/media/rt-7.pdf", metroLines.get(1).getPdfTimetableUrl());
+        Assert.assertTrue(metroLines.get(1).getRouteAttributes().contains(RouteAttribute.NIGHT_OWL));
+    }
+
+    @Test
+    public void testParseMarkersSplitAcrossReads() throws IOException {
+        String markup = "<h3>Route list</h3><a href=\"/x\" class=\"route-name\"><strong>7</strong> - Rainier Beach, "
+                + "Downtown Seattle</a> <li><a href=\"/hastop/007.aspx\">Online schedule</a></li>";
+
+        // single character reads force every marker to be matched across buffer refills
+        Reader oneCharReader = new StringReader(markup) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                return super.read(cbuf, off, Math.min(len, 1));
+            }
+        };
+        List<MetroLine> metroLines = new RouteListParser(oneCharReader).parse();
+        Assert.assertEquals(1, metroLines.size());
+        Assert.assertEquals("7", metroLines.get(0).getLine());
+        Assert.assertEquals("Rainier Beach, Downtown Seattle", metroLines.get(0).getLineName());
+        Assert.assertEquals("https://kingcounty.gov/hastop/007.aspx", metroLines.get(0).getLineScheduleUrl());
+    }
+
+    @Test(expected = IOException.class)
+    public void testParseDocumentWithoutRouteList() throws IOException {
+        new RouteListParser(new StringReader("<html><body></body></html>")).parse();
+    }
+}
@@ -0,0 +1,132 @@
+package org.morris.unofficial;
+
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.utils.S3BlobStore;
+import org.morris.unofficial.utils.SchedulePdfBuffer;
+import org.morris.unofficial.utils.ScheduleTextExtractor.SchedulePdf;
+import org.morris.unofficial.utils.Sha256;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class SchedulePdfBufferTest {
+    private final String SCHEDULES_BUCKET = "schedules-bucket";
+    private final String PDF_KEY = "docs/2022/9/17/190/line_schedule_doc.pdf";
+
+    @Test
+    public void testSmallPdfIsUploadedFromMemory() throws IOException {
+        byte[] pdf = getPdfBytes(100000);
+        Path directory = Files.createTempDirectory("190");
+        Path spillPath = directory.resolve("line_schedule_doc.pdf");
+        RecordingS3 s3 = new RecordingS3();
+        try (SchedulePdfBuffer buffer = new SchedulePdfBuffer(1024 * 1024, spillPath)) {
+            buffer.read(new ByteArrayInputStream(pdf));
+            Assert.assertFalse(buffer.isSpilled());
+            Assert.assertFalse(Files.exists(spillPath));
+            Assert.assertEquals(pdf.length, buffer.getLength());
+            Assert.assertEquals(getSha256(pdf, directory), buffer.getSha256());
+
+            buffer.upload(new S3BlobStore(s3), SCHEDULES_BUCKET, PDF_KEY);
+            SchedulePdf schedulePdf = buffer.toSchedulePdf("190", PDF_KEY);
+            Assert.assertArrayEquals(pdf, schedulePdf.getContent());
+            Assert.assertNull(schedulePdf.getPath());
+        } finally {
+            Files.delete(directory);
+        }
+
+        Assert.assertEquals(1, s3.uploads.size());
+        PutObjectRequest upload = s3.uploads.get(0);
+        Assert.assertEquals(PDF_KEY, upload.getKey());
+        Assert.assertNull(upload.getFile());
+        Assert.assertEquals(pdf.length, upload.getMetadata().getContentLength());
+        Assert.assertEquals(SchedulePdfBuffer.PDF_CONTENT_TYPE, upload.getMetadata().getContentType());
+        Assert.assertArrayEquals(pdf, s3.contents.get(0));
+    }
+
+    @Test
+    public void testLargePdfSpillsToTheLineDirectory() throws IOException {
+        byte[] pdf = getPdfBytes(300000);
+        Path directory = Files.createTempDirectory("190");
+        Path spillPath = directory.resolve("line_schedule_doc.pdf");
+        RecordingS3 s3 = new RecordingS3();
+        try (SchedulePdfBuffer buffer = new SchedulePdfBuffer(64 * 1024, spillPath)) {
+            buffer.read(new ByteArrayInputStream(pdf));
+            Assert.assertTrue(buffer.isSpilled());
+            Assert.assertArrayEquals(pdf, Files.readAllBytes(spillPath));
+            Assert.assertEquals(getSha256(pdf, directory), buffer.getSha256());
+
+            SchedulePdf schedulePdf = buffer.toSchedulePdf("190", PDF_KEY);
+            Assert.assertNull(schedulePdf.getContent());
+            Assert.assertEquals(spillPath.toString(), schedulePdf.getPath());
+
+            buffer.upload(new S3BlobStore(s3), SCHEDULES_BUCKET, PDF_KEY);
+        }
+
+        // the spilled copy is gone once the line is done with it
+        Assert.assertFalse(Files.exists(spillPath));
+        Files.delete(directory);
+        Assert.assertEquals(1, s3.uploads.size());
+        Assert.assertArrayEquals(pdf, s3.contents.get(0));
+    }
+
+    private byte[] getPdfBytes(int length) {
+        byte[] pdf = new byte[length];
+        new Random(190).nextBytes(pdf);
+        System.arraycopy("%PDF-1.4".getBytes(), 0, pdf, 0, 8);
+        return pdf;
+    }
+
+    private String getSha256(byte[] content, Path directory) throws IOException {
+        Path file = Files.write(directory.resolve("expected.pdf"), content);
+        try {
+            return Sha256.digest(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Records every upload and reads its content, from the request's stream or file.
+     */
+    private static class RecordingS3 extends AbstractAmazonS3 {
+        private final List<PutObjectRequest> uploads = new ArrayList<>();
+        private final List<byte[]> contents = new ArrayList<>();
+
+        @Override
+        public synchronized PutObjectResult putObject(PutObjectRequest request) {
+            uploads.add(request);
+            try {
+                if (request.getFile() != null) {
+                    contents.add(Files.readAllBytes(request.getFile().toPath()));
+                } else {
+                    contents.add(readAll(request.getInputStream()));
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return new PutObjectResult();
+        }
+
+        private static byte[] readAll(InputStream inputStream) throws IOException {
+            byte[] content = new byte[0];
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                content = Arrays.copyOf(content, content.length + read);
+                System.arraycopy(buffer, 0, content, content.length - read, read);
+            }
+            return content;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.morris.unofficial;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.utils.FallbackScheduleTextExtractor;
+import org.morris.unofficial.utils.PdfBoxScheduleTextExtractor;
+import org.morris.unofficial.utils.ScheduleTextExtractor;
+import org.morris.unofficial.utils.ScheduleTextExtractor.SchedulePdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ScheduleTextExtractorTest {
+
+    @Test
+    public void testPdfBoxExtractsPagesInOrder() throws Exception {
+        File pdf = writeSchedulePdf(5, true);
+        try (PdfBoxScheduleTextExtractor extractor = new PdfBoxScheduleTextExtractor(3)) {
+            List<Integer> pageNumbers = new ArrayList<>();
+            List<String> pageTexts = new ArrayList<>();
+            int pages = extractor.extract(getSchedulePdf(pdf), (page, text) -> {
+                pageNumbers.add(page);
+                pageTexts.add(text);
+            });
+
+            Assert.assertEquals(5, pages);
+            for (int page = 1; page <= 5; page++) {
+                Assert.assertEquals(page, (int) pageNumbers.get(page - 1));
+                Assert.assertTrue(pageTexts.get(page - 1).contains("Route 190 page " + page));
+                Assert.assertTrue(pageTexts.get(page - 1).contains("5:52 5:58 6:04"));
+            }
+        } finally {
+            pdf.delete();
+        }
+    }
+
+    @Test
+    public void testPdfBoxExtractsFromMemory() throws Exception {
+        File pdf = writeSchedulePdf(3, true);
+        try (PdfBoxScheduleTextExtractor extractor = new PdfBoxScheduleTextExtractor(2)) {
+            SchedulePdf schedulePdf = new SchedulePdf("190", Files.readAllBytes(pdf.toPath()), "190/line_schedule_doc.pdf");
+            StringBuilder text = new StringBuilder();
+            Assert.assertEquals(3, extractor.extract(schedulePdf, (page, pageText) -> text.append(pageText)));
+            Assert.assertTrue(text.toString().contains("Route 190 page 3"));
+        } finally {
+            pdf.delete();
+        }
+    }
+
+    @Test
+    public void testFallbackOnlyUsedWhenQualityCheckFails() throws Exception {
+        File goodPdf = writeSchedulePdf(2, true);
+        File timelessPdf = writeSchedulePdf(2, false);
+        AtomicInteger fallbackCalls = new AtomicInteger();
+        ScheduleTextExtractor fallback = (schedulePdf, consumer) -> {
+            fallbackCalls.incrementAndGet();
+            consumer.accept(1, "6:32 6:38 6:44");
+            return 1;
+        };
+
+        try (PdfBoxScheduleTextExtractor pdfBox = new PdfBoxScheduleTextExtractor(1)) {
+            FallbackScheduleTextExtractor extractor = new FallbackScheduleTextExtractor(pdfBox, fallback,
+                    FallbackScheduleTextExtractor.hasScheduleTimes(3));
+
+            StringBuilder text = new StringBuilder();
+            Assert.assertEquals(2, extractor.extract(getSchedulePdf(goodPdf), (page, pageText) -> text.append(pageText)));
+            Assert.assertEquals(0, fallbackCalls.get());
+            Assert.assertTrue(text.toString().contains("Route 190 page 2"));
+
+            text.setLength(0);
+            Assert.assertEquals(1, extractor.extract(getSchedulePdf(timelessPdf), (page, pageText) -> text.append(pageText)));
+            Assert.assertEquals(1, fallbackCalls.get());
+            Assert.assertEquals("6:32 6:38 6:44", text.toString());
+
+            // a pdf that can't be read falls back as well
+            Assert.assertEquals(1, extractor.extract(new SchedulePdf("190", "/nonexistent/schedule.pdf", "190/key"),
+                    (page, pageText) -> { }));
+            Assert.assertEquals(2, fallbackCalls.get());
+            Assert.assertEquals(1, extractor.getPrimaryExtractions());
+            Assert.assertEquals(2, extractor.getFallbackExtractions());
+        } finally {
+            goodPdf.delete();
+            timelessPdf.delete();
+        }
+    }
+
+    @Test
+    public void testScheduleTimesQualityCheck() {
+        Assert.assertTrue(FallbackScheduleTextExtractor.hasScheduleTimes(3).test("Stop #60747 5:52 5:58 6:04\u2021"));
+        Assert.assertFalse(FallbackScheduleTextExtractor.hasScheduleTimes(3).test("Stop #60747 5:52 Stop #47972"));
+    }
+
+    private SchedulePdf getSchedulePdf(File pdf) {
+        return new SchedulePdf("190", pdf.getPath(), "190/line_schedule_doc.pdf");
+    }
+
+    private File writeSchedulePdf(int pages, boolean withTimes) throws IOException {
+        File pdf = File.createTempFile("schedule", ".pdf");
+        try (PDDocument document = new PDDocument()) {
+            for (int page = 1; page <= pages; page++) {
+                PDPage pdPage = new PDPage();
+                document.addPage(pdPage);
+                try (PDPageContentStream content = new PDPageContentStream(document, pdPage)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 12);
+                    content.newLineAtOffset(50, 700);
+                    content.showText("Route 190 page " + page);
+                    if (withTimes) {
+                        content.newLineAtOffset(0, -20);
+                        content.showText("5:52 5:58 6:04 6:25 6:33 6:44");
+                    }
+                    content.endText();
+                }
+            }
+            document.save(pdf);
+        }
+        return pdf;
+    }
+}
@@ -0,0 +1,102 @@
+package org.morris.unofficial;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.models.MetroStop;
+import org.morris.unofficial.models.Schedule;
+import org.morris.unofficial.utils.FileUtils;
+import org.morris.unofficial.utils.ScheduleTextParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ScheduleTextParserTest {
+    private final String SCHEDULE_PDF_TEXT_190_PATH = "/schedule-pdf-text-dump/schedule-pdf-text-190.txt";
+
+    @Test
+    public void testParseScheduleText190() throws IOException {
+        String scheduleText;
+        try (InputStream inputStream = FileUtils.getResourceAsStream(SCHEDULE_PDF_TEXT_190_PATH)) {
+            scheduleText = IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+        }
+        List<Schedule> schedules = ScheduleTextParser.parse(scheduleText);
+        Assert.assertEquals(2, schedules.size());
+
+        Schedule toDowntown = schedules.get(0);
+        Assert.assertEquals("190", toDowntown.getRoute());
+        Assert.assertEquals("Monday thru Friday", toDowntown.getServiceDays());
+        Assert.assertEquals("Downtown Seattle", toDowntown.getDestination());
+        assertStops(toDowntown, new String[] {"60747", "47972", "58782", "99252", "620", "1010"},
+                new String[] {"Redondo Heights P&R", "I-5 &S 272 St Fwy Sta", "I-5 & Kent Des Moines Fwy Station",
+                        "SODO Busway & S Spokane St", "4th Ave S & S Jackson St", "Howell St & Minor Ave"});
+        Assert.assertEquals(Arrays.asList("5:52 AM", "6:32 AM", "6:47 AM", "7:02 AM"),
+                getTimes(toDowntown.getSchedule().get(0)));
+        Assert.assertEquals(Arrays.asList("6:44 AM", "7:26 AM", "7:41 AM", "7:57 AM"),
+                getTimes(toDowntown.getSchedule().get(5)));
+
+        // followed by the bold PM time legend
+        Schedule toRedondoHeights = schedules.get(1);
+        Assert.assertEquals("Redondo Heights", toRedondoHeights.getDestination());
+        assertStops(toRedondoHeights, new String[] {"250", "300", "99253", "53504", "47970", "60747"},
+                new String[] {"2nd Ave & Bell St", "2nd Ave & Pike St", "SODO Busway & S Spokane St",
+                        "I-5 & Kent Des Moines Fwy Sta", "I-5 & S 272nd St Fwy Sta", "Redondo Heights P&R"});
+        Assert.assertEquals(Arrays.asList("3:23 PM", "3:58 PM", "4:23 PM", "4:58 PM"),
+                getTimes(toRedondoHeights.getSchedule().get(0)));
+        Assert.assertEquals(Arrays.asList("4:18 PM", "4:55 PM", "5:19 PM", "5:49 PM"),
+                getTimes(toRedondoHeights.getSchedule().get(5)));
+    }
+
+    @Test
+    public void testTimesCrossingNoonAndSkippedStops() {
+        String scheduleText = "Route 7  Saturday to Rainier BeachServicio de sabado a Rainier Beach"
+                + "Downtown Rainier Beach3rd Ave & Pine StRainier Ave S & S Henderson St3rd Ave & Pine StStop #578 Stop #20011:40 11:58"
+                + "11:55 12:13\u202112:10 \u2014 12:25 12:43\u2021\u2021 Estimated time.";
+        List<Schedule> schedules = ScheduleTextParser.parse(scheduleText);
+        Assert.assertEquals(1, schedules.size());
+
+        List<MetroStop> stops = schedules.get(0).getSchedule();
+        Assert.assertEquals("Rainier Ave S & S Henderson St", stops.get(0).getLineStop());
+        Assert.assertEquals("200", stops.get(1).getStopNumber());
+        Assert.assertEquals(Arrays.asList("11:40 AM", "11:55 AM", "12:10 PM", "12:25 PM"), getTimes(stops.get(0)));
+        Assert.assertEquals(Arrays.asList("11:58 AM", "12:13 PM", "12:43 PM"), getTimes(stops.get(1)));
+    }
+
+    @Test
+    public void testExplicitMeridiemAndUnsplittableNames() {
+        String scheduleText = "Route 5  Sunday to ShorelineServicio de domingo"
+                + "Stop #1 Stop #212:05 PM 12:20 1:05 1:20Bold PM time";
+        List<MetroStop> stops = ScheduleTextParser.parse(scheduleText).get(0).getSchedule();
+
+        Assert.assertEquals("Stop #1", stops.get(0).getLineStop());
+        Assert.assertEquals("2", stops.get(1).getStopNumber());
+        Assert.assertEquals(Arrays.asList("12:05 PM", "1:05 PM"), getTimes(stops.get(0)));
+        Assert.assertEquals(Arrays.asList("12:20 PM", "1:20 PM"), getTimes(stops.get(1)));
+    }
+
+    @Test
+    public void testTextWithoutTimetables() {
+        Assert.assertTrue(ScheduleTextParser.parse("This route does not operate on weekends or holidays.").isEmpty());
+    }
+
+    private List<String> getTimes(MetroStop metroStop) {
+        List<String> times = new ArrayList<>();
+        for (int index = 0; index < metroStop.getStopTimes().size(); index++) {
+            times.add(metroStop.getStopTimes().getTime(index));
+        }
+        return times;
+    }
+
+    private void assertStops(Schedule schedule, String[] stopNumbers, String[] lineStops) {
+        Assert.assertEquals(stopNumbers.length, schedule.getSchedule().size());
+        for (int stop = 0; stop < stopNumbers.length; stop++) {
+            Assert.assertEquals(stopNumbers[stop], schedule.getSchedule().get(stop).getStopNumber());
+            Assert.assertEquals(lineStops[stop], schedule.getSchedule().get(stop).getLineStop());
+            Assert.assertEquals(4, schedule.getSchedule().get(stop).getStopTimes().size());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.morris.unofficial;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.models.MetroStop;
+import org.morris.unofficial.models.StopTimes;
+
+import java.io.IOException;
+
+public class StopTimesTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testJsonKeepsPrintedTimes() throws IOException {
+        MetroStop metroStop = new MetroStop();
+        metroStop.setLineStop("Redondo Heights P&R");
+        metroStop.setStopNumber("60747");
+        metroStop.setStopTimes(StopTimes.of(352, 392, 735, 1430, 1450));
+
+        String json = objectMapper.writeValueAsString(metroStop);
+        Assert.assertTrue(json.contains("\"stop_times\":[\"5:52 AM\",\"6:32 AM\",\"12:15 PM\",\"11:50 PM\",\"12:10 AM\"]"));
+
+        // 12:10 AM after 11:50 PM is past midnight in the same service day
+        MetroStop read = objectMapper.readValue(json, MetroStop.class);
+        Assert.assertEquals(metroStop.getStopTimes(), read.getStopTimes());
+        Assert.assertEquals(1450, read.getStopTimes().getMinutes(4));
+        Assert.assertEquals("60747", read.getStopNumber());
+    }
+
+    @Test
+    public void testReadsTwentyFourHourTimes() throws IOException {
+        StopTimes stopTimes = objectMapper.readValue("[\"5:25\", \"12:45\", \"17:05\"]", StopTimes.class);
+        Assert.assertEquals(StopTimes.of(325, 765, 1025), stopTimes);
+        Assert.assertEquals("5:05 PM", stopTimes.getTime(2));
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void testRejectsInvalidTimes() throws IOException {
+        objectMapper.readValue("[\"5:25\", \"Stop #60747\"]", StopTimes.class);
+    }
+
+    @Test
+    public void testNextDeparture() {
+        StopTimes stopTimes = StopTimes.of(352, 392, 407, 422, 1450);
+        Assert.assertEquals(0, stopTimes.nextDepartureIndex(0));
+        Assert.assertEquals(1, stopTimes.nextDepartureIndex(353));
+        Assert.assertEquals(2, stopTimes.nextDepartureIndex(407));
+        Assert.assertEquals(1450, stopTimes.nextDeparture(423));
+        Assert.assertEquals(5, stopTimes.nextDepartureIndex(1451));
+        Assert.assertEquals(-1, stopTimes.nextDeparture(1451));
+        Assert.assertEquals(0, StopTimes.of().nextDepartureIndex(600));
+    }
+
+    @Test
+    public void testParseAndFormat() {
+        Assert.assertEquals(0, StopTimes.parse("12:00 AM"));
+        Assert.assertEquals(720, StopTimes.parse("12:00 PM"));
+        Assert.assertEquals(1439, StopTimes.parse("11:59 pm"));
+        Assert.assertEquals("12:00 PM", StopTimes.format(720));
+        Assert.assertEquals("1:05 AM", StopTimes.format(StopTimes.MINUTES_PER_DAY + 65));
+    }
+}
@@ -0,0 +1,92 @@
+package org.morris.unofficial;
+
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lambda {@link Context} for running the handlers in tests. Logged messages are kept so tests can look at them.
+ */
+class TestLambdaContext implements Context {
+    private final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+    private final int remainingTimeInMillis;
+
+    TestLambdaContext(int remainingTimeInMillis) {
+        this.remainingTimeInMillis = remainingTimeInMillis;
+    }
+
+    List<String> getMessages() {
+        return messages;
+    }
+
+    @Override
+    public String getAwsRequestId() {
+        return "test-request";
+    }
+
+    @Override
+    public String getLogGroupName() {
+        return null;
+    }
+
+    @Override
+    public String getLogStreamName() {
+        return null;
+    }
+
+    @Override
+    public String getFunctionName() {
+        return "test-function";
+    }
+
+    @Override
+    public String getFunctionVersion() {
+        return null;
+    }
+
+    @Override
+    public String getInvokedFunctionArn() {
+        return null;
+    }
+
+    @Override
+    public CognitoIdentity getIdentity() {
+        return null;
+    }
+
+    @Override
+    public ClientContext getClientContext() {
+        return null;
+    }
+
+    @Override
+    public int getRemainingTimeInMillis() {
+        return remainingTimeInMillis;
+    }
+
+    @Override
+    public int getMemoryLimitInMB() {
+        return 512;
+    }
+
+    @Override
+    public LambdaLogger getLogger() {
+        return new LambdaLogger() {
+            @Override
+            public void log(String message) {
+                messages.add(message);
+            }
+
+            @Override
+            public void log(byte[] message) {
+                messages.add(new String(message, StandardCharsets.UTF_8));
+            }
+        };
+    }
+}
@@ -0,0 +1,164 @@
+package org.morris.unofficial;
+
+import com.amazonaws.services.lambda.runtime.events.S3Event;
+import com.amazonaws.services.lambda.runtime.events.models.s3.S3EventNotification;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.morris.unofficial.utils.FileUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local copy of the metro site for running the handlers offline. Each page is sent with an ETag, and a request
+ * that carries the page's ETag is answered with a 304, like the real site answers the crawler.
+ */
+class TestMetroSite implements AutoCloseable {
+    final static private String SCHEDULE_PDF_TEXT_190_PATH = "/schedule-pdf-text-dump/schedule-pdf-text-190.txt";
+    final static private String TIMETABLE_HEADING = "Route 190";
+    final static private int PDF_LINE_LENGTH = 90;
+
+    private final HttpServer server;
+    private final Map<String, Page> pages = new ConcurrentHashMap<>();
+
+    TestMetroSite() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Puts a page on the site, a page put again gets a new ETag.
+     *
+     * @param path {@link String} path of the page, starting with a slash
+     * @param content page content
+     */
+    void put(String path, byte[] content) {
+        Page last = pages.get(path);
+        pages.put(path, new Page(content, last == null ? 1 : last.version + 1));
+    }
+
+    String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    String getUrl(String path) {
+        return getUrl() + path;
+    }
+
+    String getEtag(String path) {
+        return pages.get(path).etag;
+    }
+
+    /**
+     * @param path {@link String} path of the page
+     * @return number of times the page's content was sent, 304s are not counted
+     */
+    int getBodiesSent(String path) {
+        Page page = pages.get(path);
+        return page == null ? 0 : page.bodiesSent.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        Page page = pages.get(exchange.getRequestURI().getPath());
+        if (page == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("ETag", page.etag);
+        if (page.etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        page.bodiesSent.incrementAndGet();
+        exchange.sendResponseHeaders(200, page.content.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(page.content);
+        }
+    }
+
+    /**
+     * @param bucket {@link String} bucket of the created object
+     * @param key {@link String} key of the created object
+     * @return {@link S3Event} of a single created object, as the handlers are triggered with
+     */
+    static S3Event getS3Event(String bucket, String key) {
+        S3EventNotification.S3ObjectEntity object = new S3EventNotification.S3ObjectEntity(key, 0L, null, null, null);
+        S3EventNotification.S3Entity s3 = new S3EventNotification.S3Entity(null,
+                new S3EventNotification.S3BucketEntity(bucket, null, null), object, null);
+        return new S3Event(Collections.singletonList(new S3EventNotification.S3EventNotificationRecord(null,
+                "ObjectCreated:Put", "aws:s3", null, null, null, null, s3, null)));
+    }
+
+    /**
+     * Writes the 190 timetables from the text dump to a pdf, a line at a time, so PDFBox reads them back.
+     *
+     * @return pdf content
+     * @throws IOException if the text dump can't be read
+     */
+    static byte[] writeSchedulePdf() throws IOException {
+        String scheduleText;
+        try (InputStream inputStream = FileUtils.getResourceAsStream(SCHEDULE_PDF_TEXT_190_PATH)) {
+            scheduleText = IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+        }
+        scheduleText = scheduleText.substring(scheduleText.indexOf(TIMETABLE_HEADING));
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage();
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.beginText();
+                content.setFont(PDType1Font.HELVETICA, 8);
+                content.setLeading(10);
+                content.newLineAtOffset(20, 760);
+                int start = 0;
+                while (start < scheduleText.length()) {
+                    int end = Math.min(scheduleText.length(), start + PDF_LINE_LENGTH);
+                    int space = scheduleText.lastIndexOf(' ', end);
+                    if (end < scheduleText.length() && space > start) {
+                        end = space + 1;
+                    }
+                    content.showText(scheduleText.substring(start, end).trim());
+                    content.newLine();
+                    start = end;
+                }
+                content.endText();
+            }
+            document.save(pdf);
+        }
+        return pdf.toByteArray();
+    }
+
+    private static class Page {
+        private final byte[] content;
+        private final String etag;
+        private final int version;
+        private final AtomicInteger bodiesSent = new AtomicInteger();
+
+        private Page(byte[] content, int version) {
+            this.content = content;
+            this.etag = "\"v" + version + "\"";
+            this.version = version;
+        }
+    }
+}
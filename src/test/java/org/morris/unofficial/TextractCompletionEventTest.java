@@ -0,0 +1,103 @@
+package org.morris.unofficial;
+
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.events.TextractCompletionEvent;
+import org.morris.unofficial.models.LineFingerprint;
+import org.morris.unofficial.models.PendingDetection;
+import org.morris.unofficial.models.Schedule;
+import org.morris.unofficial.utils.FileUtils;
+import org.morris.unofficial.utils.InMemoryBlobStore;
+import org.morris.unofficial.utils.InMemoryMessageQueue;
+import org.morris.unofficial.utils.InMemoryTextDetectionService;
+import org.morris.unofficial.utils.LineFingerprintIndex;
+import org.morris.unofficial.utils.MessageQueue.QueueMessage;
+import org.morris.unofficial.utils.MetroJson;
+import org.morris.unofficial.utils.SimulatedLatency;
+import org.morris.unofficial.utils.TextractJobNotification;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class TextractCompletionEventTest {
+    private final String SCHEDULES_BUCKET = System.getenv("SCHEDULES_BUCKET_NAME");
+    private final String PDF_KEY = "docs/2022/10/8/190/line_schedule_doc.pdf";
+    private final String SCHEDULE_KEY = "docs/2022/10/8/190/line_schedule.json";
+    private final String INDEX_KEY = "index/line_fingerprints.json";
+    private final String SCHEDULE_PDF_TEXT_190_PATH = "/schedule-pdf-text-dump/schedule-pdf-text-190.txt";
+
+    @Test
+    public void testCompletedDetectionFinishesItsLine() throws Exception {
+        String scheduleText;
+        try (InputStream inputStream = FileUtils.getResourceAsStream(SCHEDULE_PDF_TEXT_190_PATH)) {
+            scheduleText = IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+        }
+        InMemoryBlobStore blobStore = new InMemoryBlobStore();
+        blobStore.put(SCHEDULES_BUCKET, PDF_KEY, new byte[] {1}, "application/pdf", Collections.emptyMap());
+        InMemoryMessageQueue messageQueue = new InMemoryMessageQueue(SimulatedLatency.none(), 30000);
+
+        try (InMemoryTextDetectionService textDetectionService = new InMemoryTextDetectionService(blobStore,
+                messageQueue, (schedulePdf, consumer) -> {
+                    consumer.accept(1, scheduleText);
+                    return 1;
+                }, SimulatedLatency.none())) {
+            textDetectionService.startDocumentTextDetection(SCHEDULES_BUCKET, PDF_KEY, null, "190");
+            SQSEvent event = getEvent(messageQueue.receive(10, 5));
+            event.getRecords().add(getMessage("message-failed",
+                    new TextractJobNotification("job-failed", TextractJobNotification.FAILED, "7").toJson()));
+            TextractCompletionEvent handler = new TextractCompletionEvent(blobStore, textDetectionService);
+
+            // a notification that arrives before its pending detection is stored is retried
+            SQSBatchResponse response = handler.handleRequest(event, new TestLambdaContext(60000));
+            Assert.assertEquals(1, response.getBatchItemFailures().size());
+            Assert.assertEquals(event.getRecords().get(0).getMessageId(),
+                    response.getBatchItemFailures().get(0).getItemIdentifier());
+            Assert.assertNull(blobStore.getMetadata(SCHEDULES_BUCKET, SCHEDULE_KEY));
+
+            LineFingerprint fingerprint = new LineFingerprint("https://kingcounty.gov/190.aspx",
+                    "https://kingcounty.gov/190.pdf", "sha256-of-190");
+            blobStore.put(SCHEDULES_BUCKET, PendingDetection.getKey("190"), MetroJson.getObjectMapper()
+                    .writeValueAsBytes(new PendingDetection("190", SCHEDULE_KEY, fingerprint)),
+                    "application/json", Collections.emptyMap());
+            response = handler.handleRequest(event, new TestLambdaContext(60000));
+            Assert.assertTrue(response.getBatchItemFailures().isEmpty());
+        }
+
+        // the line's schedule is uploaded and its fingerprint recorded, so the next run skips it
+        List<Schedule> schedules;
+        try (InputStream content = blobStore.getContent(SCHEDULES_BUCKET, SCHEDULE_KEY)) {
+            schedules = MetroJson.getObjectMapper().readValue(content, new TypeReference<List<Schedule>>() {});
+        }
+        Assert.assertEquals(2, schedules.size());
+        Assert.assertEquals("190", schedules.get(0).getRoute());
+
+        LineFingerprintIndex fingerprintIndex = new LineFingerprintIndex(blobStore, SCHEDULES_BUCKET, INDEX_KEY);
+        fingerprintIndex.load();
+        Assert.assertEquals("sha256-of-190", fingerprintIndex.get("190").getPdfSha256());
+        Assert.assertNull(fingerprintIndex.get("7"));
+    }
+
+    private SQSEvent getEvent(List<QueueMessage> messages) {
+        List<SQSEvent.SQSMessage> records = new ArrayList<>();
+        for (QueueMessage message : messages) {
+            records.add(getMessage(message.getMessageId(), message.getBody()));
+        }
+        SQSEvent event = new SQSEvent();
+        event.setRecords(records);
+        return event;
+    }
+
+    private SQSEvent.SQSMessage getMessage(String messageId, String body) {
+        SQSEvent.SQSMessage message = new SQSEvent.SQSMessage();
+        message.setMessageId(messageId);
+        message.setBody(body);
+        return message;
+    }
+}
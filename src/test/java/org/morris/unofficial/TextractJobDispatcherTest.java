@@ -0,0 +1,194 @@
+package org.morris.unofficial;
+
+import com.amazonaws.services.sqs.AbstractAmazonSQS;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchResult;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.utils.SqsMessageQueue;
+import org.morris.unofficial.utils.TextractJobDispatcher;
+import org.morris.unofficial.utils.TextractJobNotification;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class TextractJobDispatcherTest {
+    final static private String QUEUE_URL = "https://sqs.us-west-2.amazonaws.com/123456789012/metro-queue";
+
+    @Test
+    public void testParseSnsEnvelopeAndRawNotification() throws IOException {
+        TextractJobNotification wrapped = TextractJobNotification.parse(getNotificationBody("job-1", "SUCCEEDED", "190"));
+        Assert.assertEquals("job-1", wrapped.getJobId());
+        Assert.assertEquals("190", wrapped.getJobTag());
+        Assert.assertTrue(wrapped.isSucceeded());
+
+        TextractJobNotification raw = TextractJobNotification.parse("{\"JobId\":\"job-2\",\"Status\":\"FAILED\"}");
+        Assert.assertEquals("job-2", raw.getJobId());
+        Assert.assertNull(raw.getJobTag());
+        Assert.assertFalse(raw.isSucceeded());
+    }
+
+    @Test(expected = IOException.class)
+    public void testParseRejectsOtherMessages() throws IOException {
+        TextractJobNotification.parse("{\"Message\":\"{}\"}");
+    }
+
+    @Test
+    public void testManyJobsCompleteFromOneLongPoller() throws Exception {
+        FakeQueue queue = new FakeQueue();
+        TextractJobDispatcher dispatcher = new TextractJobDispatcher(new SqsMessageQueue(queue, QUEUE_URL));
+
+        List<CompletableFuture<TextractJobNotification>> completions = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            completions.add(dispatcher.register("job-" + i));
+        }
+
+        // completions arrive out of order, mixed with a job started by someone else
+        queue.send("receipt-other", getNotificationBody("job-other", "SUCCEEDED", "7"));
+        for (int i = 4; i >= 0; i--) {
+            queue.send("receipt-" + i, getNotificationBody("job-" + i, "SUCCEEDED", String.valueOf(i)));
+        }
+
+        for (int i = 0; i < 5; i++) {
+            TextractJobNotification notification = completions.get(i).get(5, TimeUnit.SECONDS);
+            Assert.assertEquals("job-" + i, notification.getJobId());
+        }
+        Assert.assertEquals(5, queue.deleted.size());
+        Assert.assertFalse(queue.deleted.contains("receipt-other"));
+        Assert.assertEquals(20, (int) queue.waitTimes.get(0));
+        Assert.assertEquals(10, (int) queue.maxNumberOfMessages);
+        Assert.assertTrue(dispatcher.getReceiveRequests() < 5);
+
+        // the other job's notification goes back to the queue once the poller stops
+        awaitReleased(queue, "receipt-other");
+        Assert.assertEquals(1, dispatcher.getReleasedMessages());
+    }
+
+    @Test
+    public void testHeldNotificationsAreBounded() throws Exception {
+        FakeQueue queue = new FakeQueue();
+        TextractJobDispatcher dispatcher = new TextractJobDispatcher(new SqsMessageQueue(queue, QUEUE_URL));
+
+        CompletableFuture<TextractJobNotification> waiting = dispatcher.register("job-waiting");
+        for (int i = 0; i <= 100; i++) {
+            queue.send("receipt-other-" + i, getNotificationBody("job-other-" + i, "SUCCEEDED", "7"));
+        }
+
+        // the oldest notification is released as soon as too many are held, and the poller stops waiting long
+        awaitReleased(queue, "receipt-other-0");
+        Assert.assertFalse(queue.released.contains("receipt-other-100"));
+        Assert.assertEquals(1, (int) queue.waitTimes.get(queue.waitTimes.size() - 1));
+
+        queue.send("receipt-waiting", getNotificationBody("job-waiting", "SUCCEEDED", "190"));
+        Assert.assertEquals("job-waiting", waiting.get(5, TimeUnit.SECONDS).getJobId());
+        awaitReleased(queue, "receipt-other-100");
+        Assert.assertEquals(Collections.singletonList("receipt-waiting"), queue.deleted);
+    }
+
+    @Test
+    public void testNotificationBeforeRegistrationIsHandedOver() throws Exception {
+        FakeQueue queue = new FakeQueue();
+        TextractJobDispatcher dispatcher = new TextractJobDispatcher(new SqsMessageQueue(queue, QUEUE_URL));
+
+        // keep the poller running so it receives job-early before that job registers
+        CompletableFuture<TextractJobNotification> waiting = dispatcher.register("job-waiting");
+        queue.send("receipt-early", getNotificationBody("job-early", "FAILED", "190"));
+        while (queue.received < 1) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(50);
+
+        TextractJobNotification early = dispatcher.await("job-early", 5000);
+        Assert.assertEquals("FAILED", early.getStatus());
+        Assert.assertTrue(queue.deleted.contains("receipt-early"));
+
+        queue.send("receipt-waiting", getNotificationBody("job-waiting", "SUCCEEDED", "7"));
+        Assert.assertEquals("job-waiting", waiting.get(5, TimeUnit.SECONDS).getJobId());
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void testAwaitTimesOut() throws Exception {
+        new TextractJobDispatcher(new SqsMessageQueue(new FakeQueue(), QUEUE_URL)).await("job-missing", 100);
+    }
+
+    private void awaitReleased(FakeQueue queue, String receiptHandle) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!queue.released.contains(receiptHandle) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertTrue(queue.released.contains(receiptHandle));
+    }
+
+    private String getNotificationBody(String jobId, String status, String jobTag) {
+        String notification = String.format("{\\\"JobId\\\":\\\"%s\\\",\\\"Status\\\":\\\"%s\\\",\\\"API\\\":\\\"StartDocumentTextDetection\\\",\\\"JobTag\\\":\\\"%s\\\"}",
+                jobId, status, jobTag);
+        return String.format("{\"Type\":\"Notification\",\"Message\":\"%s\"}", notification);
+    }
+
+    /**
+     * In memory queue that waits a short time for messages, like a long poll, and records deleted and released
+     * receipts. A released message is only recorded, it is not received again.
+     */
+    private static class FakeQueue extends AbstractAmazonSQS {
+        private final LinkedBlockingQueue<Message> messages = new LinkedBlockingQueue<>();
+        private final List<String> deleted = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> released = Collections.synchronizedList(new ArrayList<>());
+        private final List<Integer> waitTimes = Collections.synchronizedList(new ArrayList<>());
+        private volatile Integer maxNumberOfMessages;
+        private volatile int received;
+
+        void send(String receiptHandle, String body) {
+            messages.add(new Message().withReceiptHandle(receiptHandle).withBody(body));
+        }
+
+        @Override
+        public ReceiveMessageResult receiveMessage(ReceiveMessageRequest request) {
+            waitTimes.add(request.getWaitTimeSeconds());
+            maxNumberOfMessages = request.getMaxNumberOfMessages();
+            List<Message> batch = new ArrayList<>();
+            try {
+                Message first = messages.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    // let the rest of a burst arrive, as a long poll returns a batch
+                    Thread.sleep(20);
+                    batch.add(first);
+                    messages.drainTo(batch, request.getMaxNumberOfMessages() - 1);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received += batch.size();
+            return new ReceiveMessageResult().withMessages(batch);
+        }
+
+        @Override
+        public DeleteMessageBatchResult deleteMessageBatch(DeleteMessageBatchRequest request) {
+            for (DeleteMessageBatchRequestEntry entry : request.getEntries()) {
+                deleted.add(entry.getReceiptHandle());
+            }
+            return new DeleteMessageBatchResult();
+        }
+
+        @Override
+        public ChangeMessageVisibilityBatchResult changeMessageVisibilityBatch(
+                ChangeMessageVisibilityBatchRequest request) {
+            for (ChangeMessageVisibilityBatchRequestEntry entry : request.getEntries()) {
+                released.add(entry.getReceiptHandle());
+            }
+            return new ChangeMessageVisibilityBatchResult();
+        }
+    }
+}
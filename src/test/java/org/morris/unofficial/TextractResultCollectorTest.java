@@ -0,0 +1,158 @@
+package org.morris.unofficial;
+
+import com.amazonaws.services.textract.AbstractAmazonTextract;
+import com.amazonaws.services.textract.model.AmazonTextractException;
+import com.amazonaws.services.textract.model.Block;
+import com.amazonaws.services.textract.model.GetDocumentTextDetectionRequest;
+import com.amazonaws.services.textract.model.GetDocumentTextDetectionResult;
+import com.amazonaws.services.textract.model.ThrottlingException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.morris.unofficial.utils.RateLimiter;
+import org.morris.unofficial.utils.TextractResultCollector;
+import org.morris.unofficial.utils.TextractTextDetectionService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TextractResultCollectorTest {
+
+    @Test
+    public void testManyJobsArePagedConcurrentlyInOrder() {
+        FakeTextract textract = new FakeTextract(3, 4, 0);
+        try (TextractResultCollector collector = new TextractResultCollector(new TextractTextDetectionService(textract),
+                4, 0)) {
+            List<List<String>> received = new ArrayList<>();
+            List<CompletableFuture<Long>> collections = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                List<String> blocks = new ArrayList<>();
+                received.add(blocks);
+                collections.add(collector.collect("job-" + i, block -> blocks.add(block.getText())));
+            }
+
+            for (int i = 0; i < 6; i++) {
+                Assert.assertEquals(12L, (long) collections.get(i).join());
+                Assert.assertEquals("job-" + i + " page 0 block 0", received.get(i).get(0));
+                Assert.assertEquals("job-" + i + " page 2 block 3", received.get(i).get(11));
+            }
+            Assert.assertEquals(18, collector.getPages());
+            Assert.assertTrue(textract.maxInFlight.get() > 1);
+            Assert.assertTrue(textract.maxInFlight.get() <= 4);
+        }
+    }
+
+    @Test
+    public void testThrottledPagesAreRetried() throws InterruptedException {
+        FakeTextract textract = new FakeTextract(2, 1, 2);
+        try (TextractResultCollector collector = new TextractResultCollector(new TextractTextDetectionService(textract),
+                1, 0)) {
+            Assert.assertEquals(2L, collector.collectAndWait("job", block -> { }));
+            Assert.assertEquals(2, collector.getRetries());
+        }
+    }
+
+    @Test
+    public void testClientErrorsAreNotRetried() {
+        FakeTextract textract = new FakeTextract(1, 1, 0);
+        textract.clientError = true;
+        try (TextractResultCollector collector = new TextractResultCollector(new TextractTextDetectionService(textract),
+                1, 0)) {
+            collector.collect("job", block -> { }).join();
+            Assert.fail("expected the collection to fail");
+        } catch (CompletionException e) {
+            Assert.assertTrue(e.getCause() instanceof AmazonTextractException);
+            Assert.assertEquals(1, textract.requests.get());
+        }
+    }
+
+    @Test
+    public void testRequestsAreRateLimitedAcrossJobs() {
+        FakeTextract textract = new FakeTextract(2, 1, 0);
+        RateLimiter rateLimiter = new RateLimiter(1000);
+        try (TextractResultCollector collector = new TextractResultCollector(new TextractTextDetectionService(textract),
+                5, rateLimiter)) {
+            List<CompletableFuture<Long>> collections = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                collections.add(collector.collect("job-" + i, block -> { }));
+            }
+            collections.forEach(CompletableFuture::join);
+
+            // every page request of every job takes a permit from the one limiter
+            Assert.assertEquals(10, rateLimiter.getPermits());
+            Assert.assertEquals(10, textract.requests.get());
+        }
+    }
+
+    @Test
+    public void testRateLimiterSpacesSlotsEvenly() {
+        AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toNanos(5));
+        RateLimiter rateLimiter = new RateLimiter(50, now::get);
+
+        // a burst of requests at 50 per second is spread 20ms apart
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(20 * i), rateLimiter.reserve());
+        }
+
+        // slots that passed unused are not saved up for a later burst
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        Assert.assertEquals(0, rateLimiter.reserve());
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(20), rateLimiter.reserve());
+        Assert.assertEquals(0, new RateLimiter(0, now::get).reserve());
+    }
+
+    /**
+     * Serves pages of numbered blocks per job, optionally throttling the first requests.
+     */
+    private static class FakeTextract extends AbstractAmazonTextract {
+        private final int pages;
+        private final int blocksPerPage;
+        private final AtomicInteger throttles;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private final AtomicInteger requests = new AtomicInteger();
+        private volatile boolean clientError;
+
+        FakeTextract(int pages, int blocksPerPage, int throttles) {
+            this.pages = pages;
+            this.blocksPerPage = blocksPerPage;
+            this.throttles = new AtomicInteger(throttles);
+        }
+
+        @Override
+        public GetDocumentTextDetectionResult getDocumentTextDetection(GetDocumentTextDetectionRequest request) {
+            requests.incrementAndGet();
+            if (clientError) {
+                AmazonTextractException e = new AmazonTextractException("invalid job id");
+                e.setStatusCode(400);
+                throw e;
+            }
+            if (throttles.getAndDecrement() > 0) {
+                ThrottlingException e = new ThrottlingException("slow down");
+                e.setStatusCode(400);
+                throw e;
+            }
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+
+            int page = request.getNextToken() == null ? 0 : Integer.parseInt(request.getNextToken());
+            List<Block> blocks = new ArrayList<>();
+            for (int i = 0; i < blocksPerPage; i++) {
+                blocks.add(new Block().withBlockType("LINE")
+                        .withText(String.format("%s page %d block %d", request.getJobId(), page, i)));
+            }
+            return new GetDocumentTextDetectionResult()
+                    .withBlocks(blocks)
+                    .withNextToken(page + 1 < pages ? String.valueOf(page + 1) : null);
+        }
+    }
+}